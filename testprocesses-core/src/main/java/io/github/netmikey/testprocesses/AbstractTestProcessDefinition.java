@@ -3,9 +3,26 @@ package io.github.netmikey.testprocesses;
 import java.io.File;
 import java.io.IOException;
 import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.InvalidPathException;
 import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HexFormat;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.UUID;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -15,6 +32,7 @@ import io.github.netmikey.testprocesses.eventdetector.EventDetector;
 import io.github.netmikey.testprocesses.eventdetector.RecursiveProcessTerminationEventDetector;
 import io.github.netmikey.testprocesses.processdestroyer.DefaultProcessDestroyer;
 import io.github.netmikey.testprocesses.processdestroyer.ProcessDestroyer;
+import io.github.netmikey.testprocesses.utils.ProcessUtils;
 
 /**
  * A simple {@link TestProcessDefinition} implementation that exposes a
@@ -28,60 +46,480 @@ import io.github.netmikey.testprocesses.processdestroyer.ProcessDestroyer;
  * <p>
  * This class uses the implementation class' fully qualified name as process
  * identifier by default.
+ * <p>
+ * On Linux, the process can be launched as the leader of its own process group
+ * (see {@link #setProcessGroup(boolean)}). The {@link DefaultProcessDestroyer}
+ * then signals the whole group at once so that no descendant is left behind.
+ * <p>
+ * A process can be shared between all test JVMs on the host (see
+ * {@link #setSharedAcrossJvms(boolean)}). JVMs that didn't launch it attach to
+ * it by its PID. Persistent processes (see {@link #setPersistent(boolean)})
+ * are even kept running across test runs.
+ * <p>
+ * Each start of a process can get a fresh working directory materialized from
+ * a template (see {@link #setWorkingDirectoryTemplate(Path)}).
+ * <p>
+ * On Linux, the process can be pinned to a set of CPUs (see
+ * {@link #setCpuSet(String)}) and launched with a nice level (see
+ * {@link #setNiceLevel(Integer)}).
+ * <p>
+ * Starting a process that fails transiently can be retried with a backoff
+ * (see {@link #setStartupRetryPolicy(StartupRetryPolicy)}), and restarting a
+ * process that can run side by side with itself can overlap the old and the
+ * new process (see {@link #setOverlappingRestart(boolean)}).
+ * <p>
+ * Multiple replicas of a definition can be run as a {@link TestProcessFleet}.
  */
 public abstract class AbstractTestProcessDefinition implements TestProcessDefinition, FileBackedOutErrStreams {
 
     private static final Logger LOG = LoggerFactory.getLogger(AbstractTestProcessDefinition.class);
 
+    private static final Set<String> CLASSPATH_OPTIONS = Set.of("-cp", "-classpath", "--class-path");
+
     /**
      * The process' requested state.
      */
-    protected TestProcessState requestedState = TestProcessState.STOPPED;
+    protected volatile TestProcessState requestedState = TestProcessState.STOPPED;
 
     private String processIdentifier = this.getClass().getName();
 
-    private Process managedProcess;
+    private Integer replicaIndex;
+
+    private volatile Process managedProcess;
+
+    private volatile Path outFile;
 
-    private Path outFile;
+    private volatile Path errFile;
 
-    private Path errFile;
+    private volatile boolean processGroupLeader = false;
 
     private boolean keepStreamFiles = false;
 
+    private boolean processGroup = false;
+
+    private boolean sharedAcrossJvms = false;
+
+    private boolean persistent = false;
+
+    private Path workingDirectoryTemplate;
+
+    private WorkingDirectoryCloning workingDirectoryCloning = WorkingDirectoryCloning.CLONE;
+
+    private Path workingDirectoryRoot = WorkingDirectories.defaultRoot();
+
+    private volatile Path workingDirectory;
+
+    private String cpuSet;
+
+    private Integer niceLevel;
+
     private EventDetector startupDetector = DelayEventDetector.withDelayMillis(1000);
 
     private EventDetector shutdownDetector = RecursiveProcessTerminationEventDetector.newInstance();
 
+    private EventDetector livenessDetector;
+
+    private StartupRetryPolicy startupRetryPolicy;
+
+    private boolean overlappingRestart = false;
+
     private ProcessDestroyer processDestroyer = DefaultProcessDestroyer.newInstance();
 
+    /**
+     * The process built by {@link #fingerprint()} for the next start to
+     * launch.
+     */
+    private volatile ProcessBuilder preparedProcess;
+
+    /**
+     * The fingerprint last computed for this definition.
+     */
+    private volatile String fingerprint;
+
     @Override
     public void start() {
         requestedState = TestProcessState.STARTED;
 
+        ProcessBuilder processBuilder = preparedProcess;
+        preparedProcess = null;
+        boolean launched = false;
         try {
-            outFile = File.createTempFile(getProcessIdentifier(), "-out.txt").toPath();
-            errFile = File.createTempFile(getProcessIdentifier(), "-err.txt").toPath();
-            if (!keepStreamFiles) {
-                outFile.toFile().deleteOnExit();
-                errFile.toFile().deleteOnExit();
+            if (processBuilder == null) {
+                processBuilder = prepareProcess();
+            }
+            if (workingDirectory != null) {
+                WorkingDirectories.materialize(workingDirectoryTemplate, workingDirectory, workingDirectoryCloning);
+            }
+            beforeLaunch(processBuilder);
+            applySchedulingOptions(processBuilder);
+
+            processGroupLeader = processGroup && ProcessUtils.isProcessGroupSupported();
+            if (processGroupLeader) {
+                processBuilder.command(ProcessUtils.inNewProcessGroup(processBuilder.command()));
+            } else if (processGroup) {
+                LOG.debug("Process groups are not supported on this platform, starting {} without its own process "
+                    + "group.", getProcessIdentifier());
             }
-
-            ProcessBuilder processBuilder = new ProcessBuilder()
-                .redirectOutput(outFile.toFile())
-                .redirectError(errFile.toFile());
-
-            buildProcess(processBuilder);
 
             if (LOG.isDebugEnabled()) {
                 LOG.debug("Starting command: {}", processBuilder.command().stream().collect(Collectors.joining(" ")));
             }
-            managedProcess = processBuilder.start();
+            managedProcess = launch(processBuilder);
+            launched = true;
+
+            Path processWorkingDirectory = workingDirectory;
+            if (processWorkingDirectory != null) {
+                WorkingDirectories.deleteOnExit(processWorkingDirectory, managedProcess);
+            }
         } catch (IOException e) {
             LOG.error("Error starting test process: " + e.getMessage(), e);
             throw new UncheckedIOException("Error starting test process: " + e.getMessage(), e);
+        } finally {
+            if (!launched && workingDirectory != null) {
+                WorkingDirectories.deleteAsync(workingDirectory);
+            }
         }
     }
 
+    /**
+     * Create the stream files of the next start, choose its working directory
+     * and let {@link #buildProcess(ProcessBuilder)} configure the process. The
+     * working directory is only materialized once the process is launched.
+     */
+    private ProcessBuilder prepareProcess() throws IOException {
+        workingDirectory = null;
+        outFile = File.createTempFile(getProcessIdentifier(), "-out.txt").toPath();
+        errFile = File.createTempFile(getProcessIdentifier(), "-err.txt").toPath();
+        if (!keepStreamFiles && !isSharedAcrossJvms()) {
+            outFile.toFile().deleteOnExit();
+            errFile.toFile().deleteOnExit();
+        }
+
+        ProcessBuilder processBuilder = new ProcessBuilder()
+            .redirectOutput(outFile.toFile())
+            .redirectError(errFile.toFile());
+
+        if (workingDirectoryTemplate != null) {
+            workingDirectory = newWorkingDirectory();
+            processBuilder.directory(workingDirectory.toFile());
+        }
+
+        buildProcess(processBuilder);
+        return processBuilder;
+    }
+
+    private Path newWorkingDirectory() {
+        return workingDirectoryRoot
+            .resolve(getProcessIdentifier().replaceAll("[^\\w.-]", "_") + "-" + UUID.randomUUID())
+            .toAbsolutePath();
+    }
+
+    /**
+     * Discard the process built by {@link #fingerprint()} along with its
+     * stream files, if it hasn't been launched.
+     */
+    private void discardPreparedProcess() {
+        if (preparedProcess == null) {
+            return;
+        }
+        preparedProcess = null;
+        for (Path file : Arrays.asList(outFile, errFile)) {
+            try {
+                Files.deleteIfExists(file);
+            } catch (IOException e) {
+                LOG.debug("Unable to delete stream file {} of test process {}: {}", file, getProcessIdentifier(),
+                    e.getMessage());
+            }
+        }
+        workingDirectory = null;
+    }
+
+    private void applySchedulingOptions(ProcessBuilder processBuilder) {
+        String effectiveCpuSet = cpuSet != null ? cpuSet : CpuPartitioner.current();
+        if (effectiveCpuSet != null && ProcessUtils.isCpuAffinitySupported()) {
+            processBuilder.command(ProcessUtils.withCpuAffinity(processBuilder.command(), effectiveCpuSet));
+        } else if (effectiveCpuSet != null) {
+            LOG.debug("CPU affinity is not supported on this platform, starting {} on all CPUs.",
+                getProcessIdentifier());
+        }
+
+        if (niceLevel != null && ProcessUtils.isNiceLevelSupported()) {
+            processBuilder.command(ProcessUtils.withNiceLevel(processBuilder.command(), niceLevel));
+        } else if (niceLevel != null) {
+            LOG.debug("Nice levels are not supported on this platform, starting {} with the default priority.",
+                getProcessIdentifier());
+        }
+    }
+
+    /**
+     * Attach this definition to a process that has been launched by another
+     * JVM instead of starting it.
+     * 
+     * @param process
+     *            The process to attach to.
+     * @param processGroupLeader
+     *            Whether the process has been launched as the leader of its
+     *            own process group.
+     * @param outFile
+     *            The file the process' stdOut stream is redirected to.
+     * @param errFile
+     *            The file the process' stdErr stream is redirected to.
+     */
+    void attach(ProcessHandle process, boolean processGroupLeader, Path outFile, Path errFile) {
+        discardPreparedProcess();
+        requestedState = TestProcessState.STARTED;
+        this.outFile = outFile;
+        this.errFile = errFile;
+        this.processGroupLeader = processGroupLeader;
+        this.managedProcess = new AttachedProcess(process);
+    }
+
+    /**
+     * Detach the running process from this definition so that the definition
+     * can launch a new one while the old one is being torn down.
+     * 
+     * @return A definition representing the old process, using this
+     *         definition's process destroyer and shutdown detector.
+     */
+    AbstractTestProcessDefinition retire() {
+        return new RetiredTestProcessDefinition(this);
+    }
+
+    /**
+     * Build the process the next {@link #start()} launches and compute its
+     * fingerprint: a hash of the command line and working directory configured
+     * by {@link #buildProcess(ProcessBuilder)}, of the environment variables it
+     * added, changed or removed compared to the test JVM's environment, and of
+     * the size and modification time of all files referenced by the command
+     * line (the executable, scripts, jars on a classpath and such) and of the
+     * files within classpath directories (e.g. <code>build/classes</code>).
+     * Paths within a working directory materialized from a template are
+     * fingerprinted as paths within the template.
+     * <p>
+     * {@link #buildProcess(ProcessBuilder)} is only called once: the next start
+     * launches the process the fingerprint has been computed of. Attaching to
+     * a running process instead discards it. Neither materializes the working
+     * directory.
+     * 
+     * @return The fingerprint.
+     */
+    String fingerprint() {
+        discardPreparedProcess();
+        try {
+            preparedProcess = prepareProcess();
+        } catch (IOException e) {
+            LOG.error("Error preparing test process: " + e.getMessage(), e);
+            throw new UncheckedIOException("Error preparing test process: " + e.getMessage(), e);
+        }
+        fingerprint = fingerprint(preparedProcess, workingDirectory);
+        return fingerprint;
+    }
+
+    /**
+     * Get the fingerprint of this definition (see {@link #fingerprint()}),
+     * computing it only if it hasn't been computed before. Computing it this
+     * way calls {@link #buildProcess(ProcessBuilder)} on a process builder of
+     * its own and neither creates stream files nor prepares the next start,
+     * so it can be used on definitions that are running or won't be started.
+     * 
+     * @return The fingerprint.
+     */
+    String cachedFingerprint() {
+        String knownFingerprint = fingerprint;
+        if (knownFingerprint == null) {
+            ProcessBuilder processBuilder = new ProcessBuilder();
+            Path plannedWorkingDirectory = workingDirectoryTemplate != null ? newWorkingDirectory() : null;
+            if (plannedWorkingDirectory != null) {
+                processBuilder.directory(plannedWorkingDirectory.toFile());
+            }
+            buildProcess(processBuilder);
+            knownFingerprint = fingerprint(processBuilder, plannedWorkingDirectory);
+            fingerprint = knownFingerprint;
+        }
+        return knownFingerprint;
+    }
+
+    private String fingerprint(ProcessBuilder processBuilder, Path plannedWorkingDirectory) {
+        // Resolve paths within the working directory against the template: it doesn't exist yet
+        File directory = workingDirectoryTemplate != null
+            ? workingDirectoryTemplate.toAbsolutePath().toFile()
+            : processBuilder.directory();
+        List<String> command = processBuilder.command().stream()
+            .map(argument -> inWorkingDirectoryTemplate(argument, plannedWorkingDirectory))
+            .collect(Collectors.toList());
+        Map<String, String> environment = new TreeMap<>();
+        processBuilder.environment().forEach((name, value) -> environment.put(name,
+            inWorkingDirectoryTemplate(value, plannedWorkingDirectory)));
+
+        MessageDigest digest = sha256();
+        update(digest, "command", String.join("\u0000", command));
+        update(digest, "directory", directory != null ? directory.getAbsolutePath() : "");
+        // Only what buildProcess changed: the inherited environment differs from shell to shell and run to run
+        Map<String, String> inheritedEnvironment = System.getenv();
+        environment.forEach((name, value) -> {
+            if (!value.equals(inheritedEnvironment.get(name))) {
+                update(digest, "env:" + name, value);
+            }
+        });
+        new TreeSet<>(inheritedEnvironment.keySet()).stream()
+            .filter(name -> !environment.containsKey(name))
+            .forEach(name -> update(digest, "unsetEnv", name));
+        for (Path file : referencedFiles(command, directory)) {
+            update(digest, "file:" + file, stamp(file));
+        }
+        for (Path classpathDirectory : classpathDirectories(command, environment, directory)) {
+            update(digest, "classpathDirectory", classpathDirectory.toString());
+            try (Stream<Path> files = Files.walk(classpathDirectory)) {
+                for (Path file : files.filter(Files::isRegularFile).sorted().collect(Collectors.toList())) {
+                    update(digest, classpathDirectory.relativize(file).toString(), stamp(file));
+                }
+            } catch (IOException | UncheckedIOException e) {
+                LOG.debug("Unable to list {} to fingerprint test process {}: {}", classpathDirectory,
+                    getProcessIdentifier(), e.getMessage());
+            }
+        }
+        return HexFormat.of().formatHex(digest.digest());
+    }
+
+    /**
+     * Replaces the path of the working directory chosen for this start by the
+     * path of the template it will be materialized from, since the working
+     * directory differs from start to start.
+     */
+    private String inWorkingDirectoryTemplate(String value, Path plannedWorkingDirectory) {
+        return plannedWorkingDirectory != null
+            ? value.replace(plannedWorkingDirectory.toString(), workingDirectoryTemplate.toAbsolutePath().toString())
+            : value;
+    }
+
+    /**
+     * Get a stamp of the size and modification time of the specified file,
+     * which changes whenever the file is rewritten, without reading it.
+     */
+    private String stamp(Path file) {
+        try {
+            return Files.size(file) + "@" + Files.getLastModifiedTime(file).toMillis();
+        } catch (IOException e) {
+            LOG.debug("Unable to stamp {} to fingerprint test process {}: {}", file, getProcessIdentifier(),
+                e.getMessage());
+            return "";
+        }
+    }
+
+    /**
+     * Get the directories on the classpath of a Java command line, i.e. in
+     * the argument of a classpath option or the <code>CLASSPATH</code>
+     * environment variable.
+     */
+    private static Set<Path> classpathDirectories(List<String> command, Map<String, String> environment,
+        File directory) {
+
+        List<String> classpaths = new ArrayList<>();
+        Optional.ofNullable(environment.get("CLASSPATH")).ifPresent(classpaths::add);
+        for (int i = 1; i < command.size(); i++) {
+            if (CLASSPATH_OPTIONS.contains(command.get(i - 1))) {
+                classpaths.add(command.get(i));
+            }
+        }
+        Set<Path> directories = new LinkedHashSet<>();
+        for (String classpath : classpaths) {
+            for (String entry : classpath.split(File.pathSeparator)) {
+                try {
+                    Path path = Paths.get(entry);
+                    if (!entry.isEmpty() && !path.isAbsolute() && directory != null) {
+                        path = directory.toPath().resolve(path);
+                    }
+                    if (!entry.isEmpty() && Files.isDirectory(path)) {
+                        directories.add(path.toAbsolutePath().normalize());
+                    }
+                } catch (InvalidPathException e) {
+                    // Not a directory
+                }
+            }
+        }
+        return directories;
+    }
+
+    private static Set<Path> referencedFiles(Iterable<String> command, File directory) {
+        Set<Path> files = new LinkedHashSet<>();
+        boolean executable = true;
+        for (String argument : command) {
+            for (String part : argument.split(File.pathSeparator)) {
+                resolveFile(part, directory, executable).ifPresent(files::add);
+            }
+            executable = false;
+        }
+        return files;
+    }
+
+    private static Optional<Path> resolveFile(String name, File directory, boolean searchPath) {
+        if (name.isEmpty()) {
+            return Optional.empty();
+        }
+        try {
+            Path path = Paths.get(name);
+            if (!path.isAbsolute() && directory != null) {
+                path = directory.toPath().resolve(path);
+            }
+            if (Files.isRegularFile(path)) {
+                return Optional.of(path.toAbsolutePath().normalize());
+            }
+            if (searchPath && !name.contains(File.separator)) {
+                String pathVariable = Optional.ofNullable(System.getenv("PATH")).orElse("");
+                for (String pathEntry : pathVariable.split(File.pathSeparator)) {
+                    Path candidate = Paths.get(pathEntry, name);
+                    if (!pathEntry.isEmpty() && Files.isRegularFile(candidate)) {
+                        return Optional.of(candidate.toAbsolutePath().normalize());
+                    }
+                }
+            }
+        } catch (InvalidPathException e) {
+            // Not a file name
+        }
+        return Optional.empty();
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available: " + e.getMessage(), e);
+        }
+    }
+
+    private static void update(MessageDigest digest, String name, String value) {
+        digest.update((name + "=" + value + "\n").getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * A process that has been replaced by a new instance of its definition and
+     * is about to be torn down.
+     */
+    private static final class RetiredTestProcessDefinition extends AbstractTestProcessDefinition {
+
+        private RetiredTestProcessDefinition(AbstractTestProcessDefinition definition) {
+            setProcessIdentifier(definition.getProcessIdentifier());
+            setShutdownDetector(definition.getShutdownDetector());
+            setProcessDestroyer(definition.getProcessDestroyer());
+            requestedState = TestProcessState.STARTED;
+            copyProcessState(definition, this);
+        }
+
+        @Override
+        protected void buildProcess(ProcessBuilder builder) {
+            throw new UnsupportedOperationException("Retired test process " + getProcessIdentifier()
+                + " can't be started again");
+        }
+    }
+
+    private static void copyProcessState(AbstractTestProcessDefinition from, AbstractTestProcessDefinition to) {
+        to.managedProcess = from.managedProcess;
+        to.outFile = from.outFile;
+        to.errFile = from.errFile;
+        to.processGroupLeader = from.processGroupLeader;
+        to.workingDirectory = from.workingDirectory;
+    }
+
     /**
      * Allows for the customization of the {@link ProcessBuilder} instance that
      * will be used to build the process.
@@ -91,6 +529,40 @@ public abstract class AbstractTestProcessDefinition implements TestProcessDefini
      */
     protected abstract void buildProcess(ProcessBuilder builder);
 
+    /**
+     * Allows for last-minute customizations of the {@link ProcessBuilder}
+     * right before the process is actually launched. Unlike
+     * {@link #buildProcess(ProcessBuilder)}, this isn't called when computing
+     * the definition's fingerprint, so it's the place for options that only
+     * affect how the process is launched, not what it does. Does nothing by
+     * default.
+     * 
+     * @param builder
+     *            The builder that will be used to launch the process.
+     */
+    protected void beforeLaunch(ProcessBuilder builder) {
+        // Nothing to do by default
+    }
+
+    /**
+     * Launch the process configured by the specified {@link ProcessBuilder}.
+     * Its output and error streams have been redirected to this definition's
+     * stream files. Uses {@link ProcessBuilder#start()} by default, or the
+     * registry's launcher process if it has been enabled (see
+     * {@link TestProcessesRegistry#setLauncherProcess(boolean)}). Subclasses
+     * may launch the process differently as long as they honor the builder's
+     * configuration.
+     * 
+     * @param builder
+     *            The fully configured builder.
+     * @return The launched process.
+     * @throws IOException
+     *             If the process can't be launched.
+     */
+    protected Process launch(ProcessBuilder builder) throws IOException {
+        return ProcessLauncher.start(builder);
+    }
+
     @Override
     public void stop() {
         requestedState = TestProcessState.STOPPED;
@@ -111,6 +583,29 @@ public abstract class AbstractTestProcessDefinition implements TestProcessDefini
         this.processIdentifier = processIdentifier;
     }
 
+    /**
+     * Get the index of this definition within its {@link TestProcessFleet},
+     * e.g. to derive the process' ports from it in
+     * {@link #buildProcess(ProcessBuilder)}.
+     * 
+     * @return Returns the replicaIndex, or <code>null</code> if this
+     *         definition isn't a replica.
+     */
+    public Integer getReplicaIndex() {
+        return replicaIndex;
+    }
+
+    /**
+     * Set the replicaIndex. Set by the {@link TestProcessFleet} creating the
+     * definition.
+     * 
+     * @param replicaIndex
+     *            The replicaIndex to set.
+     */
+    void setReplicaIndex(Integer replicaIndex) {
+        this.replicaIndex = replicaIndex;
+    }
+
     @Override
     public TestProcessState getRequestedState() {
         return requestedState;
@@ -170,6 +665,85 @@ public abstract class AbstractTestProcessDefinition implements TestProcessDefini
         this.shutdownDetector = shutdownDetector;
     }
 
+    /**
+     * Get the livenessDetector.
+     * 
+     * @return Returns the livenessDetector.
+     */
+    public EventDetector getLivenessDetector() {
+        return livenessDetector;
+    }
+
+    /**
+     * Set the {@link EventDetector} the registry's watchdog (see
+     * {@link TestProcessesRegistry#setWatchdog(boolean)}) uses to check
+     * whether the running process is still healthy, e.g. a
+     * {@link io.github.netmikey.testprocesses.eventdetector.TcpPortEventDetector}
+     * with a short timeout. The process is considered unhealthy if the
+     * detector times out. Without a liveness detector, the process is
+     * considered healthy as long as it is running.
+     * 
+     * @param livenessDetector
+     *            The livenessDetector to set.
+     */
+    public void setLivenessDetector(EventDetector livenessDetector) {
+        this.livenessDetector = livenessDetector;
+    }
+
+    /**
+     * Get the startupRetryPolicy.
+     * 
+     * @return Returns the startupRetryPolicy.
+     */
+    public StartupRetryPolicy getStartupRetryPolicy() {
+        return startupRetryPolicy;
+    }
+
+    /**
+     * Set the {@link StartupRetryPolicy} deciding whether and how often
+     * starting the process is retried if the startup detector times out, the
+     * process exits while starting up or its output matches an error pattern.
+     * Without a policy, a startup timeout is only logged and the process is
+     * used as is.
+     * 
+     * @param startupRetryPolicy
+     *            The startupRetryPolicy to set.
+     */
+    public void setStartupRetryPolicy(StartupRetryPolicy startupRetryPolicy) {
+        this.startupRetryPolicy = startupRetryPolicy;
+    }
+
+    /**
+     * Get the overlappingRestart.
+     * 
+     * @return Returns the overlappingRestart.
+     */
+    public boolean isOverlappingRestart() {
+        return overlappingRestart;
+    }
+
+    /**
+     * Set whether restarting the process (see
+     * {@link StartStrategy#REQUIRE_RESTART}) launches the new process before
+     * the running one has been stopped. The registry and this definition
+     * (including {@link #getManagedProcess()} and the captured output) switch
+     * to the new process as soon as it has been launched, so that it is
+     * stopped along with the others if the test context shuts down while it
+     * is starting up. The old one keeps running until the new one has started
+     * up and is then torn down in the background, so a restart takes about as
+     * long as a start. Only enable
+     * this if two instances of the process can run side by side, e.g. because
+     * it listens on ephemeral ports instead of fixed ones. Processes
+     * {@link #setSharedAcrossJvms(boolean) shared across JVMs} are always
+     * stopped first.
+     * 
+     * @param overlappingRestart
+     *            The overlappingRestart to set.
+     */
+    public void setOverlappingRestart(boolean overlappingRestart) {
+        this.overlappingRestart = overlappingRestart;
+    }
+
     /**
      * Get the managedProcess. Mainly used for {@link EventDetector}s, do not
      * manipulate the Process directly!
@@ -180,6 +754,250 @@ public abstract class AbstractTestProcessDefinition implements TestProcessDefini
         return managedProcess;
     }
 
+    /**
+     * Get whether the process should be launched as the leader of its own
+     * process group.
+     * 
+     * @return Returns the processGroup.
+     */
+    public boolean isProcessGroup() {
+        return processGroup;
+    }
+
+    /**
+     * Set whether the process should be launched as the leader of its own
+     * session and process group using <code>setsid</code>. Processes in this
+     * group are signalled all at once when the process is destroyed, even
+     * descendants that have been re-parented after their parent exited. Only
+     * has an effect on Linux, see {@link ProcessUtils#isProcessGroupSupported()}.
+     * 
+     * @param processGroup
+     *            The processGroup to set.
+     */
+    public void setProcessGroup(boolean processGroup) {
+        this.processGroup = processGroup;
+    }
+
+    /**
+     * Get whether the currently managed process has been launched as the
+     * leader of its own process group. Its PID is then also its process group
+     * ID.
+     * 
+     * @return Returns whether the managed process is a process group leader.
+     */
+    public boolean isProcessGroupLeader() {
+        return processGroupLeader;
+    }
+
+    /**
+     * Get whether the process is shared between all test JVMs on the host.
+     * {@link #isPersistent() Persistent} processes always are.
+     * 
+     * @return Returns the sharedAcrossJvms.
+     */
+    public boolean isSharedAcrossJvms() {
+        return sharedAcrossJvms || persistent;
+    }
+
+    /**
+     * Set whether the process is shared between all test JVMs on the host,
+     * e.g. between the test JVMs Gradle forks when using
+     * <code>maxParallelForks</code>. The first JVM that needs the process
+     * launches it, the others attach to it, and the last JVM that stops it
+     * actually stops it. Its stream files are kept until then.
+     * <p>
+     * JVMs that attach to the process can't write to its stdIn.
+     * 
+     * @param sharedAcrossJvms
+     *            The sharedAcrossJvms to set.
+     */
+    public void setSharedAcrossJvms(boolean sharedAcrossJvms) {
+        this.sharedAcrossJvms = sharedAcrossJvms;
+    }
+
+    /**
+     * Get whether the process is kept running when the test context shuts
+     * down, so that later test runs can re-attach to it.
+     * 
+     * @return Returns the persistent.
+     */
+    public boolean isPersistent() {
+        return persistent;
+    }
+
+    /**
+     * Set whether the process is kept running when the test context shuts
+     * down, so that later test runs (e.g. the next <code>./gradlew test</code>
+     * in a local edit-test loop) can re-attach to it instead of starting it
+     * again. Persistent processes are {@link #setSharedAcrossJvms(boolean)
+     * shared across JVMs}.
+     * <p>
+     * A later run only re-attaches to the process if the fingerprint of the
+     * definition still matches: if the command line, environment or working
+     * directory set up in {@link #buildProcess(ProcessBuilder)}, the contents
+     * of the files referenced on the command line or the files within
+     * classpath directories have changed, the stale process is killed and a
+     * new one is started. Stopping the process explicitly during a test run
+     * stops it for good.
+     * 
+     * @param persistent
+     *            The persistent to set.
+     */
+    public void setPersistent(boolean persistent) {
+        this.persistent = persistent;
+    }
+
+    /**
+     * Get the workingDirectoryTemplate.
+     * 
+     * @return Returns the workingDirectoryTemplate.
+     */
+    public Path getWorkingDirectoryTemplate() {
+        return workingDirectoryTemplate;
+    }
+
+    /**
+     * Set a directory the process' working directory is materialized from.
+     * Each start of the process gets a fresh working directory within the
+     * {@link #setWorkingDirectoryRoot(Path) working directory root}, so the
+     * process always starts from the template's state. The working directory
+     * is set on the {@link ProcessBuilder} passed to
+     * {@link #buildProcess(ProcessBuilder)}, which can use
+     * {@link ProcessBuilder#directory()} to refer to it. It is only
+     * materialized right before the process is launched, after
+     * {@link #buildProcess(ProcessBuilder)} has returned, and deleted in the
+     * background once the process has exited.
+     * <p>
+     * How the template is materialized is defined by
+     * {@link #setWorkingDirectoryCloning(WorkingDirectoryCloning)}. For large
+     * templates, e.g. pre-seeded database directories, cloning using reflinks
+     * or hard links only takes milliseconds where copying takes seconds.
+     * 
+     * @param workingDirectoryTemplate
+     *            The workingDirectoryTemplate to set.
+     */
+    public void setWorkingDirectoryTemplate(Path workingDirectoryTemplate) {
+        this.workingDirectoryTemplate = workingDirectoryTemplate;
+    }
+
+    /**
+     * Get the workingDirectoryCloning.
+     * 
+     * @return Returns the workingDirectoryCloning.
+     */
+    public WorkingDirectoryCloning getWorkingDirectoryCloning() {
+        return workingDirectoryCloning;
+    }
+
+    /**
+     * Set how the {@link #setWorkingDirectoryTemplate(Path) working directory
+     * template} is materialized. Defaults to
+     * {@link WorkingDirectoryCloning#CLONE}.
+     * 
+     * @param workingDirectoryCloning
+     *            The workingDirectoryCloning to set.
+     */
+    public void setWorkingDirectoryCloning(WorkingDirectoryCloning workingDirectoryCloning) {
+        this.workingDirectoryCloning = workingDirectoryCloning;
+    }
+
+    /**
+     * Get the workingDirectoryRoot.
+     * 
+     * @return Returns the workingDirectoryRoot.
+     */
+    public Path getWorkingDirectoryRoot() {
+        return workingDirectoryRoot;
+    }
+
+    /**
+     * Set the directory working directories materialized from the
+     * {@link #setWorkingDirectoryTemplate(Path) working directory template}
+     * are created in. Defaults to <code>build/testprocesses/workdirs</code>
+     * within the working directory of the test JVM. Reflinks and hard links
+     * require it to be on the same file system as the template.
+     * 
+     * @param workingDirectoryRoot
+     *            The workingDirectoryRoot to set.
+     */
+    public void setWorkingDirectoryRoot(Path workingDirectoryRoot) {
+        this.workingDirectoryRoot = workingDirectoryRoot;
+    }
+
+    /**
+     * Get the working directory materialized from the
+     * {@link #setWorkingDirectoryTemplate(Path) working directory template}
+     * for the current process.
+     * 
+     * @return Returns the working directory. Empty if no template has been
+     *         configured or the process hasn't been started yet.
+     */
+    public Optional<Path> getWorkingDirectory() {
+        return Optional.ofNullable(workingDirectory);
+    }
+
+    /**
+     * Get the cpuSet.
+     *
+     * @return Returns the cpuSet.
+     */
+    public String getCpuSet() {
+        return cpuSet;
+    }
+
+    /**
+     * Set the CPUs the process is pinned to using <code>taskset</code>, in its
+     * list format, e.g. <code>0-3,8</code>. The process' children inherit the
+     * affinity, and JVMs size their thread pools by it. Overrides the CPUs
+     * assigned by the registry's CPU partitioning (see
+     * {@link TestProcessesRegistry#setCpuPartitioning(boolean)}). Only has an
+     * effect on Linux, see {@link ProcessUtils#isCpuAffinitySupported()}.
+     *
+     * @param cpuSet
+     *            The cpuSet to set, or <code>null</code> to run the process on
+     *            any CPU.
+     * @throws IllegalArgumentException
+     *             If the CPU list is malformed.
+     */
+    public void setCpuSet(String cpuSet) {
+        if (cpuSet != null && !CpuPartitioner.CPU_LIST.matcher(cpuSet).matches()) {
+            throw new IllegalArgumentException("Invalid CPU list '" + cpuSet + "', expected e.g. '0-3,8'");
+        }
+        this.cpuSet = cpuSet;
+    }
+
+    /**
+     * Get the niceLevel.
+     *
+     * @return Returns the niceLevel.
+     */
+    public Integer getNiceLevel() {
+        return niceLevel;
+    }
+
+    /**
+     * Set the nice level the process is launched with using
+     * <code>nice</code>, relative to the nice level of the test JVM. Positive
+     * values lower the process' scheduling priority, e.g. for load generators
+     * that shouldn't starve the system under test. Negative values require
+     * the corresponding privileges; without them, the process is launched
+     * with the test JVM's nice level. Only has an effect on Linux, see
+     * {@link ProcessUtils#isNiceLevelSupported()}.
+     *
+     * @param niceLevel
+     *            The niceLevel to set, from <code>-20</code> to
+     *            <code>19</code>, or <code>null</code> to keep the test JVM's
+     *            nice level.
+     * @throws IllegalArgumentException
+     *             If the nice level is out of range.
+     */
+    public void setNiceLevel(Integer niceLevel) {
+        if (niceLevel != null && (niceLevel < -20 || niceLevel > 19)) {
+            throw new IllegalArgumentException("Invalid nice level " + niceLevel + ", expected -20 to 19");
+        }
+        this.niceLevel = niceLevel;
+    }
+
     /**
      * Get the processDestroyer.
      * 
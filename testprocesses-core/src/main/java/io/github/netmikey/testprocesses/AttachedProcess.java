@@ -0,0 +1,134 @@
+package io.github.netmikey.testprocesses;
+
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.stream.Stream;
+
+/**
+ * A {@link Process} view on a process that has been launched by another JVM
+ * and is therefore not a child of this JVM.
+ * <p>
+ * The process' streams are not connected to this JVM: its stdIn is discarded
+ * and its stdOut and stdErr streams are empty (use the stream files instead).
+ * The exit value of a process that isn't a child of this JVM can't be
+ * determined, {@link #UNKNOWN_EXIT_VALUE} is reported instead.
+ */
+final class AttachedProcess extends Process {
+
+    /**
+     * The exit value reported for attached processes that have exited.
+     */
+    static final int UNKNOWN_EXIT_VALUE = -1;
+
+    private final ProcessHandle handle;
+
+    /**
+     * Initializing constructor.
+     *
+     * @param handle
+     *            The handle of the process to attach to.
+     */
+    AttachedProcess(ProcessHandle handle) {
+        this.handle = handle;
+    }
+
+    @Override
+    public OutputStream getOutputStream() {
+        return OutputStream.nullOutputStream();
+    }
+
+    @Override
+    public InputStream getInputStream() {
+        return InputStream.nullInputStream();
+    }
+
+    @Override
+    public InputStream getErrorStream() {
+        return InputStream.nullInputStream();
+    }
+
+    @Override
+    public int waitFor() throws InterruptedException {
+        try {
+            handle.onExit().get();
+        } catch (ExecutionException e) {
+            // onExit() never completes exceptionally
+        }
+        return UNKNOWN_EXIT_VALUE;
+    }
+
+    @Override
+    public boolean waitFor(long timeout, TimeUnit unit) throws InterruptedException {
+        try {
+            handle.onExit().get(timeout, unit);
+            return true;
+        } catch (TimeoutException e) {
+            return false;
+        } catch (ExecutionException e) {
+            return !handle.isAlive();
+        }
+    }
+
+    @Override
+    public int exitValue() {
+        if (handle.isAlive()) {
+            throw new IllegalThreadStateException("Process " + handle.pid() + " has not exited");
+        }
+        return UNKNOWN_EXIT_VALUE;
+    }
+
+    @Override
+    public void destroy() {
+        handle.destroy();
+    }
+
+    @Override
+    public Process destroyForcibly() {
+        handle.destroyForcibly();
+        return this;
+    }
+
+    @Override
+    public boolean supportsNormalTermination() {
+        return handle.supportsNormalTermination();
+    }
+
+    @Override
+    public boolean isAlive() {
+        return handle.isAlive();
+    }
+
+    @Override
+    public long pid() {
+        return handle.pid();
+    }
+
+    @Override
+    public CompletableFuture<Process> onExit() {
+        return handle.onExit().thenApply(exited -> this);
+    }
+
+    @Override
+    public ProcessHandle toHandle() {
+        return handle;
+    }
+
+    @Override
+    public ProcessHandle.Info info() {
+        return handle.info();
+    }
+
+    @Override
+    public Stream<ProcessHandle> children() {
+        return handle.children();
+    }
+
+    @Override
+    public Stream<ProcessHandle> descendants() {
+        return handle.descendants();
+    }
+}
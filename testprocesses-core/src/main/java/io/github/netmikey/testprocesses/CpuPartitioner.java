@@ -0,0 +1,247 @@
+package io.github.netmikey.testprocesses;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.TreeSet;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import io.github.netmikey.testprocesses.utils.ProcessUtils;
+
+/**
+ * Partitions the CPUs available to the test JVM between the test JVM itself
+ * and the test processes running concurrently, so that they don't compete for
+ * the same cores. The first CPUs are reserved for the test JVM, which is
+ * pinned to them. Each test process launched in the meantime gets a block of
+ * the remaining CPUs that no other running test process uses. Once all blocks
+ * are in use, further processes share all CPUs not reserved for the test JVM.
+ * <p>
+ * A single partitioner is shared by all registries of the JVM, since the
+ * affinity of the test JVM is JVM-wide. The registry assigns the CPUs for the
+ * launches it triggers using {@link #runWith(String, Runnable)}.
+ */
+final class CpuPartitioner {
+
+    private static final Logger LOG = LoggerFactory.getLogger(CpuPartitioner.class);
+
+    /**
+     * The format of CPU lists as used by <code>taskset</code> and
+     * <code>/proc/&lt;pid&gt;/status</code>, e.g. <code>0-3,8</code>.
+     */
+    static final Pattern CPU_LIST = Pattern.compile("\\d+(-\\d+)?(,\\d+(-\\d+)?)*");
+
+    private static final ThreadLocal<String> CURRENT = new ThreadLocal<>();
+
+    private static CpuPartitioner shared;
+
+    private final String processCpus;
+
+    private final List<List<Integer>> blocks;
+
+    private final boolean[] allocated;
+
+    private CpuPartitioner(String processCpus, List<List<Integer>> blocks) {
+        this.processCpus = processCpus;
+        this.blocks = blocks;
+        this.allocated = new boolean[blocks.size()];
+    }
+
+    /**
+     * Get the partitioner shared by all registries of this JVM, pinning the
+     * test JVM to its CPUs on first use.
+     *
+     * @param testJvmCpuCount
+     *            The number of CPUs to reserve for the test JVM.
+     * @param cpusPerProcess
+     *            The number of CPUs per test process.
+     * @return The partitioner, or an empty optional if there aren't enough
+     *         CPUs to partition or CPU affinity isn't supported.
+     */
+    static synchronized Optional<CpuPartitioner> shared(int testJvmCpuCount, int cpusPerProcess) {
+        if (shared == null) {
+            shared = create(testJvmCpuCount, cpusPerProcess);
+        }
+        return Optional.of(shared).filter(partitioner -> !partitioner.blocks.isEmpty());
+    }
+
+    private static CpuPartitioner create(int testJvmCpuCount, int cpusPerProcess) {
+        List<Integer> cpus = availableCpus();
+        if (!ProcessUtils.isCpuAffinitySupported() || cpus.size() <= testJvmCpuCount) {
+            LOG.warn("Not partitioning CPUs: CPU affinity is not supported on this platform or there are no more "
+                + "than the {} CPUs reserved for the test JVM", testJvmCpuCount);
+            return new CpuPartitioner(null, List.of());
+        }
+
+        String testJvmCpus = formatCpuList(cpus.subList(0, testJvmCpuCount));
+        if (!ProcessUtils.setCurrentJvmCpuAffinity(testJvmCpus)) {
+            LOG.warn("Not partitioning CPUs: Unable to pin the test JVM to CPUs {}", testJvmCpus);
+            return new CpuPartitioner(null, List.of());
+        }
+
+        List<Integer> processCpus = cpus.subList(testJvmCpuCount, cpus.size());
+        CpuPartitioner partitioner = partition(processCpus, cpusPerProcess);
+        LOG.debug("Pinned the test JVM to CPUs {}, partitioning CPUs {} into {} blocks for test processes",
+            testJvmCpus, partitioner.processCpus, partitioner.blocks.size());
+        return partitioner;
+    }
+
+    /**
+     * Create a partitioner handing out blocks of the specified CPUs, without
+     * pinning the test JVM.
+     *
+     * @param processCpus
+     *            The CPU numbers available to test processes, in ascending
+     *            order.
+     * @param cpusPerProcess
+     *            The number of CPUs per test process.
+     * @return The partitioner.
+     */
+    static CpuPartitioner partition(List<Integer> processCpus, int cpusPerProcess) {
+        List<List<Integer>> blocks = new ArrayList<>();
+        for (int i = 0; i + cpusPerProcess <= processCpus.size(); i += cpusPerProcess) {
+            blocks.add(processCpus.subList(i, i + cpusPerProcess));
+        }
+        return new CpuPartitioner(formatCpuList(processCpus), blocks);
+    }
+
+    /**
+     * Allocate the CPUs for a test process.
+     *
+     * @return The CPUs in <code>taskset</code>'s list format: a block no
+     *         other running test process uses if one is available, all CPUs
+     *         not reserved for the test JVM otherwise.
+     */
+    synchronized String allocate() {
+        for (int i = 0; i < allocated.length; i++) {
+            if (!allocated[i]) {
+                allocated[i] = true;
+                return formatCpuList(blocks.get(i));
+            }
+        }
+        return processCpus;
+    }
+
+    /**
+     * Release CPUs previously returned by {@link #allocate()}.
+     *
+     * @param cpus
+     *            The CPUs.
+     */
+    synchronized void release(String cpus) {
+        for (int i = 0; i < allocated.length; i++) {
+            if (formatCpuList(blocks.get(i)).equals(cpus)) {
+                allocated[i] = false;
+                return;
+            }
+        }
+    }
+
+    /**
+     * Run the specified action, pinning the processes started by the current
+     * thread in the meantime to the specified CPUs unless their definitions
+     * specify CPUs of their own.
+     *
+     * @param cpus
+     *            The CPUs in <code>taskset</code>'s list format.
+     * @param action
+     *            The action.
+     */
+    static void runWith(String cpus, Runnable action) {
+        String previous = CURRENT.get();
+        CURRENT.set(cpus);
+        try {
+            action.run();
+        } finally {
+            CURRENT.set(previous);
+        }
+    }
+
+    /**
+     * Get the CPUs assigned to the processes started by the current thread.
+     *
+     * @return The CPUs in <code>taskset</code>'s list format, or
+     *         <code>null</code> if none have been assigned.
+     */
+    static String current() {
+        return CURRENT.get();
+    }
+
+    /**
+     * Get the CPUs this JVM may run on: on Linux, the CPUs it is allowed to
+     * run on according to <code>/proc/self/status</code>, otherwise as many as
+     * it has available processors.
+     *
+     * @return The CPU numbers in ascending order.
+     */
+    static List<Integer> availableCpus() {
+        Path status = Paths.get("/proc/self/status");
+        if (Files.isReadable(status)) {
+            try {
+                Optional<String> cpuList = Files.readAllLines(status).stream()
+                    .filter(line -> line.startsWith("Cpus_allowed_list:"))
+                    .map(line -> line.substring(line.indexOf(':') + 1).trim())
+                    .findFirst();
+                if (cpuList.isPresent() && CPU_LIST.matcher(cpuList.get()).matches()) {
+                    return parseCpuList(cpuList.get());
+                }
+            } catch (IOException e) {
+                LOG.debug("Unable to read the CPUs allowed for this JVM: {}", e.getMessage());
+            }
+        }
+        return IntStream.range(0, Runtime.getRuntime().availableProcessors()).boxed().collect(Collectors.toList());
+    }
+
+    /**
+     * Parse a CPU list in <code>taskset</code>'s list format.
+     *
+     * @param cpuList
+     *            The CPU list, e.g. <code>0-3,8</code>.
+     * @return The CPU numbers in ascending order.
+     */
+    static List<Integer> parseCpuList(String cpuList) {
+        TreeSet<Integer> cpus = new TreeSet<>();
+        for (String range : cpuList.split(",")) {
+            int dash = range.indexOf('-');
+            int first = Integer.parseInt(dash < 0 ? range : range.substring(0, dash));
+            int last = dash < 0 ? first : Integer.parseInt(range.substring(dash + 1));
+            IntStream.rangeClosed(first, last).forEach(cpus::add);
+        }
+        return new ArrayList<>(cpus);
+    }
+
+    /**
+     * Format CPU numbers in <code>taskset</code>'s list format.
+     *
+     * @param cpus
+     *            The CPU numbers in ascending order.
+     * @return The CPU list, e.g. <code>0-3,8</code>.
+     */
+    static String formatCpuList(List<Integer> cpus) {
+        StringBuilder result = new StringBuilder();
+        int i = 0;
+        while (i < cpus.size()) {
+            int j = i;
+            while (j + 1 < cpus.size() && cpus.get(j + 1) == cpus.get(j) + 1) {
+                j++;
+            }
+            if (result.length() > 0) {
+                result.append(',');
+            }
+            result.append(cpus.get(i));
+            if (j > i) {
+                result.append('-').append(cpus.get(j));
+            }
+            i = j + 1;
+        }
+        return result.toString();
+    }
+}
@@ -0,0 +1,64 @@
+package io.github.netmikey.testprocesses;
+
+import java.util.function.Supplier;
+
+import io.github.netmikey.testprocesses.utils.StreamStart;
+
+/**
+ * Keeps track of which test the current thread is working for. State that
+ * belongs to a single test (like the stream positions of
+ * {@link StreamStart#CURRENT_TEST}) is keyed by the value returned from
+ * {@link #key()} so that tests running in parallel don't overwrite each
+ * other's state.
+ * <p>
+ * By default, a test is identified by the thread executing it, which is what
+ * JUnit Jupiter does: a test method's before-, execution- and after-phases all
+ * run on the same thread, even when parallel execution is enabled. Work that
+ * is handed over to other threads on behalf of a test can be bound to that
+ * test's key using {@link #callAs(Object, Supplier)}.
+ */
+final class CurrentTest {
+
+    private static final ThreadLocal<Object> BOUND_KEY = new ThreadLocal<>();
+
+    private CurrentTest() {
+        // Do not instantiate, please.
+    }
+
+    /**
+     * Get the key of the test the current thread is working for.
+     *
+     * @return The test key, never <code>null</code>.
+     */
+    static Object key() {
+        Object boundKey = BOUND_KEY.get();
+        return boundKey != null ? boundKey : Thread.currentThread();
+    }
+
+    /**
+     * Execute the specified action on the current thread as if it was executed
+     * by the test with the specified key.
+     *
+     * @param testKey
+     *            The key of the test, as returned by {@link #key()} on the
+     *            test's thread.
+     * @param action
+     *            The action to be executed.
+     * @param <V>
+     *            The action's result type.
+     * @return The action's result.
+     */
+    static <V> V callAs(Object testKey, Supplier<V> action) {
+        Object previousKey = BOUND_KEY.get();
+        BOUND_KEY.set(testKey);
+        try {
+            return action.get();
+        } finally {
+            if (previousKey != null) {
+                BOUND_KEY.set(previousKey);
+            } else {
+                BOUND_KEY.remove();
+            }
+        }
+    }
+}
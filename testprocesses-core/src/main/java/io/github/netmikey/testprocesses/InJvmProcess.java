@@ -0,0 +1,386 @@
+package io.github.netmikey.testprocesses;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.channels.Channels;
+import java.nio.channels.Pipe;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A {@link Process} view on a Java main method running within this JVM: in its
+ * own {@link ThreadGroup}, with classes loaded by its own class loader and its
+ * standard streams routed by {@link ThreadGroupStreams}.
+ * <p>
+ * Like a JVM, the process exits once its main method has returned and all
+ * non-daemon threads it started have ended. Its exit value is <code>0</code>
+ * if the main method returned normally and <code>1</code> if it threw an
+ * exception. Destroying the process interrupts all of its threads; its exit
+ * value is then <code>143</code>, or <code>137</code> when it has been
+ * destroyed forcibly, which doesn't wait for its threads to end.
+ * <p>
+ * The process reports this JVM's PID but has neither children nor
+ * descendants.
+ */
+final class InJvmProcess extends Process {
+
+    private static final Logger LOG = LoggerFactory.getLogger(InJvmProcess.class);
+
+    private static final int EXIT_VALUE_ERROR = 1;
+
+    private static final int EXIT_VALUE_TERMINATED = 143;
+
+    private static final int EXIT_VALUE_KILLED = 137;
+
+    private static final AtomicLong SEQUENCE = new AtomicLong();
+
+    private final long sequence = SEQUENCE.incrementAndGet();
+
+    private final String name;
+
+    private final URLClassLoader classLoader;
+
+    private final ThreadGroup threadGroup;
+
+    private final OutputStream out;
+
+    private final OutputStream err;
+
+    private final Pipe stdIn;
+
+    private final OutputStream stdInWriter;
+
+    private final InputStream stdInReader;
+
+    private final CompletableFuture<Process> exit = new CompletableFuture<>();
+
+    private final AtomicBoolean finished = new AtomicBoolean();
+
+    private final ProcessHandle handle = new Handle();
+
+    private volatile int exitValue = 0;
+
+    private volatile Integer destroyedExitValue;
+
+    private InJvmProcess(String name, URL[] classpath, File outFile, File errFile) throws IOException {
+        this.name = name;
+        this.classLoader = new URLClassLoader(name, classpath, ClassLoader.getPlatformClassLoader());
+        this.threadGroup = new ThreadGroup(name);
+        this.out = new FileOutputStream(outFile);
+        this.err = new FileOutputStream(errFile);
+        this.stdIn = Pipe.open();
+        this.stdInWriter = Channels.newOutputStream(stdIn.sink());
+        this.stdInReader = Channels.newInputStream(stdIn.source());
+    }
+
+    /**
+     * Run the specified main class in a new thread group.
+     *
+     * @param name
+     *            The name of the process, used for its class loader, thread
+     *            group and main thread.
+     * @param mainClass
+     *            The fully qualified name of the class whose main method is
+     *            run.
+     * @param classpath
+     *            The classpath of the process' class loader.
+     * @param arguments
+     *            The arguments passed to the main method.
+     * @param outFile
+     *            The file the process' stdOut stream is written to.
+     * @param errFile
+     *            The file the process' stdErr stream is written to.
+     * @return The running process.
+     * @throws IOException
+     *             If the process' streams can't be opened.
+     */
+    static InJvmProcess start(String name, String mainClass, URL[] classpath, List<String> arguments,
+        File outFile, File errFile) throws IOException {
+
+        InJvmProcess process = new InJvmProcess(name, classpath, outFile, errFile);
+        ThreadGroupStreams.register(process.threadGroup, process.out, process.err, process.stdInReader);
+        Thread mainThread = new Thread(process.threadGroup, () -> process.run(mainClass, arguments), name + "-main");
+        mainThread.setContextClassLoader(process.classLoader);
+        mainThread.start();
+        return process;
+    }
+
+    private void run(String mainClass, List<String> arguments) {
+        try {
+            Method main = Class.forName(mainClass, true, classLoader).getMethod("main", String[].class);
+            if (!Modifier.isStatic(main.getModifiers())) {
+                throw new NoSuchMethodException("The main method of " + mainClass + " is not static");
+            }
+            main.invoke(null, (Object) arguments.toArray(new String[0]));
+        } catch (InvocationTargetException e) {
+            exitValue = EXIT_VALUE_ERROR;
+            printStackTrace(e.getCause());
+        } catch (ReflectiveOperationException | RuntimeException | LinkageError e) {
+            exitValue = EXIT_VALUE_ERROR;
+            printStackTrace(e);
+        }
+        awaitNonDaemonThreads();
+        finish();
+    }
+
+    private void printStackTrace(Throwable throwable) {
+        PrintStream errStream = new PrintStream(err, true);
+        errStream.print("Exception in thread \"" + Thread.currentThread().getName() + "\" ");
+        throwable.printStackTrace(errStream);
+    }
+
+    private void awaitNonDaemonThreads() {
+        Optional<Thread> thread;
+        while ((thread = liveThreads().filter(candidate -> !candidate.isDaemon()).findAny()).isPresent()) {
+            try {
+                thread.get().join();
+            } catch (InterruptedException e) {
+                // Interrupted by destroy(): keep waiting for the process' threads
+            }
+        }
+    }
+
+    private Stream<Thread> liveThreads() {
+        Thread[] threads = new Thread[threadGroup.activeCount() + 16];
+        int count = threadGroup.enumerate(threads, true);
+        return Arrays.stream(threads, 0, count)
+            .filter(thread -> thread != Thread.currentThread() && thread.isAlive());
+    }
+
+    private void finish() {
+        if (!finished.compareAndSet(false, true)) {
+            return;
+        }
+        ThreadGroupStreams.unregister(threadGroup);
+        for (AutoCloseable closeable : new AutoCloseable[] { classLoader, out, err, stdInWriter, stdInReader }) {
+            try {
+                closeable.close();
+            } catch (Exception e) {
+                LOG.debug("Error releasing resources of in-JVM process " + name + ": " + e.getMessage(), e);
+            }
+        }
+        if (destroyedExitValue != null) {
+            exitValue = destroyedExitValue;
+        }
+        exit.complete(this);
+    }
+
+    private boolean destroy(int exitValueIfDestroyed) {
+        if (exit.isDone()) {
+            return false;
+        }
+        if (destroyedExitValue == null) {
+            destroyedExitValue = exitValueIfDestroyed;
+        }
+        threadGroup.interrupt();
+        return true;
+    }
+
+    @Override
+    public OutputStream getOutputStream() {
+        return stdInWriter;
+    }
+
+    @Override
+    public InputStream getInputStream() {
+        // Redirected to the out file
+        return InputStream.nullInputStream();
+    }
+
+    @Override
+    public InputStream getErrorStream() {
+        // Redirected to the err file
+        return InputStream.nullInputStream();
+    }
+
+    @Override
+    public int waitFor() throws InterruptedException {
+        try {
+            exit.get();
+        } catch (ExecutionException e) {
+            // The exit future never completes exceptionally
+        }
+        return exitValue;
+    }
+
+    @Override
+    public boolean waitFor(long timeout, TimeUnit unit) throws InterruptedException {
+        try {
+            exit.get(timeout, unit);
+            return true;
+        } catch (TimeoutException e) {
+            return false;
+        } catch (ExecutionException e) {
+            return exit.isDone();
+        }
+    }
+
+    @Override
+    public int exitValue() {
+        if (!exit.isDone()) {
+            throw new IllegalThreadStateException("In-JVM process " + name + " has not exited");
+        }
+        return exitValue;
+    }
+
+    @Override
+    public void destroy() {
+        destroy(EXIT_VALUE_TERMINATED);
+    }
+
+    @Override
+    public Process destroyForcibly() {
+        if (destroy(EXIT_VALUE_KILLED)) {
+            destroyedExitValue = EXIT_VALUE_KILLED;
+            String lingering = liveThreads().map(Thread::getName).collect(Collectors.joining(", "));
+            if (!lingering.isEmpty()) {
+                LOG.warn("In-JVM process {} has been destroyed forcibly, but some of its threads ignored the "
+                    + "interruption and are still running: {}", name, lingering);
+            }
+            finish();
+        }
+        return this;
+    }
+
+    @Override
+    public boolean supportsNormalTermination() {
+        return true;
+    }
+
+    @Override
+    public boolean isAlive() {
+        return !exit.isDone();
+    }
+
+    @Override
+    public long pid() {
+        return handle.pid();
+    }
+
+    @Override
+    public CompletableFuture<Process> onExit() {
+        return exit.thenApply(exited -> this);
+    }
+
+    @Override
+    public ProcessHandle toHandle() {
+        return handle;
+    }
+
+    @Override
+    public ProcessHandle.Info info() {
+        return handle.info();
+    }
+
+    @Override
+    public Stream<ProcessHandle> children() {
+        return Stream.empty();
+    }
+
+    @Override
+    public Stream<ProcessHandle> descendants() {
+        return Stream.empty();
+    }
+
+    @Override
+    public String toString() {
+        return "InJvmProcess[" + name + "]";
+    }
+
+    /**
+     * The {@link ProcessHandle} of an in-JVM process: destroying it destroys
+     * the in-JVM process, not this JVM.
+     */
+    private class Handle implements ProcessHandle {
+
+        @Override
+        public long pid() {
+            return ProcessHandle.current().pid();
+        }
+
+        @Override
+        public Optional<ProcessHandle> parent() {
+            return Optional.of(ProcessHandle.current());
+        }
+
+        @Override
+        public Stream<ProcessHandle> children() {
+            return Stream.empty();
+        }
+
+        @Override
+        public Stream<ProcessHandle> descendants() {
+            return Stream.empty();
+        }
+
+        @Override
+        public Info info() {
+            return ProcessHandle.current().info();
+        }
+
+        @Override
+        public CompletableFuture<ProcessHandle> onExit() {
+            return exit.thenApply(exited -> this);
+        }
+
+        @Override
+        public boolean supportsNormalTermination() {
+            return true;
+        }
+
+        @Override
+        public boolean destroy() {
+            return InJvmProcess.this.destroy(EXIT_VALUE_TERMINATED);
+        }
+
+        @Override
+        public boolean destroyForcibly() {
+            boolean alive = isAlive();
+            InJvmProcess.this.destroyForcibly();
+            return alive;
+        }
+
+        @Override
+        public boolean isAlive() {
+            return InJvmProcess.this.isAlive();
+        }
+
+        @Override
+        public int compareTo(ProcessHandle other) {
+            if (other instanceof Handle) {
+                return Long.compare(sequence, ((Handle) other).sequence());
+            }
+            return Long.compare(pid(), other.pid());
+        }
+
+        private long sequence() {
+            return sequence;
+        }
+
+        @Override
+        public String toString() {
+            return InJvmProcess.this.toString();
+        }
+    }
+}
@@ -0,0 +1,184 @@
+package io.github.netmikey.testprocesses;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import io.github.netmikey.testprocesses.eventdetector.EventDetector;
+
+/**
+ * A {@link TestProcessDefinition} that runs a Java main method within the test
+ * JVM instead of launching a new JVM: cheap stubs start within milliseconds
+ * and don't need memory for a JVM of their own.
+ *
+ * <pre>
+ * InJvmTestProcessDefinition definition = new InJvmTestProcessDefinition();
+ * definition.setMainClass("com.example.MyStub");
+ * definition.setStartupDetector(LogPatternEventDetector.onStdOut().withMarker("Stub started"));
+ * </pre>
+ * <p>
+ * The main method runs on a thread of its own {@link ThreadGroup}, with its
+ * classes loaded by an isolated class loader that doesn't delegate to the
+ * test's class loader: static state isn't shared with the tests or with other
+ * in-JVM processes. Whatever the process' threads write to
+ * <code>System.out</code> and <code>System.err</code> is written to the
+ * definition's stream files, and <code>System.in</code> reads from the
+ * process' stdIn, so the registry's stream APIs and {@link EventDetector}s
+ * work just like they do for other processes.
+ * <p>
+ * The process has stopped once its main method has returned and all
+ * non-daemon threads it started have ended. Destroying it interrupts all of
+ * its threads and disposes its class loader. This only works for code under
+ * your control:
+ * <ul>
+ * <li>Threads must end when they are interrupted, and the code must not call
+ * <code>System.exit()</code>, which would terminate the test JVM.</li>
+ * <li>Output written by threads that don't belong to the process' thread group
+ * (e.g. of the common fork-join pool) ends up on the test JVM's streams.</li>
+ * <li>In-JVM processes can't be launched in a process group, shared across JVMs,
+ * kept running across test runs, given a working directory, environment
+ * variables, a CPU set or a nice level of their own: they share all of them
+ * with the test JVM. Starting a definition using any of these options fails.
+ * The registry's {@link TestProcessesRegistry#setLauncherProcess(boolean)
+ * launcher process} isn't used either, since nothing is forked.</li>
+ * </ul>
+ */
+public class InJvmTestProcessDefinition extends AbstractTestProcessDefinition {
+
+    private String mainClass;
+
+    private List<String> classpath = Arrays.asList(System.getProperty("java.class.path").split(File.pathSeparator));
+
+    private List<String> arguments = new ArrayList<>();
+
+    /**
+     * Describes the equivalent <code>java</code> command. It isn't run, it is
+     * only used to compute the definition's fingerprint.
+     */
+    @Override
+    protected void buildProcess(ProcessBuilder builder) {
+        if (mainClass == null || mainClass.isBlank()) {
+            throw new IllegalStateException("No main class has been configured for test process "
+                + getProcessIdentifier());
+        }
+        List<String> command = new ArrayList<>();
+        command.add("java");
+        command.add("-cp");
+        command.add(String.join(File.pathSeparator, classpath));
+        command.add(mainClass);
+        command.addAll(arguments);
+        builder.command(command);
+    }
+
+    @Override
+    protected Process launch(ProcessBuilder builder) throws IOException {
+        rejectUnsupportedOptions(builder);
+        return InJvmProcess.start(getProcessIdentifier(), mainClass, classpathUrls(), arguments,
+            builder.redirectOutput().file(), builder.redirectError().file());
+    }
+
+    /**
+     * Reject all options that only apply to processes of their own at once,
+     * including those configured on the {@link ProcessBuilder} by a subclass,
+     * instead of silently ignoring them.
+     */
+    private void rejectUnsupportedOptions(ProcessBuilder builder) {
+        List<String> unsupported = new ArrayList<>();
+        if (isProcessGroup()) {
+            unsupported.add("a process group");
+        }
+        if (isSharedAcrossJvms()) {
+            unsupported.add("sharing across JVMs");
+        }
+        if (isPersistent()) {
+            unsupported.add("persistence");
+        }
+        if (getWorkingDirectoryTemplate() != null || builder.directory() != null) {
+            unsupported.add("a working directory");
+        }
+        if (getCpuSet() != null) {
+            unsupported.add("a CPU set");
+        }
+        if (getNiceLevel() != null) {
+            unsupported.add("a nice level");
+        }
+        if (!builder.environment().equals(System.getenv())) {
+            unsupported.add("environment variables");
+        }
+        if (!unsupported.isEmpty()) {
+            throw new IllegalStateException("In-JVM test process " + getProcessIdentifier()
+                + " runs within the test JVM and doesn't support " + String.join(", ", unsupported));
+        }
+    }
+
+    private URL[] classpathUrls() throws MalformedURLException {
+        URL[] urls = new URL[classpath.size()];
+        for (int i = 0; i < urls.length; i++) {
+            urls[i] = Paths.get(classpath.get(i)).toAbsolutePath().toUri().toURL();
+        }
+        return urls;
+    }
+
+    /**
+     * Get the mainClass.
+     *
+     * @return Returns the mainClass.
+     */
+    public String getMainClass() {
+        return mainClass;
+    }
+
+    /**
+     * Set the fully qualified name of the class whose main method is run.
+     *
+     * @param mainClass
+     *            The mainClass to set.
+     */
+    public void setMainClass(String mainClass) {
+        this.mainClass = mainClass;
+    }
+
+    /**
+     * Get the classpath.
+     *
+     * @return Returns the classpath.
+     */
+    public List<String> getClasspath() {
+        return classpath;
+    }
+
+    /**
+     * Set the entries of the classpath of the process' isolated class loader.
+     * Defaults to the classpath of the test JVM.
+     *
+     * @param classpath
+     *            The classpath to set.
+     */
+    public void setClasspath(List<String> classpath) {
+        this.classpath = classpath;
+    }
+
+    /**
+     * Get the arguments.
+     *
+     * @return Returns the arguments.
+     */
+    public List<String> getArguments() {
+        return arguments;
+    }
+
+    /**
+     * Set the arguments passed to the main method.
+     *
+     * @param arguments
+     *            The arguments to set.
+     */
+    public void setArguments(List<String> arguments) {
+        this.arguments = arguments;
+    }
+}
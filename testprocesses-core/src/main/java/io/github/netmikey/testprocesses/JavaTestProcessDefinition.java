@@ -0,0 +1,471 @@
+package io.github.netmikey.testprocesses;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A {@link TestProcessDefinition} for Java processes: instead of assembling
+ * the command line in {@link #buildProcess(ProcessBuilder)}, configure the main
+ * class, the classpath and the JVM and program arguments:
+ *
+ * <pre>
+ * JavaTestProcessDefinition definition = new JavaTestProcessDefinition();
+ * definition.setMainClass("com.example.MyServer");
+ * definition.setJvmArguments(List.of("-Xmx256m"));
+ * </pre>
+ * <p>
+ * By default, the process is started using the JVM running the tests and the
+ * classpath of the test JVM.
+ * <p>
+ * Java processes spend a large part of their startup time loading and
+ * verifying classes. This definition therefore uses Application Class Data
+ * Sharing (AppCDS, JDK 13 or newer) by default: the first start of a process
+ * records the classes it loaded into an archive using
+ * <code>-XX:ArchiveClassesAtExit</code>, later starts map that archive using
+ * <code>-XX:SharedArchiveFile</code>. Archives are stored in the
+ * {@link #setAppCdsDirectory(Path) AppCDS directory}, keyed by a hash of the
+ * Java executable, the JVM arguments, the main class and the classpath
+ * including the size and modification time of its entries, so a rebuilt jar
+ * leads to a new archive.
+ * <p>
+ * The JVM only writes the archive when it exits normally, e.g. when it is
+ * stopped using <code>SIGTERM</code> by the {@link #getProcessDestroyer()
+ * process destroyer}, but not when it is killed forcibly. Archives are
+ * verified before they are used by later starts. An archive written while the
+ * test JVM was exiting is verified by the next start instead. The JVM can't
+ * archive classes loaded from directories: AppCDS is skipped, with a warning,
+ * if the classpath contains a non-empty directory. The default classpath of a
+ * test JVM usually contains its build's class directories, so
+ * {@link #setClasspath(List) set a classpath} of jars to benefit from AppCDS.
+ */
+public class JavaTestProcessDefinition extends AbstractTestProcessDefinition {
+
+    private static final Logger LOG = LoggerFactory.getLogger(JavaTestProcessDefinition.class);
+
+    private static final String ARCHIVE_SUFFIX = ".jsa";
+
+    private static final String PENDING_ARCHIVE_SUFFIX = ARCHIVE_SUFFIX + ".tmp";
+
+    /**
+     * Pending archives that haven't been modified for this long aren't being
+     * written anymore.
+     */
+    private static final long STALE_ARCHIVE_MILLIS = 10000;
+
+    /**
+     * Keeps the JVM's AppCDS warnings (e.g. about classes it can't archive)
+     * out of the process' stdOut stream.
+     */
+    private static final String DISABLE_CDS_LOGGING = "-Xlog:cds=off,cds+dynamic=off";
+
+    private static final long ARCHIVE_VERIFICATION_TIMEOUT_SECONDS = 30;
+
+    private String javaExecutable = Paths.get(System.getProperty("java.home"), "bin", "java").toString();
+
+    private String mainClass;
+
+    private List<String> classpath = Arrays.asList(System.getProperty("java.class.path").split(File.pathSeparator));
+
+    private List<String> jvmArguments = new ArrayList<>();
+
+    private List<String> arguments = new ArrayList<>();
+
+    private boolean appCds = true;
+
+    private Path appCdsDirectory = SharedProcesses.defaultDirectory().resolve("appcds");
+
+    private volatile Path pendingArchive;
+
+    private volatile Path pendingArchiveTarget;
+
+    private volatile boolean appCdsSkipReported;
+
+    @Override
+    public void start() {
+        try {
+            super.start();
+            Path archive = pendingArchive;
+            Path target = pendingArchiveTarget;
+            if (archive != null) {
+                getManagedProcess().onExit().thenRun(() -> publishArchive(archive, target));
+            }
+        } finally {
+            pendingArchive = null;
+            pendingArchiveTarget = null;
+        }
+    }
+
+    @Override
+    protected void buildProcess(ProcessBuilder builder) {
+        if (mainClass == null || mainClass.isBlank()) {
+            throw new IllegalStateException("No main class has been configured for test process "
+                + getProcessIdentifier());
+        }
+        List<String> command = new ArrayList<>();
+        command.add(javaExecutable);
+        command.addAll(jvmArguments);
+        if (!classpath.isEmpty()) {
+            command.add("-cp");
+            command.add(String.join(File.pathSeparator, classpath));
+        }
+        command.add(mainClass);
+        command.addAll(arguments);
+        builder.command(command);
+    }
+
+    /**
+     * Adds the AppCDS options right after the Java executable.
+     */
+    @Override
+    protected void beforeLaunch(ProcessBuilder builder) {
+        if (!appCds) {
+            return;
+        }
+        Optional<String> archiveKey = archiveKey();
+        if (archiveKey.isEmpty()) {
+            return;
+        }
+        try {
+            Files.createDirectories(appCdsDirectory);
+        } catch (IOException e) {
+            LOG.debug("Unable to create AppCDS directory {}, starting {} without AppCDS: {}", appCdsDirectory,
+                getProcessIdentifier(), e.getMessage());
+            return;
+        }
+
+        Path archive = appCdsDirectory.resolve(archiveKey.get() + ARCHIVE_SUFFIX).toAbsolutePath();
+        recoverStaleArchives(archiveKey.get(), archive);
+        List<String> options = new ArrayList<>();
+        options.add(DISABLE_CDS_LOGGING);
+        if (Files.isRegularFile(archive)) {
+            LOG.debug("Starting {} using AppCDS archive {}", getProcessIdentifier(), archive);
+            options.add("-XX:SharedArchiveFile=" + archive);
+        } else {
+            // Concurrent first starts each dump to their own file, the first
+            // one to finish publishes its archive
+            pendingArchive = appCdsDirectory
+                .resolve(archiveKey.get() + "-" + UUID.randomUUID() + PENDING_ARCHIVE_SUFFIX).toAbsolutePath();
+            pendingArchiveTarget = archive;
+            LOG.debug("Starting {} creating AppCDS archive {}", getProcessIdentifier(), archive);
+            options.add("-XX:ArchiveClassesAtExit=" + pendingArchive);
+        }
+
+        List<String> command = new ArrayList<>(builder.command());
+        command.addAll(1, options);
+        builder.command(command);
+    }
+
+    /**
+     * Compute the key of this definition's AppCDS archive.
+     *
+     * @return The key or an empty {@link Optional} if the classpath can't be
+     *         archived.
+     */
+    private Optional<String> archiveKey() {
+        MessageDigest digest = sha256();
+        update(digest, "java", fileStamp(Paths.get(javaExecutable)));
+        update(digest, "jvmArguments", String.join("\u0000", jvmArguments));
+        update(digest, "mainClass", mainClass);
+        for (String entry : classpath) {
+            Path path = Paths.get(entry).toAbsolutePath();
+            if (isNonEmptyDirectory(path)) {
+                reportAppCdsSkipped(path);
+                return Optional.empty();
+            }
+            update(digest, "classpath", fileStamp(path));
+        }
+        return Optional.of(HexFormat.of().formatHex(digest.digest()));
+    }
+
+    /**
+     * Tell once per definition that AppCDS is skipped: the default classpath
+     * of a test JVM usually contains its build's class directories, so this
+     * is easily overlooked.
+     */
+    private void reportAppCdsSkipped(Path directory) {
+        if (appCdsSkipReported) {
+            LOG.debug("The classpath of {} contains the non-empty directory {}, starting it without AppCDS.",
+                getProcessIdentifier(), directory);
+            return;
+        }
+        appCdsSkipReported = true;
+        LOG.warn("Starting test process {} without AppCDS: its classpath contains the non-empty directory {}, "
+            + "whose classes the JVM can't archive. Set a classpath of jars only to speed up its startups, or "
+            + "disable AppCDS to silence this warning.", getProcessIdentifier(), directory);
+    }
+
+    /**
+     * Clean up the archives dumped by processes that exited while their test
+     * JVM was shutting down: archives are published once the process has
+     * exited, which the test JVM doesn't wait for. An archive of this
+     * definition is published if none has been yet, all others are deleted.
+     */
+    private void recoverStaleArchives(String archiveKey, Path archive) {
+        long staleBeforeMillis = System.currentTimeMillis() - STALE_ARCHIVE_MILLIS;
+        try (DirectoryStream<Path> pendingArchives = Files.newDirectoryStream(appCdsDirectory,
+            "*" + PENDING_ARCHIVE_SUFFIX)) {
+
+            for (Path pendingArchive : pendingArchives) {
+                if (Files.getLastModifiedTime(pendingArchive).toMillis() >= staleBeforeMillis) {
+                    continue;
+                }
+                if (pendingArchive.getFileName().toString().startsWith(archiveKey + "-")) {
+                    publishArchive(pendingArchive, archive);
+                } else {
+                    Files.deleteIfExists(pendingArchive);
+                }
+            }
+        } catch (IOException e) {
+            LOG.debug("Unable to clean up stale AppCDS archives in " + appCdsDirectory + ": " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Verify the archive dumped by a process that has exited and publish it
+     * for later starts.
+     */
+    private void publishArchive(Path archive, Path target) {
+        try {
+            if (!Files.isRegularFile(archive)) {
+                LOG.debug("Test process {} exited without writing its AppCDS archive.", getProcessIdentifier());
+                return;
+            }
+            if (!Files.exists(target) && isUsableArchive(archive)) {
+                Files.move(archive, target, StandardCopyOption.ATOMIC_MOVE);
+                LOG.debug("Published AppCDS archive {} of test process {}", target, getProcessIdentifier());
+            }
+        } catch (FileAlreadyExistsException e) {
+            // Another start has published its archive in the meantime
+        } catch (IOException e) {
+            LOG.debug("Unable to publish AppCDS archive " + target + ": " + e.getMessage(), e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            try {
+                Files.deleteIfExists(archive);
+            } catch (IOException e) {
+                LOG.debug("Unable to delete AppCDS archive " + archive + ": " + e.getMessage(), e);
+            }
+        }
+    }
+
+    /**
+     * Check whether the JVM accepts the archive: it might be incomplete if the
+     * JVM has been killed while writing it.
+     */
+    private boolean isUsableArchive(Path archive) throws IOException, InterruptedException {
+        List<String> command = new ArrayList<>();
+        command.add(javaExecutable);
+        command.addAll(jvmArguments);
+        command.add("-XX:SharedArchiveFile=" + archive);
+        command.add("-Xshare:on");
+        command.add("-Xlog:disable");
+        command.add("-cp");
+        command.add(String.join(File.pathSeparator, classpath));
+        command.add("-version");
+        Process verification = new ProcessBuilder(command)
+            .redirectOutput(ProcessBuilder.Redirect.DISCARD)
+            .redirectError(ProcessBuilder.Redirect.DISCARD)
+            .start();
+        if (!verification.waitFor(ARCHIVE_VERIFICATION_TIMEOUT_SECONDS, TimeUnit.SECONDS)) {
+            verification.destroyForcibly();
+            return false;
+        }
+        if (verification.exitValue() != 0) {
+            LOG.debug("Discarding unusable AppCDS archive of test process {}", getProcessIdentifier());
+            return false;
+        }
+        return true;
+    }
+
+    private static boolean isNonEmptyDirectory(Path path) {
+        if (!Files.isDirectory(path)) {
+            return false;
+        }
+        try (Stream<Path> children = Files.list(path)) {
+            return children.findAny().isPresent();
+        } catch (IOException e) {
+            return true;
+        }
+    }
+
+    private static String fileStamp(Path path) {
+        try {
+            return path + ":" + Files.size(path) + ":" + Files.getLastModifiedTime(path).toMillis();
+        } catch (IOException e) {
+            return path + ":missing";
+        }
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available: " + e.getMessage(), e);
+        }
+    }
+
+    private static void update(MessageDigest digest, String name, String value) {
+        digest.update((name + "=" + value + "\n").getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Get the javaExecutable.
+     *
+     * @return Returns the javaExecutable.
+     */
+    public String getJavaExecutable() {
+        return javaExecutable;
+    }
+
+    /**
+     * Set the Java executable used to start the process. Defaults to the
+     * <code>java</code> executable of the JVM running the tests.
+     *
+     * @param javaExecutable
+     *            The javaExecutable to set.
+     */
+    public void setJavaExecutable(String javaExecutable) {
+        this.javaExecutable = javaExecutable;
+    }
+
+    /**
+     * Get the mainClass.
+     *
+     * @return Returns the mainClass.
+     */
+    public String getMainClass() {
+        return mainClass;
+    }
+
+    /**
+     * Set the fully qualified name of the class whose main method is run.
+     *
+     * @param mainClass
+     *            The mainClass to set.
+     */
+    public void setMainClass(String mainClass) {
+        this.mainClass = mainClass;
+    }
+
+    /**
+     * Get the classpath.
+     *
+     * @return Returns the classpath.
+     */
+    public List<String> getClasspath() {
+        return classpath;
+    }
+
+    /**
+     * Set the entries of the process' classpath. Defaults to the classpath of
+     * the JVM running the tests, which usually contains class directories and
+     * therefore can't be used with AppCDS.
+     *
+     * @param classpath
+     *            The classpath to set.
+     */
+    public void setClasspath(List<String> classpath) {
+        this.classpath = classpath;
+    }
+
+    /**
+     * Get the jvmArguments.
+     *
+     * @return Returns the jvmArguments.
+     */
+    public List<String> getJvmArguments() {
+        return jvmArguments;
+    }
+
+    /**
+     * Set the arguments passed to the JVM, before the main class.
+     *
+     * @param jvmArguments
+     *            The jvmArguments to set.
+     */
+    public void setJvmArguments(List<String> jvmArguments) {
+        this.jvmArguments = jvmArguments;
+    }
+
+    /**
+     * Get the arguments.
+     *
+     * @return Returns the arguments.
+     */
+    public List<String> getArguments() {
+        return arguments;
+    }
+
+    /**
+     * Set the arguments passed to the main method.
+     *
+     * @param arguments
+     *            The arguments to set.
+     */
+    public void setArguments(List<String> arguments) {
+        this.arguments = arguments;
+    }
+
+    /**
+     * Get whether AppCDS archives are created and used.
+     *
+     * @return Returns the appCds.
+     */
+    public boolean isAppCds() {
+        return appCds;
+    }
+
+    /**
+     * Set whether AppCDS archives are created and used. Defaults to
+     * <code>true</code>. Disable it when using a Java executable older than
+     * JDK 13.
+     *
+     * @param appCds
+     *            The appCds to set.
+     */
+    public void setAppCds(boolean appCds) {
+        this.appCds = appCds;
+    }
+
+    /**
+     * Get the appCdsDirectory.
+     *
+     * @return Returns the appCdsDirectory.
+     */
+    public Path getAppCdsDirectory() {
+        return appCdsDirectory;
+    }
+
+    /**
+     * Set the directory AppCDS archives are stored in. Defaults to
+     * <code>build/testprocesses/appcds</code> within the working directory so
+     * that a clean build discards them.
+     *
+     * @param appCdsDirectory
+     *            The appCdsDirectory to set.
+     */
+    public void setAppCdsDirectory(Path appCdsDirectory) {
+        this.appCdsDirectory = appCdsDirectory;
+    }
+}
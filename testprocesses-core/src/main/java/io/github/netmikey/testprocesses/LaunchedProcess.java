@@ -0,0 +1,303 @@
+package io.github.netmikey.testprocesses;
+
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.channels.SocketChannel;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.stream.Stream;
+
+import io.github.netmikey.testprocesses.utils.BackgroundThreads;
+
+/**
+ * A {@link Process} view on a process that has been launched by the
+ * {@link ProcessLauncher} on behalf of this JVM. Its stdIn is forwarded by the
+ * launcher and the launcher reports its exit value. Signals are sent to the
+ * process directly.
+ * <p>
+ * If the launcher exits before the process, the process' exit is detected by
+ * its PID and {@link AttachedProcess#UNKNOWN_EXIT_VALUE} is reported as its
+ * exit value.
+ */
+final class LaunchedProcess extends Process {
+
+    private final long pid;
+
+    private final Optional<ProcessHandle> osHandle;
+
+    private final SocketChannel channel;
+
+    private final OutputStream stdIn;
+
+    private final CompletableFuture<Integer> exit = new CompletableFuture<>();
+
+    private final ProcessHandle handle = new Handle();
+
+    /**
+     * Initializing constructor.
+     *
+     * @param pid
+     *            The PID of the launched process.
+     * @param channel
+     *            The launcher connection of the process.
+     * @param in
+     *            The stream reading from the connection.
+     */
+    LaunchedProcess(long pid, SocketChannel channel, DataInputStream in) {
+        this.pid = pid;
+        this.osHandle = ProcessHandle.of(pid);
+        this.channel = channel;
+        this.stdIn = ProcessLauncherServer.outputStream(channel);
+
+        BackgroundThreads.start("testprocesses-launched-" + pid, () -> awaitExit(in));
+    }
+
+    private void awaitExit(DataInputStream in) {
+        try {
+            exit.complete(in.readInt());
+        } catch (IOException e) {
+            // The launcher is gone, fall back to watching the PID
+            if (osHandle.isPresent()) {
+                osHandle.get().onExit().thenRun(() -> exit.complete(AttachedProcess.UNKNOWN_EXIT_VALUE));
+            } else {
+                exit.complete(AttachedProcess.UNKNOWN_EXIT_VALUE);
+            }
+        } finally {
+            exit.thenRun(() -> {
+                try {
+                    channel.close();
+                } catch (IOException e) {
+                    // Nothing left to release
+                }
+            });
+        }
+    }
+
+    @Override
+    public OutputStream getOutputStream() {
+        return stdIn;
+    }
+
+    @Override
+    public InputStream getInputStream() {
+        // Redirected to a file
+        return InputStream.nullInputStream();
+    }
+
+    @Override
+    public InputStream getErrorStream() {
+        // Redirected to a file
+        return InputStream.nullInputStream();
+    }
+
+    @Override
+    public int waitFor() throws InterruptedException {
+        try {
+            return exit.get();
+        } catch (ExecutionException e) {
+            // The exit future never completes exceptionally
+            return AttachedProcess.UNKNOWN_EXIT_VALUE;
+        }
+    }
+
+    @Override
+    public boolean waitFor(long timeout, TimeUnit unit) throws InterruptedException {
+        try {
+            exit.get(timeout, unit);
+            return true;
+        } catch (TimeoutException e) {
+            return false;
+        } catch (ExecutionException e) {
+            return exit.isDone();
+        }
+    }
+
+    @Override
+    public int exitValue() {
+        Integer exitValue = exit.getNow(null);
+        if (exitValue == null) {
+            throw new IllegalThreadStateException("Process " + pid + " has not exited");
+        }
+        return exitValue;
+    }
+
+    @Override
+    public void destroy() {
+        handle.destroy();
+    }
+
+    @Override
+    public Process destroyForcibly() {
+        handle.destroyForcibly();
+        return this;
+    }
+
+    @Override
+    public boolean supportsNormalTermination() {
+        return handle.supportsNormalTermination();
+    }
+
+    @Override
+    public boolean isAlive() {
+        return handle.isAlive();
+    }
+
+    @Override
+    public long pid() {
+        return pid;
+    }
+
+    @Override
+    public CompletableFuture<Process> onExit() {
+        return exit.thenApply(exitValue -> this);
+    }
+
+    @Override
+    public ProcessHandle toHandle() {
+        return handle;
+    }
+
+    @Override
+    public ProcessHandle.Info info() {
+        return handle.info();
+    }
+
+    @Override
+    public Stream<ProcessHandle> children() {
+        return handle.children();
+    }
+
+    @Override
+    public Stream<ProcessHandle> descendants() {
+        return handle.descendants();
+    }
+
+    @Override
+    public String toString() {
+        return "LaunchedProcess[pid=" + pid + "]";
+    }
+
+    /**
+     * The {@link ProcessHandle} of a launched process. Its exit is reported by
+     * the launcher. It also works if the process exited before its OS handle
+     * could be obtained.
+     */
+    private class Handle implements ProcessHandle {
+
+        @Override
+        public long pid() {
+            return pid;
+        }
+
+        @Override
+        public Optional<ProcessHandle> parent() {
+            return osHandle.flatMap(ProcessHandle::parent);
+        }
+
+        @Override
+        public Stream<ProcessHandle> children() {
+            return osHandle.map(ProcessHandle::children).orElseGet(Stream::empty);
+        }
+
+        @Override
+        public Stream<ProcessHandle> descendants() {
+            return osHandle.map(ProcessHandle::descendants).orElseGet(Stream::empty);
+        }
+
+        @Override
+        public Info info() {
+            return osHandle.map(ProcessHandle::info).orElse(NoInfo.INSTANCE);
+        }
+
+        @Override
+        public CompletableFuture<ProcessHandle> onExit() {
+            return exit.thenApply(exitValue -> this);
+        }
+
+        @Override
+        public boolean supportsNormalTermination() {
+            return osHandle.map(ProcessHandle::supportsNormalTermination).orElse(true);
+        }
+
+        @Override
+        public boolean destroy() {
+            return isAlive() && osHandle.get().destroy();
+        }
+
+        @Override
+        public boolean destroyForcibly() {
+            return isAlive() && osHandle.get().destroyForcibly();
+        }
+
+        @Override
+        public boolean isAlive() {
+            return !exit.isDone() && osHandle.map(ProcessHandle::isAlive).orElse(false);
+        }
+
+        @Override
+        public int compareTo(ProcessHandle other) {
+            return Long.compare(pid, other.pid());
+        }
+
+        @Override
+        public boolean equals(Object other) {
+            return other instanceof ProcessHandle && ((ProcessHandle) other).pid() == pid;
+        }
+
+        @Override
+        public int hashCode() {
+            return Long.hashCode(pid);
+        }
+
+        @Override
+        public String toString() {
+            return String.valueOf(pid);
+        }
+    }
+
+    /**
+     * The {@link ProcessHandle.Info} of a process that has exited before its
+     * OS handle could be obtained.
+     */
+    private static final class NoInfo implements ProcessHandle.Info {
+
+        private static final NoInfo INSTANCE = new NoInfo();
+
+        @Override
+        public Optional<String> command() {
+            return Optional.empty();
+        }
+
+        @Override
+        public Optional<String> commandLine() {
+            return Optional.empty();
+        }
+
+        @Override
+        public Optional<String[]> arguments() {
+            return Optional.empty();
+        }
+
+        @Override
+        public Optional<Instant> startInstant() {
+            return Optional.empty();
+        }
+
+        @Override
+        public Optional<Duration> totalCpuDuration() {
+            return Optional.empty();
+        }
+
+        @Override
+        public Optional<String> user() {
+            return Optional.empty();
+        }
+    }
+}
@@ -0,0 +1,248 @@
+package io.github.netmikey.testprocesses;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+import io.github.netmikey.testprocesses.eventdetector.EventDetector;
+
+/**
+ * Keeps track of the {@link TestProcessFleet}s of a registry and applies the
+ * registry's operations to all replicas of a fleet: starts are spread over at
+ * most the fleet's {@link TestProcessFleet#withStartConcurrency(int) start
+ * concurrency} lanes, all other operations run on all replicas concurrently.
+ */
+final class ProcessFleets {
+
+    private final TestProcessesRegistry registry;
+
+    private final Map<String, TestProcessFleet<?>> fleets = new ConcurrentHashMap<>();
+
+    /**
+     * Initializing constructor.
+     *
+     * @param registry
+     *            The registry whose fleets to manage.
+     */
+    ProcessFleets(TestProcessesRegistry registry) {
+        this.registry = registry;
+    }
+
+    /**
+     * Register the specified fleet and its replicas with the registry.
+     *
+     * @param fleet
+     *            The fleet to register.
+     * @see TestProcessesRegistry#registerFleet(TestProcessFleet)
+     */
+    void register(TestProcessFleet<?> fleet) {
+        TestProcessFleet<?> registered = fleets.putIfAbsent(fleet.getName(), fleet);
+        if (registered != null && registered != fleet) {
+            throw new IllegalStateException("Cannot register test process fleet '" + fleet.getName()
+                + "': another fleet has already been registered under that name.");
+        }
+        fleet.getReplicas().forEach(replica -> registry.registerDefinition(replica.getProcessIdentifier(), replica));
+    }
+
+    /**
+     * Get the fleet of replicas of the referenced definition, creating and
+     * registering it on first use.
+     *
+     * @param processDefinitionBy
+     *            The reference to the replicated definition, by bean name or
+     *            class.
+     * @param replicas
+     *            The number of replicas.
+     * @param startConcurrency
+     *            The maximum number of replicas started at the same time.
+     * @return The fleet.
+     * @see TestProcessesRegistry#fleet(TestProcessDefinitionBy, int, int)
+     */
+    TestProcessFleet<?> fleet(TestProcessDefinitionBy<?> processDefinitionBy, int replicas, int startConcurrency) {
+        String name = processDefinitionBy.getBeanName()
+            .or(() -> processDefinitionBy.getClazz().map(Class::getName))
+            .orElseThrow(() -> new IllegalArgumentException("Only test process definitions referenced by bean name "
+                + "or class can be replicated"));
+        TestProcessFleet<?> fleet = fleets.get(name);
+        if (fleet == null) {
+            TestProcessFleet<?> newFleet = TestProcessFleet.of(name, replicas,
+                index -> registry.newReplica(processDefinitionBy))
+                .withStartConcurrency(startConcurrency);
+            fleet = fleets.putIfAbsent(name, newFleet);
+            if (fleet == null) {
+                fleet = newFleet;
+                register(fleet);
+            }
+        }
+        if (fleet.size() != replicas) {
+            throw new IllegalStateException("Test process fleet '" + name + "' has already been created with "
+                + fleet.size() + " replicas, cannot use it with " + replicas + " replicas.");
+        }
+        if (fleet.getStartConcurrency() != startConcurrency) {
+            throw new IllegalStateException("Test process fleet '" + name + "' has already been created with a "
+                + "start concurrency of " + fleet.getStartConcurrency() + ", cannot use it with a start concurrency "
+                + "of " + startConcurrency + ".");
+        }
+        return fleet;
+    }
+
+    /**
+     * Start all replicas of the specified fleet asynchronously on behalf of
+     * the current test.
+     *
+     * @param fleet
+     *            The fleet to be started.
+     * @param startStrategy
+     *            The {@link StartStrategy} to be used.
+     * @param <T>
+     *            The concrete type of the replicas' definitions.
+     * @return A {@link CompletableFuture} that completes with the started
+     *         replicas, ordered by their index.
+     */
+    <T extends TestProcessDefinition> CompletableFuture<List<RunningTestProcess<T>>> startAsync(
+        TestProcessFleet<T> fleet, StartStrategy startStrategy) {
+
+        Object testKey = CurrentTest.key();
+        return allOf(forEachReplica(fleet,
+            reference -> CurrentTest.callAs(testKey, () -> registry.startAsync(reference, startStrategy))));
+    }
+
+    /**
+     * Start all replicas of the specified fleet and acquire a lease on each of
+     * them for the current test, releasing the acquired leases again if any
+     * of them fails.
+     *
+     * @param fleet
+     *            The fleet to be started.
+     * @param startStrategy
+     *            The {@link StartStrategy} to be used.
+     * @param stopStrategy
+     *            The {@link StopStrategy} to be applied when the leases are
+     *            released.
+     * @return The acquired leases, ordered by the replicas' index.
+     */
+    List<TestProcessLease> acquire(TestProcessFleet<?> fleet, StartStrategy startStrategy,
+        StopStrategy stopStrategy) {
+
+        Object testKey = CurrentTest.key();
+        List<CompletableFuture<TestProcessLease>> leases = forEachReplica(fleet,
+            reference -> CompletableFuture.supplyAsync(
+                () -> CurrentTest.callAs(testKey, () -> registry.acquire(reference, startStrategy, stopStrategy)),
+                registry.getExecutor()));
+        try {
+            return TestProcessesRegistry.awaitUninterruptedByTimeout(allOf(leases));
+        } catch (RuntimeException e) {
+            leases.stream()
+                .filter(lease -> lease.isDone() && !lease.isCompletedExceptionally())
+                .forEach(lease -> lease.join().release());
+            throw e;
+        }
+    }
+
+    /**
+     * Stop all replicas of the specified fleet concurrently.
+     *
+     * @param fleet
+     *            The fleet to be stopped.
+     * @param <T>
+     *            The concrete type of the replicas' definitions.
+     * @return A {@link CompletableFuture} that completes once all replicas
+     *         have been stopped.
+     */
+    <T extends TestProcessDefinition> CompletableFuture<List<RunningTestProcess<T>>> stopAsync(
+        TestProcessFleet<T> fleet) {
+
+        return allOf(fleet.references().stream()
+            .map(registry::stopAsync)
+            .collect(Collectors.toList()));
+    }
+
+    /**
+     * Wait for an event on all replicas of the specified fleet concurrently.
+     *
+     * @param fleet
+     *            The fleet.
+     * @param eventDetector
+     *            The {@link EventDetector} to be used.
+     * @param <T>
+     *            The concrete type of the replicas' definitions.
+     * @return A {@link CompletableFuture} that completes once the event has
+     *         occurred on all replicas.
+     */
+    <T extends TestProcessDefinition> CompletableFuture<List<RunningTestProcess<T>>> waitForEventAsync(
+        TestProcessFleet<T> fleet, EventDetector eventDetector) {
+
+        return allOf(fleet.references().stream()
+            .map(reference -> registry.waitForEventAsync(reference, eventDetector))
+            .collect(Collectors.toList()));
+    }
+
+    /**
+     * Read the current part of the stdOut streams of all replicas of the
+     * specified fleet.
+     *
+     * @param fleet
+     *            The fleet.
+     * @return The streams' contents by the replicas' process identifiers,
+     *         ordered by their index.
+     */
+    Map<String, String> stdOutAsStringOf(TestProcessFleet<?> fleet) {
+        Map<String, String> result = new LinkedHashMap<>();
+        fleet.getReplicas().forEach(replica -> result.put(replica.getProcessIdentifier(),
+            registry.stdOutAsStringOf(TestProcessDefinitionBy.instance(replica))));
+        return result;
+    }
+
+    /**
+     * Read the current part of the stdErr streams of all replicas of the
+     * specified fleet.
+     *
+     * @param fleet
+     *            The fleet.
+     * @return The streams' contents by the replicas' process identifiers,
+     *         ordered by their index.
+     */
+    Map<String, String> stdErrAsStringOf(TestProcessFleet<?> fleet) {
+        Map<String, String> result = new LinkedHashMap<>();
+        fleet.getReplicas().forEach(replica -> result.put(replica.getProcessIdentifier(),
+            registry.stdErrAsStringOf(TestProcessDefinitionBy.instance(replica))));
+        return result;
+    }
+
+    /**
+     * Applies the specified operation to all replicas of the specified fleet,
+     * at most the fleet's start concurrency at a time.
+     *
+     * @return The result of the operation for each replica, ordered by the
+     *         replicas' index.
+     */
+    private static <T extends TestProcessDefinition, R> List<CompletableFuture<R>> forEachReplica(
+        TestProcessFleet<T> fleet, Function<TestProcessDefinitionBy<T>, CompletableFuture<R>> operation) {
+
+        List<TestProcessDefinitionBy<T>> references = fleet.references();
+        int lanes = Math.min(references.size(), fleet.getStartConcurrency());
+        List<CompletableFuture<R>> results = new ArrayList<>(Collections.nCopies(references.size(), null));
+        for (int lane = 0; lane < lanes; lane++) {
+            // Each lane works through its share of the replicas one by one
+            CompletableFuture<?> previous = CompletableFuture.completedFuture(null);
+            for (int index = lane; index < references.size(); index += lanes) {
+                TestProcessDefinitionBy<T> reference = references.get(index);
+                CompletableFuture<R> result = previous.thenCompose(ignored -> operation.apply(reference));
+                results.set(index, result);
+                previous = result;
+            }
+        }
+        return results;
+    }
+
+    private static <R> CompletableFuture<List<R>> allOf(List<CompletableFuture<R>> futures) {
+        return CompletableFuture.allOf(futures.toArray(new CompletableFuture<?>[0]))
+            .thenApply(ignored -> futures.stream().map(CompletableFuture::join).collect(Collectors.toList()));
+    }
+}
@@ -0,0 +1,220 @@
+package io.github.netmikey.testprocesses;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.UncheckedIOException;
+import java.net.StandardProtocolFamily;
+import java.net.URISyntaxException;
+import java.net.UnixDomainSocketAddress;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.security.CodeSource;
+import java.util.List;
+import java.util.Map;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Launches test processes through a small helper JVM (see
+ * {@link ProcessLauncherServer}) instead of forking the test JVM: forking a
+ * JVM with a large heap and many threads is expensive, and concurrent launches
+ * contend on it. Launching through the helper costs the same regardless of
+ * the test JVM's size.
+ * <p>
+ * A single launcher is shared by all registries of the JVM. It is started on
+ * first use and exits along with the test JVM. The registry enables it for the
+ * launches it triggers using {@link #runWith(ProcessLauncher, Runnable)}.
+ */
+final class ProcessLauncher {
+
+    private static final Logger LOG = LoggerFactory.getLogger(ProcessLauncher.class);
+
+    private static final ThreadLocal<ProcessLauncher> CURRENT = new ThreadLocal<>();
+
+    private static final List<String> LAUNCHER_JVM_ARGUMENTS = List.of("-XX:+UseSerialGC", "-Xmx64m",
+        "-XX:TieredStopAtLevel=1", "-Xshare:auto");
+
+    private static ProcessLauncher shared;
+
+    private final Process launcherProcess;
+
+    private final Path socketPath;
+
+    private ProcessLauncher(Process launcherProcess, Path socketPath) {
+        this.launcherProcess = launcherProcess;
+        this.socketPath = socketPath;
+    }
+
+    /**
+     * Get the launcher shared by all registries of this JVM, starting it if it
+     * isn't running yet.
+     *
+     * @return The launcher.
+     * @throws UncheckedIOException
+     *             If the launcher can't be started.
+     */
+    static synchronized ProcessLauncher shared() {
+        if (shared == null || !shared.launcherProcess.isAlive()) {
+            try {
+                shared = start();
+            } catch (IOException e) {
+                throw new UncheckedIOException("Unable to start the test process launcher: " + e.getMessage(), e);
+            }
+        }
+        return shared;
+    }
+
+    private static ProcessLauncher start() throws IOException {
+        Path directory = Files.createTempDirectory("testprocesses-launcher");
+        directory.toFile().deleteOnExit();
+        Path socketPath = directory.resolve("launcher.sock");
+        socketPath.toFile().deleteOnExit();
+
+        long startNanos = System.nanoTime();
+        ProcessBuilder builder = new ProcessBuilder();
+        builder.command().add(Paths.get(System.getProperty("java.home"), "bin", "java").toString());
+        builder.command().addAll(LAUNCHER_JVM_ARGUMENTS);
+        builder.command().add("-cp");
+        builder.command().add(launcherClasspath());
+        builder.command().add(ProcessLauncherServer.class.getName());
+        builder.command().add(socketPath.toString());
+        Process process = builder.redirectError(ProcessBuilder.Redirect.INHERIT).start();
+
+        BufferedReader stdOut = new BufferedReader(
+            new InputStreamReader(process.getInputStream(), StandardCharsets.UTF_8));
+        String line;
+        while ((line = stdOut.readLine()) != null && !line.equals(ProcessLauncherServer.READY)) {
+            LOG.debug("Test process launcher: {}", line);
+        }
+        if (line == null) {
+            process.destroyForcibly();
+            throw new IOException("The launcher process exited before accepting connections");
+        }
+        LOG.debug("Started test process launcher (PID {}) in {} ms", process.pid(),
+            (System.nanoTime() - startNanos) / 1_000_000);
+        return new ProcessLauncher(process, socketPath);
+    }
+
+    private static String launcherClasspath() throws IOException {
+        CodeSource codeSource = ProcessLauncherServer.class.getProtectionDomain().getCodeSource();
+        if (codeSource == null) {
+            throw new IOException("Unable to determine the location of the TestProcesses classes");
+        }
+        try {
+            return Paths.get(codeSource.getLocation().toURI()).toString();
+        } catch (URISyntaxException | IllegalArgumentException e) {
+            throw new IOException("Unable to determine the location of the TestProcesses classes: "
+                + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Run the specified action, launching the processes started by the
+     * current thread in the meantime through the specified launcher.
+     *
+     * @param launcher
+     *            The launcher, or <code>null</code> to launch processes
+     *            directly.
+     * @param action
+     *            The action.
+     */
+    static void runWith(ProcessLauncher launcher, Runnable action) {
+        ProcessLauncher previous = CURRENT.get();
+        CURRENT.set(launcher);
+        try {
+            action.run();
+        } finally {
+            CURRENT.set(previous);
+        }
+    }
+
+    /**
+     * Launch the process configured by the specified builder: through the
+     * launcher enabled for the current thread, if any, or directly otherwise.
+     * Processes whose stdOut or stdErr streams aren't redirected to files or
+     * whose stdIn is redirected are always launched directly.
+     *
+     * @param builder
+     *            The fully configured builder.
+     * @return The launched process.
+     * @throws IOException
+     *             If the process can't be launched.
+     */
+    static Process start(ProcessBuilder builder) throws IOException {
+        ProcessLauncher launcher = CURRENT.get();
+        if (launcher == null || !isSupported(builder)) {
+            return builder.start();
+        }
+        return launcher.launch(builder);
+    }
+
+    private static boolean isSupported(ProcessBuilder builder) {
+        return builder.redirectInput().type() == ProcessBuilder.Redirect.Type.PIPE
+            && isFile(builder.redirectOutput())
+            && (builder.redirectErrorStream() || isFile(builder.redirectError()));
+    }
+
+    private static boolean isFile(ProcessBuilder.Redirect redirect) {
+        return redirect.type() == ProcessBuilder.Redirect.Type.WRITE
+            || redirect.type() == ProcessBuilder.Redirect.Type.APPEND;
+    }
+
+    private Process launch(ProcessBuilder builder) throws IOException {
+        SocketChannel channel = SocketChannel.open(StandardProtocolFamily.UNIX);
+        try {
+            channel.connect(UnixDomainSocketAddress.of(socketPath));
+            DataOutputStream out = new DataOutputStream(
+                new BufferedOutputStream(ProcessLauncherServer.outputStream(channel)));
+            writeRequest(out, builder);
+            out.flush();
+
+            DataInputStream in = new DataInputStream(
+                new BufferedInputStream(ProcessLauncherServer.inputStream(channel)));
+            if (in.readInt() == ProcessLauncherServer.FAILED) {
+                throw new IOException(ProcessLauncherServer.readString(in));
+            }
+            return new LaunchedProcess(in.readLong(), channel, in);
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    private static void writeRequest(DataOutputStream out, ProcessBuilder builder) throws IOException {
+        out.writeInt(builder.command().size());
+        for (String argument : builder.command()) {
+            ProcessLauncherServer.writeString(out, argument);
+        }
+
+        File directory = builder.directory();
+        ProcessLauncherServer.writeString(out, directory != null ? directory.getAbsolutePath() : "");
+
+        Map<String, String> environment = builder.environment();
+        out.writeInt(environment.size());
+        for (Map.Entry<String, String> variable : environment.entrySet()) {
+            ProcessLauncherServer.writeString(out, variable.getKey());
+            ProcessLauncherServer.writeString(out, variable.getValue());
+        }
+
+        writeRedirect(out, builder.redirectOutput());
+        out.writeBoolean(builder.redirectErrorStream());
+        if (!builder.redirectErrorStream()) {
+            writeRedirect(out, builder.redirectError());
+        }
+    }
+
+    private static void writeRedirect(DataOutputStream out, ProcessBuilder.Redirect redirect) throws IOException {
+        ProcessLauncherServer.writeString(out, redirect.file().getAbsolutePath());
+        out.writeBoolean(redirect.type() == ProcessBuilder.Redirect.Type.APPEND);
+    }
+}
@@ -0,0 +1,281 @@
+package io.github.netmikey.testprocesses;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.StandardProtocolFamily;
+import java.net.UnixDomainSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The main class of the launcher process: a small JVM that launches test
+ * processes on behalf of a test JVM, so that the (possibly large) test JVM
+ * doesn't have to fork itself for every launch (see {@link ProcessLauncher}).
+ * <p>
+ * The launcher listens on the Unix domain socket passed as its only argument
+ * and exits when its stdIn, a pipe from the test JVM, is closed. Every launch
+ * uses its own connection:
+ * <ol>
+ * <li>The test JVM sends the command, working directory, environment and
+ * output redirects.</li>
+ * <li>The launcher launches the process and replies with its PID or with an
+ * error message.</li>
+ * <li>Whatever the test JVM writes to the connection after that is forwarded to
+ * the process' stdIn until the test JVM shuts down its side of the
+ * connection.</li>
+ * <li>The launcher sends the process' exit value once it has exited and closes
+ * the connection.</li>
+ * </ol>
+ * <p>
+ * This class only depends on the JDK: the launcher's classpath only contains
+ * TestProcesses itself.
+ */
+final class ProcessLauncherServer {
+
+    /**
+     * Printed on stdOut once the launcher accepts connections.
+     */
+    static final String READY = "testprocesses-launcher-ready";
+
+    /**
+     * Reply status: the process has been launched, its PID follows.
+     */
+    static final int LAUNCHED = 0;
+
+    /**
+     * Reply status: the process could not be launched, the message follows.
+     */
+    static final int FAILED = 1;
+
+    private ProcessLauncherServer() {
+        // Main class
+    }
+
+    /**
+     * Run the launcher.
+     *
+     * @param args
+     *            The path of the Unix domain socket to listen on.
+     * @throws IOException
+     *             If the socket can't be opened.
+     */
+    public static void main(String[] args) throws IOException {
+        Path socketPath = Paths.get(args[0]);
+        ServerSocketChannel server = ServerSocketChannel.open(StandardProtocolFamily.UNIX);
+        server.bind(UnixDomainSocketAddress.of(socketPath));
+
+        Thread parentWatcher = new Thread(() -> {
+            try {
+                while (System.in.read() != -1) {
+                    // Nothing is sent on stdIn, it only signals the test JVM's exit
+                }
+            } catch (IOException e) {
+                // The test JVM is gone as well
+            }
+            try {
+                Files.deleteIfExists(socketPath);
+            } catch (IOException e) {
+                // Exiting anyway
+            }
+            // Launched processes are left running, just like when the test
+            // JVM had launched them itself
+            System.exit(0);
+        }, "testprocesses-launcher-parent-watcher");
+        parentWatcher.start();
+
+        System.out.println(READY);
+        System.out.flush();
+
+        while (true) {
+            SocketChannel channel = server.accept();
+            Thread connection = new Thread(() -> serve(channel), "testprocesses-launcher-connection");
+            connection.setDaemon(true);
+            connection.start();
+        }
+    }
+
+    private static void serve(SocketChannel channel) {
+        try (channel) {
+            DataInputStream in = new DataInputStream(new BufferedInputStream(inputStream(channel)));
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(outputStream(channel)));
+
+            Process process;
+            try {
+                process = readRequest(in).start();
+            } catch (IOException | RuntimeException e) {
+                out.writeInt(FAILED);
+                writeString(out, String.valueOf(e.getMessage()));
+                out.flush();
+                return;
+            }
+            out.writeInt(LAUNCHED);
+            out.writeLong(process.pid());
+            out.flush();
+
+            Thread stdInPump = new Thread(() -> pumpStdIn(in, process.getOutputStream()),
+                "testprocesses-launcher-stdin-" + process.pid());
+            stdInPump.setDaemon(true);
+            stdInPump.start();
+
+            out.writeInt(process.waitFor());
+            out.flush();
+        } catch (IOException e) {
+            // The test JVM has closed the connection
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static ProcessBuilder readRequest(DataInputStream in) throws IOException {
+        int commandSize = in.readInt();
+        List<String> command = new ArrayList<>(commandSize);
+        for (int i = 0; i < commandSize; i++) {
+            command.add(readString(in));
+        }
+        ProcessBuilder builder = new ProcessBuilder(command);
+
+        String directory = readString(in);
+        if (!directory.isEmpty()) {
+            builder.directory(new File(directory));
+        }
+
+        Map<String, String> environment = builder.environment();
+        environment.clear();
+        int environmentSize = in.readInt();
+        for (int i = 0; i < environmentSize; i++) {
+            environment.put(readString(in), readString(in));
+        }
+
+        builder.redirectOutput(readRedirect(in));
+        if (in.readBoolean()) {
+            builder.redirectErrorStream(true);
+        } else {
+            builder.redirectError(readRedirect(in));
+        }
+        return builder;
+    }
+
+    private static ProcessBuilder.Redirect readRedirect(DataInputStream in) throws IOException {
+        File file = new File(readString(in));
+        return in.readBoolean() ? ProcessBuilder.Redirect.appendTo(file) : ProcessBuilder.Redirect.to(file);
+    }
+
+    private static void pumpStdIn(InputStream in, OutputStream stdIn) {
+        try (stdIn) {
+            byte[] buffer = new byte[8192];
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                stdIn.write(buffer, 0, read);
+                stdIn.flush();
+            }
+        } catch (IOException e) {
+            // The process or the connection is gone
+        }
+    }
+
+    /**
+     * Write a string of arbitrary length, unlike
+     * {@link DataOutputStream#writeUTF(String)}.
+     *
+     * @param out
+     *            The stream to write to.
+     * @param value
+     *            The string.
+     * @throws IOException
+     *             If writing fails.
+     */
+    static void writeString(DataOutputStream out, String value) throws IOException {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    /**
+     * Read a string written by {@link #writeString(DataOutputStream, String)}.
+     *
+     * @param in
+     *            The stream to read from.
+     * @return The string.
+     * @throws IOException
+     *             If reading fails.
+     */
+    static String readString(DataInputStream in) throws IOException {
+        byte[] bytes = new byte[in.readInt()];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Get an {@link InputStream} reading from the specified channel. Unlike
+     * the streams of {@link java.nio.channels.Channels}, reading doesn't block
+     * concurrent writes.
+     *
+     * @param channel
+     *            The channel.
+     * @return The stream.
+     */
+    static InputStream inputStream(SocketChannel channel) {
+        return new InputStream() {
+            @Override
+            public int read() throws IOException {
+                byte[] b = new byte[1];
+                return read(b, 0, 1) == -1 ? -1 : b[0] & 0xff;
+            }
+
+            @Override
+            public int read(byte[] b, int off, int len) throws IOException {
+                if (len == 0) {
+                    return 0;
+                }
+                return channel.read(ByteBuffer.wrap(b, off, len));
+            }
+        };
+    }
+
+    /**
+     * Get an {@link OutputStream} writing to the specified channel. Unlike
+     * the streams of {@link java.nio.channels.Channels}, writing doesn't block
+     * concurrent reads. Closing the stream shuts down the channel's output.
+     *
+     * @param channel
+     *            The channel.
+     * @return The stream.
+     */
+    static OutputStream outputStream(SocketChannel channel) {
+        return new OutputStream() {
+            @Override
+            public void write(int b) throws IOException {
+                write(new byte[] { (byte) b }, 0, 1);
+            }
+
+            @Override
+            public void write(byte[] b, int off, int len) throws IOException {
+                ByteBuffer buffer = ByteBuffer.wrap(b, off, len);
+                while (buffer.hasRemaining()) {
+                    channel.write(buffer);
+                }
+            }
+
+            @Override
+            public void close() throws IOException {
+                if (channel.isOpen()) {
+                    channel.shutdownOutput();
+                }
+            }
+        };
+    }
+}
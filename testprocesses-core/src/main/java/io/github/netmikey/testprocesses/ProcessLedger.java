@@ -0,0 +1,371 @@
+package io.github.netmikey.testprocesses;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.stream.Collectors;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import io.github.netmikey.testprocesses.utils.ProcessUtils;
+
+/**
+ * An on-disk ledger of the test processes a registry has launched. Each
+ * registry writes its own ledger file, named after the JVM that owns it.
+ * <p>
+ * If a test JVM is killed before it could stop its test processes, its ledger
+ * file is left behind. The next registry that initializes reaps the processes
+ * listed in it: processes that are still alive and still match the recorded
+ * PID, start time and command are destroyed forcibly, along with their
+ * descendants.
+ * <p>
+ * The ledger is best-effort: I/O errors are logged and never fail a test.
+ */
+final class ProcessLedger {
+
+    private static final Logger LOG = LoggerFactory.getLogger(ProcessLedger.class);
+
+    private static final String FILE_SUFFIX = ".ledger";
+
+    private static final String SEPARATOR = "\t";
+
+    private static final AtomicInteger INSTANCE_COUNTER = new AtomicInteger();
+
+    private final Path directory;
+
+    private final Path file;
+
+    private final ReentrantLock lock = new ReentrantLock();
+
+    private final Map<Long, Entry> entries = new LinkedHashMap<>();
+
+    /**
+     * Initializing constructor.
+     *
+     * @param directory
+     *            The directory holding the ledger files.
+     */
+    ProcessLedger(Path directory) {
+        this.directory = directory;
+        this.file = directory.resolve(newOwnerId() + FILE_SUFFIX);
+    }
+
+    /**
+     * Open a new ledger in the specified directory and reap the orphans left
+     * behind by previous test JVMs that did not shut down properly.
+     *
+     * @param directory
+     *            The directory holding the ledger files.
+     * @return The new ledger.
+     */
+    static ProcessLedger open(Path directory) {
+        ProcessLedger ledger = new ProcessLedger(directory);
+        List<Entry> reaped = ledger.reapOrphans();
+        if (!reaped.isEmpty()) {
+            LOG.warn("Destroyed {} orphaned test process{} left behind by previous test runs that did not shut "
+                + "down properly: {}", reaped.size(), reaped.size() > 1 ? "es" : "", reaped);
+        }
+        return ledger;
+    }
+
+    /**
+     * Create a new identifier for an owner of test processes within this JVM.
+     * The identifier starts with the JVM's PID and start time so that other
+     * JVMs can tell whether the owner is still alive.
+     *
+     * @return The new owner identifier.
+     */
+    static String newOwnerId() {
+        ProcessHandle jvm = ProcessHandle.current();
+        return jvm.pid() + "-" + startMillis(jvm).orElse(0L) + "-" + INSTANCE_COUNTER.incrementAndGet();
+    }
+
+    /**
+     * Check whether the JVM of the specified owner, as created using
+     * {@link #newOwnerId()}, is still alive.
+     *
+     * @param ownerId
+     *            The owner identifier.
+     * @return Whether the owner's JVM is still alive.
+     */
+    static boolean isOwnerAlive(String ownerId) {
+        String[] idParts = ownerId.split("-");
+        if (idParts.length < 3) {
+            return false;
+        }
+        try {
+            long ownerPid = Long.parseLong(idParts[0]);
+            long ownerStartMillis = Long.parseLong(idParts[1]);
+            return ProcessHandle.of(ownerPid)
+                .filter(ProcessHandle::isAlive)
+                .flatMap(ProcessLedger::startMillis)
+                .map(startMillis -> startMillis == ownerStartMillis)
+                .orElse(false);
+        } catch (NumberFormatException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Get the start time of the specified process in milliseconds since the
+     * epoch, if the platform provides it.
+     *
+     * @param process
+     *            The process.
+     * @return The process' start time.
+     */
+    static Optional<Long> startMillis(ProcessHandle process) {
+        return process.info().startInstant().map(Instant::toEpochMilli);
+    }
+
+    /**
+     * Get the default ledger directory: a per-user directory within the
+     * system's temporary directory.
+     *
+     * @return The default ledger directory.
+     */
+    static Path defaultDirectory() {
+        return Paths.get(System.getProperty("java.io.tmpdir"),
+            "testprocesses-" + System.getProperty("user.name", "unknown"), "ledger");
+    }
+
+    /**
+     * Record a launched process in the ledger.
+     *
+     * @param processIdentifier
+     *            The test process' identifier.
+     * @param process
+     *            The launched process.
+     */
+    void record(String processIdentifier, ProcessHandle process) {
+        Optional<Long> startMillis = startMillis(process);
+        if (startMillis.isEmpty()) {
+            // Without a start time, we couldn't safely tell the process apart
+            // from another one reusing its PID later
+            return;
+        }
+        ProcessHandle.Info info = process.info();
+        Entry entry = new Entry(process.pid(), startMillis.get(), processIdentifier,
+            info.command().orElse(""), info.commandLine().orElse(info.command().orElse("")));
+        withLock(() -> {
+            entries.put(entry.pid, entry);
+            write();
+        });
+    }
+
+    /**
+     * Record a launched test process in the ledger. Processes running within
+     * this JVM die with it, so they aren't recorded.
+     *
+     * @param runningProcess
+     *            The launched test process.
+     */
+    void record(RunningTestProcess<?> runningProcess) {
+        Process managedProcess = TestProcessesRegistry.managedProcess(runningProcess);
+        if (TestProcessesRegistry.isOsProcess(managedProcess)) {
+            record(runningProcess.getDefinition().getProcessIdentifier(), managedProcess.toHandle());
+        }
+    }
+
+    /**
+     * Remove a test process from the ledger once it has been stopped.
+     *
+     * @param runningProcess
+     *            The stopped test process.
+     */
+    void remove(RunningTestProcess<?> runningProcess) {
+        Process managedProcess = TestProcessesRegistry.managedProcess(runningProcess);
+        if (TestProcessesRegistry.isOsProcess(managedProcess)) {
+            remove(managedProcess.pid());
+        }
+    }
+
+    /**
+     * Remove a process from the ledger once it has been stopped.
+     *
+     * @param pid
+     *            The process' PID.
+     */
+    void remove(long pid) {
+        withLock(() -> {
+            if (entries.remove(pid) != null) {
+                write();
+            }
+        });
+    }
+
+    /**
+     * Reap the processes listed in ledger files of JVMs that aren't alive
+     * anymore and delete those ledger files.
+     *
+     * @return The entries of the processes that have been destroyed.
+     */
+    List<Entry> reapOrphans() {
+        List<Entry> reaped = new ArrayList<>();
+        if (!Files.isDirectory(directory)) {
+            return reaped;
+        }
+        try (DirectoryStream<Path> ledgerFiles = Files.newDirectoryStream(directory, "*" + FILE_SUFFIX)) {
+            for (Path ledgerFile : ledgerFiles) {
+                String ownerId = ledgerFile.getFileName().toString().replace(FILE_SUFFIX, "");
+                if (!ledgerFile.equals(file) && !isOwnerAlive(ownerId)) {
+                    reaped.addAll(reap(ledgerFile));
+                }
+            }
+        } catch (IOException e) {
+            LOG.warn("Unable to read test process ledger directory " + directory + ": " + e.getMessage(), e);
+        }
+        return reaped;
+    }
+
+    /**
+     * Delete this ledger's file if no process is listed in it anymore. Entries
+     * of processes that could not be stopped are kept so that the next
+     * registry reaps them.
+     */
+    void close() {
+        withLock(() -> {
+            if (entries.isEmpty()) {
+                try {
+                    Files.deleteIfExists(file);
+                } catch (IOException e) {
+                    LOG.warn("Unable to delete test process ledger " + file + ": " + e.getMessage(), e);
+                }
+            }
+        });
+    }
+
+    private List<Entry> reap(Path ledgerFile) {
+        List<Entry> reaped = new ArrayList<>();
+        List<String> lines;
+        try {
+            lines = Files.readAllLines(ledgerFile, StandardCharsets.UTF_8);
+        } catch (NoSuchFileException e) {
+            // Reaped by another registry in the meantime
+            return reaped;
+        } catch (IOException e) {
+            LOG.warn("Unable to read test process ledger " + ledgerFile + ": " + e.getMessage(), e);
+            return reaped;
+        }
+        for (String line : lines) {
+            Entry.parse(line)
+                .filter(Entry::matchesLiveProcess)
+                .ifPresent(entry -> {
+                    ProcessHandle.of(entry.pid).ifPresent(ProcessUtils::destroyForciblyRecursive);
+                    reaped.add(entry);
+                });
+        }
+        try {
+            Files.deleteIfExists(ledgerFile);
+        } catch (IOException e) {
+            LOG.warn("Unable to delete test process ledger " + ledgerFile + ": " + e.getMessage(), e);
+        }
+        return reaped;
+    }
+
+    /**
+     * Rewrite the ledger file. Must be called while holding the lock.
+     */
+    private void write() {
+        try {
+            Files.createDirectories(directory);
+            Path tempFile = Files.createTempFile(directory, "tmp-", ".tmp");
+            Files.write(tempFile, entries.values().stream().map(Entry::toLine).collect(Collectors.toList()),
+                StandardCharsets.UTF_8);
+            Files.move(tempFile, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            LOG.warn("Unable to write test process ledger " + file + ": " + e.getMessage(), e);
+        }
+    }
+
+    private void withLock(Runnable action) {
+        lock.lock();
+        try {
+            action.run();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * A process recorded in a ledger.
+     */
+    static class Entry {
+
+        private final long pid;
+
+        private final long startMillis;
+
+        private final String processIdentifier;
+
+        private final String command;
+
+        private final String commandLine;
+
+        private Entry(long pid, long startMillis, String processIdentifier, String command, String commandLine) {
+            this.pid = pid;
+            this.startMillis = startMillis;
+            this.processIdentifier = processIdentifier;
+            this.command = command;
+            this.commandLine = commandLine;
+        }
+
+        private static Optional<Entry> parse(String line) {
+            String[] fields = line.split(SEPARATOR, 5);
+            if (fields.length != 5) {
+                return Optional.empty();
+            }
+            try {
+                return Optional.of(new Entry(Long.parseLong(fields[0]), Long.parseLong(fields[1]), fields[2],
+                    fields[3], fields[4]));
+            } catch (NumberFormatException e) {
+                return Optional.empty();
+            }
+        }
+
+        private String toLine() {
+            return String.join(SEPARATOR, String.valueOf(pid), String.valueOf(startMillis),
+                sanitize(processIdentifier), sanitize(command), sanitize(commandLine));
+        }
+
+        private boolean matchesLiveProcess() {
+            return ProcessHandle.of(pid)
+                .filter(ProcessHandle::isAlive)
+                .filter(process -> startMillis(process).map(millis -> millis == startMillis).orElse(false))
+                .filter(process -> command.isEmpty() || command.equals(process.info().command().orElse(command)))
+                .isPresent();
+        }
+
+        private static String sanitize(String value) {
+            return value.replaceAll("[\\t\\r\\n]", " ");
+        }
+
+        /**
+         * Get the pid.
+         *
+         * @return Returns the pid.
+         */
+        long getPid() {
+            return pid;
+        }
+
+        @Override
+        public String toString() {
+            return processIdentifier + " (PID " + pid + ": " + commandLine + ")";
+        }
+    }
+}
@@ -0,0 +1,332 @@
+package io.github.netmikey.testprocesses;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.Collectors;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import io.github.netmikey.testprocesses.utils.ProcessUtils;
+
+/**
+ * Stops the test processes of a registry when its test context or the JVM
+ * shuts down, according to the registry's {@link ShutdownMode}, and registers
+ * the JVM shutdown hook covering test contexts that are never closed.
+ * <p>
+ * {@link AbstractTestProcessDefinition#isPersistent() Persistent} processes
+ * are left running for later test runs and processes shared across JVMs are
+ * only detached from while other JVMs still use them. Processes that don't
+ * terminate in time are destroyed forcibly.
+ */
+final class ProcessShutdown {
+
+    private static final Logger LOG = LoggerFactory.getLogger(ProcessShutdown.class);
+
+    private static final long FORCIBLE_SHUTDOWN_GRACE_MILLIS = 5000;
+
+    private final TestProcessesRegistry registry;
+
+    private final AtomicBoolean hookRegistered = new AtomicBoolean(false);
+
+    private final Thread hook;
+
+    /**
+     * Initializing constructor.
+     *
+     * @param registry
+     *            The registry whose processes to stop.
+     */
+    ProcessShutdown(TestProcessesRegistry registry) {
+        this.registry = registry;
+        this.hook = new Thread(registry::shutdownOnJvmExit, "testprocesses-shutdown-hook");
+    }
+
+    /**
+     * Register the JVM shutdown hook, unless it is disabled or has already
+     * been registered.
+     */
+    void registerHook() {
+        if (registry.isShutdownHookEnabled() && hookRegistered.compareAndSet(false, true)) {
+            try {
+                Runtime.getRuntime().addShutdownHook(hook);
+            } catch (IllegalStateException e) {
+                // The JVM is already shutting down
+            }
+        }
+    }
+
+    /**
+     * Remove the JVM shutdown hook if it has been registered.
+     */
+    void removeHook() {
+        if (hookRegistered.get()) {
+            try {
+                Runtime.getRuntime().removeShutdownHook(hook);
+            } catch (IllegalStateException e) {
+                // The JVM is already shutting down
+            }
+        }
+    }
+
+    /**
+     * Stop all of the registry's processes because its test context shuts
+     * down, reporting those that could not be stopped.
+     */
+    void stopAll() {
+        Set<String> processIdentifiers = detachPersistentProcesses(registry.runningProcessIdentifiers());
+        if (processIdentifiers.size() > 0) {
+            LOG.info("Test context shutting down: Destroying {} running test process{}", processIdentifiers.size(),
+                processIdentifiers.size() > 1 ? "es" : "");
+        }
+
+        Set<RunningTestProcess<?>> unstopped = new LinkedHashSet<>();
+        if (ShutdownMode.FAST.equals(registry.getShutdownMode())) {
+            fastShutdown(processIdentifiers);
+        } else {
+            unstopped.addAll(gracefulShutdown(processIdentifiers));
+            awaitAll(registry.retiringProcesses().values(),
+                System.currentTimeMillis() + registry.getShutdownTimeoutMillis());
+        }
+
+        registry.runningProcesses().values().stream()
+            .filter(registry::isRunning)
+            .forEach(unstopped::add);
+        if (!unstopped.isEmpty()) {
+            String unstoppedProcesses = unstopped.stream()
+                .map(runningProcess -> runningProcess.getDefinition().getClass() + " ("
+                    + runningProcess.getDefinition().getProcessIdentifier() + ", "
+                    + (registry.isRunning(runningProcess) ? "still running" : "destroyed forcibly") + ")")
+                .collect(Collectors.joining(", "));
+            LOG.warn("It seems we were unable to stop all test processes before shutting down the test context. "
+                + "Test processes that could not be stopped: " + unstoppedProcesses);
+        }
+    }
+
+    /**
+     * Terminate all of the registry's processes because the JVM shuts down
+     * before the test context has been closed.
+     */
+    void stopAllOnJvmExit() {
+        Set<String> processIdentifiers = detachPersistentProcesses(registry.runningProcessIdentifiers());
+        if (processIdentifiers.size() > 0) {
+            LOG.info("JVM shutting down before the test context has been closed: Destroying {} running test "
+                + "process{}", processIdentifiers.size(), processIdentifiers.size() > 1 ? "es" : "");
+        }
+        if (processIdentifiers.size() > 0 || !registry.retiringProcesses().isEmpty()) {
+            fastShutdown(processIdentifiers);
+        }
+    }
+
+    /**
+     * Stops the specified processes concurrently, destroying those that don't
+     * stop within the shutdown timeout forcibly.
+     *
+     * @return The processes that had to be destroyed forcibly.
+     */
+    private List<RunningTestProcess<?>> gracefulShutdown(Set<String> processIdentifiers) {
+        Map<String, RunningTestProcess<?>> processes = new HashMap<>();
+        processIdentifiers.forEach(processId -> Optional.ofNullable(registry.runningProcesses().get(processId))
+            .ifPresent(runningProcess -> processes.put(processId, runningProcess)));
+
+        // Stop all processes concurrently so their shutdown times don't add up
+        long shutdownTimeoutMillis = registry.getShutdownTimeoutMillis();
+        Object shutdownKey = new Object();
+        TimeBudget shutdownBudget = TimeBudget.begin(shutdownKey, "context shutdown", shutdownTimeoutMillis);
+        Map<String, CompletableFuture<Boolean>> stops = new HashMap<>();
+        processIdentifiers.forEach(processId -> stops.put(processId, CompletableFuture.supplyAsync(
+            () -> CurrentTest.callAs(shutdownKey, () -> registry.stopOnShutdown(processId)),
+            registry.getExecutor())));
+        awaitAll(stops.values(), shutdownBudget.getDeadlineMillis());
+        TimeBudget.end(shutdownKey);
+
+        // Processes surviving their stop, e.g. because they ignore SIGTERM, are stragglers, too. Shared processes
+        // this registry has only detached from keep running for the other JVMs.
+        Set<String> stragglers = stops.entrySet().stream()
+            .filter(e -> !e.getValue().isDone()
+                || (e.getValue().getNow(true) && processes.containsKey(e.getKey())
+                    && registry.isRunning(processes.get(e.getKey()))))
+            .map(Map.Entry::getKey)
+            .collect(Collectors.toSet());
+        if (stragglers.isEmpty()) {
+            return List.of();
+        }
+        LOG.warn("Test process{} {} did not stop within the shutdown timeout of {} ms. Destroying forcibly.",
+            stragglers.size() > 1 ? "es" : "", stragglers, shutdownTimeoutMillis);
+        List<RunningTestProcess<?>> destroyed = stragglers.stream()
+            .map(processes::get)
+            .filter(runningProcess -> runningProcess != null)
+            .collect(Collectors.toList());
+        destroyed.forEach(ProcessShutdown::destroyForcibly);
+        List<CompletableFuture<?>> terminations = stragglers.stream().map(stops::get).collect(Collectors.toList());
+        destroyed.stream()
+            .map(TestProcessesRegistry::managedProcess)
+            .filter(managedProcess -> managedProcess != null)
+            .forEach(managedProcess -> terminations.add(managedProcess.onExit()));
+        awaitAll(terminations, System.currentTimeMillis() + FORCIBLE_SHUTDOWN_GRACE_MILLIS);
+        return destroyed;
+    }
+
+    /**
+     * Terminates all specified processes at once without using process
+     * locks, process destroyers or shutdown detectors. Processes replaced by an
+     * overlapping restart that are still being torn down get the same grace
+     * period before they are killed. Only to be used when no test is running
+     * anymore.
+     */
+    private void fastShutdown(Set<String> processIdentifiers) {
+        long gracePeriodMillis = registry.getFastShutdownGracePeriodMillis();
+        long deadlineMillis = System.currentTimeMillis() + gracePeriodMillis;
+        Map<String, RunningTestProcess<?>> runningProcesses = registry.runningProcesses();
+        List<RunningTestProcess<?>> processes = new ArrayList<>();
+        List<ProcessHandle> signalled = new ArrayList<>();
+        List<CompletableFuture<?>> terminations = new ArrayList<>(registry.retiringProcesses().values());
+        List<RunningTestProcess<?>> retiringProcesses = new ArrayList<>(registry.retiringProcesses().keySet());
+
+        for (String processIdentifier : processIdentifiers) {
+            RunningTestProcess<?> runningProcess = runningProcesses.get(processIdentifier);
+            if (runningProcess == null) {
+                continue;
+            }
+            TestProcessDefinition definition = runningProcess.getDefinition();
+            if (TestProcessesRegistry.isSharedAcrossJvms(runningProcess) && !releaseShared(processIdentifier)) {
+                // Other JVMs still use the process: only detach from it
+                definition.stop();
+                runningProcesses.remove(processIdentifier, runningProcess);
+                continue;
+            }
+            processes.add(runningProcess);
+            definition.stop();
+            Process managedProcess = TestProcessesRegistry.managedProcess(runningProcess);
+            if (managedProcess != null) {
+                List<ProcessHandle> processTree = ProcessUtils.snapshotProcessTree(managedProcess.toHandle());
+                if (((AbstractTestProcessDefinition) definition).isProcessGroupLeader()) {
+                    ProcessUtils.signalProcessGroup(managedProcess.pid(), "TERM");
+                }
+                processTree.forEach(ProcessHandle::destroy);
+                signalled.addAll(processTree);
+                terminations.add(managedProcess.onExit());
+            } else {
+                terminations.add(CompletableFuture.runAsync(
+                    () -> definition.getProcessDestroyer().destroy(runningProcess), registry.getExecutor()));
+            }
+        }
+        signalled.forEach(process -> terminations.add(process.onExit()));
+        awaitAll(terminations, deadlineMillis);
+
+        List<ProcessHandle> stragglers = signalled.stream()
+            .filter(ProcessHandle::isAlive)
+            .collect(Collectors.toList());
+        if (!stragglers.isEmpty()) {
+            LOG.debug("{} process{} still alive after the grace period of {} ms. Killing.", stragglers.size(),
+                stragglers.size() > 1 ? "es" : "", gracePeriodMillis);
+            processes.forEach(ProcessShutdown::destroyForcibly);
+            stragglers.forEach(ProcessHandle::destroyForcibly);
+            awaitAll(stragglers.stream().map(ProcessHandle::onExit).collect(Collectors.toList()),
+                System.currentTimeMillis() + FORCIBLE_SHUTDOWN_GRACE_MILLIS);
+        }
+        List<CompletableFuture<?>> retiredExits = new ArrayList<>();
+        for (RunningTestProcess<?> retiredProcess : retiringProcesses) {
+            Process managedProcess = TestProcessesRegistry.managedProcess(retiredProcess);
+            if (managedProcess != null && managedProcess.isAlive()) {
+                destroyForcibly(retiredProcess);
+                retiredExits.add(managedProcess.onExit());
+            }
+        }
+        awaitAll(retiredExits, System.currentTimeMillis() + FORCIBLE_SHUTDOWN_GRACE_MILLIS);
+
+        processes.stream()
+            .filter(runningProcess -> !registry.isRunning(runningProcess))
+            .forEach(runningProcess -> {
+                runningProcesses.remove(runningProcess.getDefinition().getProcessIdentifier(), runningProcess);
+                registry.removeFromLedger(runningProcess);
+            });
+    }
+
+    /**
+     * Detaches from all {@link AbstractTestProcessDefinition#isPersistent()
+     * persistent} processes among the specified ones, leaving them running
+     * for later test runs.
+     *
+     * @return The identifiers of the remaining processes.
+     */
+    private Set<String> detachPersistentProcesses(Set<String> processIdentifiers) {
+        Map<String, RunningTestProcess<?>> runningProcesses = registry.runningProcesses();
+        Set<String> remaining = new HashSet<>();
+        for (String processIdentifier : processIdentifiers) {
+            RunningTestProcess<?> runningProcess = runningProcesses.get(processIdentifier);
+            if (runningProcess == null || !isPersistent(runningProcess) || !registry.isRunning(runningProcess)) {
+                remaining.add(processIdentifier);
+                continue;
+            }
+            try {
+                registry.sharedProcesses().detach(processIdentifier);
+                LOG.info("Leaving persistent test process {} (PID {}) running for later test runs.",
+                    processIdentifier, TestProcessesRegistry.managedProcess(runningProcess).pid());
+                runningProcess.getDefinition().stop();
+                runningProcesses.remove(processIdentifier, runningProcess);
+            } catch (RuntimeException e) {
+                LOG.warn("Error detaching from persistent test process " + processIdentifier + ", stopping it: "
+                    + e.getMessage(), e);
+                remaining.add(processIdentifier);
+            }
+        }
+        return remaining;
+    }
+
+    private static boolean isPersistent(RunningTestProcess<?> runningProcess) {
+        return runningProcess.getDefinition() instanceof AbstractTestProcessDefinition
+            && ((AbstractTestProcessDefinition) runningProcess.getDefinition()).isPersistent();
+    }
+
+    /**
+     * Releases the registry's reference to a shared process without stopping
+     * it.
+     *
+     * @return Whether no other JVM uses the process anymore.
+     */
+    private boolean releaseShared(String processIdentifier) {
+        try {
+            return registry.sharedProcesses().release(processIdentifier, () -> {
+                // The caller terminates the process
+            });
+        } catch (RuntimeException e) {
+            LOG.warn("Error releasing shared test process " + processIdentifier + ": " + e.getMessage(), e);
+            return true;
+        }
+    }
+
+    private static void destroyForcibly(RunningTestProcess<?> runningProcess) {
+        TestProcessDefinition definition = runningProcess.getDefinition();
+        if (definition instanceof AbstractTestProcessDefinition) {
+            ProcessUtils.destroyForciblyRecursive(definition);
+        }
+    }
+
+    /**
+     * Waits until all of the specified futures are done or the specified
+     * deadline has passed, whatever happens first.
+     */
+    private static void awaitAll(Collection<? extends CompletableFuture<?>> futures, long deadlineMillis) {
+        try {
+            CompletableFuture.allOf(futures.toArray(new CompletableFuture<?>[0]))
+                .get(Math.max(0, deadlineMillis - System.currentTimeMillis()), TimeUnit.MILLISECONDS);
+        } catch (TimeoutException | ExecutionException e) {
+            // Callers check the individual futures
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
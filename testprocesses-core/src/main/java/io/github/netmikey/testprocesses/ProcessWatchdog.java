@@ -0,0 +1,199 @@
+package io.github.netmikey.testprocesses;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import io.github.netmikey.testprocesses.eventdetector.EventDetector;
+import io.github.netmikey.testprocesses.utils.BackgroundThreads;
+
+/**
+ * Watches the test processes of a registry between tests and restarts those
+ * that have exited unexpectedly or failed their
+ * {@link AbstractTestProcessDefinition#setLivenessDetector(EventDetector)
+ * liveness check} in the background, so that the next test needing them
+ * doesn't have to wait for a cold start.
+ * <p>
+ * A process is checked as soon as it exits and periodically. Processes that a
+ * test holds a {@link TestProcessLease} on are left alone. After a number of
+ * consecutive failed restarts, the watchdog gives up on a process until it is
+ * found healthy again, e.g. after a test has started it.
+ */
+final class ProcessWatchdog {
+
+    private static final Logger LOG = LoggerFactory.getLogger(ProcessWatchdog.class);
+
+    private static final int STD_ERR_TAIL_BYTES = 4096;
+
+    private final TestProcessesRegistry registry;
+
+    private final Executor executor;
+
+    private final int maxRestartAttempts;
+
+    private final ScheduledExecutorService scheduler;
+
+    private final Map<String, Integer> failedRestarts = new ConcurrentHashMap<>();
+
+    private final Set<String> checking = ConcurrentHashMap.newKeySet();
+
+    /**
+     * Initializing constructor. Starts checking the registry's processes
+     * periodically.
+     *
+     * @param registry
+     *            The registry whose processes to watch.
+     * @param executor
+     *            The executor to run checks and restarts on.
+     * @param intervalMillis
+     *            The interval between periodic checks.
+     * @param maxRestartAttempts
+     *            The number of consecutive failed restarts after which the
+     *            watchdog gives up on a process.
+     */
+    ProcessWatchdog(TestProcessesRegistry registry, Executor executor, long intervalMillis,
+        int maxRestartAttempts) {
+
+        this.registry = registry;
+        this.executor = executor;
+        this.maxRestartAttempts = maxRestartAttempts;
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(
+            BackgroundThreads.newThreadFactory("testprocesses-watchdog-"));
+        scheduler.scheduleWithFixedDelay(this::checkAll, intervalMillis, intervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Check the specified process as soon as it exits.
+     *
+     * @param runningProcess
+     *            The freshly launched process.
+     */
+    void watch(RunningTestProcess<?> runningProcess) {
+        TestProcessDefinition definition = runningProcess.getDefinition();
+        if (definition instanceof AbstractTestProcessDefinition) {
+            Process managedProcess = ((AbstractTestProcessDefinition) definition).getManagedProcess();
+            if (managedProcess != null) {
+                managedProcess.onExit().thenRunAsync(() -> check(runningProcess), executor);
+            }
+        }
+    }
+
+    /**
+     * Stop checking processes.
+     */
+    void close() {
+        scheduler.shutdownNow();
+    }
+
+    private void checkAll() {
+        for (RunningTestProcess<?> runningProcess : registry.watchedProcesses()) {
+            executor.execute(() -> check(runningProcess));
+        }
+    }
+
+    private void check(RunningTestProcess<?> runningProcess) {
+        TestProcessDefinition definition = runningProcess.getDefinition();
+        String processIdentifier = definition.getProcessIdentifier();
+        if (!TestProcessState.STARTED.equals(definition.getRequestedState()) || !checking.add(processIdentifier)) {
+            return;
+        }
+        try {
+            Optional<String> problem = diagnose(runningProcess);
+            if (problem.isEmpty()) {
+                failedRestarts.remove(processIdentifier);
+                return;
+            }
+            if (failedRestarts.getOrDefault(processIdentifier, 0) >= maxRestartAttempts) {
+                return;
+            }
+
+            LOG.warn("{}. Restarting it in the background.{}", problem.get(), stdErrTail(definition));
+            boolean restarted;
+            try {
+                Optional<RunningTestProcess<?>> restartedProcess = registry.restartByWatchdog(runningProcess);
+                if (restartedProcess.isEmpty()) {
+                    // Stopped or taken over by a test in the meantime
+                    return;
+                }
+                restarted = diagnose(restartedProcess.get()).isEmpty();
+            } catch (RuntimeException e) {
+                LOG.debug("Restarting test process " + processIdentifier + " failed: " + e.getMessage(), e);
+                restarted = false;
+            }
+
+            if (restarted) {
+                failedRestarts.remove(processIdentifier);
+                LOG.info("Restarted test process {}", processIdentifier);
+            } else if (failedRestarts.merge(processIdentifier, 1, Integer::sum) >= maxRestartAttempts) {
+                LOG.warn("Giving up restarting test process {} after {} failed attempts. It will be started again "
+                    + "when a test needs it.", processIdentifier, maxRestartAttempts);
+            }
+        } finally {
+            checking.remove(processIdentifier);
+        }
+    }
+
+    private static Optional<String> diagnose(RunningTestProcess<?> runningProcess) {
+        TestProcessDefinition definition = runningProcess.getDefinition();
+        if (!TestProcessState.STARTED.equals(definition.getActualState())) {
+            return Optional.of("Test process " + definition.getProcessIdentifier() + " exited unexpectedly"
+                + exitValue(definition));
+        }
+
+        EventDetector livenessDetector = definition instanceof AbstractTestProcessDefinition
+            ? ((AbstractTestProcessDefinition) definition).getLivenessDetector()
+            : null;
+        if (livenessDetector == null) {
+            return Optional.empty();
+        }
+        try {
+            livenessDetector.waitForEvent(runningProcess);
+            return Optional.empty();
+        } catch (TimeoutException | IllegalStateException e) {
+            return Optional.of("Test process " + definition.getProcessIdentifier() + " failed its liveness check: "
+                + e.getMessage());
+        }
+    }
+
+    private static String exitValue(TestProcessDefinition definition) {
+        Process managedProcess = ((AbstractTestProcessDefinition) definition).getManagedProcess();
+        try {
+            return managedProcess != null ? " with exit code " + managedProcess.exitValue() : "";
+        } catch (IllegalThreadStateException e) {
+            return "";
+        }
+    }
+
+    private static String stdErrTail(TestProcessDefinition definition) {
+        if (!(definition instanceof FileBackedOutErrStreams)) {
+            return "";
+        }
+        Optional<Path> errFile = ((FileBackedOutErrStreams) definition).getErrFile();
+        if (errFile.isEmpty()) {
+            return "";
+        }
+        try (RandomAccessFile file = new RandomAccessFile(errFile.get().toFile(), "r")) {
+            long start = Math.max(0, file.length() - STD_ERR_TAIL_BYTES);
+            byte[] tail = new byte[(int) (file.length() - start)];
+            file.seek(start);
+            file.readFully(tail);
+            String text = new String(tail, StandardCharsets.UTF_8).strip();
+            return text.isEmpty() ? "" : " Last stdErr output:\n" + text;
+        } catch (IOException e) {
+            return "";
+        }
+    }
+}
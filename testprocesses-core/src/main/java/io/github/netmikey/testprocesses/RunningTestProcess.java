@@ -5,7 +5,9 @@ import java.nio.channels.SeekableByteChannel;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.StandardOpenOption;
+import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -13,6 +15,10 @@ import org.slf4j.LoggerFactory;
 /**
  * Wraps a {@link TestProcessDefinition} that is currently running, along with
  * (potentially later) some metadata about it.
+ * <p>
+ * The stream positions at which the current test started are tracked per test,
+ * so a single running process can be used by multiple tests running in
+ * parallel.
  * 
  * @param <T>
  *            The concrete {@link TestProcessDefinition} subtype.
@@ -21,11 +27,9 @@ public class RunningTestProcess<T extends TestProcessDefinition> {
 
     private static final Logger LOG = LoggerFactory.getLogger(RunningTestProcess.class);
 
-    private T definition;
+    private volatile T definition;
 
-    private Optional<Long> currentTestStdOutStart = Optional.empty();
-
-    private Optional<Long> currentTestStdErrStart = Optional.empty();
+    private final Map<Object, StreamPositions> currentTestStreamPositions = new ConcurrentHashMap<>();
 
     /**
      * Initializing constructor.
@@ -39,24 +43,24 @@ public class RunningTestProcess<T extends TestProcessDefinition> {
     }
 
     /**
-     * Notifies that a test method is about to start.
+     * Notifies that a test method is about to start on the current thread.
      */
     public void onTestStart() {
         if (definition instanceof FileBackedOutErrStreams) {
-            AbstractTestProcessDefinition processDefinition = (AbstractTestProcessDefinition) definition;
-            currentTestStdOutStart = processDefinition.getOutFile()
+            FileBackedOutErrStreams processDefinition = (FileBackedOutErrStreams) definition;
+            Optional<Long> stdOutStart = processDefinition.getOutFile()
                 .flatMap(outFile -> currentPosition("stdOut stream", outFile));
-            currentTestStdErrStart = processDefinition.getErrFile()
+            Optional<Long> stdErrStart = processDefinition.getErrFile()
                 .flatMap(errFile -> currentPosition("stdErr stream", errFile));
+            currentTestStreamPositions.put(CurrentTest.key(), new StreamPositions(stdOutStart, stdErrStart));
         }
     }
 
     /**
-     * Notifies that a test method has ended.
+     * Notifies that the test method running on the current thread has ended.
      */
     public void onTestEnd() {
-        currentTestStdOutStart = Optional.empty();
-        currentTestStdErrStart = Optional.empty();
+        currentTestStreamPositions.remove(CurrentTest.key());
     }
 
     private Optional<Long> currentPosition(String description, Path file) {
@@ -89,21 +93,36 @@ public class RunningTestProcess<T extends TestProcessDefinition> {
     }
 
     /**
-     * Get the currentTestStdOutStart.
+     * Get the position within the stdOut stream at which the test running on
+     * the current thread started.
      * 
      * @return Returns the currentTestStdOutStart.
      */
     public Optional<Long> getCurrentTestStdOutStart() {
-        return currentTestStdOutStart;
+        StreamPositions positions = currentTestStreamPositions.get(CurrentTest.key());
+        return positions != null ? positions.stdOutStart : Optional.empty();
     }
 
     /**
-     * Get the currentTestStdErrStart.
+     * Get the position within the stdErr stream at which the test running on
+     * the current thread started.
      * 
      * @return Returns the currentTestStdErrStart.
      */
     public Optional<Long> getCurrentTestStdErrStart() {
-        return currentTestStdErrStart;
+        StreamPositions positions = currentTestStreamPositions.get(CurrentTest.key());
+        return positions != null ? positions.stdErrStart : Optional.empty();
     }
 
+    private static class StreamPositions {
+
+        private final Optional<Long> stdOutStart;
+
+        private final Optional<Long> stdErrStart;
+
+        private StreamPositions(Optional<Long> stdOutStart, Optional<Long> stdErrStart) {
+            this.stdOutStart = stdOutStart;
+            this.stdErrStart = stdErrStart;
+        }
+    }
 }
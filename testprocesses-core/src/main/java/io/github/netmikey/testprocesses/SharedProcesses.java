@@ -0,0 +1,477 @@
+package io.github.netmikey.testprocesses;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.stream.Collectors;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import io.github.netmikey.testprocesses.utils.ProcessUtils;
+
+/**
+ * A host-wide registry of test processes that are shared between JVMs, e.g.
+ * between the test JVMs Gradle forks when using <code>maxParallelForks</code>.
+ * <p>
+ * The registry is a file protected by a file lock. The first JVM that needs a
+ * shared test process records it as starting, launches it and then records
+ * its PID in the file. Other JVMs wait for it to be published, then attach to
+ * the running process by its PID and add themselves to the process' holders.
+ * The lock is never held while a process starts up or shuts down. When a JVM stops the process, it only removes itself from the
+ * holders: the last holder actually stops it.
+ * <p>
+ * Holders whose JVM isn't alive anymore are ignored. Processes without any
+ * living holder are destroyed by the next JVM accessing the registry, unless
+ * they are persistent: those are kept running for later test runs to attach to
+ * as long as the fingerprint of their definition doesn't change.
+ */
+final class SharedProcesses {
+
+    private static final Logger LOG = LoggerFactory.getLogger(SharedProcesses.class);
+
+    private static final String REGISTRY_FILE_NAME = "shared-processes";
+
+    private static final String LOCK_FILE_NAME = "shared-processes.lock";
+
+    private static final String SEPARATOR = "\t";
+
+    private static final long POLL_INTERVAL_MILLIS = 100;
+
+    /**
+     * File locks are held on behalf of the whole JVM, so threads of the same
+     * JVM need to be serialized separately.
+     */
+    private static final ReentrantLock JVM_LOCK = new ReentrantLock();
+
+    private final Path directory;
+
+    private final String holderId = ProcessLedger.newOwnerId();
+
+    /**
+     * Initializing constructor.
+     *
+     * @param directory
+     *            The directory holding the registry file.
+     */
+    SharedProcesses(Path directory) {
+        this.directory = directory;
+    }
+
+    /**
+     * Get the default directory of the shared registry: the
+     * <code>build</code> directory within the working directory.
+     *
+     * @return The default directory.
+     */
+    static Path defaultDirectory() {
+        return Paths.get("build", "testprocesses");
+    }
+
+    /**
+     * Acquire a reference to the shared test process of the specified
+     * definition. If the process is running already, the definition is attached
+     * to it. Otherwise, it is launched using the specified launcher. While it
+     * starts up, the registry only records a placeholder and isn't locked, so
+     * other JVMs can use other shared processes in the meantime and wait for
+     * this one to be published.
+     *
+     * @param definition
+     *            The definition of the shared process.
+     * @param launcher
+     *            Launches the process and waits for it to have started.
+     * @return Whether the process has been launched by this call.
+     * @throws IllegalStateException
+     *             Thrown if another JVM uses a process with the same identifier
+     *             but a different definition.
+     */
+    boolean acquire(AbstractTestProcessDefinition definition, Runnable launcher) {
+        String processIdentifier = definition.getProcessIdentifier();
+        String definitionClass = definition.getClass().getName();
+        String fingerprint = definition.fingerprint();
+        while (true) {
+            Acquisition acquisition = withRegistry(entries -> {
+                Entry entry = entries.get(processIdentifier);
+                if (entry != null && !entry.isOf(definitionClass, fingerprint)) {
+                    if (!entry.holders.isEmpty()) {
+                        throw new IllegalStateException("Shared test process " + processIdentifier + " (PID "
+                            + entry.pid + ") is used by " + entry.holders.size() + " other JVM"
+                            + (entry.holders.size() > 1 ? "s" : "") + " with a different definition: "
+                            + entry.definitionClass + " with fingerprint " + entry.fingerprint + " instead of "
+                            + definitionClass + " with fingerprint " + fingerprint + ". Use distinct process "
+                            + "identifiers for differently configured shared processes.");
+                    }
+                    LOG.info("Shared test process {} (PID {}) has been launched with a different definition "
+                        + "fingerprint. Replacing it.", processIdentifier, entry.pid);
+                    destroy(entry);
+                    entry = null;
+                }
+                if (entry != null && entry.state != State.RUNNING) {
+                    if (!entry.holders.isEmpty()) {
+                        return Acquisition.WAIT;
+                    }
+                    // The JVM starting or stopping it is gone
+                    destroy(entry);
+                    entry = null;
+                }
+                if (entry != null) {
+                    Optional<ProcessHandle> process = entry.liveProcess();
+                    if (process.isPresent()) {
+                        LOG.info("Attaching to shared test process {} (PID {}) launched by another JVM{}.",
+                            processIdentifier, entry.pid, entry.persistent ? " or test run" : "");
+                        definition.attach(process.get(), entry.processGroupLeader, Paths.get(entry.outFile),
+                            Paths.get(entry.errFile));
+                        entry.holders.add(holderId);
+                        return Acquisition.ATTACHED;
+                    }
+                    destroy(entry);
+                }
+                entries.put(processIdentifier, new Entry(processIdentifier, definitionClass, 0, 0, false, "", "",
+                    fingerprint, definition.isPersistent(), State.STARTING, holder()));
+                return Acquisition.LAUNCH;
+            });
+            if (Acquisition.ATTACHED.equals(acquisition)) {
+                return false;
+            }
+            if (Acquisition.LAUNCH.equals(acquisition)) {
+                launch(definition, fingerprint, launcher);
+                return true;
+            }
+            TimeBudget.checkNotExhausted(() -> "waiting for shared test process " + processIdentifier
+                + " to be started or stopped by another JVM");
+            LOG.debug("Waiting for shared test process {} to be started or stopped by another JVM.",
+                processIdentifier);
+            pause(processIdentifier);
+        }
+    }
+
+    private void launch(AbstractTestProcessDefinition definition, String fingerprint, Runnable launcher) {
+        String processIdentifier = definition.getProcessIdentifier();
+        try {
+            launcher.run();
+        } catch (RuntimeException | Error e) {
+            removeOwnEntry(processIdentifier, State.STARTING);
+            throw e;
+        }
+        ProcessHandle handle = definition.getManagedProcess().toHandle();
+        withRegistry(entries -> {
+            Entry placeholder = entries.get(processIdentifier);
+            Set<String> holders = placeholder != null && placeholder.holders.contains(holderId)
+                ? placeholder.holders
+                : holder();
+            entries.put(processIdentifier, new Entry(processIdentifier, definition.getClass().getName(),
+                handle.pid(), ProcessLedger.startMillis(handle).orElse(0L), definition.isProcessGroupLeader(),
+                definition.getOutFile().map(Path::toString).orElse(""),
+                definition.getErrFile().map(Path::toString).orElse(""), fingerprint, definition.isPersistent(),
+                State.RUNNING, holders));
+            return null;
+        });
+    }
+
+    /**
+     * Release this JVM's reference to the shared test process with the
+     * specified identifier. If no other JVM holds a reference anymore, the
+     * process is stopped using the specified stopper. While it shuts down, the
+     * registry records it as stopping and isn't locked.
+     *
+     * @param processIdentifier
+     *            The identifier of the shared process.
+     * @param stopper
+     *            Stops the process and waits for it to have shut down.
+     * @return Whether the process has been stopped by this call.
+     */
+    boolean release(String processIdentifier, Runnable stopper) {
+        Optional<Entry> stopping = withRegistry(entries -> {
+            Entry entry = entries.get(processIdentifier);
+            if (entry == null) {
+                // Nobody else knows about the process
+                return Optional.of(new Entry(processIdentifier, "", 0, 0, false, "", "", "", false,
+                    State.STOPPING, holder()));
+            }
+            if (!entry.holders.remove(holderId)) {
+                return Optional.empty();
+            }
+            if (!entry.holders.isEmpty()) {
+                LOG.info("Detaching from shared test process {}: it is still used by {} other JVM{}.",
+                    processIdentifier, entry.holders.size(), entry.holders.size() > 1 ? "s" : "");
+                return Optional.empty();
+            }
+            Entry stoppingEntry = entry.withState(State.STOPPING, holder());
+            entries.put(processIdentifier, stoppingEntry);
+            return Optional.of(stoppingEntry);
+        });
+        if (stopping.isEmpty()) {
+            return false;
+        }
+        try {
+            stopper.run();
+        } finally {
+            removeOwnEntry(processIdentifier, State.STOPPING);
+            deleteStreamFiles(stopping.get());
+        }
+        return true;
+    }
+
+    /**
+     * Release this JVM's reference to the shared test process with the
+     * specified identifier without ever stopping it, even if no other JVM
+     * holds a reference anymore. Used to leave persistent processes running.
+     *
+     * @param processIdentifier
+     *            The identifier of the shared process.
+     */
+    void detach(String processIdentifier) {
+        withRegistry(entries -> {
+            Entry entry = entries.get(processIdentifier);
+            if (entry != null) {
+                entry.holders.remove(holderId);
+            }
+            return null;
+        });
+    }
+
+    private void removeOwnEntry(String processIdentifier, State state) {
+        withRegistry(entries -> {
+            Entry entry = entries.get(processIdentifier);
+            if (entry != null && entry.state == state && entry.holders.contains(holderId)) {
+                entries.remove(processIdentifier);
+            }
+            return null;
+        });
+    }
+
+    private Set<String> holder() {
+        Set<String> holders = new LinkedHashSet<>();
+        holders.add(holderId);
+        return holders;
+    }
+
+    private static void pause(String processIdentifier) {
+        try {
+            Thread.sleep(TimeBudget.limit(POLL_INTERVAL_MILLIS));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrupted while waiting for shared test process " + processIdentifier
+                + " to be started or stopped by another JVM", e);
+        }
+    }
+
+    /**
+     * Execute the specified action on the registry's entries while holding
+     * the registry's lock, and write the entries back afterwards. The lock is
+     * only held for reading and writing the file: launching and stopping
+     * processes happens outside of it.
+     */
+    private <V> V withRegistry(RegistryAction<V> action) {
+        JVM_LOCK.lock();
+        try {
+            Files.createDirectories(directory);
+            try (FileChannel lockChannel = FileChannel.open(directory.resolve(LOCK_FILE_NAME),
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+                FileLock lock = lockChannel.lock()) {
+
+                Map<String, Entry> entries = read();
+                entries.values().removeIf(entry -> {
+                    boolean exited = entry.persistent && entry.state == State.RUNNING
+                        && entry.liveProcess().isEmpty();
+                    if (exited) {
+                        deleteStreamFiles(entry);
+                    }
+                    return exited;
+                });
+                Set<String> abandoned = entries.values().stream()
+                    .filter(entry -> {
+                        entry.holders.removeIf(holder -> !ProcessLedger.isOwnerAlive(holder));
+                        return entry.holders.isEmpty() && !entry.persistent;
+                    })
+                    .map(entry -> entry.processIdentifier)
+                    .collect(Collectors.toSet());
+                V result = action.apply(entries);
+                abandoned.stream()
+                    .map(entries::get)
+                    .filter(entry -> entry != null && entry.holders.isEmpty())
+                    .forEach(entry -> {
+                        LOG.warn("Destroying shared test process {} (PID {}): all JVMs using it are gone.",
+                            entry.processIdentifier, entry.pid);
+                        destroy(entry);
+                        entries.remove(entry.processIdentifier);
+                    });
+                write(entries);
+                return result;
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Error accessing shared test process registry in " + directory + ": "
+                + e.getMessage(), e);
+        } finally {
+            JVM_LOCK.unlock();
+        }
+    }
+
+    private Map<String, Entry> read() throws IOException {
+        Map<String, Entry> entries = new LinkedHashMap<>();
+        Path registryFile = directory.resolve(REGISTRY_FILE_NAME);
+        if (Files.exists(registryFile)) {
+            for (String line : Files.readAllLines(registryFile, StandardCharsets.UTF_8)) {
+                Entry.parse(line).ifPresent(entry -> entries.put(entry.processIdentifier, entry));
+            }
+        }
+        return entries;
+    }
+
+    private void write(Map<String, Entry> entries) throws IOException {
+        Path tempFile = Files.createTempFile(directory, "tmp-", ".tmp");
+        Files.write(tempFile, entries.values().stream().map(Entry::toLine).collect(Collectors.toList()),
+            StandardCharsets.UTF_8);
+        Files.move(tempFile, directory.resolve(REGISTRY_FILE_NAME), StandardCopyOption.REPLACE_EXISTING,
+            StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private static void destroy(Entry entry) {
+        entry.liveProcess().ifPresent(process -> {
+            if (entry.processGroupLeader) {
+                ProcessUtils.signalProcessGroup(entry.pid, "KILL");
+            }
+            ProcessUtils.destroyForciblyRecursive(process);
+        });
+        deleteStreamFiles(entry);
+    }
+
+    private static void deleteStreamFiles(Entry entry) {
+        for (String file : Arrays.asList(entry.outFile, entry.errFile)) {
+            if (!file.isEmpty()) {
+                try {
+                    Files.deleteIfExists(Paths.get(file));
+                } catch (IOException e) {
+                    LOG.debug("Unable to delete stream file " + file + ": " + e.getMessage(), e);
+                }
+            }
+        }
+    }
+
+    /**
+     * An action executed on the registry's entries while holding the lock.
+     *
+     * @param <V>
+     *            The action's result type.
+     */
+    @FunctionalInterface
+    private interface RegistryAction<V> {
+
+        V apply(Map<String, Entry> entries);
+    }
+
+    /**
+     * The outcome of looking up a shared process for acquiring it.
+     */
+    private enum Acquisition {
+        ATTACHED, LAUNCH, WAIT
+    }
+
+    /**
+     * The state of a shared process. Its holder is the JVM starting or
+     * stopping it while it's not running.
+     */
+    private enum State {
+        STARTING, RUNNING, STOPPING
+    }
+
+    /**
+     * A shared process recorded in the registry file.
+     */
+    private static class Entry {
+
+        private final String processIdentifier;
+
+        private final String definitionClass;
+
+        private final long pid;
+
+        private final long startMillis;
+
+        private final boolean processGroupLeader;
+
+        private final String outFile;
+
+        private final String errFile;
+
+        private final String fingerprint;
+
+        private final boolean persistent;
+
+        private final State state;
+
+        private final Set<String> holders;
+
+        private Entry(String processIdentifier, String definitionClass, long pid, long startMillis,
+            boolean processGroupLeader, String outFile, String errFile, String fingerprint, boolean persistent,
+            State state, Set<String> holders) {
+
+            this.processIdentifier = processIdentifier;
+            this.definitionClass = definitionClass;
+            this.pid = pid;
+            this.startMillis = startMillis;
+            this.processGroupLeader = processGroupLeader;
+            this.outFile = outFile;
+            this.errFile = errFile;
+            this.fingerprint = fingerprint;
+            this.persistent = persistent;
+            this.state = state;
+            this.holders = holders;
+        }
+
+        private static Optional<Entry> parse(String line) {
+            String[] fields = line.split(SEPARATOR, -1);
+            if (fields.length != 11) {
+                return Optional.empty();
+            }
+            try {
+                Set<String> holders = Arrays.stream(fields[10].split(","))
+                    .filter(holder -> !holder.isEmpty())
+                    .collect(Collectors.toCollection(LinkedHashSet::new));
+                return Optional.of(new Entry(fields[0], fields[1], Long.parseLong(fields[2]),
+                    Long.parseLong(fields[3]), Boolean.parseBoolean(fields[4]), fields[5], fields[6], fields[7],
+                    Boolean.parseBoolean(fields[8]), State.valueOf(fields[9]), holders));
+            } catch (IllegalArgumentException e) {
+                return Optional.empty();
+            }
+        }
+
+        private String toLine() {
+            return String.join(SEPARATOR, processIdentifier, definitionClass, String.valueOf(pid),
+                String.valueOf(startMillis), String.valueOf(processGroupLeader), outFile, errFile, fingerprint,
+                String.valueOf(persistent), state.name(), String.join(",", holders));
+        }
+
+        private Entry withState(State newState, Set<String> newHolders) {
+            return new Entry(processIdentifier, definitionClass, pid, startMillis, processGroupLeader, outFile,
+                errFile, fingerprint, persistent, newState, newHolders);
+        }
+
+        private boolean isOf(String otherDefinitionClass, String otherFingerprint) {
+            return definitionClass.equals(otherDefinitionClass) && fingerprint.equals(otherFingerprint);
+        }
+
+        private Optional<ProcessHandle> liveProcess() {
+            if (pid <= 0) {
+                return Optional.empty();
+            }
+            return ProcessHandle.of(pid)
+                .filter(ProcessHandle::isAlive)
+                .filter(process -> ProcessLedger.startMillis(process).orElse(0L) == startMillis);
+        }
+    }
+}
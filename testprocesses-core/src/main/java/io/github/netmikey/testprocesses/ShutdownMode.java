@@ -0,0 +1,25 @@
+package io.github.netmikey.testprocesses;
+
+/**
+ * Defines how TestProcesses stops the test processes that are still running
+ * when the test Spring Context is being shut down (at the end of all tests).
+ */
+public enum ShutdownMode {
+    /**
+     * Stops all test processes using their process destroyers and waits for
+     * their shutdown detectors, just like stopping them during the tests does.
+     */
+    GRACEFUL,
+
+    /**
+     * Skips shutdown detectors: sends <code>SIGTERM</code> to all process trees
+     * at once, waits for a short grace period and then sends
+     * <code>SIGKILL</code> to the processes still alive. Use this when the way
+     * the test processes shut down at the end of the run doesn't matter.
+     * <p>
+     * Test processes whose definition doesn't extend
+     * {@link AbstractTestProcessDefinition} are stopped using their process
+     * destroyers, all at the same time.
+     */
+    FAST;
+}
@@ -0,0 +1,25 @@
+package io.github.netmikey.testprocesses;
+
+/**
+ * The ways a test process can fail to start, used by
+ * {@link StartupRetryPolicy}s to decide whether to retry starting it.
+ */
+public enum StartupFailure {
+    /**
+     * The process' startup detector timed out.
+     */
+    TIMEOUT,
+
+    /**
+     * The process exited before or right after its startup detector detected
+     * the end of its startup.
+     */
+    EARLY_EXIT,
+
+    /**
+     * The process timed out or exited early and its stdOut or stdErr output
+     * contains the policy's error pattern (see
+     * {@link StartupRetryPolicy#withErrorPattern(String)}).
+     */
+    ERROR_PATTERN
+}
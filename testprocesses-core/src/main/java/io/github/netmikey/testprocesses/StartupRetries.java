@@ -0,0 +1,221 @@
+package io.github.netmikey.testprocesses;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import io.github.netmikey.testprocesses.utils.StreamPrintingUtils;
+import io.github.netmikey.testprocesses.utils.StreamStart;
+
+/**
+ * Launches the test processes of a registry, retrying failed startups
+ * according to their definition's
+ * {@link AbstractTestProcessDefinition#setStartupRetryPolicy(StartupRetryPolicy)
+ * startup retry policy}.
+ * <p>
+ * Each failed attempt is classified as a {@link StartupFailure} and destroyed
+ * before the next one. While backing off, the process lock is released so
+ * that processes sharing its lock stripe aren't blocked. The final failure is
+ * recorded, so that later starts of the same definition using
+ * {@link StartStrategy#USE_EXISTING} fail right away instead of waiting for
+ * a process that is known not to start.
+ */
+final class StartupRetries {
+
+    private static final Logger LOG = LoggerFactory.getLogger(StartupRetries.class);
+
+    private final TestProcessesRegistry registry;
+
+    /**
+     * Initializing constructor.
+     *
+     * @param registry
+     *            The registry whose processes to launch.
+     */
+    StartupRetries(TestProcessesRegistry registry) {
+        this.registry = registry;
+    }
+
+    /**
+     * Rethrow the recorded final startup failure of the specified definition
+     * if it is to be used as it is. Forget the failure otherwise, so that the
+     * definition is started anew.
+     *
+     * @param definition
+     *            The definition about to be started.
+     * @param startStrategy
+     *            The {@link StartStrategy} used to start it.
+     * @throws TestProcessStartupException
+     *             If the definition has failed to start before.
+     */
+    void checkFailedStartup(TestProcessDefinition definition, StartStrategy startStrategy) {
+        String processIdentifier = definition.getProcessIdentifier();
+        FailedStartup failedStartup = registry.failedStartups().get(processIdentifier);
+        if (failedStartup != null) {
+            if (StartStrategy.USE_EXISTING.equals(startStrategy)
+                && registry.isSameDefinition(definition, failedStartup.definition)) {
+
+                // Don't make every following test wait for a process that is known not to start
+                throw new TestProcessStartupException(failedStartup.cause.getMessage(),
+                    failedStartup.cause.getFailure(), failedStartup.cause);
+            }
+            registry.failedStartups().remove(processIdentifier);
+        }
+    }
+
+    /**
+     * Launch the specified process and wait for it to start up, retrying as
+     * its definition's retry policy permits. Must be called holding the
+     * process lock.
+     *
+     * @param runningProcess
+     *            The process to be launched.
+     * @param ledger
+     *            The ledger to record the process in, or <code>null</code>.
+     * @throws TestProcessStartupException
+     *             If the last permitted attempt has failed.
+     */
+    void launch(RunningTestProcess<?> runningProcess, ProcessLedger ledger) {
+        TestProcessDefinition definition = runningProcess.getDefinition();
+        StartupRetryPolicy retryPolicy = definition instanceof AbstractTestProcessDefinition
+            ? ((AbstractTestProcessDefinition) definition).getStartupRetryPolicy()
+            : null;
+
+        for (int attempt = 1;; attempt++) {
+            registry.launchAttempt(runningProcess, ledger);
+            Optional<TestProcessStartupException> failure = awaitStartup(runningProcess, retryPolicy, attempt);
+            if (failure.isEmpty()) {
+                return;
+            }
+
+            // Kill the failed attempt cleanly before relaunching or giving up
+            registry.destroy(runningProcess);
+            registry.runningProcesses().remove(definition.getProcessIdentifier());
+            TestProcessStartupException e = failure.get();
+            if (attempt >= retryPolicy.getMaxAttempts()
+                || !retryPolicy.getRetryableFailures().contains(e.getFailure())) {
+                registry.failedStartups().put(definition.getProcessIdentifier(), new FailedStartup(definition, e));
+                throw e;
+            }
+
+            long backoffMillis = retryPolicy.backoffMillis(attempt);
+            LOG.warn("{} Retrying in {} ms.", e.getMessage(), backoffMillis);
+            backOff(definition.getProcessIdentifier(), backoffMillis);
+        }
+    }
+
+    /**
+     * Waits before retrying to start the specified process. The process lock
+     * is released in the meantime, so that processes sharing its lock stripe
+     * aren't blocked, while other operations on the process itself wait for
+     * the retry (see {@link TestProcessesRegistry#backingOff()}).
+     */
+    private void backOff(String processIdentifier, long backoffMillis) {
+        ReentrantLock lock = registry.processLock(processIdentifier);
+        long deadlineMillis = System.currentTimeMillis() + backoffMillis;
+        registry.backingOff().add(processIdentifier);
+        try {
+            for (long remainingMillis = backoffMillis; remainingMillis > 0;
+                remainingMillis = deadlineMillis - System.currentTimeMillis()) {
+
+                if (lock.isHeldByCurrentThread()) {
+                    registry.leasesChangedCondition(processIdentifier).await(remainingMillis, TimeUnit.MILLISECONDS);
+                } else {
+                    Thread.sleep(remainingMillis);
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrupted while waiting to retry starting test process "
+                + processIdentifier, e);
+        } finally {
+            registry.backingOff().remove(processIdentifier);
+            if (lock.isHeldByCurrentThread()) {
+                registry.leasesChanged(processIdentifier);
+            }
+        }
+    }
+
+    /**
+     * Waits for the process to finish starting up. Without a retry policy,
+     * startup timeouts are only logged.
+     *
+     * @return The reason the attempt failed, if it did.
+     */
+    private Optional<TestProcessStartupException> awaitStartup(RunningTestProcess<?> runningProcess,
+        StartupRetryPolicy retryPolicy, int attempt) {
+
+        TestProcessDefinition definition = runningProcess.getDefinition();
+        StartupFailure failure;
+        String reason;
+        Exception cause = null;
+        try {
+            definition.getStartupDetector().waitForEvent(runningProcess);
+            if (retryPolicy == null || registry.isRunning(runningProcess)) {
+                return Optional.empty();
+            }
+            failure = StartupFailure.EARLY_EXIT;
+            reason = "it exited right after starting up";
+        } catch (TimeoutException e) {
+            TimeBudget.checkNotExhausted(() -> "waiting for test process " + definition.getProcessIdentifier()
+                + " to finish starting up");
+            if (retryPolicy == null) {
+                LOG.warn("Timeout while waiting for process " + definition.getProcessIdentifier()
+                    + " to finish starting up. The process may not have started correctly. " + e.getMessage());
+                return Optional.empty();
+            }
+            failure = StartupFailure.TIMEOUT;
+            reason = e.getMessage();
+            cause = e;
+        } catch (IllegalStateException e) {
+            if (retryPolicy == null || registry.isRunning(runningProcess)) {
+                throw e;
+            }
+            failure = StartupFailure.EARLY_EXIT;
+            reason = e.getMessage();
+            cause = e;
+        }
+
+        String output = outputOf(runningProcess);
+        failure = retryPolicy.classify(failure, output);
+        return Optional.of(new TestProcessStartupException("Test process " + definition.getProcessIdentifier()
+            + " failed to start (" + failure + ", attempt " + attempt + " of " + retryPolicy.getMaxAttempts()
+            + "): " + reason, failure, cause));
+    }
+
+    private static String outputOf(RunningTestProcess<?> runningProcess) {
+        try (InputStream stdOut = StreamPrintingUtils.stdOutStreamOf(runningProcess, StreamStart.ABSOLUTE);
+            InputStream stdErr = StreamPrintingUtils.stdErrStreamOf(runningProcess, StreamStart.ABSOLUTE)) {
+
+            return new String(stdOut.readAllBytes(), StandardCharsets.UTF_8)
+                + new String(stdErr.readAllBytes(), StandardCharsets.UTF_8);
+        } catch (IOException | RuntimeException e) {
+            LOG.debug("Could not read the output of test process "
+                + runningProcess.getDefinition().getProcessIdentifier() + ": " + e.getMessage(), e);
+            return "";
+        }
+    }
+
+    /**
+     * The final failure of starting a test process, recorded so that later
+     * attempts to use the same definition fail right away.
+     */
+    static final class FailedStartup {
+
+        private final TestProcessDefinition definition;
+
+        private final TestProcessStartupException cause;
+
+        private FailedStartup(TestProcessDefinition definition, TestProcessStartupException cause) {
+            this.definition = definition;
+            this.cause = cause;
+        }
+    }
+}
@@ -0,0 +1,202 @@
+package io.github.netmikey.testprocesses;
+
+import java.util.Arrays;
+import java.util.EnumSet;
+import java.util.Set;
+import java.util.regex.Pattern;
+
+/**
+ * Defines how often and when starting a test process is retried if it fails
+ * (see
+ * {@link AbstractTestProcessDefinition#setStartupRetryPolicy(StartupRetryPolicy)}):
+ *
+ * <pre>
+ * StartupRetryPolicy.newInstance()
+ *     .withMaxAttempts(3)
+ *     .withBackoffMillis(500)
+ *     .withErrorPattern("Address already in use")
+ *     .retryingOn(StartupFailure.ERROR_PATTERN);
+ * </pre>
+ * <p>
+ * A failed attempt is destroyed using the definition's process destroyer
+ * before the process is launched again. If the last attempt fails or the
+ * failure isn't retryable, starting the process fails with a
+ * {@link TestProcessStartupException}. The failure is recorded, so that
+ * later tests using the process fail right away with the same reason instead
+ * of each waiting for the process to start, until the process is stopped or
+ * started using {@link StartStrategy#REQUIRE_RESTART}.
+ * <p>
+ * By default, 3 attempts are made, with a backoff of 1 second that doubles
+ * after each failed attempt, and all failures are retryable.
+ */
+public class StartupRetryPolicy {
+
+    private int maxAttempts = 3;
+
+    private long backoffMillis = 1000;
+
+    private double backoffMultiplier = 2;
+
+    private Set<StartupFailure> retryableFailures = EnumSet.allOf(StartupFailure.class);
+
+    private Pattern errorPattern;
+
+    /**
+     * Create a new {@link StartupRetryPolicy} with the default settings.
+     *
+     * @return The new {@link StartupRetryPolicy}.
+     */
+    public static StartupRetryPolicy newInstance() {
+        return new StartupRetryPolicy();
+    }
+
+    /**
+     * Create a new {@link StartupRetryPolicy} that doesn't retry, but still
+     * makes starting the process fail if its startup fails.
+     *
+     * @return The new {@link StartupRetryPolicy}.
+     */
+    public static StartupRetryPolicy noRetries() {
+        return new StartupRetryPolicy().withMaxAttempts(1);
+    }
+
+    /**
+     * Set the maximum number of attempts to start the process, including the
+     * first one.
+     *
+     * @param attempts
+     *            The maximum number of attempts.
+     * @return This instance for fluent API usage.
+     */
+    public StartupRetryPolicy withMaxAttempts(int attempts) {
+        if (attempts < 1) {
+            throw new IllegalArgumentException("At least one attempt is required");
+        }
+        this.maxAttempts = attempts;
+        return this;
+    }
+
+    /**
+     * Set how long to wait after the first failed attempt before trying again.
+     *
+     * @param millis
+     *            The backoff in milliseconds.
+     * @return This instance for fluent API usage.
+     */
+    public StartupRetryPolicy withBackoffMillis(long millis) {
+        this.backoffMillis = millis;
+        return this;
+    }
+
+    /**
+     * Set the factor the backoff is multiplied with after each further failed
+     * attempt. Use <code>1</code> for a constant backoff.
+     *
+     * @param multiplier
+     *            The backoff multiplier.
+     * @return This instance for fluent API usage.
+     */
+    public StartupRetryPolicy withBackoffMultiplier(double multiplier) {
+        this.backoffMultiplier = multiplier;
+        return this;
+    }
+
+    /**
+     * Set the failures that are retried. Other failures make starting the
+     * process fail right away.
+     *
+     * @param failures
+     *            The retryable failures.
+     * @return This instance for fluent API usage.
+     */
+    public StartupRetryPolicy retryingOn(StartupFailure... failures) {
+        this.retryableFailures = failures.length > 0 ? EnumSet.copyOf(Arrays.asList(failures))
+            : EnumSet.noneOf(StartupFailure.class);
+        return this;
+    }
+
+    /**
+     * Set a RegEx pattern that identifies a failure as
+     * {@link StartupFailure#ERROR_PATTERN} if it is found in the stdOut or
+     * stdErr output of a failed attempt, e.g. <code>Address already in
+     * use</code>.
+     *
+     * @param regex
+     *            The RegEx pattern.
+     * @return This instance for fluent API usage.
+     */
+    public StartupRetryPolicy withErrorPattern(String regex) {
+        this.errorPattern = Pattern.compile(regex);
+        return this;
+    }
+
+    /**
+     * Classify the failure of an attempt.
+     *
+     * @param failure
+     *            How the attempt failed.
+     * @param output
+     *            The stdOut and stdErr output of the attempt.
+     * @return {@link StartupFailure#ERROR_PATTERN} if the output contains the
+     *         error pattern, the specified failure otherwise.
+     */
+    StartupFailure classify(StartupFailure failure, String output) {
+        return errorPattern != null && errorPattern.matcher(output).find() ? StartupFailure.ERROR_PATTERN : failure;
+    }
+
+    /**
+     * Get the time to wait before the next attempt.
+     *
+     * @param failedAttempts
+     *            The number of attempts that failed so far.
+     * @return The backoff in milliseconds.
+     */
+    long backoffMillis(int failedAttempts) {
+        return (long) (backoffMillis * Math.pow(backoffMultiplier, failedAttempts - 1));
+    }
+
+    /**
+     * Get the maxAttempts.
+     *
+     * @return Returns the maxAttempts.
+     */
+    public int getMaxAttempts() {
+        return maxAttempts;
+    }
+
+    /**
+     * Get the backoffMillis.
+     *
+     * @return Returns the backoffMillis.
+     */
+    public long getBackoffMillis() {
+        return backoffMillis;
+    }
+
+    /**
+     * Get the backoffMultiplier.
+     *
+     * @return Returns the backoffMultiplier.
+     */
+    public double getBackoffMultiplier() {
+        return backoffMultiplier;
+    }
+
+    /**
+     * Get the retryableFailures.
+     *
+     * @return Returns the retryableFailures.
+     */
+    public Set<StartupFailure> getRetryableFailures() {
+        return retryableFailures;
+    }
+
+    /**
+     * Get the errorPattern.
+     *
+     * @return Returns the errorPattern.
+     */
+    public Pattern getErrorPattern() {
+        return errorPattern;
+    }
+}
@@ -59,4 +59,44 @@ public @interface TestProcess {
      * @return The {@link StopStrategy} to use.
      */
     StopStrategy stopStrategy() default StopStrategy.LEAVE_RUNNING;
+
+    /**
+     * Whether the process is started in the background as soon as the
+     * annotated test class is about to run, instead of when the first test
+     * method needing it is about to run. When the test context hasn't been
+     * created yet, the process starts while it is being created. The first
+     * test method needing the process then only waits for that start to
+     * finish. Only applies to the {@link StartStrategy#USE_EXISTING} start
+     * strategy. Default: <code>false</code>.
+     * 
+     * @return Whether to pre-start the process.
+     */
+    boolean prestart() default false;
+
+    /**
+     * The number of replicas of the process to run, e.g. to simulate the nodes
+     * of a cluster. Each replica is a {@link TestProcessFleet} member with the
+     * process identifier <code>name-0</code> to <code>name-(n-1)</code>,
+     * where the name is the {@link #beanName()} or the fully qualified name of
+     * the {@link #beanClass()}. Replicas are new instances of the
+     * {@link #beanClass()}, or of the {@link #beanName() bean}, which must be
+     * prototype-scoped. They can derive their ports from their
+     * {@link AbstractTestProcessDefinition#getReplicaIndex() replica index}.
+     * They share their working directory unless they use a
+     * {@link AbstractTestProcessDefinition#setWorkingDirectoryTemplate(java.nio.file.Path)
+     * working directory template} (see {@link TestProcessFleet}). Replicated
+     * processes aren't pre-started. Default: <code>1</code>, i.e.
+     * the definition itself is used.
+     * 
+     * @return The number of replicas.
+     */
+    int replicas() default 1;
+
+    /**
+     * The maximum number of {@link #replicas()} that are started at the same
+     * time. Default: <code>0</code>, i.e. all replicas are started at once.
+     * 
+     * @return The maximum number of concurrent replica starts.
+     */
+    int replicaStartConcurrency() default 0;
 }
@@ -0,0 +1,113 @@
+package io.github.netmikey.testprocesses;
+
+import java.lang.reflect.InvocationTargetException;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Turns {@link TestProcess} annotations into {@link TestProcessDefinitionBy}
+ * references. Shared by the {@link TestProcessesListener} and the
+ * {@link TestProcessesExtension}.
+ */
+final class TestProcessAnnotations {
+
+    private TestProcessAnnotations() {
+        // Utility class
+    }
+
+    /**
+     * Get the reference to the {@link TestProcessDefinition} the specified
+     * annotation declares.
+     *
+     * @param annotation
+     *            The {@link TestProcess} annotation.
+     * @param testClass
+     *            The test class the annotation has been found on, used for
+     *            error messages.
+     * @return The reference.
+     */
+    static TestProcessDefinitionBy<?> reference(TestProcess annotation, Class<?> testClass) {
+        Optional<Class<? extends TestProcessDefinition>> beanClass = beanClass(annotation);
+        boolean hasBeanName = !annotation.beanName().trim().isEmpty();
+        if (beanClass.isPresent() && hasBeanName) {
+            throw new IllegalArgumentException("Invalid @TestProcess annotation found in type "
+                + testClass.getName() + ": either beanClass or beanName should be declared, not both.");
+        }
+        if (beanClass.isEmpty() && !hasBeanName) {
+            throw new IllegalArgumentException("Invalid @TestProcess annotation found in type "
+                + testClass.getName() + ": either beanClass or beanName must be specified.");
+        }
+
+        if (beanClass.isPresent()) {
+            return TestProcessDefinitionBy.clazz(beanClass.get());
+        } else {
+            return TestProcessDefinitionBy.beanName(annotation.beanName());
+        }
+    }
+
+    /**
+     * Start the replicas the specified annotation declares (see
+     * {@link TestProcess#replicas()}) and acquire leases on them.
+     *
+     * @param registry
+     *            The registry to start the replicas with.
+     * @param annotation
+     *            The {@link TestProcess} annotation.
+     * @param testClass
+     *            The test class the annotation has been found on, used for
+     *            error messages.
+     * @return The acquired leases.
+     */
+    static List<TestProcessLease> acquireReplicas(TestProcessesRegistry registry, TestProcess annotation,
+        Class<?> testClass) {
+
+        if (annotation.replicaStartConcurrency() < 0) {
+            throw new IllegalArgumentException("Invalid @TestProcess annotation found in type " + testClass.getName()
+                + ": replicaStartConcurrency must not be negative.");
+        }
+        int startConcurrency = annotation.replicaStartConcurrency() > 0 ? annotation.replicaStartConcurrency()
+            : Integer.MAX_VALUE;
+        TestProcessFleet<?> fleet = registry.fleet(reference(annotation, testClass), annotation.replicas(),
+            startConcurrency);
+        return registry.acquire(fleet, annotation.startStrategy(), annotation.stopStrategy());
+    }
+
+    /**
+     * Instantiate the specified {@link TestProcessDefinition} class using its
+     * no-argument constructor.
+     *
+     * @param definitionClass
+     *            The class to instantiate.
+     * @return The new definition.
+     * @throws UnknownTestProcessDefinitionException
+     *             If the class can't be instantiated.
+     */
+    static TestProcessDefinition instantiate(Class<? extends TestProcessDefinition> definitionClass) {
+        try {
+            return definitionClass.getDeclaredConstructor().newInstance();
+        } catch (InstantiationException | IllegalAccessException | InvocationTargetException
+            | NoSuchMethodException e) {
+            throw new UnknownTestProcessDefinitionException("No " + TestProcessDefinition.class.getSimpleName()
+                + " of class " + definitionClass.getName() + " has been registered and it could not be "
+                + "instantiated using its no-argument constructor: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Get the {@link TestProcessDefinition} class the specified annotation
+     * declares, if any.
+     *
+     * @param annotation
+     *            The {@link TestProcess} annotation.
+     * @return The declared class.
+     */
+    static Optional<Class<? extends TestProcessDefinition>> beanClass(TestProcess annotation) {
+        if (!VoidTestProcessDefinition.class.equals(annotation.beanClass())) {
+            return Optional.of(annotation.beanClass());
+        } else if (!VoidTestProcessDefinition.class.equals(annotation.value())) {
+            return Optional.of(annotation.value());
+        } else {
+            return Optional.empty();
+        }
+    }
+}
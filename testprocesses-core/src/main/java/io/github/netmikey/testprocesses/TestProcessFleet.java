@@ -0,0 +1,185 @@
+package io.github.netmikey.testprocesses;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.function.IntFunction;
+import java.util.stream.Collectors;
+
+/**
+ * A number of replicas of a test process, e.g. the nodes of a simulated
+ * cluster, that are started, stopped and waited for as a group:
+ *
+ * <pre>
+ * TestProcessFleet&lt;BrokerProcess&gt; brokers = TestProcessFleet.of("broker", 3, index -&gt; {
+ *     BrokerProcess broker = new BrokerProcess();
+ *     broker.setPort(9092 + index);
+ *     return broker;
+ * }).withStartConcurrency(2);
+ *
+ * registry.start(brokers, StartStrategy.USE_EXISTING);
+ * registry.waitForEventOn(brokers, LogPatternEventDetector.onStdOut().withMarker("Cluster formed"));
+ * </pre>
+ * <p>
+ * Replicas extending {@link AbstractTestProcessDefinition} get the process
+ * identifiers <code>name-0</code> to <code>name-(n-1)</code> and know their
+ * {@link AbstractTestProcessDefinition#getReplicaIndex() replica index}, so
+ * that they can derive their ports from it. Each replica is a test process of
+ * its own with its own stream files, and can be addressed individually using
+ * {@link #reference(int)} or, once the fleet has been
+ * {@link TestProcessesRegistry#registerFleet(TestProcessFleet) registered}, by
+ * its process identifier as bean name.
+ * <p>
+ * Replicas only get working directories of their own if they use a
+ * {@link AbstractTestProcessDefinition#setWorkingDirectoryTemplate(Path)
+ * working directory template}. Otherwise they all run in the directory their
+ * {@link AbstractTestProcessDefinition#buildProcess(ProcessBuilder)} sets,
+ * by default the test JVM's working directory, so replicas writing files
+ * there need to derive distinct file names from their replica index.
+ *
+ * @param <T>
+ *            The concrete {@link TestProcessDefinition} type of the replicas.
+ */
+public class TestProcessFleet<T extends TestProcessDefinition> {
+
+    private final String name;
+
+    private final List<T> replicas;
+
+    private int startConcurrency = Integer.MAX_VALUE;
+
+    private TestProcessFleet(String name, List<T> replicas) {
+        this.name = name;
+        this.replicas = replicas;
+    }
+
+    /**
+     * Create a new fleet of the specified number of replicas.
+     *
+     * @param name
+     *            The name of the fleet, used as prefix of the replicas'
+     *            process identifiers.
+     * @param replicas
+     *            The number of replicas.
+     * @param replicaFactory
+     *            Creates the definition of the replica with the specified
+     *            index, starting at <code>0</code>.
+     * @param <T>
+     *            The concrete {@link TestProcessDefinition} type of the
+     *            replicas.
+     * @return The new {@link TestProcessFleet}.
+     * @throws IllegalArgumentException
+     *             If the number of replicas is less than 1 or if multiple
+     *             replicas have the same process identifier.
+     */
+    public static <T extends TestProcessDefinition> TestProcessFleet<T> of(String name, int replicas,
+        IntFunction<T> replicaFactory) {
+
+        if (replicas < 1) {
+            throw new IllegalArgumentException("Test process fleet " + name + " needs at least one replica");
+        }
+        List<T> definitions = new ArrayList<>();
+        Set<String> processIdentifiers = new HashSet<>();
+        for (int index = 0; index < replicas; index++) {
+            T definition = replicaFactory.apply(index);
+            if (definition instanceof AbstractTestProcessDefinition) {
+                AbstractTestProcessDefinition replica = (AbstractTestProcessDefinition) definition;
+                replica.setProcessIdentifier(name + "-" + index);
+                replica.setReplicaIndex(index);
+            }
+            if (definitions.contains(definition) || !processIdentifiers.add(definition.getProcessIdentifier())) {
+                throw new IllegalArgumentException("The replicas of test process fleet " + name + " must be distinct "
+                    + "definitions with distinct process identifiers, but replica " + index + " ("
+                    + definition.getProcessIdentifier() + ") isn't.");
+            }
+            definitions.add(definition);
+        }
+        return new TestProcessFleet<>(name, Collections.unmodifiableList(definitions));
+    }
+
+    /**
+     * Set the maximum number of replicas that are started at the same time.
+     * All replicas are started at once by default.
+     *
+     * @param concurrency
+     *            The maximum number of concurrent starts.
+     * @return This instance for fluent API usage.
+     */
+    public TestProcessFleet<T> withStartConcurrency(int concurrency) {
+        if (concurrency < 1) {
+            throw new IllegalArgumentException("The start concurrency must be at least 1");
+        }
+        this.startConcurrency = concurrency;
+        return this;
+    }
+
+    /**
+     * Get the definition of the replica with the specified index.
+     *
+     * @param index
+     *            The replica index, starting at <code>0</code>.
+     * @return The replica's definition.
+     */
+    public T replica(int index) {
+        return replicas.get(index);
+    }
+
+    /**
+     * Get a reference to the replica with the specified index.
+     *
+     * @param index
+     *            The replica index, starting at <code>0</code>.
+     * @return The {@link TestProcessDefinitionBy} reference to the replica.
+     */
+    public TestProcessDefinitionBy<T> reference(int index) {
+        return TestProcessDefinitionBy.instance(replica(index));
+    }
+
+    /**
+     * Get references to all replicas, ordered by their index.
+     *
+     * @return The {@link TestProcessDefinitionBy} references to the replicas.
+     */
+    public List<TestProcessDefinitionBy<T>> references() {
+        return replicas.stream().map(TestProcessDefinitionBy::instance).collect(Collectors.toList());
+    }
+
+    /**
+     * Get the number of replicas.
+     *
+     * @return The number of replicas.
+     */
+    public int size() {
+        return replicas.size();
+    }
+
+    /**
+     * Get the name.
+     *
+     * @return Returns the name.
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Get the replicas.
+     *
+     * @return Returns the replicas' definitions, ordered by their index.
+     */
+    public List<T> getReplicas() {
+        return replicas;
+    }
+
+    /**
+     * Get the startConcurrency.
+     *
+     * @return Returns the startConcurrency.
+     */
+    public int getStartConcurrency() {
+        return startConcurrency;
+    }
+}
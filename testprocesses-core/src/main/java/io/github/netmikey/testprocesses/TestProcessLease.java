@@ -0,0 +1,117 @@
+package io.github.netmikey.testprocesses;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * A lease on a running test process, acquired using
+ * {@link TestProcessesRegistry#acquire(TestProcessDefinitionBy, StartStrategy, StopStrategy)}.
+ * <p>
+ * As long as a test holds a lease on a test process, other tests can't stop or
+ * restart it: their stop requests are deferred until the last lease on the
+ * process has been released, their restart requests block until then.
+ * <p>
+ * Leases acquired with {@link StartStrategy#REQUIRE_RESTART} are
+ * <i>exclusive</i>: the process is restarted once all other leases have been
+ * released and other tests can't acquire a lease on it until the exclusive
+ * lease has been released again.
+ */
+public class TestProcessLease implements AutoCloseable {
+
+    private final TestProcessesRegistry registry;
+
+    private final String processIdentifier;
+
+    private final Object owner;
+
+    private final boolean exclusive;
+
+    private final StopStrategy stopStrategy;
+
+    private final AtomicBoolean released = new AtomicBoolean(false);
+
+    /**
+     * Initializing constructor.
+     *
+     * @param registry
+     *            The registry that granted the lease.
+     * @param processIdentifier
+     *            The identifier of the leased process.
+     * @param owner
+     *            The key of the test holding the lease.
+     * @param exclusive
+     *            Whether the lease is exclusive.
+     * @param stopStrategy
+     *            The {@link StopStrategy} to apply upon release.
+     */
+    TestProcessLease(TestProcessesRegistry registry, String processIdentifier, Object owner, boolean exclusive,
+        StopStrategy stopStrategy) {
+
+        this.registry = registry;
+        this.processIdentifier = processIdentifier;
+        this.owner = owner;
+        this.exclusive = exclusive;
+        this.stopStrategy = stopStrategy;
+    }
+
+    /**
+     * Release this lease. If its {@link StopStrategy} is
+     * {@link StopStrategy#STOP_AFTER_TEST}, the process will be stopped as soon
+     * as no other lease on it is held anymore. Releasing a lease more than once
+     * has no effect.
+     */
+    public void release() {
+        if (released.compareAndSet(false, true)) {
+            registry.release(this);
+        }
+    }
+
+    @Override
+    public void close() {
+        release();
+    }
+
+    /**
+     * Get the processIdentifier.
+     *
+     * @return Returns the processIdentifier.
+     */
+    public String getProcessIdentifier() {
+        return processIdentifier;
+    }
+
+    /**
+     * Get whether this lease is exclusive.
+     *
+     * @return Returns whether this lease is exclusive.
+     */
+    public boolean isExclusive() {
+        return exclusive;
+    }
+
+    /**
+     * Get the stopStrategy.
+     *
+     * @return Returns the stopStrategy.
+     */
+    public StopStrategy getStopStrategy() {
+        return stopStrategy;
+    }
+
+    /**
+     * Get whether this lease has been released.
+     *
+     * @return Returns whether this lease has been released.
+     */
+    public boolean isReleased() {
+        return released.get();
+    }
+
+    /**
+     * Get the key of the test holding this lease.
+     *
+     * @return Returns the owner.
+     */
+    Object getOwner() {
+        return owner;
+    }
+}
@@ -0,0 +1,54 @@
+package io.github.netmikey.testprocesses;
+
+/**
+ * Thrown when a test process with a {@link StartupRetryPolicy} has failed to
+ * start, and by later attempts to use it until it is stopped or restarted.
+ */
+public class TestProcessStartupException extends RuntimeException {
+
+    private final StartupFailure failure;
+
+    /**
+     * Constructs a new runtime exception with the specified detail message and
+     * startup failure.
+     *
+     * @param message
+     *            the detail message. The detail message is saved for later
+     *            retrieval by the {@link #getMessage()} method.
+     * @param failure
+     *            the way the process failed to start.
+     */
+    public TestProcessStartupException(String message, StartupFailure failure) {
+        super(message);
+        this.failure = failure;
+    }
+
+    /**
+     * Constructs a new runtime exception with the specified detail message,
+     * startup failure and cause.
+     *
+     * @param message
+     *            the detail message. The detail message is saved for later
+     *            retrieval by the {@link #getMessage()} method.
+     * @param failure
+     *            the way the process failed to start.
+     * @param cause
+     *            the cause (which is saved for later retrieval by the
+     *            {@link #getCause()} method). A <code>null</code> value is
+     *            permitted, and indicates that the cause is nonexistent or
+     *            unknown.
+     */
+    public TestProcessStartupException(String message, StartupFailure failure, Throwable cause) {
+        super(message, cause);
+        this.failure = failure;
+    }
+
+    /**
+     * Get the failure.
+     *
+     * @return Returns the way the process failed to start.
+     */
+    public StartupFailure getFailure() {
+        return failure;
+    }
+}
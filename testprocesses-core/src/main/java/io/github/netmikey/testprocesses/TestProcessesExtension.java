@@ -0,0 +1,275 @@
+package io.github.netmikey.testprocesses;
+
+import java.lang.reflect.AnnotatedElement;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Optional;
+import java.util.ServiceLoader;
+import java.util.Set;
+
+import org.junit.jupiter.api.extension.AfterEachCallback;
+import org.junit.jupiter.api.extension.BeforeAllCallback;
+import org.junit.jupiter.api.extension.BeforeEachCallback;
+import org.junit.jupiter.api.extension.ExtensionContext;
+import org.junit.jupiter.api.extension.ExtensionContext.Namespace;
+import org.junit.jupiter.api.extension.ExtensionContext.Store.CloseableResource;
+import org.junit.jupiter.api.extension.ParameterContext;
+import org.junit.jupiter.api.extension.ParameterResolutionException;
+import org.junit.jupiter.api.extension.ParameterResolver;
+import org.junit.platform.commons.support.AnnotationSupport;
+
+/**
+ * A JUnit Jupiter extension that ties TestProcesses to the JUnit test
+ * lifecycle without a Spring test context:
+ *
+ * <pre>
+ * &#64;ExtendWith(TestProcessesExtension.class)
+ * &#64;TestProcess(MyTestProcess.class)
+ * public class MyTest {
+ *
+ *     &#64;Test
+ *     public void myTest(TestProcessesRegistry registry) {
+ *         // ...
+ *     }
+ * }
+ * </pre>
+ * <p>
+ * All test classes of a test run share a single {@link TestProcessesRegistry},
+ * which is shut down at the end of the run. {@link TestProcessDefinition}s are
+ * discovered from
+ * <ul>
+ * <li>{@link ServiceLoader} providers of {@link TestProcessDefinition},
+ * registered under their decapitalized simple class name,</li>
+ * <li>static fields of type {@link TestProcessDefinition} of the test class and
+ * its superclasses, registered under the fully qualified name of the declaring
+ * class followed by a dot and the field name, so that test classes can use the
+ * same field names. {@link TestProcess} annotations can refer to the fields of
+ * their test class by the field name alone,</li>
+ * <li>classes referenced by {@link TestProcess} annotations that haven't been
+ * found otherwise: they are instantiated using their no-argument constructor
+ * and registered under their fully qualified class name.</li>
+ * </ul>
+ * Just like the {@link TestProcessesListener} does for Spring tests, a
+ * {@link TestProcessLease} is acquired for each {@link TestProcess} annotation
+ * before each test method and released after it. The registry can be injected
+ * into test methods, constructors and lifecycle methods as a parameter.
+ * Processes declared with {@link TestProcess#prestart()} by the test class or
+ * its methods are started in the background before the test class runs.
+ */
+public class TestProcessesExtension
+    implements BeforeAllCallback, BeforeEachCallback, AfterEachCallback, ParameterResolver {
+
+    private static final Namespace NAMESPACE = Namespace.create(TestProcessesExtension.class);
+
+    private static final String LEASES_KEY = "leases";
+
+    @Override
+    public void beforeAll(ExtensionContext context) throws Exception {
+        TestProcessesRegistry registry = registry(context);
+        for (Class<?> type = context.getRequiredTestClass(); type != null; type = type.getSuperclass()) {
+            for (Field field : type.getDeclaredFields()) {
+                if (isDefinitionField(field)) {
+                    field.setAccessible(true);
+                    TestProcessDefinition definition = (TestProcessDefinition) field.get(null);
+                    if (definition != null) {
+                        registry.registerDefinition(beanName(field), definition);
+                    }
+                }
+            }
+        }
+
+        for (TestProcess annotation : prestartAnnotations(context.getRequiredTestClass())) {
+            prestart(registry, annotation, context.getRequiredTestClass());
+        }
+    }
+
+    @Override
+    public void beforeEach(ExtensionContext context) throws Exception {
+        TestProcessesRegistry registry = registry(context);
+        Class<?> testClass = context.getRequiredTestClass();
+
+        // Register the list first so that leases acquired before a failure
+        // are still released after the test method
+        List<TestProcessLease> leases = new ArrayList<>();
+        context.getStore(NAMESPACE).put(LEASES_KEY, leases);
+        registry.beginTestTimeBudget();
+
+        for (TestProcess annotation : classAnnotations(testClass)) {
+            leases.addAll(acquire(registry, annotation, testClass));
+        }
+        for (TestProcess annotation : annotations(context.getRequiredTestMethod())) {
+            leases.addAll(acquire(registry, annotation, testClass));
+        }
+
+        registry.beforeTestMethod();
+    }
+
+    @Override
+    public void afterEach(ExtensionContext context) throws Exception {
+        registry(context).afterTestMethod();
+
+        @SuppressWarnings("unchecked")
+        List<TestProcessLease> leases = (List<TestProcessLease>) context.getStore(NAMESPACE).remove(LEASES_KEY);
+        try {
+            if (leases != null) {
+                // Release method annotation leases first, then class
+                // annotation leases
+                for (int i = leases.size() - 1; i >= 0; i--) {
+                    leases.get(i).release();
+                }
+            }
+        } finally {
+            registry(context).endTestTimeBudget();
+        }
+    }
+
+    @Override
+    public boolean supportsParameter(ParameterContext parameterContext, ExtensionContext extensionContext)
+        throws ParameterResolutionException {
+
+        return TestProcessesRegistry.class.equals(parameterContext.getParameter().getType());
+    }
+
+    @Override
+    public Object resolveParameter(ParameterContext parameterContext, ExtensionContext extensionContext)
+        throws ParameterResolutionException {
+
+        return registry(extensionContext);
+    }
+
+    /**
+     * Get the registry shared by all tests of the current test run.
+     *
+     * @param context
+     *            The current {@link ExtensionContext}.
+     * @return The registry.
+     */
+    public static TestProcessesRegistry registry(ExtensionContext context) {
+        return context.getRoot().getStore(NAMESPACE)
+            .getOrComputeIfAbsent(RegistryResource.class, key -> new RegistryResource(), RegistryResource.class)
+            .registry;
+    }
+
+    private static List<TestProcessLease> acquire(TestProcessesRegistry registry, TestProcess annotation,
+        Class<?> testClass) {
+
+        if (annotation.replicas() != 1) {
+            return TestProcessAnnotations.acquireReplicas(registry, annotation, testClass);
+        }
+        TestProcessDefinitionBy<?> reference = reference(annotation, testClass);
+        try {
+            return List.of(registry.acquire(reference, annotation.startStrategy(), annotation.stopStrategy()));
+        } catch (UnknownTestProcessDefinitionException e) {
+            Class<? extends TestProcessDefinition> beanClass = TestProcessAnnotations.beanClass(annotation)
+                .orElseThrow(() -> e);
+            registry.registerDefinitionIfAbsent(beanClass.getName(),
+                () -> TestProcessAnnotations.instantiate(beanClass));
+            return List.of(registry.acquire(reference, annotation.startStrategy(), annotation.stopStrategy()));
+        }
+    }
+
+    private static void prestart(TestProcessesRegistry registry, TestProcess annotation, Class<?> testClass) {
+        TestProcessDefinitionBy<?> reference = reference(annotation, testClass);
+        try {
+            registry.prestart(reference);
+        } catch (UnknownTestProcessDefinitionException e) {
+            Class<? extends TestProcessDefinition> beanClass = TestProcessAnnotations.beanClass(annotation)
+                .orElseThrow(() -> e);
+            registry.registerDefinitionIfAbsent(beanClass.getName(),
+                () -> TestProcessAnnotations.instantiate(beanClass));
+            registry.prestart(reference);
+        }
+    }
+
+    /**
+     * Get the reference the specified annotation declares, resolving bean
+     * names that match a definition field of the test class to the name the
+     * field has been registered under.
+     */
+    private static TestProcessDefinitionBy<?> reference(TestProcess annotation, Class<?> testClass) {
+        TestProcessDefinitionBy<?> reference = TestProcessAnnotations.reference(annotation, testClass);
+        Optional<String> fieldBeanName = reference.getBeanName()
+            .flatMap(name -> definitionFieldBeanName(testClass, name));
+        if (fieldBeanName.isPresent()) {
+            return TestProcessDefinitionBy.beanName(fieldBeanName.get());
+        }
+        return reference;
+    }
+
+    private static Optional<String> definitionFieldBeanName(Class<?> testClass, String fieldName) {
+        // Fields of subclasses hide those of their superclasses
+        for (Class<?> type = testClass; type != null; type = type.getSuperclass()) {
+            for (Field field : type.getDeclaredFields()) {
+                if (isDefinitionField(field) && field.getName().equals(fieldName)) {
+                    return Optional.of(beanName(field));
+                }
+            }
+        }
+        return Optional.empty();
+    }
+
+    private static boolean isDefinitionField(Field field) {
+        return Modifier.isStatic(field.getModifiers())
+            && TestProcessDefinition.class.isAssignableFrom(field.getType());
+    }
+
+    private static String beanName(Field field) {
+        return field.getDeclaringClass().getName() + "." + field.getName();
+    }
+
+    private static List<TestProcess> classAnnotations(Class<?> testClass) {
+        List<TestProcess> result = new ArrayList<>();
+        // Annotations of superclasses apply as well
+        for (Class<?> type = testClass; type != null; type = type.getSuperclass()) {
+            result.addAll(0, annotations(type));
+        }
+        return result;
+    }
+
+    private static Set<TestProcess> prestartAnnotations(Class<?> testClass) {
+        Set<TestProcess> result = new LinkedHashSet<>(classAnnotations(testClass));
+        for (Class<?> type = testClass; type != null; type = type.getSuperclass()) {
+            for (Method method : type.getDeclaredMethods()) {
+                result.addAll(annotations(method));
+            }
+        }
+        result.removeIf(annotation -> !annotation.prestart()
+            || !StartStrategy.USE_EXISTING.equals(annotation.startStrategy()) || annotation.replicas() != 1);
+        return result;
+    }
+
+    private static List<TestProcess> annotations(AnnotatedElement element) {
+        return AnnotationSupport.findRepeatableAnnotations(element, TestProcess.class);
+    }
+
+    private static String decapitalize(String name) {
+        if (name.length() > 1 && Character.isUpperCase(name.charAt(1)) && Character.isUpperCase(name.charAt(0))) {
+            return name;
+        }
+        return Character.toLowerCase(name.charAt(0)) + name.substring(1);
+    }
+
+    /**
+     * Holds the registry in JUnit's root store so that it is shut down at the
+     * end of the test run.
+     */
+    private static class RegistryResource implements CloseableResource {
+
+        private final TestProcessesRegistry registry = new TestProcessesRegistry();
+
+        private RegistryResource() {
+            for (TestProcessDefinition definition : ServiceLoader.load(TestProcessDefinition.class)) {
+                registry.registerDefinition(decapitalize(definition.getClass().getSimpleName()), definition);
+            }
+        }
+
+        @Override
+        public void close() {
+            registry.shutdown();
+        }
+    }
+}
@@ -1,22 +1,64 @@
 package io.github.netmikey.testprocesses;
 
-import java.util.Optional;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
 import java.util.Set;
-import java.util.function.Consumer;
+import java.util.stream.Collectors;
 
 import org.springframework.core.annotation.AnnotatedElementUtils;
 import org.springframework.test.context.TestContext;
 import org.springframework.test.context.TestExecutionListener;
-import org.springframework.util.StringUtils;
+import org.springframework.util.ReflectionUtils;
 
 /**
  * A {@link TestExecutionListener} that ties TestProcesses to Spring's Test
  * lifecycle.
+ * <p>
+ * For each {@link TestProcess} annotation, a {@link TestProcessLease} is
+ * acquired before the test method and released after it, so that tests running
+ * in parallel don't stop or restart processes other tests still need.
+ * <p>
+ * Processes declared with {@link TestProcess#prestart()} by the test class or
+ * its methods are started in the background before the test class runs. If
+ * its test context hasn't been loaded yet, they are started as soon as the
+ * registry has been initialized, while the rest of the context is created.
  */
 public class TestProcessesListener implements TestExecutionListener {
 
+    private static final String LEASES_ATTRIBUTE = TestProcessesListener.class.getName() + ".leases";
+
     private TestProcessesRegistry registry;
 
+    @Override
+    public void beforeTestClass(TestContext testContext) throws Exception {
+        List<TestProcessDefinitionBy<?>> prestarts = prestartAnnotations(testContext.getTestClass()).stream()
+            .map(annotation -> TestProcessAnnotations.reference(annotation, testContext.getTestClass()))
+            .collect(Collectors.toList());
+        if (prestarts.isEmpty()) {
+            return;
+        }
+        if (!testContext.hasApplicationContext()) {
+            // Loaded when preparing the test instance
+            TestProcessesRegistry.prestartOnInitialization(prestarts);
+            return;
+        }
+        for (TestProcessDefinitionBy<?> reference : prestarts) {
+            try {
+                registry(testContext).prestart(reference);
+            } catch (UnknownTestProcessDefinitionException | TooManyTestProcessDefinitionsException e) {
+                // Reported by the test method referencing the definition
+            }
+        }
+    }
+
+    @Override
+    public void prepareTestInstance(TestContext testContext) throws Exception {
+        // The context has been loaded by now, with or without registry
+        TestProcessesRegistry.prestartOnInitialization(null);
+    }
+
     @Override
     public void beforeTestMethod(TestContext testContext) throws Exception {
         Set<TestProcess> classAnnotations = AnnotatedElementUtils.findMergedRepeatableAnnotations(
@@ -24,69 +66,57 @@ public class TestProcessesListener implements TestExecutionListener {
         Set<TestProcess> methodAnnotations = AnnotatedElementUtils.findMergedRepeatableAnnotations(
             testContext.getTestMethod(), TestProcess.class);
 
-        classAnnotations.forEach(annotation -> {
-            executeWithBeanResolution(testContext, annotation, testProcessDefinitionBy -> registry(testContext)
-                .start(testProcessDefinitionBy, annotation.startStrategy()));
-        });
+        // Register the list first so that leases acquired before a failure
+        // are still released after the test method
+        List<TestProcessLease> leases = new ArrayList<>();
+        testContext.setAttribute(LEASES_ATTRIBUTE, leases);
+        registry(testContext).beginTestTimeBudget();
+
+        classAnnotations.forEach(annotation -> leases.addAll(acquire(testContext, annotation)));
 
-        methodAnnotations.forEach(annotation -> {
-            executeWithBeanResolution(testContext, annotation, testProcessDefinitionBy -> registry(testContext)
-                .start(testProcessDefinitionBy, annotation.startStrategy()));
-        });
+        methodAnnotations.forEach(annotation -> leases.addAll(acquire(testContext, annotation)));
 
-        registry(testContext).beforeTestMethod(testContext);
+        registry(testContext).beforeTestMethod();
     }
 
     @Override
     public void afterTestMethod(TestContext testContext) throws Exception {
-        registry(testContext).afterTestMethod(testContext);
-
-        Set<TestProcess> methodAnnotations = AnnotatedElementUtils.findAllMergedAnnotations(testContext.getTestMethod(),
-            TestProcess.class);
-        Set<TestProcess> classAnnotations = AnnotatedElementUtils.findAllMergedAnnotations(testContext.getTestClass(),
-            TestProcess.class);
-
-        methodAnnotations.forEach(annotation -> {
-            if (StopStrategy.STOP_AFTER_TEST.equals(annotation.stopStrategy())) {
-                executeWithBeanResolution(testContext, annotation, registry(testContext)::stop);
-            }
-        });
-        classAnnotations.forEach(annotation -> {
-            if (StopStrategy.STOP_AFTER_TEST.equals(annotation.stopStrategy())) {
-                executeWithBeanResolution(testContext, annotation, registry(testContext)::stop);
+        registry(testContext).afterTestMethod();
+
+        @SuppressWarnings("unchecked")
+        List<TestProcessLease> leases = (List<TestProcessLease>) testContext.removeAttribute(LEASES_ATTRIBUTE);
+        try {
+            if (leases != null) {
+                // Release method annotation leases first, then class
+                // annotation leases
+                for (int i = leases.size() - 1; i >= 0; i--) {
+                    leases.get(i).release();
+                }
             }
-        });
-    }
-
-    private void executeWithBeanResolution(TestContext testContext, TestProcess annotation,
-        Consumer<TestProcessDefinitionBy<?>> withReference) {
-
-        Optional<Class<? extends TestProcessDefinition>> beanClass = beanClass(annotation);
-        if (beanClass.isPresent() && StringUtils.hasText(annotation.beanName())) {
-            throw new IllegalArgumentException("Invalid @TestProcess annotation found in type "
-                + testContext.getTestClass().getName()
-                + ": either beanClass or beanName should be declared, not both.");
-        }
-        if (beanClass.isEmpty() && !StringUtils.hasText(annotation.beanName())) {
-            throw new IllegalArgumentException("Invalid @TestProcess annotation found in type "
-                + testContext.getTestClass().getName() + ": either beanClass or beanName must be specified.");
+        } finally {
+            registry(testContext).endTestTimeBudget();
         }
+    }
 
-        if (beanClass.isPresent()) {
-            withReference.accept(TestProcessDefinitionBy.clazz(beanClass.get()));
-        } else {
-            withReference.accept(TestProcessDefinitionBy.beanName(annotation.beanName()));
+    private static Set<TestProcess> prestartAnnotations(Class<?> testClass) {
+        Set<TestProcess> annotations = new LinkedHashSet<>(
+            AnnotatedElementUtils.findMergedRepeatableAnnotations(testClass, TestProcess.class));
+        for (Method method : ReflectionUtils.getUniqueDeclaredMethods(testClass)) {
+            annotations.addAll(AnnotatedElementUtils.findMergedRepeatableAnnotations(method, TestProcess.class));
         }
+        annotations.removeIf(annotation -> !annotation.prestart()
+            || !StartStrategy.USE_EXISTING.equals(annotation.startStrategy()) || annotation.replicas() != 1);
+        return annotations;
     }
 
-    private Optional<Class<? extends TestProcessDefinition>> beanClass(TestProcess annotation) {
-        if (!VoidTestProcessDefinition.class.equals(annotation.beanClass())) {
-            return Optional.of(annotation.beanClass());
-        } else if (!VoidTestProcessDefinition.class.equals(annotation.value())) {
-            return Optional.of(annotation.value());
-        } else {
-            return Optional.empty();
+    private List<TestProcessLease> acquire(TestContext testContext, TestProcess annotation) {
+        if (annotation.replicas() != 1) {
+            return TestProcessAnnotations.acquireReplicas(registry(testContext), annotation,
+                testContext.getTestClass());
         }
+        return List.of(registry(testContext).acquire(
+            TestProcessAnnotations.reference(annotation, testContext.getTestClass()), annotation.startStrategy(),
+            annotation.stopStrategy()));
     }
 
     private TestProcessesRegistry registry(TestContext testContext) {
@@ -4,13 +4,29 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.io.UncheckedIOException;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
 import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
 import java.util.function.BiFunction;
+import java.util.function.Supplier;
 import java.util.stream.Collectors;
 
 import org.slf4j.Logger;
@@ -18,9 +34,9 @@ import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.context.ApplicationContext;
 import org.springframework.stereotype.Component;
-import org.springframework.test.context.TestContext;
 
 import io.github.netmikey.testprocesses.eventdetector.EventDetector;
+import io.github.netmikey.testprocesses.utils.BackgroundThreads;
 import io.github.netmikey.testprocesses.utils.StreamPrintingUtils;
 import io.github.netmikey.testprocesses.utils.StreamStart;
 import jakarta.annotation.PostConstruct;
@@ -28,22 +44,99 @@ import jakarta.annotation.PreDestroy;
 
 /**
  * A registry that holds all defined processes.
+ * <p>
+ * The registry is safe to be used by tests running in parallel: starting and
+ * stopping processes is serialized per process identifier, while looking up
+ * running processes doesn't require any locking. Tests sharing a process can
+ * hold a {@link TestProcessLease} on it to make sure other tests don't stop or
+ * restart it while they still need it.
+ * <p>
+ * Starting, stopping and waiting for events on processes is also available as
+ * asynchronous operations returning {@link CompletableFuture}s, which are
+ * executed using the registry's {@link #setExecutor(Executor) executor}.
+ * <p>
+ * Within a Spring test context, the registry is a bean that picks up all
+ * {@link TestProcessDefinition} beans of the context. Without Spring, the
+ * {@link TestProcessesExtension} creates the registry and registers the
+ * definitions using {@link #registerDefinition(String, TestProcessDefinition)}.
  */
 @Component
 public class TestProcessesRegistry {
 
     private static final Logger LOG = LoggerFactory.getLogger(TestProcessesRegistry.class);
 
-    @Autowired
+    private static final int LOCK_STRIPES = 64;
+
+    private static final ProcessTable JVM_WIDE_PROCESS_TABLE = new ProcessTable();
+
+    private static final ThreadLocal<List<TestProcessDefinitionBy<?>>> PRESTART_ON_INITIALIZATION =
+        new ThreadLocal<>();
+
+    @Autowired(required = false)
     private ApplicationContext applicationContext;
 
-    private Map<String, TestProcessDefinition> testProcessDefinitionBeans;
+    private Map<String, TestProcessDefinition> testProcessDefinitionBeans = new ConcurrentHashMap<>();
+
+    private final ProcessFleets fleets = new ProcessFleets(this);
+
+    private volatile ProcessTable processTable = new ProcessTable();
+
+    private final ExecutorService defaultExecutor = BackgroundThreads.newExecutor("testprocesses-");
+
+    private volatile Executor executor = defaultExecutor;
+
+    private volatile long shutdownTimeoutMillis = 30000;
+
+    private long testTimeBudgetMillis = 0;
+
+    private ShutdownMode shutdownMode = ShutdownMode.GRACEFUL;
+
+    private volatile long fastShutdownGracePeriodMillis = 2000;
+
+    private boolean shutdownHookEnabled = true;
+
+    private final ProcessShutdown processShutdown = new ProcessShutdown(this);
+
+    private final StartupRetries startupRetries = new StartupRetries(this);
+
+    private final AtomicBoolean shutDown = new AtomicBoolean(false);
+
+    private boolean processLedgerEnabled = false;
 
-    private Map<String, RunningTestProcess<?>> runningProcesses = new ConcurrentHashMap<>();
+    private Path processLedgerDirectory = ProcessLedger.defaultDirectory();
+
+    private Path sharedProcessesDirectory = SharedProcesses.defaultDirectory();
+
+    private boolean launcherProcess = false;
+
+    private boolean cpuPartitioning = false;
+
+    private int testJvmCpuCount = 1;
+
+    private int cpusPerProcess = 1;
+
+    private boolean watchdog = false;
+
+    private long watchdogIntervalMillis = 5000;
+
+    private int watchdogMaxRestartAttempts = 3;
+
+    private volatile ProcessWatchdog processWatchdog;
+
+    /**
+     * Default constructor.
+     */
+    public TestProcessesRegistry() {
+        processTable.register(this);
+    }
 
     /**
      * Look up the {@link TestProcessDefinition} and start it using the
      * specified {@link StartStrategy}.
+     * <p>
+     * If starting the process requires stopping a running process that other
+     * tests hold a {@link TestProcessLease} on, this method blocks until those
+     * leases have been released.
      * 
      * @param processDefinitionBy
      *            The reference to the {@link TestProcessDefinition} to be
@@ -55,21 +148,207 @@ public class TestProcessesRegistry {
      */
     public <T extends TestProcessDefinition> void start(TestProcessDefinitionBy<T> processDefinitionBy,
         StartStrategy startStrategy) {
+        awaitUninterruptedByTimeout(startAsync(processDefinitionBy, startStrategy, blockingExecutor()));
+    }
+
+    /**
+     * Look up the {@link TestProcessDefinition} and start it using the
+     * specified {@link StartStrategy} asynchronously, using the registry's
+     * {@link #setExecutor(Executor) executor}.
+     * <p>
+     * The process is started on behalf of the calling test: it is treated
+     * exactly like a call to {@link #start(TestProcessDefinitionBy, StartStrategy)}
+     * from the calling thread would be.
+     * 
+     * @param processDefinitionBy
+     *            The reference to the {@link TestProcessDefinition} to be
+     *            started.
+     * @param startStrategy
+     *            The {@link StartStrategy} to be used.
+     * @param <T>
+     *            The concrete type of the {@link TestProcessDefinition}.
+     * @return A {@link CompletableFuture} that completes with the
+     *         {@link RunningTestProcess} once it has been started and its
+     *         startup detector has finished waiting.
+     */
+    public <T extends TestProcessDefinition> CompletableFuture<RunningTestProcess<T>> startAsync(
+        TestProcessDefinitionBy<T> processDefinitionBy, StartStrategy startStrategy) {
+
+        return startAsync(processDefinitionBy, startStrategy, executor);
+    }
+
+    private <T extends TestProcessDefinition> CompletableFuture<RunningTestProcess<T>> startAsync(
+        TestProcessDefinitionBy<T> processDefinitionBy, StartStrategy startStrategy, Executor operationExecutor) {
+
+        return supplyAsTest(() -> {
+            T newDefinition = retrieve(processDefinitionBy);
+            Object owner = CurrentTest.key();
+            return withProcessLock(newDefinition.getProcessIdentifier(), () -> {
+                awaitLeaseAvailability(newDefinition, startStrategy, owner);
+                return doStart(newDefinition, startStrategy);
+            });
+        }, operationExecutor);
+    }
+
+    /**
+     * Look up the {@link TestProcessDefinition}, start it using the specified
+     * {@link StartStrategy} and acquire a {@link TestProcessLease} on it for
+     * the current test.
+     * <p>
+     * The lease guarantees that other tests won't stop or restart the process
+     * until it is released. Stop requests by other tests are deferred until
+     * the last lease on the process has been released. Restart requests by
+     * other tests block until then.
+     * <p>
+     * When using {@link StartStrategy#REQUIRE_RESTART}, the acquired lease is
+     * exclusive: this method blocks until no other test holds a lease on the
+     * process anymore, then restarts the process. Until the exclusive lease is
+     * released, other tests trying to acquire a lease on the process block.
+     * 
+     * @param processDefinitionBy
+     *            The reference to the {@link TestProcessDefinition} to be
+     *            started.
+     * @param startStrategy
+     *            The {@link StartStrategy} to be used.
+     * @param stopStrategy
+     *            The {@link StopStrategy} to be applied when the lease is
+     *            released.
+     * @param <T>
+     *            The concrete type of the {@link TestProcessDefinition}.
+     * @return The acquired {@link TestProcessLease}. It must be released once
+     *         the test doesn't need the process anymore.
+     */
+    public <T extends TestProcessDefinition> TestProcessLease acquire(TestProcessDefinitionBy<T> processDefinitionBy,
+        StartStrategy startStrategy, StopStrategy stopStrategy) {
+
         T newDefinition = retrieve(processDefinitionBy);
+        String processIdentifier = newDefinition.getProcessIdentifier();
+        Object owner = CurrentTest.key();
+        boolean exclusive = StartStrategy.REQUIRE_RESTART.equals(startStrategy);
+
+        return withProcessLock(processIdentifier, () -> {
+            awaitLeaseAvailability(newDefinition, startStrategy, owner);
+            Leases processLeases = processTable.leases.computeIfAbsent(processIdentifier, id -> new Leases());
+            processLeases.add(owner, exclusive);
+            try {
+                doStart(newDefinition, startStrategy);
+            } catch (RuntimeException e) {
+                processLeases.remove(owner, exclusive);
+                leasesChanged(processIdentifier);
+                throw e;
+            }
+            return new TestProcessLease(this, processIdentifier, owner, exclusive, stopStrategy);
+        });
+    }
+
+    /**
+     * Start the {@link TestProcessDefinition} in the background using
+     * {@link StartStrategy#USE_EXISTING}, ahead of the test that will need it.
+     * The pre-start holds the process' lock while starting it, so a test
+     * starting the process in the meantime waits for the pre-start to finish
+     * and uses the started process. If the pre-start fails, the test's own
+     * start tries again and reports the failure.
+     * 
+     * @param processDefinitionBy
+     *            The reference to the {@link TestProcessDefinition} to be
+     *            started.
+     * @throws UnknownTestProcessDefinitionException
+     *             If the definition can't be found.
+     * @throws TooManyTestProcessDefinitionsException
+     *             If the reference matches multiple definitions.
+     */
+    void prestart(TestProcessDefinitionBy<?> processDefinitionBy) {
+        String processIdentifier = retrieve(processDefinitionBy).getProcessIdentifier();
+        LOG.debug("Pre-starting test process {} in the background", processIdentifier);
+        // The pre-start isn't done on behalf of any test
+        CurrentTest.callAs(new Object(), () -> startAsync(processDefinitionBy, StartStrategy.USE_EXISTING))
+            .whenComplete((runningProcess, e) -> {
+                if (e != null) {
+                    LOG.debug("Pre-starting test process {} failed, it will be started again when needed: {}",
+                        processIdentifier, e.getMessage());
+                }
+            });
+    }
+
+    /**
+     * Pre-start the specified definitions as soon as the next registry
+     * created by the current thread has been initialized, i.e. while the rest
+     * of its test context is being created. Invoked by the
+     * {@link TestProcessesListener} before the test context of a test class is
+     * loaded.
+     * 
+     * @param processDefinitionBys
+     *            The references to the {@link TestProcessDefinition}s to be
+     *            pre-started, or <code>null</code> to discard pending
+     *            pre-starts.
+     */
+    static void prestartOnInitialization(List<TestProcessDefinitionBy<?>> processDefinitionBys) {
+        if (processDefinitionBys != null) {
+            PRESTART_ON_INITIALIZATION.set(processDefinitionBys);
+        } else {
+            PRESTART_ON_INITIALIZATION.remove();
+        }
+    }
+
+    /**
+     * Releases the specified lease. Invoked by
+     * {@link TestProcessLease#release()}.
+     * 
+     * @param lease
+     *            The lease to be released.
+     */
+    void release(TestProcessLease lease) {
+        String processIdentifier = lease.getProcessIdentifier();
+        withProcessLock(processIdentifier, () -> {
+            Leases processLeases = processTable.leases.get(processIdentifier);
+            if (processLeases == null) {
+                // The registry has been shut down in the meantime
+                return;
+            }
+            processLeases.remove(lease.getOwner(), lease.isExclusive());
+            if (StopStrategy.STOP_AFTER_TEST.equals(lease.getStopStrategy())) {
+                processLeases.stopRequested = true;
+            }
+            if (processLeases.holders.isEmpty() && processLeases.stopRequested) {
+                LOG.debug("Last lease on test process {} has been released, stopping it as requested.",
+                    processIdentifier);
+                doStop(processIdentifier);
+            }
+            removeIfUnused(processIdentifier);
+            leasesChanged(processIdentifier);
+        });
+    }
+
+    private <T extends TestProcessDefinition> RunningTestProcess<T> doStart(T newDefinition,
+        StartStrategy startStrategy) {
+
         String processIdentifier = newDefinition.getProcessIdentifier();
         RunningTestProcess<T> newRunningProcess = new RunningTestProcess<>(newDefinition);
+        TimeBudget.checkNotExhausted(() -> "about to start test process " + processIdentifier);
+
+        startupRetries.checkFailedStartup(newDefinition, startStrategy);
 
         boolean needsStart = true;
+        RunningTestProcess<?> retiredProcess = null;
         // Check if a process with the same identifier is already running
-        if (runningProcesses.containsKey(processIdentifier)) {
-            RunningTestProcess<?> runningProcess = runningProcesses.get(processIdentifier);
-            if (newRunningProcess.getDefinition().equals(runningProcess.getDefinition()) && isRunning(runningProcess)
+        RunningTestProcess<?> runningProcess = processTable.runningProcesses.get(processIdentifier);
+        if (runningProcess != null) {
+            if (isSameDefinition(newDefinition, runningProcess.getDefinition()) && isRunning(runningProcess)
                 && StartStrategy.USE_EXISTING.equals(startStrategy)) {
 
                 LOG.debug("Not starting test process of definition class {} with identifier '{}' because it is "
                     + "already running and StartStrategy {} is used.",
                     newRunningProcess.getDefinition().getClass().getName(), processIdentifier, startStrategy);
+                @SuppressWarnings("unchecked")
+                RunningTestProcess<T> existingRunningProcess = (RunningTestProcess<T>) runningProcess;
+                newRunningProcess = existingRunningProcess;
                 needsStart = false;
+            } else if (isOverlappingRestart(newRunningProcess, runningProcess)) {
+                LOG.info("Starting test process {} side by side with the running one, which will be stopped once the "
+                    + "new one has started up.", processIdentifier);
+                retiredProcess = runningProcess.getDefinition() == newDefinition
+                    ? new RunningTestProcess<>(((AbstractTestProcessDefinition) newDefinition).retire())
+                    : runningProcess;
             } else {
                 if (isRunning(runningProcess)) {
                     LOG.info("First stopping running test process with definition {} because test process definition "
@@ -88,27 +367,200 @@ public class TestProcessesRegistry {
             LOG.info("Starting test process with identifier {} of definition type {}",
                 newRunningProcess.getDefinition().getProcessIdentifier(),
                 newRunningProcess.getDefinition().getClass().getName());
-            runningProcesses.put(processIdentifier, newRunningProcess);
-            newRunningProcess.getDefinition().start();
+            processShutdown.registerHook();
+            if (isSharedAcrossJvms(newRunningProcess)) {
+                RunningTestProcess<T> sharedRunningProcess = newRunningProcess;
+                sharedProcesses().acquire((AbstractTestProcessDefinition) newDefinition,
+                    () -> launch(sharedRunningProcess, null));
+                processTable.runningProcesses.put(processIdentifier, newRunningProcess);
+            } else {
+                if (isJvmWideProcessTable() && newDefinition instanceof AbstractTestProcessDefinition) {
+                    // Fingerprint what is launched, not what other contexts might find later on
+                    ((AbstractTestProcessDefinition) newDefinition).cachedFingerprint();
+                }
+                try {
+                    launch(newRunningProcess, processLedger());
+                } finally {
+                    if (retiredProcess != null) {
+                        retire(retiredProcess);
+                    }
+                }
+            }
+        }
+        return newRunningProcess;
+    }
 
-            try {
-                newRunningProcess.getDefinition().getStartupDetector().waitForEvent(newRunningProcess);
-            } catch (TimeoutException e) {
-                LOG.warn("Timeout while waiting for process " + newRunningProcess.getDefinition().getProcessIdentifier()
-                    + " to finish starting up. The process may not have started correctly. " + e.getMessage());
+    private boolean isOverlappingRestart(RunningTestProcess<?> newRunningProcess,
+        RunningTestProcess<?> runningProcess) {
+
+        return newRunningProcess.getDefinition() instanceof AbstractTestProcessDefinition
+            && ((AbstractTestProcessDefinition) newRunningProcess.getDefinition()).isOverlappingRestart()
+            && isRunning(runningProcess)
+            && isOsProcess(managedProcess(runningProcess))
+            && !isSharedAcrossJvms(runningProcess)
+            && !isSharedAcrossJvms(newRunningProcess);
+    }
+
+    /**
+     * Tears down a process that has been replaced by an overlapping restart in
+     * the background.
+     */
+    private void retire(RunningTestProcess<?> retiredProcess) {
+        CompletableFuture<Void> teardown = CompletableFuture.runAsync(() -> destroy(retiredProcess), executor);
+        processTable.retiringProcesses.put(retiredProcess, teardown);
+        teardown.whenComplete((result, e) -> {
+            processTable.retiringProcesses.remove(retiredProcess, teardown);
+            if (e != null) {
+                LOG.warn("Error while stopping replaced test process "
+                    + retiredProcess.getDefinition().getProcessIdentifier() + ": " + e.getMessage(), e);
+            }
+        });
+        stopCompleted(retiredProcess.getDefinition().getProcessIdentifier());
+    }
+
+    private void launch(RunningTestProcess<?> runningProcess, ProcessLedger ledger) {
+        TimeBudget.spend(runningProcess.getDefinition().getProcessIdentifier(),
+            () -> startupRetries.launch(runningProcess, ledger));
+        if (watchdog && !isSharedAcrossJvms(runningProcess)) {
+            processWatchdog().watch(runningProcess);
+        }
+    }
+
+    /**
+     * Launch the specified process once on behalf of the
+     * {@link StartupRetries}, without waiting for it to start up.
+     * 
+     * @param runningProcess
+     *            The process to be launched.
+     * @param ledger
+     *            The ledger to record the process in, or <code>null</code>.
+     */
+    void launchAttempt(RunningTestProcess<?> runningProcess, ProcessLedger ledger) {
+        TestProcessDefinition definition = runningProcess.getDefinition();
+        Optional<CpuPartitioner> partitioner = cpuPartitioner(definition);
+        String cpus = partitioner.map(CpuPartitioner::allocate).orElse(null);
+        try {
+            ProcessLauncher.runWith(processLauncher(), () -> CpuPartitioner.runWith(cpus, definition::start));
+        } finally {
+            Process managedProcess = managedProcess(runningProcess);
+            if (partitioner.isPresent() && managedProcess != null) {
+                managedProcess.onExit().thenRun(() -> partitioner.get().release(cpus));
+            } else {
+                partitioner.ifPresent(p -> p.release(cpus));
             }
         }
+        processTable.runningProcesses.put(runningProcess.getDefinition().getProcessIdentifier(), runningProcess);
+        if (ledger != null) {
+            ledger.record(runningProcess);
+        }
+    }
+
+    private synchronized ProcessWatchdog processWatchdog() {
+        if (processWatchdog == null) {
+            processWatchdog = new ProcessWatchdog(this, executor, watchdogIntervalMillis,
+                watchdogMaxRestartAttempts);
+        }
+        return processWatchdog;
+    }
+
+    /**
+     * Get the processes the {@link ProcessWatchdog} checks periodically.
+     * Processes shared across JVMs are managed by the JVM that launched them.
+     *
+     * @return The running processes.
+     */
+    List<RunningTestProcess<?>> watchedProcesses() {
+        return processTable.runningProcesses.values().stream()
+            .filter(runningProcess -> runningProcess.getDefinition() instanceof AbstractTestProcessDefinition)
+            .filter(runningProcess -> !isSharedAcrossJvms(runningProcess))
+            .collect(Collectors.toList());
+    }
+
+    /**
+     * Restart the specified unhealthy process on behalf of the
+     * {@link ProcessWatchdog}, unless it has been stopped or replaced in the
+     * meantime or a test holds a lease on it.
+     *
+     * @param runningProcess
+     *            The unhealthy process.
+     * @return The restarted process, or an empty optional if it hasn't been
+     *         restarted.
+     */
+    Optional<RunningTestProcess<?>> restartByWatchdog(RunningTestProcess<?> runningProcess) {
+        TestProcessDefinition definition = runningProcess.getDefinition();
+        String processIdentifier = definition.getProcessIdentifier();
+        return withProcessLock(processIdentifier, () -> {
+            Leases processLeases = processTable.leases.get(processIdentifier);
+            if (shutDown.get() || processTable.runningProcesses.get(processIdentifier) != runningProcess
+                || !TestProcessState.STARTED.equals(definition.getRequestedState())
+                || (processLeases != null && (!processLeases.holders.isEmpty() || processLeases.stopRequested))) {
+                return Optional.empty();
+            }
+            return Optional.of(doStart(definition, StartStrategy.REQUIRE_RESTART));
+        });
     }
 
     /**
      * Look up the {@link TestProcessDefinition} bean and stop it.
+     * <p>
+     * If other tests hold a {@link TestProcessLease} on the process, stopping
+     * it is deferred until the last of those leases has been released.
      * 
      * @param processDefinitionBy
      *            The reference to the {@link TestProcessDefinition} bean to be
      *            stopped.
      */
     public void stop(TestProcessDefinitionBy<?> processDefinitionBy) {
-        doStop(retrieve(processDefinitionBy).getProcessIdentifier());
+        awaitUninterruptedByTimeout(stopAsync(processDefinitionBy, blockingExecutor()));
+    }
+
+    /**
+     * Look up the {@link TestProcessDefinition} bean and stop it
+     * asynchronously, using the registry's {@link #setExecutor(Executor)
+     * executor}.
+     * <p>
+     * If other tests hold a {@link TestProcessLease} on the process, stopping
+     * it is deferred until the last of those leases has been released.
+     * 
+     * @param processDefinitionBy
+     *            The reference to the {@link TestProcessDefinition} bean to be
+     *            stopped.
+     * @param <T>
+     *            The concrete type of the {@link TestProcessDefinition}.
+     * @return A {@link CompletableFuture} that completes with the stopped
+     *         {@link RunningTestProcess} once its shutdown detector has
+     *         finished waiting. It completes with <code>null</code> if the
+     *         process wasn't running or if stopping it has been deferred.
+     */
+    public <T extends TestProcessDefinition> CompletableFuture<RunningTestProcess<T>> stopAsync(
+        TestProcessDefinitionBy<T> processDefinitionBy) {
+
+        return stopAsync(processDefinitionBy, executor);
+    }
+
+    private <T extends TestProcessDefinition> CompletableFuture<RunningTestProcess<T>> stopAsync(
+        TestProcessDefinitionBy<T> processDefinitionBy, Executor operationExecutor) {
+
+        return supplyAsTest(() -> {
+            T definition = retrieve(processDefinitionBy);
+            boolean requiresIdentityCheck = processDefinitionBy.getClazz().isEmpty();
+            String processIdentifier = definition.getProcessIdentifier();
+            Object owner = CurrentTest.key();
+            return withProcessLock(processIdentifier, () -> {
+                Leases processLeases = processTable.leases.get(processIdentifier);
+                if (processLeases != null && processLeases.isHeldByOthersThan(owner)) {
+                    LOG.debug("Deferring stop of test process {} until all other tests have released their leases on "
+                        + "it.", processIdentifier);
+                    processLeases.stopRequested = true;
+                    return null;
+                }
+                RunningTestProcess<T> stoppedProcess = retrieveRunningProcessByProcessDefinition(definition,
+                    requiresIdentityCheck).orElse(null);
+                doStop(processIdentifier);
+                leasesChanged(processIdentifier);
+                return stoppedProcess;
+            });
+        }, operationExecutor);
     }
 
     /**
@@ -126,8 +578,47 @@ public class TestProcessesRegistry {
     public void waitForEventOn(TestProcessDefinitionBy<?> testProcessDefinitionBy, EventDetector eventDetector)
         throws TimeoutException {
 
-        RunningTestProcess<?> runningTestProcess = retrieveRunningProcessOrElseThrow(testProcessDefinitionBy);
-        eventDetector.waitForEvent(runningTestProcess);
+        await(waitForEventAsync(testProcessDefinitionBy, eventDetector, blockingExecutor()));
+    }
+
+    /**
+     * Uses an {@link EventDetector} to wait for an event on the referenced test
+     * process asynchronously, using the registry's
+     * {@link #setExecutor(Executor) executor}.
+     * 
+     * @param testProcessDefinitionBy
+     *            The reference to the {@link TestProcessDefinition}.
+     * @param eventDetector
+     *            The {@link EventDetector} to be used.
+     * @param <T>
+     *            The concrete type of the {@link TestProcessDefinition}.
+     * @return A {@link CompletableFuture} that completes with the
+     *         {@link RunningTestProcess} once the event has occurred. It
+     *         completes exceptionally with a {@link TimeoutException} if the
+     *         {@link EventDetector}'s configured timeout occurs before the
+     *         event has occurred.
+     */
+    public <T extends TestProcessDefinition> CompletableFuture<RunningTestProcess<T>> waitForEventAsync(
+        TestProcessDefinitionBy<T> testProcessDefinitionBy, EventDetector eventDetector) {
+
+        return waitForEventAsync(testProcessDefinitionBy, eventDetector, executor);
+    }
+
+    private <T extends TestProcessDefinition> CompletableFuture<RunningTestProcess<T>> waitForEventAsync(
+        TestProcessDefinitionBy<T> testProcessDefinitionBy, EventDetector eventDetector,
+        Executor operationExecutor) {
+
+        return supplyAsTest(() -> {
+            RunningTestProcess<T> runningTestProcess = retrieveRunningProcessOrElseThrow(testProcessDefinitionBy);
+            return TimeBudget.spend(runningTestProcess.getDefinition().getProcessIdentifier(), () -> {
+                try {
+                    eventDetector.waitForEvent(runningTestProcess);
+                } catch (TimeoutException e) {
+                    throw new CompletionException(e);
+                }
+                return runningTestProcess;
+            });
+        }, operationExecutor);
     }
 
     /**
@@ -226,25 +717,160 @@ public class TestProcessesRegistry {
     }
 
     /**
-     * Intentionally package-visible test-lifecycle method, invoked by the
-     * {@link TestProcessesListener}.
+     * Start all replicas of the specified fleet using the specified
+     * {@link StartStrategy}, at most the fleet's
+     * {@link TestProcessFleet#withStartConcurrency(int) start concurrency} at
+     * a time.
      * 
-     * @param testContext
-     *            The {@link TestContext}.
+     * @param fleet
+     *            The fleet to be started.
+     * @param startStrategy
+     *            The {@link StartStrategy} to be used.
+     * @param <T>
+     *            The concrete type of the replicas' definitions.
+     * @return The started replicas, ordered by their index.
      */
-    void beforeTestMethod(TestContext testContext) {
-        runningProcesses.forEach((processIdentifier, runningProcess) -> runningProcess.onTestStart());
+    public <T extends TestProcessDefinition> List<RunningTestProcess<T>> start(TestProcessFleet<T> fleet,
+        StartStrategy startStrategy) {
+
+        return awaitUninterruptedByTimeout(startAsync(fleet, startStrategy));
     }
 
     /**
-     * Intentionally package-visible test-lifecycle method, invoked by the
-     * {@link TestProcessesListener}.
+     * Start all replicas of the specified fleet using the specified
+     * {@link StartStrategy} asynchronously, at most the fleet's
+     * {@link TestProcessFleet#withStartConcurrency(int) start concurrency} at
+     * a time.
+     * 
+     * @param fleet
+     *            The fleet to be started.
+     * @param startStrategy
+     *            The {@link StartStrategy} to be used.
+     * @param <T>
+     *            The concrete type of the replicas' definitions.
+     * @return A {@link CompletableFuture} that completes with the started
+     *         replicas, ordered by their index, once all of them have been
+     *         started.
+     */
+    public <T extends TestProcessDefinition> CompletableFuture<List<RunningTestProcess<T>>> startAsync(
+        TestProcessFleet<T> fleet, StartStrategy startStrategy) {
+
+        return fleets.startAsync(fleet, startStrategy);
+    }
+
+    /**
+     * Start all replicas of the specified fleet and acquire a
+     * {@link TestProcessLease} on each of them for the current test, at most
+     * the fleet's {@link TestProcessFleet#withStartConcurrency(int) start
+     * concurrency} at a time. If any of them fails, the leases acquired on the
+     * others are released again.
+     * 
+     * @param fleet
+     *            The fleet to be started.
+     * @param startStrategy
+     *            The {@link StartStrategy} to be used.
+     * @param stopStrategy
+     *            The {@link StopStrategy} to be applied when the leases are
+     *            released.
+     * @return The acquired leases, ordered by the replicas' index. They must
+     *         be released once the test doesn't need the replicas anymore.
+     * @see #acquire(TestProcessDefinitionBy, StartStrategy, StopStrategy)
+     */
+    public List<TestProcessLease> acquire(TestProcessFleet<?> fleet, StartStrategy startStrategy,
+        StopStrategy stopStrategy) {
+
+        return fleets.acquire(fleet, startStrategy, stopStrategy);
+    }
+
+    /**
+     * Stop all replicas of the specified fleet concurrently.
      * 
-     * @param testContext
-     *            The {@link TestContext}.
+     * @param fleet
+     *            The fleet to be stopped.
+     * @see #stop(TestProcessDefinitionBy)
      */
-    void afterTestMethod(TestContext testContext) {
-        runningProcesses.forEach((processIdentifier, runningProcess) -> runningProcess.onTestEnd());
+    public void stop(TestProcessFleet<?> fleet) {
+        awaitUninterruptedByTimeout(fleets.stopAsync(fleet));
+    }
+
+    /**
+     * Uses an {@link EventDetector} to wait for an event on all replicas of the
+     * specified fleet concurrently.
+     * 
+     * @param fleet
+     *            The fleet.
+     * @param eventDetector
+     *            The {@link EventDetector} to be used.
+     * @throws TimeoutException
+     *             Thrown by the {@link EventDetector} if its configured timeout
+     *             occurs on any of the replicas before the event has occurred.
+     */
+    public void waitForEventOn(TestProcessFleet<?> fleet, EventDetector eventDetector) throws TimeoutException {
+        await(fleets.waitForEventAsync(fleet, eventDetector));
+    }
+
+    /**
+     * Reads the current part of the stdOut streams of all replicas of the
+     * specified fleet into strings. Only the part of the streams since the
+     * current test method started will be returned.
+     * 
+     * @param fleet
+     *            The fleet.
+     * @return The current part of each replica's stdOut stream as string, by
+     *         the replicas' process identifiers, ordered by their index.
+     */
+    public Map<String, String> stdOutAsStringOf(TestProcessFleet<?> fleet) {
+        return fleets.stdOutAsStringOf(fleet);
+    }
+
+    /**
+     * Reads the current part of the stdErr streams of all replicas of the
+     * specified fleet into strings. Only the part of the streams since the
+     * current test method started will be returned.
+     * 
+     * @param fleet
+     *            The fleet.
+     * @return The current part of each replica's stdErr stream as string, by
+     *         the replicas' process identifiers, ordered by their index.
+     */
+    public Map<String, String> stdErrAsStringOf(TestProcessFleet<?> fleet) {
+        return fleets.stdErrAsStringOf(fleet);
+    }
+
+    /**
+     * Intentionally package-visible test-lifecycle method, invoked by the
+     * {@link TestProcessesListener} and the {@link TestProcessesExtension}.
+     */
+    void beforeTestMethod() {
+        processTable.runningProcesses.forEach((processIdentifier, runningProcess) -> runningProcess.onTestStart());
+    }
+
+    /**
+     * Intentionally package-visible test-lifecycle method, invoked by the
+     * {@link TestProcessesListener} and the {@link TestProcessesExtension}.
+     */
+    void afterTestMethod() {
+        processTable.runningProcesses.forEach((processIdentifier, runningProcess) -> runningProcess.onTestEnd());
+    }
+
+    /**
+     * Intentionally package-visible test-lifecycle method, invoked by the
+     * {@link TestProcessesListener} and the {@link TestProcessesExtension}
+     * before the current test's test processes are started.
+     */
+    void beginTestTimeBudget() {
+        if (testTimeBudgetMillis > 0) {
+            TimeBudget.begin(CurrentTest.key(), "test method", testTimeBudgetMillis);
+        }
+    }
+
+    /**
+     * Intentionally package-visible test-lifecycle method, invoked by the
+     * {@link TestProcessesListener} and the {@link TestProcessesExtension}
+     * after the current test's leases have been released.
+     */
+    void endTestTimeBudget() {
+        TimeBudget.end(CurrentTest.key());
     }
 
     @SuppressWarnings("unchecked")
@@ -266,7 +892,7 @@ public class TestProcessesRegistry {
             Class<? extends TestProcessDefinition> processDefinition = testProcessDefinitionBy.getClazz().get();
 
             // First, try to find a match within the currently running processes
-            Map<String, T> matchingRunning = runningProcesses.entrySet().stream()
+            Map<String, T> matchingRunning = processTable.runningProcesses.entrySet().stream()
                 .filter(e -> processDefinition.equals(e.getValue().getDefinition().getClass()))
                 .collect(Collectors.toMap(
                     e -> "instance " + e.getValue().getDefinition() + " with identifier "
@@ -318,7 +944,7 @@ public class TestProcessesRegistry {
             String processIdentifier = testProcessDefinitionBy.getProcessIdentifier().get();
 
             // First, try to find a match within the currently running processes
-            Map<String, T> matchingRunning = runningProcesses.entrySet().stream()
+            Map<String, T> matchingRunning = processTable.runningProcesses.entrySet().stream()
                 .filter(p -> processIdentifier.equals(p.getValue().getDefinition().getProcessIdentifier()))
                 .collect(Collectors.toMap(
                     e -> "instance " + e.getValue().getDefinition() + " with identifier "
@@ -405,7 +1031,7 @@ public class TestProcessesRegistry {
      * @return A potentially empty {@link Set} of process identifiers.
      */
     public Set<String> runningProcessIdentifiers() {
-        return new HashSet<>(runningProcesses.keySet());
+        return new HashSet<>(processTable.runningProcesses.keySet());
     }
 
     private <T extends TestProcessDefinition> RunningTestProcess<T> retrieveRunningProcessOrElseThrow(
@@ -429,61 +1055,1258 @@ public class TestProcessesRegistry {
         T definition, boolean identityCheck) {
 
         String processIdentifier = definition.getProcessIdentifier();
-        if (runningProcesses.containsKey(processIdentifier)) {
-            @SuppressWarnings("unchecked")
-            RunningTestProcess<T> runningProcess = (RunningTestProcess<T>) runningProcesses.get(processIdentifier);
+        @SuppressWarnings("unchecked")
+        RunningTestProcess<T> runningProcess = (RunningTestProcess<T>) processTable.runningProcesses
+            .get(processIdentifier);
+        if (runningProcess != null) {
             if ((!identityCheck && definition.getClass().equals(runningProcess.getDefinition().getClass()))
-                || definition.equals(runningProcess.getDefinition())) {
+                || isSameDefinition(definition, runningProcess.getDefinition())) {
                 return Optional.of(runningProcess);
             }
         }
         return Optional.empty();
     }
 
-    private void doStop(String processIdentifier) {
-        RunningTestProcess<?> runningProcess = runningProcesses.get(processIdentifier);
+    void destroy(RunningTestProcess<?> runningProcess) {
+        TimeBudget.spend(runningProcess.getDefinition().getProcessIdentifier(), () -> doDestroy(runningProcess));
+    }
+
+    private void doDestroy(RunningTestProcess<?> runningProcess) {
+        runningProcess.getDefinition().stop();
+        runningProcess.getDefinition().getProcessDestroyer().destroy(runningProcess);
+        try {
+            runningProcess.getDefinition().getShutdownDetector().waitForEvent(runningProcess);
+        } catch (TimeoutException e) {
+            LOG.warn("Timeout while waiting for process " + runningProcess.getDefinition().getProcessIdentifier()
+                + " to finish shutting down. The process may not have stopped correctly. " + e.getMessage());
+        }
+        if (LOG.isTraceEnabled()) {
+            StreamPrintingUtils.printOutAndErrStreams(runningProcess, StreamStart.ABSOLUTE);
+        }
+        if (!isRunning(runningProcess)) {
+            removeFromLedger(runningProcess);
+        }
+    }
+
+    /**
+     * Stops the process with the specified identifier. Must only be called
+     * within {@link #withProcessLock(String, Runnable)} for this identifier.
+     * 
+     * @param processIdentifier
+     *            The identifier of the process to be stopped.
+     * @return Whether the process has been stopped, as opposed to only being
+     *         detached from because other JVMs still use it.
+     */
+    private boolean doStop(String processIdentifier) {
+        RunningTestProcess<?> runningProcess = processTable.runningProcesses.get(processIdentifier);
+        boolean stopped = true;
         if (runningProcess != null) {
-            runningProcess.getDefinition().stop();
-            runningProcess.getDefinition().getProcessDestroyer().destroy(runningProcess);
-            try {
-                runningProcess.getDefinition().getShutdownDetector().waitForEvent(runningProcess);
-            } catch (TimeoutException e) {
-                LOG.warn("Timeout while waiting for process " + runningProcess.getDefinition().getProcessIdentifier()
-                    + " to finish shutting down. The process may not have stopped correctly. " + e.getMessage());
-            }
-            if (LOG.isTraceEnabled()) {
-                StreamPrintingUtils.printOutAndErrStreams(runningProcess, StreamStart.ABSOLUTE);
+            if (isSharedAcrossJvms(runningProcess)) {
+                if (!sharedProcesses().release(processIdentifier, () -> destroy(runningProcess))) {
+                    // Other JVMs still use the process: only detach from it
+                    runningProcess.getDefinition().stop();
+                    stopped = false;
+                }
+            } else {
+                destroy(runningProcess);
             }
         }
-        runningProcesses.remove(processIdentifier);
+        processTable.runningProcesses.remove(processIdentifier);
+        processTable.failedStartups.remove(processIdentifier);
+        stopCompleted(processIdentifier);
+        return stopped;
     }
 
-    private boolean isRunning(RunningTestProcess<?> runningProcess) {
-        return TestProcessState.STARTED.equals(runningProcess.getDefinition().getActualState());
+    private void stopCompleted(String processIdentifier) {
+        Leases processLeases = processTable.leases.get(processIdentifier);
+        if (processLeases != null) {
+            processLeases.stopRequested = false;
+            removeIfUnused(processIdentifier);
+        }
     }
 
-    @PostConstruct
-    private void init() {
-        testProcessDefinitionBeans = applicationContext.getBeansOfType(TestProcessDefinition.class);
+    private void removeIfUnused(String processIdentifier) {
+        processTable.leases.computeIfPresent(processIdentifier,
+            (id, processLeases) -> processLeases.isEmpty() ? null : processLeases);
     }
 
-    @PreDestroy
-    private void shutdown() {
-        if (runningProcesses.size() > 0) {
-            LOG.info("Test context shutting down: Destroying {} running test process{}", runningProcesses.size(),
-                runningProcesses.size() > 1 ? "es" : "");
-        }
+    /**
+     * Blocks until the specified owner may start the specified definition
+     * without interfering with leases held by other tests. Must only be called
+     * within {@link #withProcessLock(String, Supplier)} for the definition's
+     * process identifier.
+     * 
+     * @param definition
+     *            The definition to be started.
+     * @param startStrategy
+     *            The requested {@link StartStrategy}.
+     * @param owner
+     *            The key of the test requesting the start.
+     */
+    private void awaitLeaseAvailability(TestProcessDefinition definition, StartStrategy startStrategy,
+        Object owner) {
+
+        String processIdentifier = definition.getProcessIdentifier();
+        boolean waiting = false;
+        try {
+            while (true) {
+                Leases processLeases = processTable.leases.get(processIdentifier);
+                if (processLeases == null) {
+                    return;
+                }
+                RunningTestProcess<?> runningProcess = processTable.runningProcesses.get(processIdentifier);
+                boolean replacesRunningProcess = runningProcess != null
+                    && (StartStrategy.REQUIRE_RESTART.equals(startStrategy)
+                        || !isSameDefinition(definition, runningProcess.getDefinition()));
+
+                if (processLeases.permits(owner, replacesRunningProcess)) {
+                    return;
+                }
+                if (replacesRunningProcess && !waiting) {
+                    processLeases.exclusiveWaiters.add(owner);
+                    waiting = true;
+                }
+                processTable.leaseWaits.put(owner, new LeaseWait(processIdentifier, replacesRunningProcess));
+                List<String> waitCycle = leaseWaitCycle(owner);
+                if (!waitCycle.isEmpty()) {
+                    throw new IllegalStateException("Test process " + processIdentifier + " cannot be "
+                        + (replacesRunningProcess ? "restarted" : "started") + ": tests holding leases on test "
+                        + "processes " + waitCycle + " are waiting for each other's leases to be released and "
+                        + "would wait forever.");
+                }
+                TimeBudget.checkNotExhausted(() -> "waiting for other tests to release their leases on test process "
+                    + processIdentifier);
+                LOG.debug("Waiting for other tests to release their leases on test process {}.", processIdentifier);
+                Optional<TimeBudget> budget = TimeBudget.current();
+                if (budget.isPresent()) {
+                    leasesChangedCondition(processIdentifier).await(budget.get().getRemainingMillis(),
+                        TimeUnit.MILLISECONDS);
+                } else {
+                    leasesChangedCondition(processIdentifier).await();
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrupted while waiting for other tests to release their leases on test "
+                + "process " + processIdentifier, e);
+        } finally {
+            processTable.leaseWaits.remove(owner);
+            if (waiting) {
+                Leases processLeases = processTable.leases.get(processIdentifier);
+                if (processLeases != null) {
+                    processLeases.exclusiveWaiters.remove(owner);
+                    removeIfUnused(processIdentifier);
+                }
+                leasesChanged(processIdentifier);
+            }
+        }
+    }
+
+    /**
+     * Find a cycle of tests waiting for each other's leases that the specified
+     * owner's current wait is part of: the owner waits for a test process
+     * whose leases are held by tests that, directly or through further waiting
+     * tests, wait for a test process the owner holds a lease on. The leases of
+     * other process identifiers are read without holding their locks, which
+     * is safe because a wait cycle, once formed, doesn't dissolve by itself.
+     *
+     * @param owner
+     *            The key of the waiting test.
+     * @return The process identifiers waited for along the cycle, or an empty
+     *         list if there is no such cycle.
+     */
+    private List<String> leaseWaitCycle(Object owner) {
+        Deque<String> path = new ArrayDeque<>();
+        if (isInLeaseWaitCycle(owner, owner, new HashSet<>(), path)) {
+            return new ArrayList<>(new LinkedHashSet<>(path));
+        }
+        return List.of();
+    }
+
+    private boolean isInLeaseWaitCycle(Object waiter, Object owner, Set<Object> visited, Deque<String> path) {
+        LeaseWait wait = processTable.leaseWaits.get(waiter);
+        if (wait == null || !visited.add(waiter)) {
+            return false;
+        }
+        Leases processLeases = processTable.leases.get(wait.processIdentifier);
+        if (processLeases == null) {
+            return false;
+        }
+        path.addLast(wait.processIdentifier);
+        for (Object blocker : processLeases.blockers(waiter, wait.replacesRunningProcess)) {
+            if (blocker.equals(owner) || isInLeaseWaitCycle(blocker, owner, visited, path)) {
+                return true;
+            }
+        }
+        path.removeLast();
+        return false;
+    }
+
+    /**
+     * Executes the specified action while holding the lock for the specified
+     * process identifier. Locks are striped: all actions on the same process
+     * identifier are serialized, actions on different identifiers only
+     * rarely contend.
+     * 
+     * @param processIdentifier
+     *            The process identifier.
+     * @param action
+     *            The action to be executed.
+     * @param <V>
+     *            The action's result type.
+     * @return The action's result.
+     */
+    private <V> V withProcessLock(String processIdentifier, Supplier<V> action) {
+        ReentrantLock lock = processLock(processIdentifier);
+        lock.lock();
+        try {
+            // Wait while a start of the process backs off before retrying, having released the lock
+            while (processTable.backingOff.contains(processIdentifier)) {
+                try {
+                    leasesChangedCondition(processIdentifier).await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new RuntimeException("Interrupted while waiting for test process " + processIdentifier
+                        + " to be started", e);
+                }
+            }
+            return action.get();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void withProcessLock(String processIdentifier, Runnable action) {
+        withProcessLock(processIdentifier, () -> {
+            action.run();
+            return null;
+        });
+    }
+
+    private int lockStripe(String processIdentifier) {
+        return Math.floorMod(processIdentifier.hashCode(), processTable.processLocks.length);
+    }
+
+    /**
+     * Get the lock guarding the specified process identifier.
+     * 
+     * @param processIdentifier
+     *            The process identifier.
+     * @return The lock of the identifier's stripe.
+     * @see #withProcessLock(String, Supplier)
+     */
+    ReentrantLock processLock(String processIdentifier) {
+        return processTable.processLocks[lockStripe(processIdentifier)];
+    }
+
+    /**
+     * Get the condition signalled when the leases on the specified process
+     * identifier have changed.
+     * 
+     * @param processIdentifier
+     *            The process identifier.
+     * @return The condition of the identifier's stripe.
+     */
+    Condition leasesChangedCondition(String processIdentifier) {
+        return processTable.leasesChanged[lockStripe(processIdentifier)];
+    }
+
+    /**
+     * Wake up the tests waiting for the leases on the specified process
+     * identifier to change. Must be called holding its process lock.
+     * 
+     * @param processIdentifier
+     *            The process identifier.
+     */
+    void leasesChanged(String processIdentifier) {
+        leasesChangedCondition(processIdentifier).signalAll();
+    }
+
+    /**
+     * Runs the specified action on the specified executor on behalf of the
+     * calling test.
+     */
+    private static <V> CompletableFuture<V> supplyAsTest(Supplier<V> action, Executor operationExecutor) {
+        Object testKey = CurrentTest.key();
+        return CompletableFuture.supplyAsync(() -> CurrentTest.callAs(testKey, action), operationExecutor);
+    }
+
+    /**
+     * Blocking operations run on the calling thread, which would only wait for
+     * them otherwise, unless a custom executor has been set to bound the
+     * number of concurrent operations.
+     */
+    private Executor blockingExecutor() {
+        Executor operationExecutor = executor;
+        return operationExecutor == defaultExecutor ? Runnable::run : operationExecutor;
+    }
+
+    /**
+     * Blocks until the specified future completes and unwraps the exception
+     * it may have completed with.
+     */
+    private static <V> V await(CompletableFuture<V> future) throws TimeoutException {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrupted while waiting for test process operation to complete", e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof TimeoutException) {
+                throw (TimeoutException) cause;
+            } else if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            } else if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new RuntimeException("Error during test process operation: " + cause.getMessage(), cause);
+        }
+    }
+
+    static <V> V awaitUninterruptedByTimeout(CompletableFuture<V> future) {
+        try {
+            return await(future);
+        } catch (TimeoutException e) {
+            throw new IllegalStateException("Unexpected timeout during test process operation: " + e.getMessage(), e);
+        }
+    }
+
+    boolean isRunning(RunningTestProcess<?> runningProcess) {
+        return TestProcessState.STARTED.equals(runningProcess.getDefinition().getActualState());
+    }
+
+    /**
+     * Get the executor used for asynchronous operations.
+     * 
+     * @return Returns the executor.
+     */
+    public Executor getExecutor() {
+        return executor;
+    }
+
+    /**
+     * Set the executor used for asynchronous operations like
+     * {@link #startAsync(TestProcessDefinitionBy, StartStrategy)}. By default,
+     * a new virtual thread is used for each operation on Java 21 and later, a
+     * cached pool of daemon threads on older Java versions, and the blocking
+     * operations run on the calling thread. Once an executor has been set, the
+     * blocking operations are executed using it, too, so a bounded executor
+     * limits the number of test processes being started or stopped at the
+     * same time.
+     * 
+     * @param executor
+     *            The executor to set.
+     */
+    public void setExecutor(Executor executor) {
+        this.executor = executor;
+    }
+
+    /**
+     * Get the shutdownTimeoutMillis.
+     * 
+     * @return Returns the shutdownTimeoutMillis.
+     */
+    public long getShutdownTimeoutMillis() {
+        return shutdownTimeoutMillis;
+    }
+
+    /**
+     * Set the time in milliseconds the registry waits for all running test
+     * processes to stop when the test context shuts down. Running processes
+     * are stopped concurrently. Processes that haven't stopped once this
+     * timeout has passed are destroyed forcibly, along with all of their
+     * descendants. The timeout is a {@link TimeBudget} shared by all shutdown
+     * detectors and process destroyers involved.
+     * 
+     * @param shutdownTimeoutMillis
+     *            The shutdownTimeoutMillis to set.
+     */
+    public void setShutdownTimeoutMillis(long shutdownTimeoutMillis) {
+        this.shutdownTimeoutMillis = shutdownTimeoutMillis;
+    }
+
+    /**
+     * Get the testTimeBudgetMillis.
+     * 
+     * @return Returns the testTimeBudgetMillis.
+     */
+    public long getTestTimeBudgetMillis() {
+        return testTimeBudgetMillis;
+    }
+
+    /**
+     * Set the {@link TimeBudget} in milliseconds for the test processes of a
+     * single test method: starting the test processes it declares, waiting for
+     * other tests' leases, waiting for events and stopping the processes
+     * after the test all share this budget, regardless of the timeouts of the
+     * individual event detectors and process destroyers. Once the budget has
+     * run out, the test fails with a {@link TimeBudgetExhaustedException}
+     * telling which test processes consumed it. The budget is unlimited by
+     * default (<code>0</code>).
+     * <p>
+     * The shutdown of the test context gets its own budget: the
+     * {@link #setShutdownTimeoutMillis(long) shutdown timeout}.
+     * 
+     * @param testTimeBudgetMillis
+     *            The testTimeBudgetMillis to set.
+     */
+    public void setTestTimeBudgetMillis(long testTimeBudgetMillis) {
+        this.testTimeBudgetMillis = testTimeBudgetMillis;
+    }
 
-        runningProcesses.forEach((processId, runningProcess) -> doStop(processId));
+    /**
+     * Get the shutdownMode.
+     * 
+     * @return Returns the shutdownMode.
+     */
+    public ShutdownMode getShutdownMode() {
+        return shutdownMode;
+    }
+
+    /**
+     * Set how the test processes still running are stopped when the test
+     * context shuts down. Defaults to {@link ShutdownMode#GRACEFUL}.
+     * 
+     * @param shutdownMode
+     *            The shutdownMode to set.
+     */
+    public void setShutdownMode(ShutdownMode shutdownMode) {
+        this.shutdownMode = shutdownMode;
+    }
+
+    /**
+     * Get the fastShutdownGracePeriodMillis.
+     * 
+     * @return Returns the fastShutdownGracePeriodMillis.
+     */
+    public long getFastShutdownGracePeriodMillis() {
+        return fastShutdownGracePeriodMillis;
+    }
+
+    /**
+     * Set the time in milliseconds processes get to exit after having
+     * received <code>SIGTERM</code> during a {@link ShutdownMode#FAST} shutdown
+     * before they are killed. Defaults to 2 seconds.
+     * 
+     * @param fastShutdownGracePeriodMillis
+     *            The fastShutdownGracePeriodMillis to set.
+     */
+    public void setFastShutdownGracePeriodMillis(long fastShutdownGracePeriodMillis) {
+        this.fastShutdownGracePeriodMillis = fastShutdownGracePeriodMillis;
+    }
+
+    /**
+     * Get the shutdownHookEnabled.
+     * 
+     * @return Returns the shutdownHookEnabled.
+     */
+    public boolean isShutdownHookEnabled() {
+        return shutdownHookEnabled;
+    }
+
+    /**
+     * Set whether the registry registers a JVM shutdown hook when it starts
+     * its first test process. If the JVM exits without the test context having
+     * been closed, the hook terminates all running test processes like a
+     * {@link ShutdownMode#FAST} shutdown does. Enabled by default.
+     * 
+     * @param shutdownHookEnabled
+     *            The shutdownHookEnabled to set.
+     */
+    public void setShutdownHookEnabled(boolean shutdownHookEnabled) {
+        this.shutdownHookEnabled = shutdownHookEnabled;
+    }
+
+    /**
+     * Get the processLedgerEnabled.
+     * 
+     * @return Returns the processLedgerEnabled.
+     */
+    public boolean isProcessLedgerEnabled() {
+        return processLedgerEnabled;
+    }
+
+    /**
+     * Set whether the registry records the test processes it launches in an
+     * on-disk ledger. When a test JVM gets killed before it could stop its
+     * test processes, the next registry using the same
+     * {@link #setProcessLedgerDirectory(Path) ledger directory} destroys the
+     * orphaned processes before launching its first test process. Disabled by
+     * default.
+     * 
+     * @param processLedgerEnabled
+     *            The processLedgerEnabled to set.
+     */
+    public void setProcessLedgerEnabled(boolean processLedgerEnabled) {
+        this.processLedgerEnabled = processLedgerEnabled;
+    }
+
+    /**
+     * Get the processLedgerDirectory.
+     * 
+     * @return Returns the processLedgerDirectory.
+     */
+    public Path getProcessLedgerDirectory() {
+        return processLedgerDirectory;
+    }
+
+    /**
+     * Set the directory the process ledger files are kept in. Defaults to a
+     * per-user directory within <code>java.io.tmpdir</code>. Must be set
+     * before the first test process is started.
+     * 
+     * @param processLedgerDirectory
+     *            The processLedgerDirectory to set.
+     */
+    public void setProcessLedgerDirectory(Path processLedgerDirectory) {
+        this.processLedgerDirectory = processLedgerDirectory;
+    }
+
+    /**
+     * Get the sharedProcessesDirectory.
+     * 
+     * @return Returns the sharedProcessesDirectory.
+     */
+    public Path getSharedProcessesDirectory() {
+        return sharedProcessesDirectory;
+    }
+
+    /**
+     * Set the directory holding the host-wide registry of test processes that
+     * are {@link AbstractTestProcessDefinition#setSharedAcrossJvms(boolean)
+     * shared across JVMs}. All JVMs sharing processes must use the same
+     * directory. Defaults to <code>build/testprocesses</code> within the
+     * working directory. Must be set before the first shared test process is
+     * started.
+     * 
+     * @param sharedProcessesDirectory
+     *            The sharedProcessesDirectory to set.
+     */
+    public void setSharedProcessesDirectory(Path sharedProcessesDirectory) {
+        this.sharedProcessesDirectory = sharedProcessesDirectory;
+    }
+
+    /**
+     * Get whether the registry uses the JVM-wide process table.
+     * 
+     * @return Returns whether the JVM-wide process table is used.
+     */
+    public boolean isJvmWideProcessTable() {
+        return processTable == JVM_WIDE_PROCESS_TABLE;
+    }
+
+    /**
+     * Set whether the registry uses the JVM-wide process table shared by all
+     * registries of the JVM that use it, instead of a process table of its
+     * own. Each Spring test context has its own registry: with the JVM-wide
+     * process table, a test process is started once per JVM rather than once
+     * per test context.
+     * <p>
+     * Processes running in the JVM-wide table are reused by all test contexts
+     * as long as their definitions match: definitions extending
+     * {@link AbstractTestProcessDefinition} match if they are of the same
+     * class and would start the same process (same command line, changed
+     * environment variables, working directory and referenced files, see
+     * {@link AbstractTestProcessDefinition#setPersistent(boolean)}), other
+     * definitions if they are {@link Object#equals(Object) equal}. The
+     * fingerprint each definition instance is compared by is computed only
+     * once. A running process keeps the definition instance it has been
+     * started with. The processes are stopped when the last test context using
+     * the JVM-wide process table shuts down.
+     * <p>
+     * Must be set before the registry starts its first test process. Settings
+     * of the process ledger and of processes shared across JVMs are taken
+     * from the first registry that needs them.
+     * 
+     * @param jvmWideProcessTable
+     *            Whether to use the JVM-wide process table.
+     */
+    public void setJvmWideProcessTable(boolean jvmWideProcessTable) {
+        if (jvmWideProcessTable != isJvmWideProcessTable()) {
+            processTable.unregister(this);
+            processTable = jvmWideProcessTable ? JVM_WIDE_PROCESS_TABLE : new ProcessTable();
+            processTable.register(this);
+        }
+    }
+
+    /**
+     * Get the launcherProcess.
+     * 
+     * @return Returns the launcherProcess.
+     */
+    public boolean isLauncherProcess() {
+        return launcherProcess;
+    }
+
+    /**
+     * Set whether test processes are launched through a small helper JVM
+     * instead of being forked from the test JVM. Forking a JVM with a large
+     * heap and many threads is expensive and concurrent launches contend on
+     * it, whereas launching through the helper costs the same regardless of
+     * the test JVM's size. The helper is started when the registry is
+     * initialized, shared by all registries of the JVM and exits along with
+     * the test JVM. Requires Unix domain sockets. Disabled by default.
+     * <p>
+     * Only the processes of {@link AbstractTestProcessDefinition}s are
+     * launched through the helper. If it can't be started, processes are
+     * launched directly.
+     * 
+     * @param launcherProcess
+     *            The launcherProcess to set.
+     */
+    public void setLauncherProcess(boolean launcherProcess) {
+        this.launcherProcess = launcherProcess;
+    }
 
-        if (runningProcesses.size() != 0) {
-            String unstoppedProcesses = runningProcesses.entrySet().stream()
-                .map(e -> e.getValue().getDefinition().getClass() + " ("
-                    + e.getValue().getDefinition().getProcessIdentifier() + ")")
-                .collect(Collectors.joining(", "));
+    /**
+     * Get the cpuPartitioning.
+     * 
+     * @return Returns the cpuPartitioning.
+     */
+    public boolean isCpuPartitioning() {
+        return cpuPartitioning;
+    }
+
+    /**
+     * Set whether the CPUs available to the test JVM are partitioned between
+     * the test JVM and the test processes running concurrently, so that
+     * timing-sensitive tests don't suffer from processes competing for the
+     * same cores. The test JVM is pinned to the first
+     * {@link #setTestJvmCpuCount(int) CPUs}, and each test process gets a
+     * block of {@link #setCpusPerProcess(int) CPUs} that no other running
+     * test process uses. Once all blocks are in use, further processes share
+     * all CPUs not reserved for the test JVM. Definitions that
+     * {@link AbstractTestProcessDefinition#setCpuSet(String) specify their
+     * own CPUs} keep them.
+     * <p>
+     * Requires Linux and the <code>taskset</code> utility. The partitioning is
+     * JVM-wide: its settings are taken from the first registry that needs it.
+     * Disabled by default.
+     * 
+     * @param cpuPartitioning
+     *            The cpuPartitioning to set.
+     */
+    public void setCpuPartitioning(boolean cpuPartitioning) {
+        this.cpuPartitioning = cpuPartitioning;
+    }
+
+    /**
+     * Get the testJvmCpuCount.
+     * 
+     * @return Returns the testJvmCpuCount.
+     */
+    public int getTestJvmCpuCount() {
+        return testJvmCpuCount;
+    }
+
+    /**
+     * Set the number of CPUs reserved for the test JVM when
+     * {@link #setCpuPartitioning(boolean) partitioning CPUs}. Defaults to 1.
+     * 
+     * @param testJvmCpuCount
+     *            The testJvmCpuCount to set.
+     */
+    public void setTestJvmCpuCount(int testJvmCpuCount) {
+        if (testJvmCpuCount < 1) {
+            throw new IllegalArgumentException("The test JVM requires at least one CPU");
+        }
+        this.testJvmCpuCount = testJvmCpuCount;
+    }
+
+    /**
+     * Get the cpusPerProcess.
+     * 
+     * @return Returns the cpusPerProcess.
+     */
+    public int getCpusPerProcess() {
+        return cpusPerProcess;
+    }
+
+    /**
+     * Set the number of CPUs each test process gets when
+     * {@link #setCpuPartitioning(boolean) partitioning CPUs}. Defaults to 1.
+     * 
+     * @param cpusPerProcess
+     *            The cpusPerProcess to set.
+     */
+    public void setCpusPerProcess(int cpusPerProcess) {
+        if (cpusPerProcess < 1) {
+            throw new IllegalArgumentException("Test processes require at least one CPU");
+        }
+        this.cpusPerProcess = cpusPerProcess;
+    }
+
+    /**
+     * Get the watchdog.
+     * 
+     * @return Returns the watchdog.
+     */
+    public boolean isWatchdog() {
+        return watchdog;
+    }
+
+    /**
+     * Set whether a watchdog restarts test processes in the background when
+     * they exit unexpectedly or fail their
+     * {@link AbstractTestProcessDefinition#setLivenessDetector(EventDetector)
+     * liveness check} between tests, e.g. a process left running using
+     * {@link StopStrategy#LEAVE_RUNNING} that crashed after its test. Without
+     * the watchdog, the next test needing the process notices it isn't running
+     * anymore and has to wait for it to start again. Each unexpected exit is
+     * logged along with the process' exit code and the tail of its stdErr.
+     * <p>
+     * Processes that a test holds a {@link TestProcessLease} on aren't
+     * restarted. After {@link #setWatchdogMaxRestartAttempts(int) a number of}
+     * consecutive failed restarts, the watchdog gives up on the process until
+     * it is found healthy again. Only processes of
+     * {@link AbstractTestProcessDefinition}s that aren't shared across JVMs
+     * are watched. Must be set before the registry starts its first test
+     * process. Disabled by default.
+     * 
+     * @param watchdog
+     *            The watchdog to set.
+     */
+    public void setWatchdog(boolean watchdog) {
+        this.watchdog = watchdog;
+    }
+
+    /**
+     * Get the watchdogIntervalMillis.
+     * 
+     * @return Returns the watchdogIntervalMillis.
+     */
+    public long getWatchdogIntervalMillis() {
+        return watchdogIntervalMillis;
+    }
+
+    /**
+     * Set the interval in which the {@link #setWatchdog(boolean) watchdog}
+     * checks the running test processes. Unexpected exits are noticed right
+     * away regardless. Defaults to 5 seconds.
+     * 
+     * @param watchdogIntervalMillis
+     *            The watchdogIntervalMillis to set.
+     */
+    public void setWatchdogIntervalMillis(long watchdogIntervalMillis) {
+        this.watchdogIntervalMillis = watchdogIntervalMillis;
+    }
+
+    /**
+     * Get the watchdogMaxRestartAttempts.
+     * 
+     * @return Returns the watchdogMaxRestartAttempts.
+     */
+    public int getWatchdogMaxRestartAttempts() {
+        return watchdogMaxRestartAttempts;
+    }
+
+    /**
+     * Set the number of consecutive failed restarts of a test process after
+     * which the {@link #setWatchdog(boolean) watchdog} gives up on it.
+     * Defaults to 3.
+     * 
+     * @param watchdogMaxRestartAttempts
+     *            The watchdogMaxRestartAttempts to set.
+     */
+    public void setWatchdogMaxRestartAttempts(int watchdogMaxRestartAttempts) {
+        this.watchdogMaxRestartAttempts = watchdogMaxRestartAttempts;
+    }
+
+    /**
+     * Whether the specified definitions define the same test process.
+     */
+    boolean isSameDefinition(TestProcessDefinition definition, TestProcessDefinition other) {
+        if (definition.equals(other)) {
+            return true;
+        }
+        // Both have the same process identifier, having been looked up by it
+        return isJvmWideProcessTable() && definition instanceof AbstractTestProcessDefinition
+            && definition.getClass().equals(other.getClass())
+            && ((AbstractTestProcessDefinition) definition).cachedFingerprint()
+                .equals(((AbstractTestProcessDefinition) other).cachedFingerprint());
+    }
+
+    /**
+     * Register a {@link TestProcessDefinition} under the specified name, just
+     * like a Spring bean of the test context would be. Used when the registry
+     * is used without Spring.
+     * 
+     * @param name
+     *            The name to register the definition under, to be used in
+     *            {@link TestProcessDefinitionBy#beanName(String)} references.
+     * @param definition
+     *            The definition to register.
+     * @throws IllegalStateException
+     *             If another definition has already been registered under the
+     *             same name.
+     */
+    public void registerDefinition(String name, TestProcessDefinition definition) {
+        TestProcessDefinition registered = testProcessDefinitionBeans.putIfAbsent(name, definition);
+        if (registered != null && registered != definition) {
+            throw new IllegalStateException("Cannot register test process definition " + definition + " as '" + name
+                + "': definition " + registered + " has already been registered under that name.");
+        }
+    }
+
+    /**
+     * Register the replicas of the specified {@link TestProcessFleet} under
+     * their process identifiers, so that they can be referenced using
+     * {@link TestProcessDefinitionBy#beanName(String)}.
+     * 
+     * @param fleet
+     *            The fleet to register.
+     * @throws IllegalStateException
+     *             If another fleet has already been registered under the same
+     *             name or another definition under the process identifier of
+     *             one of the replicas.
+     */
+    public void registerFleet(TestProcessFleet<?> fleet) {
+        fleets.register(fleet);
+    }
+
+    /**
+     * Get the fleet of replicas of the referenced definition, creating and
+     * registering it on first use. Used for {@link TestProcess#replicas()}.
+     * The replicas are new instances of the definition's class, or new
+     * instances of the definition's Spring bean, which must be
+     * prototype-scoped.
+     * 
+     * @param processDefinitionBy
+     *            The reference to the replicated definition, by bean name or
+     *            class.
+     * @param replicas
+     *            The number of replicas.
+     * @param startConcurrency
+     *            The maximum number of replicas started at the same time.
+     * @return The fleet.
+     */
+    TestProcessFleet<?> fleet(TestProcessDefinitionBy<?> processDefinitionBy, int replicas, int startConcurrency) {
+        return fleets.fleet(processDefinitionBy, replicas, startConcurrency);
+    }
+
+    /**
+     * Create a new instance of the referenced definition to be used as a
+     * replica of a fleet.
+     * 
+     * @param processDefinitionBy
+     *            The reference to the replicated definition, by bean name or
+     *            class.
+     * @return The new replica.
+     */
+    TestProcessDefinition newReplica(TestProcessDefinitionBy<?> processDefinitionBy) {
+        if (processDefinitionBy.getBeanName().isPresent()) {
+            String beanName = processDefinitionBy.getBeanName().get();
+            if (applicationContext == null || !applicationContext.containsBean(beanName)
+                || !applicationContext.isPrototype(beanName)) {
+
+                throw new IllegalArgumentException("Test process definition bean '" + beanName + "' can only be "
+                    + "replicated if it is a prototype-scoped bean of the Spring test context.");
+            }
+            return applicationContext.getBean(beanName, TestProcessDefinition.class);
+        }
+
+        Class<? extends TestProcessDefinition> definitionClass = processDefinitionBy.getClazz().get();
+        if (applicationContext != null) {
+            String[] beanNames = applicationContext.getBeanNamesForType(definitionClass);
+            if (beanNames.length == 1 && applicationContext.isPrototype(beanNames[0])) {
+                return applicationContext.getBean(beanNames[0], TestProcessDefinition.class);
+            }
+        }
+        return TestProcessAnnotations.instantiate(definitionClass);
+    }
+
+    /**
+     * Register the {@link TestProcessDefinition} created by the specified
+     * factory under the specified name, unless a definition has already been
+     * registered under that name.
+     * 
+     * @param name
+     *            The name to register the definition under.
+     * @param definitionFactory
+     *            Creates the definition to register.
+     */
+    void registerDefinitionIfAbsent(String name, Supplier<? extends TestProcessDefinition> definitionFactory) {
+        testProcessDefinitionBeans.computeIfAbsent(name, key -> definitionFactory.get());
+    }
+
+    @PostConstruct
+    private void init() {
+        if (applicationContext != null) {
+            testProcessDefinitionBeans.putAll(applicationContext.getBeansOfType(TestProcessDefinition.class));
+        }
+        // Start the launcher early so that the first test doesn't wait for it
+        processLauncher();
+        if (cpuPartitioning) {
+            // Pin the test JVM before it starts the threads of the first test
+            CpuPartitioner.shared(testJvmCpuCount, cpusPerProcess);
+        }
+
+        List<TestProcessDefinitionBy<?>> prestarts = PRESTART_ON_INITIALIZATION.get();
+        PRESTART_ON_INITIALIZATION.remove();
+        if (prestarts != null) {
+            for (TestProcessDefinitionBy<?> processDefinitionBy : prestarts) {
+                try {
+                    prestart(processDefinitionBy);
+                } catch (UnknownTestProcessDefinitionException | TooManyTestProcessDefinitionsException e) {
+                    // Reported by the test method referencing the definition
+                    LOG.debug("Not pre-starting test process: {}", e.getMessage());
+                }
+            }
+        }
+    }
+
+    /**
+     * Stop all test processes that are still running and release the
+     * registry's resources. Invoked when the Spring test context is closed or,
+     * without Spring, by the {@link TestProcessesExtension} at the end of the
+     * test run. Does nothing if the registry has already been shut down.
+     */
+    @PreDestroy
+    public void shutdown() {
+        if (!shutDown.compareAndSet(false, true)) {
+            return;
+        }
+        closeWatchdog();
+        processShutdown.removeHook();
+
+        Optional<TestProcessesRegistry> remainingRegistry = processTable.unregister(this);
+        if (remainingRegistry.isPresent()) {
+            if (!processTable.runningProcesses.isEmpty()) {
+                LOG.info("Test context shutting down: Leaving the test processes of the JVM-wide process table "
+                    + "running for the test contexts still using them.");
+                remainingRegistry.get().processShutdown.registerHook();
+            }
+            defaultExecutor.shutdown();
+            return;
+        }
+
+        processShutdown.stopAll();
+        processTable.leases.clear();
+        ProcessLedger ledger = processTable.processLedger;
+        if (ledger != null) {
+            ledger.close();
+        }
+        WorkingDirectories.deleteExited();
+        defaultExecutor.shutdown();
+    }
+
+    private synchronized void closeWatchdog() {
+        if (processWatchdog != null) {
+            processWatchdog.close();
+        }
+    }
+
+    /**
+     * Invoked by the JVM shutdown hook: makes sure no test process outlives
+     * the JVM if the test context has never been closed.
+     */
+    void shutdownOnJvmExit() {
+        if (!shutDown.compareAndSet(false, true)) {
+            return;
+        }
+        closeWatchdog();
+        processShutdown.stopAllOnJvmExit();
+        WorkingDirectories.deleteExited();
+    }
+
+    static boolean isSharedAcrossJvms(RunningTestProcess<?> runningProcess) {
+        return runningProcess.getDefinition() instanceof AbstractTestProcessDefinition
+            && ((AbstractTestProcessDefinition) runningProcess.getDefinition()).isSharedAcrossJvms();
+    }
+
+    /**
+     * Get the process table's {@link SharedProcesses}, creating it on first
+     * use.
+     * 
+     * @return The shared process registry.
+     */
+    SharedProcesses sharedProcesses() {
+        ProcessTable table = processTable;
+        SharedProcesses shared = table.sharedProcesses;
+        if (shared == null) {
+            synchronized (table) {
+                shared = table.sharedProcesses;
+                if (shared == null) {
+                    shared = new SharedProcesses(sharedProcessesDirectory);
+                    table.sharedProcesses = shared;
+                }
+            }
+        }
+        return shared;
+    }
+
+    /**
+     * Get the process table's {@link ProcessLedger}, creating it and reaping
+     * the orphans left behind by previous test JVMs on first use.
+     * 
+     * @return The ledger or <code>null</code> if the ledger is disabled.
+     */
+    private ProcessLedger processLedger() {
+        if (!processLedgerEnabled) {
+            return null;
+        }
+        ProcessTable table = processTable;
+        ProcessLedger ledger = table.processLedger;
+        if (ledger == null) {
+            synchronized (table) {
+                ledger = table.processLedger;
+                if (ledger == null) {
+                    ledger = ProcessLedger.open(processLedgerDirectory);
+                    table.processLedger = ledger;
+                }
+            }
+        }
+        return ledger;
+    }
+
+    private ProcessLauncher processLauncher() {
+        if (!launcherProcess) {
+            return null;
+        }
+        try {
+            return ProcessLauncher.shared();
+        } catch (UncheckedIOException e) {
+            LOG.warn("Launching test processes directly: " + e.getMessage(), e);
+            return null;
+        }
+    }
+
+    /**
+     * Definitions that specify their own CPUs and processes running within
+     * this JVM don't take part in CPU partitioning.
+     */
+    private Optional<CpuPartitioner> cpuPartitioner(TestProcessDefinition definition) {
+        if (!cpuPartitioning || !(definition instanceof AbstractTestProcessDefinition)
+            || definition instanceof InJvmTestProcessDefinition
+            || ((AbstractTestProcessDefinition) definition).getCpuSet() != null) {
+            return Optional.empty();
+        }
+        return CpuPartitioner.shared(testJvmCpuCount, cpusPerProcess);
+    }
+
+    /**
+     * Remove the specified stopped process from the process table's
+     * {@link ProcessLedger}, if the ledger is in use.
+     * 
+     * @param runningProcess
+     *            The stopped process.
+     */
+    void removeFromLedger(RunningTestProcess<?> runningProcess) {
+        ProcessLedger ledger = processTable.processLedger;
+        if (ledger != null) {
+            ledger.remove(runningProcess);
+        }
+    }
+
+    /**
+     * Processes running within this JVM die with it: the ledger doesn't need
+     * to track them and they can't be restarted side by side.
+     */
+    static boolean isOsProcess(Process managedProcess) {
+        return managedProcess != null && !(managedProcess instanceof InJvmProcess);
+    }
+
+    static Process managedProcess(RunningTestProcess<?> runningProcess) {
+        TestProcessDefinition definition = runningProcess.getDefinition();
+        return definition instanceof AbstractTestProcessDefinition
+            ? ((AbstractTestProcessDefinition) definition).getManagedProcess()
+            : null;
+    }
+
+    /**
+     * Get the processes of the process table by their identifiers.
+     * 
+     * @return The live map of running processes.
+     */
+    Map<String, RunningTestProcess<?>> runningProcesses() {
+        return processTable.runningProcesses;
+    }
+
+    /**
+     * Get the processes replaced by an overlapping restart that are still
+     * being stopped.
+     * 
+     * @return The live map of retiring processes to their stops.
+     */
+    Map<RunningTestProcess<?>, CompletableFuture<Void>> retiringProcesses() {
+        return processTable.retiringProcesses;
+    }
+
+    /**
+     * Get the final startup failures of the process table by process
+     * identifier.
+     * 
+     * @return The live map of startup failures.
+     */
+    Map<String, StartupRetries.FailedStartup> failedStartups() {
+        return processTable.failedStartups;
+    }
+
+    /**
+     * Get the identifiers of the processes whose start is backing off before
+     * retrying. Operations on these processes wait for the retry, even though
+     * the process lock is released in the meantime.
+     * 
+     * @return The live set of identifiers.
+     */
+    Set<String> backingOff() {
+        return processTable.backingOff;
+    }
+
+    /**
+     * Stop the specified process on behalf of the {@link ProcessShutdown},
+     * notifying the tests waiting for its leases.
+     * 
+     * @param processIdentifier
+     *            The identifier of the process to stop.
+     * @return Whether the process has been stopped rather than only detached
+     *         from.
+     */
+    boolean stopOnShutdown(String processIdentifier) {
+        try {
+            return withProcessLock(processIdentifier, () -> {
+                boolean stopped = doStop(processIdentifier);
+                leasesChanged(processIdentifier);
+                return stopped;
+            });
+        } catch (RuntimeException e) {
+            LOG.warn("Error stopping test process " + processIdentifier + " while shutting down the test context: "
+                + e.getMessage(), e);
+            return true;
+        }
+    }
+
+    /**
+     * The test processes run by one or more registries, along with the leases
+     * held on them and the locks guarding them.
+     */
+    private static class ProcessTable {
+
+        private final Map<String, RunningTestProcess<?>> runningProcesses = new ConcurrentHashMap<>();
+
+        private final Map<String, Leases> leases = new ConcurrentHashMap<>();
+
+        private final Map<Object, LeaseWait> leaseWaits = new ConcurrentHashMap<>();
+
+        private final ReentrantLock[] processLocks = new ReentrantLock[LOCK_STRIPES];
+
+        private final Condition[] leasesChanged = new Condition[LOCK_STRIPES];
+
+        private final Set<TestProcessesRegistry> registries = new LinkedHashSet<>();
+
+        private volatile ProcessLedger processLedger;
+
+        private volatile SharedProcesses sharedProcesses;
+
+        private final Map<String, StartupRetries.FailedStartup> failedStartups = new ConcurrentHashMap<>();
+
+        private final Set<String> backingOff = ConcurrentHashMap.newKeySet();
+
+        private final Map<RunningTestProcess<?>, CompletableFuture<Void>> retiringProcesses =
+            new ConcurrentHashMap<>();
+
+        private ProcessTable() {
+            for (int i = 0; i < processLocks.length; i++) {
+                processLocks[i] = new ReentrantLock();
+                leasesChanged[i] = processLocks[i].newCondition();
+            }
+        }
+
+        private synchronized void register(TestProcessesRegistry registry) {
+            registries.add(registry);
+        }
+
+        /**
+         * Unregisters the specified registry.
+         * 
+         * @return Another registry still using the table, if any.
+         */
+        private synchronized Optional<TestProcessesRegistry> unregister(TestProcessesRegistry registry) {
+            registries.remove(registry);
+            return registries.stream().findFirst();
+        }
+    }
+
+    /**
+     * A test waiting for the leases on a process identifier to permit it to
+     * proceed.
+     */
+    private static class LeaseWait {
+
+        private final String processIdentifier;
+
+        private final boolean replacesRunningProcess;
+
+        private LeaseWait(String processIdentifier, boolean replacesRunningProcess) {
+            this.processIdentifier = processIdentifier;
+            this.replacesRunningProcess = replacesRunningProcess;
+        }
+    }
+
+    /**
+     * The leases held on a single process identifier. Must only be modified
+     * within {@link TestProcessesRegistry#withProcessLock(String, Supplier)}
+     * for that identifier. The collections are concurrent nonetheless so that
+     * {@link #blockers(Object, boolean)} may be called for detecting wait
+     * cycles across process identifiers.
+     */
+    private static class Leases {
+
+        private final Map<Object, Integer> holders = new ConcurrentHashMap<>();
+
+        private final Map<Object, Integer> exclusiveHolders = new ConcurrentHashMap<>();
+
+        private final Set<Object> exclusiveWaiters = ConcurrentHashMap.newKeySet();
+
+        private boolean stopRequested = false;
+
+        private void add(Object owner, boolean exclusive) {
+            holders.merge(owner, 1, Integer::sum);
+            if (exclusive) {
+                exclusiveHolders.merge(owner, 1, Integer::sum);
+            }
+        }
+
+        private void remove(Object owner, boolean exclusive) {
+            holders.computeIfPresent(owner, (key, count) -> count > 1 ? count - 1 : null);
+            if (exclusive) {
+                exclusiveHolders.computeIfPresent(owner, (key, count) -> count > 1 ? count - 1 : null);
+            }
+        }
+
+        private boolean isHeldByOthersThan(Object owner) {
+            return holders.keySet().stream().anyMatch(holder -> !holder.equals(owner));
+        }
+
+        /**
+         * Whether the specified owner may proceed. Nobody but the holder of an
+         * exclusive lease may proceed. Replacing the running process requires
+         * that no other test holds a lease on it. Other requests must let
+         * waiting restarts go first, unless the owner already holds a lease
+         * itself.
+         */
+        private boolean permits(Object owner, boolean replacesRunningProcess) {
+            return blockers(owner, replacesRunningProcess).isEmpty();
+        }
+
+        /**
+         * The tests the specified owner has to wait for according to
+         * {@link #permits(Object, boolean)}.
+         */
+        private Set<Object> blockers(Object owner, boolean replacesRunningProcess) {
+            Set<Object> blockers = new HashSet<>(exclusiveHolders.keySet());
+            if (replacesRunningProcess) {
+                blockers.addAll(holders.keySet());
+            } else if (!holders.containsKey(owner)) {
+                blockers.addAll(exclusiveWaiters);
+            }
+            blockers.remove(owner);
+            return blockers;
+        }
 
-            LOG.warn("It seems we were unable to stop all test processes before shutting down the test context. "
-                + "Test processes that could not be stopped: " + unstoppedProcesses);
+        private boolean isEmpty() {
+            return holders.isEmpty() && exclusiveWaiters.isEmpty() && !stopRequested;
         }
     }
 }
@@ -0,0 +1,185 @@
+package io.github.netmikey.testprocesses;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+
+/**
+ * Routes <code>System.out</code>, <code>System.err</code> and
+ * <code>System.in</code> per {@link ThreadGroup}: threads belonging to (a
+ * descendant of) a registered thread group use that group's streams, all
+ * other threads use the JVM's original streams.
+ * <p>
+ * The routing streams are installed into {@link System} when the first thread
+ * group is registered and stay installed.
+ */
+final class ThreadGroupStreams {
+
+    private static final Map<ThreadGroup, Streams> STREAMS = new ConcurrentHashMap<>();
+
+    private static boolean installed = false;
+
+    private ThreadGroupStreams() {
+        // Utility class
+    }
+
+    /**
+     * Route the standard streams of all threads in the specified thread group
+     * to the specified streams.
+     *
+     * @param threadGroup
+     *            The thread group.
+     * @param out
+     *            The stream replacing <code>System.out</code>.
+     * @param err
+     *            The stream replacing <code>System.err</code>.
+     * @param in
+     *            The stream replacing <code>System.in</code>.
+     */
+    static void register(ThreadGroup threadGroup, OutputStream out, OutputStream err, InputStream in) {
+        install();
+        STREAMS.put(threadGroup, new Streams(out, err, in));
+    }
+
+    /**
+     * Route the standard streams of all threads in the specified thread group
+     * back to the JVM's original streams.
+     *
+     * @param threadGroup
+     *            The thread group.
+     */
+    static void unregister(ThreadGroup threadGroup) {
+        STREAMS.remove(threadGroup);
+    }
+
+    private static synchronized void install() {
+        if (!installed) {
+            PrintStream originalOut = System.out;
+            PrintStream originalErr = System.err;
+            InputStream originalIn = System.in;
+            System.setOut(new PrintStream(new RoutingOutputStream(originalOut, streams -> streams.out), true));
+            System.setErr(new PrintStream(new RoutingOutputStream(originalErr, streams -> streams.err), true));
+            System.setIn(new RoutingInputStream(originalIn));
+            installed = true;
+        }
+    }
+
+    private static Optional<Streams> current() {
+        if (STREAMS.isEmpty()) {
+            return Optional.empty();
+        }
+        for (ThreadGroup group = Thread.currentThread().getThreadGroup(); group != null; group = group.getParent()) {
+            Streams streams = STREAMS.get(group);
+            if (streams != null) {
+                return Optional.of(streams);
+            }
+        }
+        return Optional.empty();
+    }
+
+    /**
+     * The streams of a thread group.
+     */
+    private static class Streams {
+
+        private final OutputStream out;
+
+        private final OutputStream err;
+
+        private final InputStream in;
+
+        private Streams(OutputStream out, OutputStream err, InputStream in) {
+            this.out = out;
+            this.err = err;
+            this.in = in;
+        }
+    }
+
+    /**
+     * Writes to the current thread group's stream, if any.
+     */
+    private static class RoutingOutputStream extends OutputStream {
+
+        private final OutputStream original;
+
+        private final Function<Streams, OutputStream> selector;
+
+        private RoutingOutputStream(OutputStream original, Function<Streams, OutputStream> selector) {
+            this.original = original;
+            this.selector = selector;
+        }
+
+        private OutputStream target() {
+            return current().map(selector).orElse(original);
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            target().write(b);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            target().write(b, off, len);
+        }
+
+        @Override
+        public void flush() throws IOException {
+            target().flush();
+        }
+
+        @Override
+        public void close() throws IOException {
+            // Never close the JVM's original streams
+            Optional<Streams> streams = current();
+            if (streams.isPresent()) {
+                selector.apply(streams.get()).close();
+            }
+        }
+    }
+
+    /**
+     * Reads from the current thread group's stream, if any.
+     */
+    private static class RoutingInputStream extends InputStream {
+
+        private final InputStream original;
+
+        private RoutingInputStream(InputStream original) {
+            this.original = original;
+        }
+
+        private InputStream source() {
+            return current().map(streams -> streams.in).orElse(original);
+        }
+
+        @Override
+        public int read() throws IOException {
+            return source().read();
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            return source().read(b, off, len);
+        }
+
+        @Override
+        public int available() throws IOException {
+            return source().available();
+        }
+
+        @Override
+        public void close() throws IOException {
+            // Never close the JVM's original stream
+            Optional<Streams> streams = current();
+            if (streams.isPresent()) {
+                streams.get().in.close();
+            }
+        }
+    }
+}
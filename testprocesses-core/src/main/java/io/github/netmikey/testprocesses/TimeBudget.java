@@ -0,0 +1,227 @@
+package io.github.netmikey.testprocesses;
+
+import java.util.Map;
+import java.util.Optional;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+
+import io.github.netmikey.testprocesses.eventdetector.AbstractEventDetector;
+
+/**
+ * A deadline shared by all operations performed on behalf of a single test
+ * method (see {@link TestProcessesRegistry#setTestTimeBudgetMillis(long)}) or
+ * of the test context's shutdown (see
+ * {@link TestProcessesRegistry#setShutdownTimeoutMillis(long)}): starting and
+ * stopping test processes, waiting for their events and waiting for other
+ * tests' leases.
+ * <p>
+ * Event detectors never wait longer than the remaining budget, regardless of
+ * their own timeout (see {@link AbstractEventDetector}). The time spent is
+ * tracked per test process, so that once the budget has run out, the failure
+ * tells which processes consumed it.
+ * <p>
+ * Budgets are bound to the test they belong to, so work handed over to other
+ * threads on behalf of the test shares the test's budget.
+ */
+public final class TimeBudget {
+
+    private static final Map<Object, TimeBudget> BUDGETS = new ConcurrentHashMap<>();
+
+    private final String scope;
+
+    private final long budgetMillis;
+
+    private final long deadlineMillis;
+
+    private final Map<String, Long> spentMillis = new ConcurrentHashMap<>();
+
+    private final Map<String, Long> spendingSinceMillis = new ConcurrentHashMap<>();
+
+    private TimeBudget(String scope, long budgetMillis) {
+        this.scope = scope;
+        this.budgetMillis = budgetMillis;
+        this.deadlineMillis = System.currentTimeMillis() + budgetMillis;
+    }
+
+    /**
+     * Start a new budget for the test with the specified key.
+     *
+     * @param testKey
+     *            The key of the test, as returned by {@link CurrentTest#key()}.
+     * @param scope
+     *            What the budget is for, used in failure messages.
+     * @param budgetMillis
+     *            The budget in milliseconds.
+     * @return The new budget.
+     */
+    static TimeBudget begin(Object testKey, String scope, long budgetMillis) {
+        TimeBudget budget = new TimeBudget(scope, budgetMillis);
+        BUDGETS.put(testKey, budget);
+        return budget;
+    }
+
+    /**
+     * End the budget of the test with the specified key, if it has one.
+     *
+     * @param testKey
+     *            The key of the test, as returned by {@link CurrentTest#key()}.
+     */
+    static void end(Object testKey) {
+        BUDGETS.remove(testKey);
+    }
+
+    /**
+     * Get the budget of the test the current thread is working for.
+     *
+     * @return The budget, or an empty {@link Optional} if the test doesn't
+     *         have one.
+     */
+    public static Optional<TimeBudget> current() {
+        return Optional.ofNullable(BUDGETS.get(CurrentTest.key()));
+    }
+
+    /**
+     * Limit the specified timeout to the remaining budget of the current test.
+     *
+     * @param timeoutMillis
+     *            The timeout in milliseconds.
+     * @return The specified timeout, or the remaining budget if it is shorter.
+     */
+    public static long limit(long timeoutMillis) {
+        return current().map(budget -> Math.min(timeoutMillis, budget.getRemainingMillis())).orElse(timeoutMillis);
+    }
+
+    /**
+     * Throws a {@link TimeBudgetExhaustedException} if the budget of the
+     * current test has run out.
+     *
+     * @param operationDescription
+     *            A provider of a description of the operation that is about to
+     *            be performed or has been interrupted.
+     */
+    static void checkNotExhausted(Supplier<String> operationDescription) {
+        Optional<TimeBudget> budget = current().filter(TimeBudget::isExhausted);
+        if (budget.isPresent()) {
+            throw new TimeBudgetExhaustedException(budget.get().exhaustedMessage(operationDescription.get()));
+        }
+    }
+
+    /**
+     * Perform the specified action on behalf of the specified test process,
+     * charging the time it takes to the process in the current test's budget.
+     *
+     * @param processIdentifier
+     *            The identifier of the process the action is performed for.
+     * @param action
+     *            The action to be performed.
+     * @param <V>
+     *            The action's result type.
+     * @return The action's result.
+     */
+    static <V> V spend(String processIdentifier, Supplier<V> action) {
+        Optional<TimeBudget> budget = current();
+        long startMillis = System.currentTimeMillis();
+        // Nested operations on the same process are charged by the outermost one
+        if (budget.isEmpty() || budget.get().spendingSinceMillis.putIfAbsent(processIdentifier, startMillis) != null) {
+            return action.get();
+        }
+        try {
+            return action.get();
+        } finally {
+            budget.get().spendingSinceMillis.remove(processIdentifier);
+            budget.get().spentMillis.merge(processIdentifier, System.currentTimeMillis() - startMillis, Long::sum);
+        }
+    }
+
+    /**
+     * Perform the specified action on behalf of the specified test process,
+     * charging the time it takes to the process in the current test's budget.
+     *
+     * @param processIdentifier
+     *            The identifier of the process the action is performed for.
+     * @param action
+     *            The action to be performed.
+     */
+    static void spend(String processIdentifier, Runnable action) {
+        spend(processIdentifier, () -> {
+            action.run();
+            return null;
+        });
+    }
+
+    /**
+     * Get the deadlineMillis.
+     *
+     * @return Returns the deadlineMillis.
+     */
+    long getDeadlineMillis() {
+        return deadlineMillis;
+    }
+
+    /**
+     * Get the remaining budget.
+     *
+     * @return The remaining budget in milliseconds, <code>0</code> if the
+     *         budget has run out.
+     */
+    public long getRemainingMillis() {
+        return Math.max(0, deadlineMillis - System.currentTimeMillis());
+    }
+
+    /**
+     * Get whether the budget has run out.
+     *
+     * @return Whether the budget has run out.
+     */
+    public boolean isExhausted() {
+        return getRemainingMillis() == 0;
+    }
+
+    /**
+     * Describe that the budget has run out while performing the specified
+     * operation and which test processes have consumed it.
+     *
+     * @param operationDescription
+     *            A description of the operation that has been interrupted,
+     *            e.g. <code>waiting for port 8080 to become available</code>.
+     * @return The description.
+     */
+    public String exhaustedMessage(String operationDescription) {
+        return "Time budget of " + budgetMillis + " ms for the " + scope + " exhausted while " + operationDescription
+            + ". Time spent per test process: " + describeSpending();
+    }
+
+    private String describeSpending() {
+        long nowMillis = System.currentTimeMillis();
+        Map<String, String> spending = new TreeMap<>();
+        spentMillis.forEach((processIdentifier, millis) -> spending.put(processIdentifier, millis + " ms"));
+        spendingSinceMillis.forEach((processIdentifier, sinceMillis) -> spending.merge(processIdentifier,
+            (nowMillis - sinceMillis) + " ms in progress", (spent, current) -> spent + " + " + current));
+        if (spending.isEmpty()) {
+            return "none";
+        }
+        return spending.entrySet().stream()
+            .map(entry -> entry.getKey() + " (" + entry.getValue() + ")")
+            .collect(Collectors.joining(", "));
+    }
+
+    /**
+     * Get the scope.
+     *
+     * @return Returns what the budget is for.
+     */
+    public String getScope() {
+        return scope;
+    }
+
+    /**
+     * Get the budgetMillis.
+     *
+     * @return Returns the budgetMillis.
+     */
+    public long getBudgetMillis() {
+        return budgetMillis;
+    }
+}
@@ -0,0 +1,20 @@
+package io.github.netmikey.testprocesses;
+
+/**
+ * Thrown when the {@link TimeBudget} of a test has run out before the test
+ * processes it needs have been started, stopped or have reached the awaited
+ * state.
+ */
+public class TimeBudgetExhaustedException extends RuntimeException {
+
+    /**
+     * Constructs a new runtime exception with the specified detail message.
+     *
+     * @param message
+     *            the detail message. The detail message is saved for later
+     *            retrieval by the {@link #getMessage()} method.
+     */
+    public TimeBudgetExhaustedException(String message) {
+        super(message);
+    }
+}
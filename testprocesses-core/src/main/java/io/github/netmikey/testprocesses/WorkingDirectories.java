@@ -0,0 +1,274 @@
+package io.github.netmikey.testprocesses;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.stream.Stream;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Materializes the working directories of test processes from their templates
+ * and deletes them in the background once the processes have exited.
+ * <p>
+ * The background deletions don't keep the JVM from exiting, so registries
+ * {@link #deleteExited() delete} what is left when they shut down. Each
+ * launched process' PID is recorded in a file next to its working directory:
+ * the first materialization into a root directory deletes the working
+ * directories of processes that are gone, e.g. left behind by a JVM that has
+ * been killed.
+ */
+final class WorkingDirectories {
+
+    private static final Logger LOG = LoggerFactory.getLogger(WorkingDirectories.class);
+
+    private static final boolean LINUX = System.getProperty("os.name", "").startsWith("Linux");
+
+    private static final String PROCESS_FILE_SUFFIX = ".process";
+
+    /**
+     * Working directories without a process file that haven't been modified
+     * for this long belong to a process that has never been launched.
+     */
+    private static final long UNLAUNCHED_STALE_MILLIS = 60000;
+
+    /**
+     * The working directories of this JVM's processes that haven't been
+     * deleted yet, with their processes once launched.
+     */
+    private static final Map<Path, Optional<Process>> UNDELETED = new ConcurrentHashMap<>();
+
+    private static final Set<Path> SWEPT_ROOTS = ConcurrentHashMap.newKeySet();
+
+    private static final ExecutorService CLEANER = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "testprocesses-working-directory-cleaner");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private WorkingDirectories() {
+        // Utility class
+    }
+
+    /**
+     * Get the default directory working directories are materialized in: the
+     * <code>build</code> directory within the working directory of the test
+     * JVM.
+     *
+     * @return The default directory.
+     */
+    static Path defaultRoot() {
+        return SharedProcesses.defaultDirectory().resolve("workdirs");
+    }
+
+    /**
+     * Materialize a working directory from the specified template.
+     *
+     * @param template
+     *            The template directory.
+     * @param target
+     *            The working directory to create. Must not exist yet.
+     * @param cloning
+     *            How to materialize the template's files.
+     * @throws IOException
+     *             If the working directory can't be materialized.
+     */
+    static void materialize(Path template, Path target, WorkingDirectoryCloning cloning) throws IOException {
+        if (!Files.isDirectory(template)) {
+            throw new IOException("The working directory template " + template + " is not a directory");
+        }
+        long startNanos = System.nanoTime();
+        UNDELETED.put(target, Optional.empty());
+        sweepOnce(target.getParent());
+        Files.createDirectories(target);
+        if (cloning != WorkingDirectoryCloning.CLONE || !cloneUsingCp(template, target)) {
+            copyTree(template, target, cloning == WorkingDirectoryCloning.HARDLINK);
+        }
+        LOG.debug("Materialized working directory {} from template {} in {} ms", target, template,
+            (System.nanoTime() - startNanos) / 1_000_000);
+    }
+
+    private static boolean cloneUsingCp(Path template, Path target) throws IOException {
+        if (!LINUX) {
+            return false;
+        }
+        Process cp = new ProcessBuilder("cp", "-a", "--reflink=auto", "--", template + "/.", target.toString())
+            .redirectErrorStream(true)
+            .redirectOutput(ProcessBuilder.Redirect.DISCARD)
+            .start();
+        try {
+            if (cp.waitFor() == 0) {
+                return true;
+            }
+        } catch (InterruptedException e) {
+            cp.destroyForcibly();
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while cloning " + template, e);
+        }
+        LOG.debug("Unable to clone {} using cp, copying it instead", template);
+        delete(target);
+        Files.createDirectories(target);
+        return false;
+    }
+
+    private static void copyTree(Path template, Path target, boolean hardlink) throws IOException {
+        Files.walkFileTree(template, new SimpleFileVisitor<>() {
+            @Override
+            public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) throws IOException {
+                Files.createDirectories(target.resolve(template.relativize(dir).toString()));
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException {
+                Path targetFile = target.resolve(template.relativize(file).toString());
+                if (hardlink && attrs.isRegularFile()) {
+                    try {
+                        Files.createLink(targetFile, file);
+                        return FileVisitResult.CONTINUE;
+                    } catch (IOException | UnsupportedOperationException e) {
+                        // Copy it instead
+                    }
+                }
+                Files.copy(file, targetFile, StandardCopyOption.COPY_ATTRIBUTES, LinkOption.NOFOLLOW_LINKS);
+                return FileVisitResult.CONTINUE;
+            }
+        });
+    }
+
+    /**
+     * Record the process launched in the specified working directory, which
+     * is deleted in the background once the process has exited.
+     *
+     * @param directory
+     *            The working directory.
+     * @param process
+     *            The process.
+     */
+    static void deleteOnExit(Path directory, Process process) {
+        UNDELETED.put(directory, Optional.of(process));
+        ProcessHandle handle = ProcessHandle.of(process.pid()).orElse(null);
+        Optional<Long> startMillis = handle == null ? Optional.empty() : ProcessLedger.startMillis(handle);
+        try {
+            Files.writeString(processFile(directory), process.pid() + "\t" + startMillis.orElse(0L),
+                StandardCharsets.UTF_8);
+        } catch (IOException e) {
+            LOG.debug("Unable to record the process of working directory " + directory + ": " + e.getMessage(), e);
+        }
+        process.onExit().thenRun(() -> deleteAsync(directory));
+    }
+
+    /**
+     * Delete the specified working directory in the background.
+     *
+     * @param directory
+     *            The working directory.
+     */
+    static void deleteAsync(Path directory) {
+        CLEANER.execute(() -> deleteNow(directory));
+    }
+
+    /**
+     * Delete the working directories of this JVM's processes that have exited
+     * right away, instead of leaving them to the background deletion.
+     */
+    static void deleteExited() {
+        List<Path> exited = new ArrayList<>();
+        UNDELETED.forEach((directory, process) -> {
+            if (process.map(p -> !p.isAlive()).orElse(false)) {
+                exited.add(directory);
+            }
+        });
+        exited.forEach(WorkingDirectories::deleteNow);
+    }
+
+    private static void deleteNow(Path directory) {
+        try {
+            delete(directory);
+            Files.deleteIfExists(processFile(directory));
+            UNDELETED.remove(directory);
+        } catch (IOException e) {
+            LOG.debug("Unable to delete working directory " + directory + ": " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Delete the working directories of processes that are gone in the
+     * background, the first time a working directory is materialized in the
+     * specified root directory.
+     */
+    private static void sweepOnce(Path root) {
+        if (root == null || !SWEPT_ROOTS.add(root)) {
+            return;
+        }
+        CLEANER.execute(() -> {
+            List<Path> stale = new ArrayList<>();
+            try (DirectoryStream<Path> directories = Files.newDirectoryStream(root, Files::isDirectory)) {
+                for (Path directory : directories) {
+                    if (!UNDELETED.containsKey(directory) && isStale(directory)) {
+                        stale.add(directory);
+                    }
+                }
+            } catch (IOException e) {
+                LOG.debug("Unable to look for stale working directories in " + root + ": " + e.getMessage(), e);
+            }
+            if (!stale.isEmpty()) {
+                LOG.debug("Deleting {} stale working director{} in {}", stale.size(),
+                    stale.size() > 1 ? "ies" : "y", root);
+            }
+            stale.forEach(WorkingDirectories::deleteNow);
+        });
+    }
+
+    private static boolean isStale(Path directory) throws IOException {
+        Path processFile = processFile(directory);
+        if (!Files.isRegularFile(processFile)) {
+            return Files.getLastModifiedTime(directory).toMillis()
+                < System.currentTimeMillis() - UNLAUNCHED_STALE_MILLIS;
+        }
+        String[] process = Files.readString(processFile, StandardCharsets.UTF_8).trim().split("\t");
+        try {
+            long pid = Long.parseLong(process[0]);
+            long startMillis = process.length > 1 ? Long.parseLong(process[1]) : 0;
+            return ProcessHandle.of(pid)
+                .filter(ProcessHandle::isAlive)
+                .map(handle -> startMillis != 0
+                    && ProcessLedger.startMillis(handle).map(start -> start != startMillis).orElse(false))
+                .orElse(true);
+        } catch (NumberFormatException e) {
+            return true;
+        }
+    }
+
+    private static Path processFile(Path directory) {
+        return directory.resolveSibling(directory.getFileName() + PROCESS_FILE_SUFFIX);
+    }
+
+    private static void delete(Path directory) throws IOException {
+        if (!Files.exists(directory, LinkOption.NOFOLLOW_LINKS)) {
+            return;
+        }
+        try (Stream<Path> paths = Files.walk(directory)) {
+            for (Path path : (Iterable<Path>) paths.sorted(Comparator.reverseOrder())::iterator) {
+                Files.deleteIfExists(path);
+            }
+        }
+    }
+}
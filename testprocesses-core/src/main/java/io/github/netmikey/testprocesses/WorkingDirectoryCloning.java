@@ -0,0 +1,33 @@
+package io.github.netmikey.testprocesses;
+
+/**
+ * Defines how the working directory of a test process is materialized from its
+ * template (see
+ * {@link AbstractTestProcessDefinition#setWorkingDirectoryTemplate(java.nio.file.Path)}).
+ */
+public enum WorkingDirectoryCloning {
+    /**
+     * Clones the template's files using copy-on-write reflinks where the file
+     * system supports them (e.g. Btrfs or XFS), which takes milliseconds
+     * regardless of the template's size, and copies them otherwise. Uses
+     * <code>cp --reflink=auto</code> on Linux and a plain copy on other
+     * platforms.
+     */
+    CLONE,
+
+    /**
+     * Hard-links the template's files into the working directory. This takes
+     * milliseconds on all file systems, but the working directory shares its
+     * files with the template: a process that modifies a file in place
+     * modifies the template as well. Only use this for templates whose files
+     * are never modified, only replaced or deleted. Files that can't be linked
+     * (e.g. because the working directory is on another file system) are
+     * copied.
+     */
+    HARDLINK,
+
+    /**
+     * Copies the template's files.
+     */
+    COPY;
+}
@@ -1,14 +1,18 @@
 package io.github.netmikey.testprocesses.eventdetector;
 
+import java.util.Optional;
 import java.util.concurrent.TimeoutException;
 import java.util.function.Supplier;
 
 import io.github.netmikey.testprocesses.RunningTestProcess;
 import io.github.netmikey.testprocesses.TestProcessDefinition;
 import io.github.netmikey.testprocesses.TestProcessState;
+import io.github.netmikey.testprocesses.TimeBudget;
 
 /**
- * {@link EventDetector} base class that adds timeout semantics.
+ * {@link EventDetector} base class that adds timeout semantics. Detectors
+ * never wait longer than the remaining {@link TimeBudget} of the current test,
+ * if it has one.
  * 
  * @param <T>
  *            The concrete type of the subclass.
@@ -48,10 +52,10 @@ public abstract class AbstractEventDetector<T extends AbstractEventDetector<T>>
     /**
      * First checks whether the test process is still running and throws an
      * Exception if it isn't. Then, given the provided start timestamp, checks
-     * if the configured timeout has been reached. If so, throws a
-     * TimeoutException with the message provided by the specified supplier. If
-     * not, sleeps for the configured {@link #intervalMillis} before the next
-     * execution.
+     * if the configured timeout or the current test's {@link TimeBudget} has
+     * been reached. If so, throws a TimeoutException with the message provided
+     * by the specified supplier. If not, sleeps for the configured
+     * {@link #intervalMillis} before the next execution.
      * 
      * @param runningTestProcess
      *            The reference to the current {@link RunningTestProcess}.
@@ -77,10 +81,15 @@ public abstract class AbstractEventDetector<T extends AbstractEventDetector<T>>
         if ((System.currentTimeMillis() - startMillis) > timeoutMillis) {
             throw new TimeoutException("Timeout after " + timeoutMillis + " ms while " + operationDescription.get());
         }
+        Optional<TimeBudget> budget = TimeBudget.current();
+        if (budget.isPresent() && budget.get().isExhausted()) {
+            throw new TimeoutException(budget.get().exhaustedMessage(operationDescription.get()));
+        }
         try {
-            Thread.sleep(intervalMillis);
+            Thread.sleep(TimeBudget.limit(intervalMillis));
         } catch (InterruptedException e) {
-            throw new RuntimeException("Interrupted while " + operationDescription.get());
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrupted while " + operationDescription.get(), e);
         }
     }
 
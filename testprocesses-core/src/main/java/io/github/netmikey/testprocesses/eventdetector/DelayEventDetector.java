@@ -3,6 +3,7 @@ package io.github.netmikey.testprocesses.eventdetector;
 import java.util.concurrent.TimeoutException;
 
 import io.github.netmikey.testprocesses.RunningTestProcess;
+import io.github.netmikey.testprocesses.TimeBudget;
 
 /**
  * <b>You are highly encouraged to use any of the other, more deterministic
@@ -15,6 +16,7 @@ import io.github.netmikey.testprocesses.RunningTestProcess;
  * possible.
  * <p>
  * Waits for the specified amount of time and then triggers event detection.
+ * If the current test's {@link TimeBudget} runs out first, a timeout occurs.
  */
 public class DelayEventDetector implements EventDetector {
 
@@ -35,10 +37,18 @@ public class DelayEventDetector implements EventDetector {
 
     @Override
     public void waitForEvent(RunningTestProcess<?> process) throws TimeoutException {
+        long waitMillis = TimeBudget.limit(delayMillis);
         try {
-            Thread.sleep(delayMillis);
+            Thread.sleep(waitMillis);
         } catch (InterruptedException e) {
-            throw new RuntimeException("Interrupted while waiting for the delay of " + delayMillis + " ms to pass");
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrupted while waiting for the delay of " + delayMillis + " ms to pass", e);
+        }
+        if (waitMillis < delayMillis) {
+            String description = "waiting for the delay of " + delayMillis + " ms to pass";
+            throw new TimeoutException(TimeBudget.current()
+                .map(budget -> budget.exhaustedMessage(description))
+                .orElse("Timeout while " + description));
         }
     }
 
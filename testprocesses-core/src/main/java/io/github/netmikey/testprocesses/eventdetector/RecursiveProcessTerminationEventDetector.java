@@ -1,11 +1,17 @@
 package io.github.netmikey.testprocesses.eventdetector;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
+import java.util.stream.Collectors;
 
 import io.github.netmikey.testprocesses.RunningTestProcess;
 import io.github.netmikey.testprocesses.TestProcessDefinition;
+import io.github.netmikey.testprocesses.TimeBudget;
 import io.github.netmikey.testprocesses.utils.ProcessUtils;
 
 /**
@@ -17,6 +23,10 @@ import io.github.netmikey.testprocesses.utils.ProcessUtils;
  * In this scenario, using this {@link EventDetector} to detect process shutdown
  * will return only when the JVM (that is a grand-child of the test using
  * TestProcesses) exits.
+ * <p>
+ * The process' descendants are collected once when the wait starts. The
+ * detector then waits for all of them at the same time and reports the ones
+ * still alive if the timeout occurs.
  */
 public class RecursiveProcessTerminationEventDetector
     extends AbstractEventDetector<RecursiveProcessTerminationEventDetector> implements EventDetector {
@@ -32,45 +42,43 @@ public class RecursiveProcessTerminationEventDetector
 
     @Override
     public void waitForEvent(RunningTestProcess<?> process) throws TimeoutException {
-        long startMillis = System.currentTimeMillis();
         TestProcessDefinition processDefinition = process.getDefinition();
         Process managedProcess = ProcessUtils.retrieveManagedProcess(processDefinition);
 
-        try {
-            if (!managedProcess.waitFor(getTimeoutMillis(), TimeUnit.MILLISECONDS)) {
-                throw new TimeoutException("Test process " + processDefinition.getProcessIdentifier()
-                    + " did not exit within " + getTimeoutMillis() + " ms.");
-            }
-        } catch (InterruptedException e) {
-            // Nothing to do.
-        }
+        // Take the snapshot once: processes that have exited don't have any
+        // children left to enumerate
+        List<ProcessHandle> processTree = ProcessUtils.snapshotProcessTree(managedProcess.toHandle());
+        List<CompletableFuture<?>> exits = new ArrayList<>();
+        exits.add(managedProcess.onExit());
+        processTree.stream()
+            .skip(1)
+            .map(ProcessHandle::onExit)
+            .forEach(exits::add);
 
         try {
-            waitForChildrenRecursive(processDefinition, startMillis, managedProcess.toHandle());
-        } catch (RuntimeException e) {
-            if (e.getCause() instanceof TimeoutException) {
-                throw (TimeoutException) e.getCause();
-            } else {
-                throw e;
+            CompletableFuture.allOf(exits.toArray(new CompletableFuture<?>[0]))
+                .get(TimeBudget.limit(getTimeoutMillis()), TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            String aliveProcesses = processTree.stream()
+                .filter(ProcessHandle::isAlive)
+                .map(handle -> handle.pid() + handle.info().command().map(command -> " (" + command + ")").orElse(""))
+                .collect(Collectors.joining(", "));
+            String description = "waiting for test process " + processDefinition.getProcessIdentifier()
+                + " and its descendants to exit. Processes still alive: " + aliveProcesses;
+            Optional<TimeBudget> budget = TimeBudget.current().filter(TimeBudget::isExhausted);
+            if (budget.isPresent()) {
+                throw new TimeoutException(budget.get().exhaustedMessage(description));
             }
-        }
-    }
-
-    private void waitForChildrenRecursive(TestProcessDefinition processDefinition, long startMillis,
-        ProcessHandle process) {
-
-        process.children().forEach(child -> waitForChildrenRecursive(processDefinition, startMillis, child));
-        try {
-            long remainingMillis = getTimeoutMillis() - (System.currentTimeMillis() - startMillis);
-            process.onExit().get(remainingMillis, TimeUnit.MILLISECONDS);
+            throw new TimeoutException("Test process " + processDefinition.getProcessIdentifier()
+                + " and its descendants did not exit within " + getTimeoutMillis() + " ms. Processes still alive: "
+                + aliveProcesses);
         } catch (ExecutionException e) {
-            throw new RuntimeException("Error occured while waiting for child " + process.toString()
-                + " of the process " + processDefinition.getProcessIdentifier() + " to finish: " + e.getMessage(), e);
+            throw new RuntimeException("Error occured while waiting for the process "
+                + processDefinition.getProcessIdentifier() + " and its descendants to finish: " + e.getMessage(), e);
         } catch (InterruptedException e) {
-            throw new RuntimeException("Interrupted while waiting for child " + process.toString()
-                + " of the process " + processDefinition.getProcessIdentifier() + " to finish: " + e.getMessage(), e);
-        } catch (TimeoutException e) {
-            throw new RuntimeException(e);
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrupted while waiting for the process "
+                + processDefinition.getProcessIdentifier() + " and its descendants to finish", e);
         }
     }
 }
@@ -1,12 +1,15 @@
 package io.github.netmikey.testprocesses.processdestroyer;
 
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.Set;
 import java.util.concurrent.TimeoutException;
 import java.util.function.Consumer;
-import java.util.stream.Stream;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import io.github.netmikey.testprocesses.AbstractTestProcessDefinition;
 import io.github.netmikey.testprocesses.RunningTestProcess;
 import io.github.netmikey.testprocesses.TestProcessDefinition;
 import io.github.netmikey.testprocesses.eventdetector.EventDetector;
@@ -18,7 +21,11 @@ import io.github.netmikey.testprocesses.utils.ProcessUtils;
  * work after a timeout, it tries to destroy the process forcefully.
  * <p>
  * In addition to the managed process, it can also destroy its child processes
- * recursively or not. It applies this recursion by default.
+ * recursively or not. It applies this recursion by default. All descendants
+ * are collected before any process is signalled. If the process has been
+ * launched as the leader of its own process group (see
+ * {@link AbstractTestProcessDefinition#setProcessGroup(boolean)}), the whole
+ * group is signalled at once as well.
  */
 public class DefaultProcessDestroyer implements ProcessDestroyer {
 
@@ -42,37 +49,48 @@ public class DefaultProcessDestroyer implements ProcessDestroyer {
     public void destroy(RunningTestProcess<?> runningTestProcess) {
         TestProcessDefinition processDefinition = runningTestProcess.getDefinition();
         Process managedProcess = ProcessUtils.retrieveManagedProcess(processDefinition);
+        boolean signalProcessGroup = recursive
+            && ((AbstractTestProcessDefinition) processDefinition).isProcessGroupLeader();
+
+        // Take the snapshot before signalling so re-parented children can't escape
+        Set<ProcessHandle> processTree = snapshot(managedProcess.toHandle());
 
         // Try soft-destroying
-        if (recursive) {
-            LOG.debug("Soft-destroying process " + processDefinition.getProcessIdentifier()
-                + " and its children recursively");
-            destroyRecursive(managedProcess.toHandle(), this::destroySoft);
-        } else {
-            LOG.debug("Soft-destroying process " + processDefinition.getProcessIdentifier());
-            destroySoft(managedProcess.toHandle());
-        }
+        LOG.debug("Soft-destroying process " + processDefinition.getProcessIdentifier() + describe(signalProcessGroup));
+        destroyAll(managedProcess.pid(), processTree, signalProcessGroup, "TERM", this::destroySoft);
 
         // Check if soft-destruction worked
         try {
             softKillEventDetector.waitForEvent(runningTestProcess);
         } catch (TimeoutException e) {
             // Timeout. Bring out the big guns
-            if (recursive) {
-                LOG.debug("Forcefully destroying process " + processDefinition.getProcessIdentifier()
-                    + " and its children recursively");
-                destroyRecursive(managedProcess.toHandle(), this::destroyForcibly);
-            } else {
-                LOG.debug("Forcefully destroying process " + processDefinition.getProcessIdentifier());
-                destroyForcibly(managedProcess.toHandle());
-            }
+            LOG.debug("Forcefully destroying process " + processDefinition.getProcessIdentifier()
+                + describe(signalProcessGroup));
+            processTree.addAll(snapshot(managedProcess.toHandle()));
+            destroyAll(managedProcess.pid(), processTree, signalProcessGroup, "KILL", this::destroyForcibly);
         }
     }
 
-    private void destroyRecursive(ProcessHandle process, Consumer<ProcessHandle> destroyMethod) {
-        Stream<ProcessHandle> children = process.children();
-        destroyMethod.accept(process);
-        children.forEach(child -> destroyRecursive(child, destroyMethod));
+    private Set<ProcessHandle> snapshot(ProcessHandle process) {
+        return recursive ? new LinkedHashSet<>(ProcessUtils.snapshotProcessTree(process))
+            : new LinkedHashSet<>(Set.of(process));
+    }
+
+    private String describe(boolean signalProcessGroup) {
+        if (signalProcessGroup) {
+            return " along with its process group and its children recursively";
+        }
+        return recursive ? " and its children recursively" : "";
+    }
+
+    private void destroyAll(long processGroupId, Collection<ProcessHandle> processTree, boolean signalProcessGroup,
+        String signal, Consumer<ProcessHandle> destroyMethod) {
+
+        if (signalProcessGroup) {
+            ProcessUtils.signalProcessGroup(processGroupId, signal);
+        }
+        // Descendants may have left the process group, so signal them anyway
+        processTree.forEach(destroyMethod);
     }
 
     private void destroySoft(ProcessHandle process) {
@@ -0,0 +1,387 @@
+package io.github.netmikey.testprocesses.processdestroyer;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import io.github.netmikey.testprocesses.AbstractTestProcessDefinition;
+import io.github.netmikey.testprocesses.RunningTestProcess;
+import io.github.netmikey.testprocesses.TestProcessDefinition;
+import io.github.netmikey.testprocesses.TimeBudget;
+import io.github.netmikey.testprocesses.utils.ProcessUtils;
+
+/**
+ * A {@link ProcessDestroyer} that climbs a configurable ladder of steps until
+ * the process has exited. Each step performs an action, like sending a line to
+ * the process' stdIn, calling a shutdown URL or sending a signal, and then
+ * waits for the process to exit for up to the step's own timeout, or the
+ * remaining {@link TimeBudget}, whichever is shorter:
+ *
+ * <pre>
+ * EscalatingProcessDestroyer.newInstance()
+ *     .thenStdInLine("quit", 2000)
+ *     .thenSignal(ProcessSignal.TERM, 3000)
+ *     .thenSignal(ProcessSignal.INT, 1000)
+ *     .thenSignal(ProcessSignal.KILL, 5000);
+ * </pre>
+ * <p>
+ * Without any configured steps, <code>TERM</code> (10 seconds) followed by
+ * <code>KILL</code> (10 seconds) is used, like the
+ * {@link DefaultProcessDestroyer} does.
+ * <p>
+ * Like the {@link DefaultProcessDestroyer}, it destroys the process' children
+ * recursively by default. They are collected before any process is signalled.
+ * <p>
+ * The time each step took is logged and kept per process identifier, see
+ * {@link #getLastStepTimings(String)}. This helps tuning the ladder so that
+ * teardown doesn't waste time on steps the process ignores.
+ */
+public class EscalatingProcessDestroyer implements ProcessDestroyer {
+
+    private static final Logger LOG = LoggerFactory.getLogger(EscalatingProcessDestroyer.class);
+
+    private static final long DEFAULT_STEP_TIMEOUT_MILLIS = 10000;
+
+    private final List<Step> steps = new ArrayList<>();
+
+    private final Map<String, List<EscalationStepTiming>> lastStepTimings = new ConcurrentHashMap<>();
+
+    private boolean recursive = true;
+
+    /**
+     * Create a new {@link EscalatingProcessDestroyer} instance without any
+     * steps.
+     *
+     * @return The new {@link EscalatingProcessDestroyer}.
+     */
+    public static EscalatingProcessDestroyer newInstance() {
+        return new EscalatingProcessDestroyer();
+    }
+
+    @Override
+    public void destroy(RunningTestProcess<?> runningTestProcess) {
+        TestProcessDefinition processDefinition = runningTestProcess.getDefinition();
+        Process managedProcess = ProcessUtils.retrieveManagedProcess(processDefinition);
+        Set<ProcessHandle> processTree = snapshot(managedProcess.toHandle());
+
+        List<Step> effectiveSteps = steps.isEmpty() ? defaultSteps() : steps;
+        List<EscalationStepTiming> timings = new ArrayList<>();
+        boolean terminated = false;
+        for (Step step : effectiveSteps) {
+            long startMillis = System.currentTimeMillis();
+            // Catch children spawned in the meantime, e.g. by a graceful
+            // shutdown action
+            processTree.addAll(snapshot(managedProcess.toHandle()));
+            LOG.debug("Destroying process {}: {}", processDefinition.getProcessIdentifier(), step.description);
+            try {
+                step.action.accept(new StepContext(runningTestProcess, processTree));
+            } catch (RuntimeException e) {
+                LOG.warn("Step '" + step.description + "' failed while destroying process "
+                    + processDefinition.getProcessIdentifier() + ": " + e.getMessage(), e);
+            }
+            terminated = awaitExit(managedProcess, processTree, TimeBudget.limit(step.timeoutMillis));
+            timings.add(new EscalationStepTiming(step.description, System.currentTimeMillis() - startMillis,
+                terminated));
+            if (terminated) {
+                break;
+            }
+        }
+
+        lastStepTimings.put(processDefinition.getProcessIdentifier(), Collections.unmodifiableList(timings));
+        LOG.info("Destroyed process {} in {} ms: {}", processDefinition.getProcessIdentifier(),
+            timings.stream().mapToLong(EscalationStepTiming::getDurationMillis).sum(), timings);
+        if (!terminated) {
+            LOG.warn("Process {} is still alive after all steps to destroy it have been executed.",
+                processDefinition.getProcessIdentifier());
+        }
+    }
+
+    /**
+     * Add a step that writes a line to the process' stdIn stream, e.g. a
+     * <code>quit</code> command.
+     *
+     * @param line
+     *            The line to be written, without line separator.
+     * @param timeoutMillis
+     *            The time in milliseconds to wait for the process to exit
+     *            afterwards.
+     * @return This {@link EscalatingProcessDestroyer}.
+     */
+    public EscalatingProcessDestroyer thenStdInLine(String line, long timeoutMillis) {
+        return thenAction("stdIn line '" + line + "'", context -> {
+            try {
+                // Not closing the stream on purpose: it would close the
+                // process' stdIn, which is a step of its own
+                OutputStream stdIn = context.getManagedProcess().getOutputStream();
+                stdIn.write((line + System.lineSeparator()).getBytes(StandardCharsets.UTF_8));
+                stdIn.flush();
+            } catch (IOException e) {
+                LOG.debug("Unable to write to stdIn of process " + context.getProcessIdentifier() + ": "
+                    + e.getMessage());
+            }
+        }, timeoutMillis);
+    }
+
+    /**
+     * Add a step that closes the process' stdIn stream, which makes processes
+     * reading their stdIn until the end of the stream exit.
+     *
+     * @param timeoutMillis
+     *            The time in milliseconds to wait for the process to exit
+     *            afterwards.
+     * @return This {@link EscalatingProcessDestroyer}.
+     */
+    public EscalatingProcessDestroyer thenCloseStdIn(long timeoutMillis) {
+        return thenAction("close stdIn", context -> {
+            try {
+                context.getManagedProcess().getOutputStream().close();
+            } catch (IOException e) {
+                LOG.debug("Unable to close stdIn of process " + context.getProcessIdentifier() + ": "
+                    + e.getMessage());
+            }
+        }, timeoutMillis);
+    }
+
+    /**
+     * Add a step that sends an HTTP request to the specified URI, e.g. a
+     * Spring Boot Actuator <code>shutdown</code> endpoint. The response is
+     * ignored.
+     *
+     * @param method
+     *            The HTTP method, e.g. <code>POST</code>.
+     * @param uri
+     *            The URI to send the request to.
+     * @param timeoutMillis
+     *            The time in milliseconds to wait for the response and then for
+     *            the process to exit.
+     * @return This {@link EscalatingProcessDestroyer}.
+     */
+    public EscalatingProcessDestroyer thenHttpRequest(String method, URI uri, long timeoutMillis) {
+        return thenAction("HTTP " + method + " " + uri, context -> {
+            HttpRequest request = HttpRequest.newBuilder(uri)
+                .method(method, HttpRequest.BodyPublishers.noBody())
+                .timeout(Duration.ofMillis(timeoutMillis))
+                .build();
+            try {
+                HttpResponse<Void> response = HttpClient.newHttpClient()
+                    .send(request, HttpResponse.BodyHandlers.discarding());
+                LOG.debug("Shutdown request to {} answered with status {}", uri, response.statusCode());
+            } catch (IOException e) {
+                LOG.debug("Shutdown request to " + uri + " failed: " + e.getMessage());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new RuntimeException("Interrupted while sending shutdown request to " + uri, e);
+            }
+        }, timeoutMillis);
+    }
+
+    /**
+     * Add a step that sends the specified signal to the process and, if
+     * destroying recursively, to all of its descendants. If the process has
+     * been launched as the leader of its own process group, the signal is sent
+     * to the whole group as well.
+     *
+     * @param signal
+     *            The signal to be sent.
+     * @param timeoutMillis
+     *            The time in milliseconds to wait for the process to exit
+     *            afterwards.
+     * @return This {@link EscalatingProcessDestroyer}.
+     */
+    public EscalatingProcessDestroyer thenSignal(ProcessSignal signal, long timeoutMillis) {
+        return thenAction("SIG" + signal.name(), context -> signal(context, signal), timeoutMillis);
+    }
+
+    /**
+     * Add a custom step.
+     *
+     * @param description
+     *            The step's description, used for logging and timings.
+     * @param action
+     *            The action to be performed. It receives a
+     *            {@link StepContext} describing the process being destroyed.
+     * @param timeoutMillis
+     *            The time in milliseconds to wait for the process to exit
+     *            afterwards.
+     * @return This {@link EscalatingProcessDestroyer}.
+     */
+    public EscalatingProcessDestroyer thenAction(String description, Consumer<StepContext> action,
+        long timeoutMillis) {
+
+        steps.add(new Step(description, action, timeoutMillis));
+        return this;
+    }
+
+    /**
+     * Sets whether processes should be destroyed recursively.
+     *
+     * @param destroyRecursively
+     *            Whether or not processes should be destroyed recursively.
+     * @return This {@link EscalatingProcessDestroyer}.
+     */
+    public EscalatingProcessDestroyer recursive(boolean destroyRecursively) {
+        this.recursive = destroyRecursively;
+        return this;
+    }
+
+    /**
+     * Get the timings of the steps executed the last time the process with the
+     * specified identifier was destroyed.
+     *
+     * @param processIdentifier
+     *            The process identifier.
+     * @return The timings of the executed steps, in execution order. Empty if
+     *         the process hasn't been destroyed by this destroyer yet.
+     */
+    public List<EscalationStepTiming> getLastStepTimings(String processIdentifier) {
+        return lastStepTimings.getOrDefault(processIdentifier, Collections.emptyList());
+    }
+
+    private void signal(StepContext context, ProcessSignal signal) {
+        if (recursive && context.isProcessGroupLeader()) {
+            ProcessUtils.signalProcessGroup(context.getManagedProcess().pid(), signal.name());
+        }
+        // Descendants may have left the process group, so signal them anyway
+        for (ProcessHandle process : context.getProcessTree()) {
+            if (!process.isAlive()) {
+                continue;
+            }
+            switch (signal) {
+                case TERM:
+                    process.destroy();
+                    break;
+                case KILL:
+                    process.destroyForcibly();
+                    break;
+                default:
+                    ProcessUtils.signalProcess(process.pid(), signal.name());
+            }
+        }
+    }
+
+    private boolean awaitExit(Process managedProcess, Set<ProcessHandle> processTree, long timeoutMillis) {
+        List<CompletableFuture<?>> exits = processTree.stream()
+            .filter(process -> process.pid() != managedProcess.pid())
+            .map(ProcessHandle::onExit)
+            .collect(Collectors.toCollection(ArrayList::new));
+        exits.add(managedProcess.onExit());
+        try {
+            CompletableFuture.allOf(exits.toArray(new CompletableFuture<?>[0]))
+                .get(timeoutMillis, TimeUnit.MILLISECONDS);
+            return true;
+        } catch (TimeoutException e) {
+            return false;
+        } catch (ExecutionException e) {
+            throw new RuntimeException("Error occured while waiting for the process to exit: " + e.getMessage(), e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrupted while waiting for the process to exit", e);
+        }
+    }
+
+    private Set<ProcessHandle> snapshot(ProcessHandle process) {
+        return recursive ? new LinkedHashSet<>(ProcessUtils.snapshotProcessTree(process))
+            : new LinkedHashSet<>(Set.of(process));
+    }
+
+    private List<Step> defaultSteps() {
+        List<Step> result = new ArrayList<>();
+        result.add(new Step("SIG" + ProcessSignal.TERM.name(), context -> signal(context, ProcessSignal.TERM),
+            DEFAULT_STEP_TIMEOUT_MILLIS));
+        result.add(new Step("SIG" + ProcessSignal.KILL.name(), context -> signal(context, ProcessSignal.KILL),
+            DEFAULT_STEP_TIMEOUT_MILLIS));
+        return result;
+    }
+
+    /**
+     * The context a step of the ladder is executed in.
+     */
+    public static class StepContext {
+
+        private final RunningTestProcess<?> runningTestProcess;
+
+        private final Set<ProcessHandle> processTree;
+
+        private StepContext(RunningTestProcess<?> runningTestProcess, Set<ProcessHandle> processTree) {
+            this.runningTestProcess = runningTestProcess;
+            this.processTree = processTree;
+        }
+
+        /**
+         * Get the runningTestProcess being destroyed.
+         *
+         * @return Returns the runningTestProcess.
+         */
+        public RunningTestProcess<?> getRunningTestProcess() {
+            return runningTestProcess;
+        }
+
+        /**
+         * Get the process identifier of the process being destroyed.
+         *
+         * @return Returns the process identifier.
+         */
+        public String getProcessIdentifier() {
+            return runningTestProcess.getDefinition().getProcessIdentifier();
+        }
+
+        /**
+         * Get the managed process being destroyed.
+         *
+         * @return Returns the managed process.
+         */
+        public Process getManagedProcess() {
+            return ProcessUtils.retrieveManagedProcess(runningTestProcess.getDefinition());
+        }
+
+        /**
+         * Get the snapshot of the managed process and the descendants that
+         * are destroyed along with it.
+         *
+         * @return Returns the processTree.
+         */
+        public Set<ProcessHandle> getProcessTree() {
+            return Collections.unmodifiableSet(processTree);
+        }
+
+        private boolean isProcessGroupLeader() {
+            return ((AbstractTestProcessDefinition) runningTestProcess.getDefinition()).isProcessGroupLeader();
+        }
+    }
+
+    private static class Step {
+
+        private final String description;
+
+        private final Consumer<StepContext> action;
+
+        private final long timeoutMillis;
+
+        private Step(String description, Consumer<StepContext> action, long timeoutMillis) {
+            this.description = description;
+            this.action = action;
+            this.timeoutMillis = timeoutMillis;
+        }
+    }
+}
@@ -0,0 +1,65 @@
+package io.github.netmikey.testprocesses.processdestroyer;
+
+/**
+ * How long a single step of an {@link EscalatingProcessDestroyer}'s ladder took
+ * when destroying a process.
+ */
+public class EscalationStepTiming {
+
+    private final String step;
+
+    private final long durationMillis;
+
+    private final boolean terminated;
+
+    /**
+     * Initializing constructor.
+     *
+     * @param step
+     *            The description of the step.
+     * @param durationMillis
+     *            The time in milliseconds the step took, including waiting for
+     *            the process to exit.
+     * @param terminated
+     *            Whether the process had exited when the step finished.
+     */
+    public EscalationStepTiming(String step, long durationMillis, boolean terminated) {
+        this.step = step;
+        this.durationMillis = durationMillis;
+        this.terminated = terminated;
+    }
+
+    /**
+     * Get the description of the step.
+     *
+     * @return Returns the step.
+     */
+    public String getStep() {
+        return step;
+    }
+
+    /**
+     * Get the time in milliseconds the step took, including waiting for the
+     * process to exit.
+     *
+     * @return Returns the durationMillis.
+     */
+    public long getDurationMillis() {
+        return durationMillis;
+    }
+
+    /**
+     * Get whether the process (and its descendants, if destroyed recursively)
+     * had exited when the step finished.
+     *
+     * @return Returns whether the process had terminated.
+     */
+    public boolean isTerminated() {
+        return terminated;
+    }
+
+    @Override
+    public String toString() {
+        return step + ": " + durationMillis + " ms" + (terminated ? " (terminated)" : " (timed out)");
+    }
+}
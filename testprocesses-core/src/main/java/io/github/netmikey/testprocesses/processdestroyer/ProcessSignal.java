@@ -0,0 +1,36 @@
+package io.github.netmikey.testprocesses.processdestroyer;
+
+/**
+ * The signals an {@link EscalatingProcessDestroyer} can send to a process.
+ * <p>
+ * {@link #TERM} and {@link #KILL} are sent using {@link ProcessHandle} and work
+ * on all platforms. All other signals are sent using the <code>kill</code>
+ * utility and only work on Unix-like platforms.
+ */
+public enum ProcessSignal {
+    /**
+     * Ask the process to terminate. Sent using {@link ProcessHandle#destroy()}.
+     */
+    TERM,
+
+    /**
+     * Interrupt the process, like pressing Ctrl+C in a terminal would.
+     */
+    INT,
+
+    /**
+     * Tell the process its controlling terminal has been closed.
+     */
+    HUP,
+
+    /**
+     * Ask the process to quit and dump its core. Makes JVMs print a thread
+     * dump.
+     */
+    QUIT,
+
+    /**
+     * Kill the process. Sent using {@link ProcessHandle#destroyForcibly()}.
+     */
+    KILL;
+}
@@ -0,0 +1,136 @@
+package io.github.netmikey.testprocesses.utils;
+
+import java.lang.reflect.InvocationTargetException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Internal TestProcesses utility class that creates the threads used for
+ * TestProcesses' internal blocking work, like tailing files or waiting for
+ * events.
+ * <p>
+ * On Java 21 and later, virtual threads are used so that lots of test
+ * processes and parallel tests don't need hundreds of platform threads. On
+ * older Java versions, daemon platform threads are used. TestProcesses is
+ * compiled for Java 17, so virtual threads are created reflectively.
+ */
+public final class BackgroundThreads {
+
+    private static final Logger LOG = LoggerFactory.getLogger(BackgroundThreads.class);
+
+    private static final int VIRTUAL_THREADS_JAVA_VERSION = 21;
+
+    private static final boolean VIRTUAL_THREADS_SUPPORTED = detectVirtualThreadsSupport();
+
+    private BackgroundThreads() {
+        // Do not instantiate, please.
+    }
+
+    /**
+     * Whether the running JVM supports virtual threads and they are used for
+     * TestProcesses' internal blocking work.
+     *
+     * @return <code>true</code> if virtual threads are used.
+     */
+    public static boolean isVirtualThreadsSupported() {
+        return VIRTUAL_THREADS_SUPPORTED;
+    }
+
+    /**
+     * Create a {@link ThreadFactory} for background threads. The created
+     * threads never prevent the JVM from exiting.
+     *
+     * @param namePrefix
+     *            The prefix of the created threads' names. It will be followed
+     *            by a sequence number.
+     * @return The {@link ThreadFactory}.
+     */
+    public static ThreadFactory newThreadFactory(String namePrefix) {
+        if (VIRTUAL_THREADS_SUPPORTED) {
+            try {
+                return virtualThreadFactory(namePrefix);
+            } catch (ReflectiveOperationException e) {
+                LOG.debug("Unable to create virtual thread factory, falling back to platform threads: "
+                    + e.getMessage(), e);
+            }
+        }
+        return platformThreadFactory(namePrefix);
+    }
+
+    /**
+     * Create and start a new background thread executing the specified task.
+     *
+     * @param name
+     *            The thread's name.
+     * @param task
+     *            The task to be executed.
+     * @return The started thread.
+     */
+    public static Thread start(String name, Runnable task) {
+        Thread thread = newThreadFactory(name).newThread(task);
+        thread.setName(name);
+        thread.start();
+        return thread;
+    }
+
+    /**
+     * Create an {@link ExecutorService} that executes each task in a new
+     * background thread: a virtual thread per task on Java 21 and later, a
+     * cached pool of daemon platform threads otherwise.
+     *
+     * @param namePrefix
+     *            The prefix of the executor threads' names.
+     * @return The new {@link ExecutorService}.
+     */
+    public static ExecutorService newExecutor(String namePrefix) {
+        ThreadFactory threadFactory = newThreadFactory(namePrefix);
+        if (VIRTUAL_THREADS_SUPPORTED) {
+            try {
+                return (ExecutorService) Executors.class
+                    .getMethod("newThreadPerTaskExecutor", ThreadFactory.class)
+                    .invoke(null, threadFactory);
+            } catch (ReflectiveOperationException e) {
+                LOG.debug("Unable to create thread-per-task executor, falling back to a cached thread pool: "
+                    + e.getMessage(), e);
+            }
+        }
+        return Executors.newCachedThreadPool(threadFactory);
+    }
+
+    private static ThreadFactory virtualThreadFactory(String namePrefix) throws ReflectiveOperationException {
+        Class<?> builderClass = Class.forName("java.lang.Thread$Builder");
+        Object builder = Thread.class.getMethod("ofVirtual").invoke(null);
+        builder = builderClass.getMethod("name", String.class, long.class).invoke(builder, namePrefix, 0L);
+        return (ThreadFactory) builderClass.getMethod("factory").invoke(builder);
+    }
+
+    private static ThreadFactory platformThreadFactory(String namePrefix) {
+        AtomicLong threadNumber = new AtomicLong();
+        return runnable -> {
+            Thread thread = new Thread(runnable, namePrefix + threadNumber.getAndIncrement());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+
+    private static boolean detectVirtualThreadsSupport() {
+        if (Runtime.version().feature() < VIRTUAL_THREADS_JAVA_VERSION) {
+            return false;
+        }
+        try {
+            virtualThreadFactory("testprocesses-probe-");
+            return true;
+        } catch (InvocationTargetException e) {
+            LOG.debug("Virtual threads are not available: " + e.getCause(), e);
+            return false;
+        } catch (ReflectiveOperationException e) {
+            LOG.debug("Virtual threads are not available: " + e.getMessage(), e);
+            return false;
+        }
+    }
+}
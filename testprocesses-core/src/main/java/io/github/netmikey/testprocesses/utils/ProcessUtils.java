@@ -1,5 +1,21 @@
 package io.github.netmikey.testprocesses.utils;
 
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
 import io.github.netmikey.testprocesses.AbstractTestProcessDefinition;
 import io.github.netmikey.testprocesses.TestProcessDefinition;
 
@@ -8,6 +24,22 @@ import io.github.netmikey.testprocesses.TestProcessDefinition;
  */
 public final class ProcessUtils {
 
+    private static final Logger LOG = LoggerFactory.getLogger(ProcessUtils.class);
+
+    private static final long KILL_COMMAND_TIMEOUT_MILLIS = 5000;
+
+    private static final Optional<Path> SETSID_EXECUTABLE = findLinuxExecutable("setsid");
+
+    private static final Optional<Path> TASKSET_EXECUTABLE = findLinuxExecutable("taskset");
+
+    private static final Optional<Path> NICE_EXECUTABLE = findLinuxExecutable("nice");
+
+    /**
+     * The PID of this JVM, which must never be signalled: test processes that
+     * run within this JVM report it as their PID.
+     */
+    private static final long CURRENT_PID = ProcessHandle.current().pid();
+
     private ProcessUtils() {
         // Do not instantiate, please.
     }
@@ -29,4 +61,255 @@ public final class ProcessUtils {
         Process managedProcess = ((AbstractTestProcessDefinition) processDefinition).getManagedProcess();
         return managedProcess;
     }
+
+    /**
+     * Take a snapshot of the specified process and all of its descendants. The
+     * snapshot should be taken before signalling any of these processes so
+     * that children can't escape by being re-parented when their parent exits.
+     * 
+     * @param process
+     *            The root of the process tree.
+     * @return The specified process, followed by all of its descendants.
+     */
+    public static List<ProcessHandle> snapshotProcessTree(ProcessHandle process) {
+        List<ProcessHandle> result = new ArrayList<>();
+        result.add(process);
+        result.addAll(process.descendants().collect(Collectors.toList()));
+        return result;
+    }
+
+    /**
+     * Forcefully destroy the specified process and all of its descendants. If
+     * the process has been launched as the leader of its own process group,
+     * the whole group is killed as well.
+     * 
+     * @param processDefinition
+     *            The {@link TestProcessDefinition} of the process to be
+     *            destroyed.
+     */
+    public static void destroyForciblyRecursive(TestProcessDefinition processDefinition) {
+        Process managedProcess = retrieveManagedProcess(processDefinition);
+        if (managedProcess == null) {
+            return;
+        }
+        List<ProcessHandle> processTree = snapshotProcessTree(managedProcess.toHandle());
+        if (((AbstractTestProcessDefinition) processDefinition).isProcessGroupLeader()) {
+            signalProcessGroup(managedProcess.pid(), "KILL");
+        }
+        processTree.forEach(ProcessHandle::destroyForcibly);
+    }
+
+    /**
+     * Forcefully destroy the specified process and all of its descendants.
+     * 
+     * @param process
+     *            The root of the process tree to be destroyed.
+     */
+    public static void destroyForciblyRecursive(ProcessHandle process) {
+        snapshotProcessTree(process).forEach(ProcessHandle::destroyForcibly);
+    }
+
+    /**
+     * Whether test processes can be launched as leaders of their own process
+     * group on this platform. This requires Linux and the <code>setsid</code>
+     * utility.
+     * 
+     * @return <code>true</code> if process groups are supported.
+     */
+    public static boolean isProcessGroupSupported() {
+        return SETSID_EXECUTABLE.isPresent();
+    }
+
+    /**
+     * Prefix the specified command so that it is launched as the leader of a
+     * new session and process group. The <code>setsid</code> utility replaces
+     * itself with the command, so the launched process' PID is also its
+     * process group ID.
+     * 
+     * @param command
+     *            The command to be launched.
+     * @return The prefixed command.
+     * @throws IllegalStateException
+     *             If process groups aren't supported on this platform.
+     */
+    public static List<String> inNewProcessGroup(List<String> command) {
+        Path setsid = SETSID_EXECUTABLE.orElseThrow(() -> new IllegalStateException(
+            "Process groups are not supported on this platform"));
+        List<String> result = new ArrayList<>();
+        result.add(setsid.toString());
+        result.addAll(command);
+        return result;
+    }
+
+    /**
+     * Whether test processes can be pinned to a set of CPUs on this platform.
+     * This requires Linux and the <code>taskset</code> utility.
+     * 
+     * @return <code>true</code> if CPU affinity is supported.
+     */
+    public static boolean isCpuAffinitySupported() {
+        return TASKSET_EXECUTABLE.isPresent();
+    }
+
+    /**
+     * Prefix the specified command so that it is launched pinned to the
+     * specified CPUs. The <code>taskset</code> utility replaces itself with
+     * the command, so the launched process keeps its PID. The affinity is
+     * inherited by the process' children.
+     * 
+     * @param command
+     *            The command to be launched.
+     * @param cpuList
+     *            The CPUs in <code>taskset</code>'s list format, e.g.
+     *            <code>0-3,8</code>.
+     * @return The prefixed command.
+     * @throws IllegalStateException
+     *             If CPU affinity isn't supported on this platform.
+     */
+    public static List<String> withCpuAffinity(List<String> command, String cpuList) {
+        Path taskset = TASKSET_EXECUTABLE.orElseThrow(() -> new IllegalStateException(
+            "CPU affinity is not supported on this platform"));
+        List<String> result = new ArrayList<>(List.of(taskset.toString(), "-c", cpuList));
+        result.addAll(command);
+        return result;
+    }
+
+    /**
+     * Set the CPU affinity of all threads of this JVM. Threads started later
+     * inherit the affinity of the thread starting them.
+     * 
+     * @param cpuList
+     *            The CPUs in <code>taskset</code>'s list format, e.g.
+     *            <code>0-3,8</code>.
+     * @return <code>true</code> if the affinity has been set.
+     */
+    public static boolean setCurrentJvmCpuAffinity(String cpuList) {
+        if (TASKSET_EXECUTABLE.isEmpty()) {
+            return false;
+        }
+        try {
+            Process taskset = new ProcessBuilder(TASKSET_EXECUTABLE.get().toString(), "-a", "-p", "-c", cpuList,
+                String.valueOf(CURRENT_PID))
+                .redirectErrorStream(true)
+                .redirectOutput(ProcessBuilder.Redirect.DISCARD)
+                .start();
+            if (!taskset.waitFor(KILL_COMMAND_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS)) {
+                taskset.destroyForcibly();
+                LOG.warn("Setting the CPU affinity of this JVM timed out");
+                return false;
+            }
+            return taskset.exitValue() == 0;
+        } catch (IOException e) {
+            LOG.warn("Unable to set the CPU affinity of this JVM: " + e.getMessage(), e);
+            return false;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrupted while setting the CPU affinity of this JVM", e);
+        }
+    }
+
+    /**
+     * Whether the scheduling priority of test processes can be adjusted on
+     * this platform. This requires Linux and the <code>nice</code> utility.
+     * 
+     * @return <code>true</code> if nice levels are supported.
+     */
+    public static boolean isNiceLevelSupported() {
+        return NICE_EXECUTABLE.isPresent();
+    }
+
+    /**
+     * Prefix the specified command so that it is launched with the specified
+     * nice level. The <code>nice</code> utility replaces itself with the
+     * command, so the launched process keeps its PID.
+     * 
+     * @param command
+     *            The command to be launched.
+     * @param niceLevel
+     *            The nice level, from <code>-20</code> (highest priority) to
+     *            <code>19</code> (lowest priority).
+     * @return The prefixed command.
+     * @throws IllegalStateException
+     *             If nice levels aren't supported on this platform.
+     */
+    public static List<String> withNiceLevel(List<String> command, int niceLevel) {
+        Path nice = NICE_EXECUTABLE.orElseThrow(() -> new IllegalStateException(
+            "Nice levels are not supported on this platform"));
+        List<String> result = new ArrayList<>(List.of(nice.toString(), "-n", String.valueOf(niceLevel)));
+        result.addAll(command);
+        return result;
+    }
+
+    /**
+     * Send a signal to all processes of the specified process group at once
+     * using the <code>kill</code> utility.
+     * 
+     * @param processGroupId
+     *            The process group ID, i.e. the PID of its leader.
+     * @param signal
+     *            The signal's name without <code>SIG</code> prefix, e.g.
+     *            <code>TERM</code> or <code>KILL</code>.
+     * @return <code>true</code> if the signal has been delivered to at least
+     *         one process.
+     */
+    public static boolean signalProcessGroup(long processGroupId, String signal) {
+        if (processGroupId == CURRENT_PID) {
+            LOG.debug("Not sending SIG{} to the process group of this JVM", signal);
+            return false;
+        }
+        return kill("-" + processGroupId, signal, "process group " + processGroupId);
+    }
+
+    /**
+     * Send a signal to a single process using the <code>kill</code> utility.
+     * Used for signals that can't be sent using {@link ProcessHandle}, like
+     * <code>INT</code> or <code>HUP</code>. Only works on Unix-like platforms.
+     * 
+     * @param pid
+     *            The process' PID.
+     * @param signal
+     *            The signal's name without <code>SIG</code> prefix, e.g.
+     *            <code>INT</code>.
+     * @return <code>true</code> if the signal has been delivered.
+     */
+    public static boolean signalProcess(long pid, String signal) {
+        if (pid == CURRENT_PID) {
+            LOG.debug("Not sending SIG{} to this JVM", signal);
+            return false;
+        }
+        return kill(String.valueOf(pid), signal, "process " + pid);
+    }
+
+    private static boolean kill(String target, String signal, String targetDescription) {
+        try {
+            Process kill = new ProcessBuilder("kill", "-" + signal, "--", target)
+                .redirectErrorStream(true)
+                .redirectOutput(ProcessBuilder.Redirect.DISCARD)
+                .start();
+            if (!kill.waitFor(KILL_COMMAND_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS)) {
+                kill.destroyForcibly();
+                LOG.warn("Sending SIG{} to {} timed out", signal, targetDescription);
+                return false;
+            }
+            return kill.exitValue() == 0;
+        } catch (IOException e) {
+            LOG.warn("Unable to send SIG" + signal + " to " + targetDescription + ": " + e.getMessage(), e);
+            return false;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrupted while sending SIG" + signal + " to " + targetDescription, e);
+        }
+    }
+
+    private static Optional<Path> findLinuxExecutable(String name) {
+        if (!System.getProperty("os.name", "").toLowerCase(Locale.ROOT).contains("linux")) {
+            return Optional.empty();
+        }
+        String path = Optional.ofNullable(System.getenv("PATH")).orElse("/usr/bin:/bin");
+        return Stream.of(path.split(File.pathSeparator))
+            .filter(directory -> !directory.isEmpty())
+            .map(directory -> Paths.get(directory, name))
+            .filter(Files::isExecutable)
+            .findFirst();
+    }
 }
@@ -433,9 +433,7 @@ public class Tailer implements Runnable {
         final long delayMillis, final long startPosition, final boolean end, final boolean reOpen, final int bufSize) {
 
         final Tailer tailer = new Tailer(file, charset, listener, delayMillis, startPosition, end, reOpen, bufSize);
-        final Thread thread = new Thread(tailer);
-        thread.setDaemon(true);
-        thread.start();
+        BackgroundThreads.start("testprocesses-tailer-" + file.getName(), tailer);
         return tailer;
     }
 
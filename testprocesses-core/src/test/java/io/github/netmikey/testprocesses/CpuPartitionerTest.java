@@ -0,0 +1,58 @@
+package io.github.netmikey.testprocesses;
+
+import java.util.List;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Test the {@link CpuPartitioner}'s CPU lists and block allocation. Lives in
+ * the partitioner's package since it isn't part of the public API.
+ */
+public class CpuPartitionerTest {
+
+    /**
+     * CPU lists in <code>taskset</code>'s format are parsed into sorted CPU
+     * numbers, including single CPUs, ranges and unordered entries.
+     */
+    @Test
+    public void testParseCpuList() {
+        Assertions.assertEquals(List.of(0), CpuPartitioner.parseCpuList("0"));
+        Assertions.assertEquals(List.of(0, 1, 2, 3, 8), CpuPartitioner.parseCpuList("0-3,8"));
+        Assertions.assertEquals(List.of(1, 2, 5, 6, 7), CpuPartitioner.parseCpuList("5-7,1,2"));
+        Assertions.assertEquals(List.of(2, 3), CpuPartitioner.parseCpuList("2-3,3"));
+    }
+
+    /**
+     * Consecutive CPUs are formatted as ranges.
+     */
+    @Test
+    public void testFormatCpuList() {
+        Assertions.assertEquals("", CpuPartitioner.formatCpuList(List.of()));
+        Assertions.assertEquals("4", CpuPartitioner.formatCpuList(List.of(4)));
+        Assertions.assertEquals("0-3,8", CpuPartitioner.formatCpuList(List.of(0, 1, 2, 3, 8)));
+        Assertions.assertEquals("1,3,5-6", CpuPartitioner.formatCpuList(List.of(1, 3, 5, 6)));
+        Assertions.assertEquals("0-3,8-11", CpuPartitioner.formatCpuList(CpuPartitioner.parseCpuList("0-3,8-11")));
+    }
+
+    /**
+     * Each process gets a block of its own until all blocks are in use. Then
+     * further processes share all process CPUs, and released blocks are
+     * handed out again.
+     */
+    @Test
+    public void testAllocateAndRelease() {
+        // CPUs 1-5 left for test processes, in blocks of 2: CPU 5 is never handed out alone
+        CpuPartitioner partitioner = CpuPartitioner.partition(List.of(1, 2, 3, 4, 5), 2);
+
+        Assertions.assertEquals("1-2", partitioner.allocate());
+        Assertions.assertEquals("3-4", partitioner.allocate());
+        Assertions.assertEquals("1-5", partitioner.allocate(), "Without free blocks, all CPUs should be shared");
+        Assertions.assertEquals("1-5", partitioner.allocate());
+
+        partitioner.release("1-5");
+        partitioner.release("1-2");
+        Assertions.assertEquals("1-2", partitioner.allocate(), "The released block should be handed out again");
+        Assertions.assertEquals("1-5", partitioner.allocate());
+    }
+}
@@ -0,0 +1,157 @@
+package io.github.netmikey.testprocesses;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import io.github.netmikey.testprocesses.functional.testfixtures.FixtureTestProcess;
+import io.github.netmikey.testprocesses.functional.testfixtures.Sleeper;
+import io.github.netmikey.testprocesses.functional.testfixtures.Spawner;
+
+/**
+ * Test reaping the test processes left behind by a test JVM that has been
+ * killed. Lives in the ledger's package since it isn't part of the public API.
+ */
+public class ProcessLedgerTest {
+
+    /**
+     * The next ledger destroys the recorded process and its descendants, but
+     * not a process that only has the PID of a recorded one, as if the PID had
+     * been reused after the recorded process exited.
+     *
+     * @param ledgerDirectory
+     *            The ledger directory.
+     * @throws Exception
+     *             Thrown if the processes can't be launched or waited for.
+     */
+    @Test
+    public void testOnlyRecordedProcessTreeIsReaped(@TempDir Path ledgerDirectory) throws Exception {
+        Process recorded = startJava(Spawner.class);
+        Process unrelated = startJava(Sleeper.class);
+        try {
+            List<ProcessHandle> recordedTree = awaitChildren(recorded);
+
+            ProcessLedger crashedLedger = new ProcessLedger(ledgerDirectory);
+            crashedLedger.record("recorded-process", recorded.toHandle());
+            Path ledgerFile = singleLedgerFile(ledgerDirectory);
+            // Same PID, but a different start time: another process reusing the PID
+            long unrelatedStartMillis = ProcessLedger.startMillis(unrelated.toHandle()).get();
+            Files.write(ledgerFile, List.of(String.join("\t", String.valueOf(unrelated.pid()),
+                String.valueOf(unrelatedStartMillis - 60000), "exited-process", "", "java")),
+                StandardCharsets.UTF_8, StandardOpenOption.APPEND);
+            // The JVM owning the ledger has been killed
+            Path crashedLedgerFile = ledgerDirectory.resolve(deadOwnerId() + ".ledger");
+            Files.move(ledgerFile, crashedLedgerFile);
+
+            List<ProcessLedger.Entry> reaped = new ProcessLedger(ledgerDirectory).reapOrphans();
+
+            Assertions.assertEquals(List.of(recorded.pid()),
+                reaped.stream().map(ProcessLedger.Entry::getPid).collect(Collectors.toList()));
+            Assertions.assertTrue(recorded.waitFor(5, TimeUnit.SECONDS),
+                "The recorded process should have been destroyed");
+            for (ProcessHandle descendant : recordedTree) {
+                descendant.onExit().get(5, TimeUnit.SECONDS);
+            }
+            Assertions.assertTrue(unrelated.isAlive(), "The process reusing the PID should not have been destroyed");
+            Assertions.assertFalse(Files.exists(crashedLedgerFile),
+                "The crashed JVM's ledger should have been deleted");
+        } finally {
+            recorded.descendants().forEach(ProcessHandle::destroyForcibly);
+            recorded.destroyForcibly();
+            unrelated.destroyForcibly();
+        }
+    }
+
+    /**
+     * A registry using the ledger reaps the processes of a registry whose JVM
+     * has been killed as soon as it launches its first process, and leaves no
+     * ledger behind once it has been shut down.
+     *
+     * @param ledgerDirectory
+     *            The ledger directory.
+     * @throws Exception
+     *             Thrown if the processes can't be waited for.
+     */
+    @Test
+    public void testRegistryReapsOrphansOfKilledRegistry(@TempDir Path ledgerDirectory) throws Exception {
+        TestProcessesRegistry killedRegistry = ledgerRegistry(ledgerDirectory);
+        TestProcessesRegistry nextRegistry = ledgerRegistry(ledgerDirectory);
+        try {
+            FixtureTestProcess orphan = new FixtureTestProcess("orphaned-process", Sleeper.class);
+            killedRegistry.start(TestProcessDefinitionBy.instance(orphan), StartStrategy.USE_EXISTING);
+            Process orphanProcess = orphan.getManagedProcess();
+            // The JVM owning the registry has been killed
+            Files.move(singleLedgerFile(ledgerDirectory), ledgerDirectory.resolve(deadOwnerId() + ".ledger"));
+
+            nextRegistry.start(TestProcessDefinitionBy.instance(new FixtureTestProcess("next-process", Sleeper.class)),
+                StartStrategy.USE_EXISTING);
+
+            Assertions.assertTrue(orphanProcess.waitFor(5, TimeUnit.SECONDS),
+                "The orphaned process should have been reaped");
+            nextRegistry.shutdown();
+            Assertions.assertEquals(List.of(), ledgerFiles(ledgerDirectory),
+                "No ledger should be left behind after a clean shutdown");
+        } finally {
+            nextRegistry.shutdown();
+            killedRegistry.shutdown();
+        }
+    }
+
+    private static TestProcessesRegistry ledgerRegistry(Path ledgerDirectory) {
+        TestProcessesRegistry registry = new TestProcessesRegistry();
+        registry.setProcessLedgerEnabled(true);
+        registry.setProcessLedgerDirectory(ledgerDirectory);
+        return registry;
+    }
+
+    private static Process startJava(Class<?> mainClass) throws IOException {
+        return new ProcessBuilder(Paths.get(System.getProperty("java.home"), "bin", "java").toString(), "-cp",
+            System.getProperty("java.class.path"), mainClass.getName())
+            .redirectOutput(ProcessBuilder.Redirect.DISCARD)
+            .start();
+    }
+
+    private static List<ProcessHandle> awaitChildren(Process process) throws InterruptedException {
+        for (int i = 0; i < 100 && process.children().findAny().isEmpty(); i++) {
+            Thread.sleep(50);
+        }
+        List<ProcessHandle> children = process.children().collect(Collectors.toList());
+        Assertions.assertFalse(children.isEmpty(), "The process should have started its child");
+        return children;
+    }
+
+    private static Path singleLedgerFile(Path ledgerDirectory) throws IOException {
+        List<Path> files = ledgerFiles(ledgerDirectory);
+        Assertions.assertEquals(1, files.size(), "The ledger should have written a single file");
+        return files.get(0);
+    }
+
+    private static List<Path> ledgerFiles(Path ledgerDirectory) throws IOException {
+        try (DirectoryStream<Path> ledgerFiles = Files.newDirectoryStream(ledgerDirectory, "*.ledger")) {
+            List<Path> files = new ArrayList<>();
+            ledgerFiles.forEach(files::add);
+            return files;
+        }
+    }
+
+    /**
+     * Get an owner identifier of a JVM that isn't alive anymore: the
+     * identifier of the current JVM, with a start time that doesn't match.
+     */
+    private static String deadOwnerId() {
+        String[] idParts = ProcessLedger.newOwnerId().split("-");
+        return idParts[0] + "-1-" + idParts[2];
+    }
+}
@@ -0,0 +1,321 @@
+package io.github.netmikey.testprocesses;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.attribute.FileTime;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import io.github.netmikey.testprocesses.eventdetector.DelayEventDetector;
+import io.github.netmikey.testprocesses.eventdetector.LogPatternEventDetector;
+import io.github.netmikey.testprocesses.functional.testfixtures.Sleeper;
+
+/**
+ * Test sharing a test process between JVMs through the {@link SharedProcesses}
+ * registry. Each registry has a process table and thus a holder identifier of
+ * its own, so a second registry using the same shared directory acts like a
+ * second JVM. Lives in the shared registry's package to inspect its file.
+ */
+public class SharedProcessesTest {
+
+    private final TestProcessesRegistry registry = new TestProcessesRegistry();
+
+    private final TestProcessesRegistry otherRegistry = new TestProcessesRegistry();
+
+    private final AtomicInteger starts = new AtomicInteger();
+
+    @TempDir
+    private Path tempDirectory;
+
+    /**
+     * Stop the processes of both registries.
+     */
+    @AfterEach
+    public void shutdownRegistries() {
+        try {
+            registry.shutdown();
+        } finally {
+            otherRegistry.shutdown();
+        }
+    }
+
+    /**
+     * The second registry attaches to the process launched by the first one,
+     * both hold a reference to it, and it is only stopped once the last
+     * reference has been released.
+     *
+     * @throws IOException
+     *             Thrown if the shared registry can't be read.
+     */
+    @Test
+    public void testLastReleaseStopsProcess() throws IOException {
+        Path sharedDirectory = useSharedDirectory();
+        Path classesDirectory = classesDirectory("classes");
+        AbstractTestProcessDefinition definition = sleeperDefinition("shared-sleeper", classesDirectory);
+        AbstractTestProcessDefinition otherDefinition = sleeperDefinition("shared-sleeper", classesDirectory);
+
+        registry.start(TestProcessDefinitionBy.instance(definition), StartStrategy.USE_EXISTING);
+        Process process = definition.getManagedProcess();
+        Assertions.assertEquals(1, starts.get(), "The process should only have been built once");
+        Assertions.assertEquals(1, holders(sharedDirectory, "shared-sleeper").orElseThrow().size());
+
+        otherRegistry.start(TestProcessDefinitionBy.instance(otherDefinition), StartStrategy.USE_EXISTING);
+        Assertions.assertTrue(otherDefinition.getManagedProcess() instanceof AttachedProcess,
+            "The other registry should have attached to the process");
+        Assertions.assertEquals(process.pid(), otherDefinition.getManagedProcess().pid());
+        Assertions.assertEquals(2, holders(sharedDirectory, "shared-sleeper").orElseThrow().size(),
+            "Both registries should hold a reference to the process");
+
+        registry.shutdown();
+        Assertions.assertTrue(process.isAlive(), "The process should be left running for the other registry");
+        Assertions.assertEquals(1, holders(sharedDirectory, "shared-sleeper").orElseThrow().size());
+
+        otherRegistry.shutdown();
+        Assertions.assertFalse(process.isAlive(), "The process should have been stopped by the last release");
+        Assertions.assertTrue(holders(sharedDirectory, "shared-sleeper").isEmpty(),
+            "The process should have been unregistered");
+    }
+
+    /**
+     * A {@link ShutdownMode#FAST} shutdown only detaches from a process that
+     * another JVM still uses, and terminates it once it releases the last
+     * reference.
+     *
+     * @throws IOException
+     *             Thrown if the shared registry can't be read.
+     */
+    @Test
+    public void testFastShutdownOnlyDetachesFromProcessInUse() throws IOException {
+        Path sharedDirectory = useSharedDirectory();
+        Path classesDirectory = classesDirectory("classes");
+        AbstractTestProcessDefinition definition = sleeperDefinition("shared-sleeper", classesDirectory);
+        AbstractTestProcessDefinition otherDefinition = sleeperDefinition("shared-sleeper", classesDirectory);
+        registry.setShutdownMode(ShutdownMode.FAST);
+        otherRegistry.setShutdownMode(ShutdownMode.FAST);
+
+        registry.start(TestProcessDefinitionBy.instance(definition), StartStrategy.USE_EXISTING);
+        Process process = definition.getManagedProcess();
+        otherRegistry.start(TestProcessDefinitionBy.instance(otherDefinition), StartStrategy.USE_EXISTING);
+
+        registry.shutdown();
+        Assertions.assertTrue(process.isAlive(), "The process should be left running for the other registry");
+        Assertions.assertEquals(1, holders(sharedDirectory, "shared-sleeper").orElseThrow().size());
+
+        otherRegistry.shutdown();
+        Assertions.assertFalse(process.isAlive(), "The process should have been terminated by the last release");
+        Assertions.assertTrue(holders(sharedDirectory, "shared-sleeper").isEmpty(),
+            "The process should have been unregistered");
+    }
+
+    /**
+     * A process that is still used by another JVM isn't replaced by a JVM
+     * that needs a differently configured process with the same identifier:
+     * starting it fails instead.
+     *
+     * @throws IOException
+     *             Thrown if the class files can't be copied.
+     */
+    @Test
+    public void testProcessInUseIsNotReplaced() throws IOException {
+        useSharedDirectory();
+        AbstractTestProcessDefinition definition = sleeperDefinition("shared-sleeper", classesDirectory("classes"));
+        AbstractTestProcessDefinition otherDefinition = sleeperDefinition("shared-sleeper",
+            classesDirectory("other-classes"));
+
+        registry.start(TestProcessDefinitionBy.instance(definition), StartStrategy.USE_EXISTING);
+        Process process = definition.getManagedProcess();
+
+        RuntimeException e = Assertions.assertThrows(RuntimeException.class,
+            () -> otherRegistry.start(TestProcessDefinitionBy.instance(otherDefinition),
+                StartStrategy.USE_EXISTING));
+        Assertions.assertTrue(e.getMessage().contains("different definition"), e.getMessage());
+        Assertions.assertTrue(process.isAlive(), "The process in use should have been left running");
+    }
+
+    /**
+     * The registry isn't locked while a shared process starts up: another JVM
+     * can start a different shared process in the meantime.
+     *
+     * @throws Exception
+     *             Thrown when an unexpected error occurs.
+     */
+    @Test
+    public void testRegistryIsNotLockedDuringStartup() throws Exception {
+        useSharedDirectory();
+        Path classesDirectory = classesDirectory("classes");
+        AbstractTestProcessDefinition slowDefinition = sleeperDefinition("slow-sleeper", classesDirectory);
+        slowDefinition.setStartupDetector(DelayEventDetector.withDelayMillis(5000));
+        AbstractTestProcessDefinition otherDefinition = sleeperDefinition("other-sleeper", classesDirectory);
+
+        CompletableFuture<Void> slowStart = CompletableFuture.runAsync(
+            () -> registry.start(TestProcessDefinitionBy.instance(slowDefinition), StartStrategy.USE_EXISTING));
+        try {
+            long deadlineMillis = System.currentTimeMillis() + 10000;
+            while (slowDefinition.getManagedProcess() == null && System.currentTimeMillis() < deadlineMillis) {
+                Thread.sleep(50);
+            }
+            otherRegistry.start(TestProcessDefinitionBy.instance(otherDefinition), StartStrategy.USE_EXISTING);
+            Assertions.assertFalse(slowStart.isDone(),
+                "The other process should have started while the slow one was still starting up");
+        } finally {
+            slowStart.get(30, TimeUnit.SECONDS);
+        }
+    }
+
+    /**
+     * A persistent process is left running when its registry shuts down. The
+     * next test run attaches to it as long as the fingerprint of its definition
+     * still matches, and replaces it once the definition has changed.
+     *
+     * @throws IOException
+     *             Thrown if the class file can't be copied.
+     */
+    @Test
+    public void testPersistentProcessIsReattachedByNextRun() throws IOException {
+        Path sharedDirectory = useSharedDirectory();
+        Path classesDirectory = classesDirectory("classes");
+        AbstractTestProcessDefinition definition = sleeperDefinition("persistent-sleeper", classesDirectory,
+            Map.of("SLEEPER_SETTING", "first"));
+        definition.setPersistent(true);
+        registry.start(TestProcessDefinitionBy.instance(definition), StartStrategy.USE_EXISTING);
+        Process process = definition.getManagedProcess();
+        registry.shutdown();
+        Assertions.assertTrue(process.isAlive(), "The persistent process should have been left running");
+
+        AbstractTestProcessDefinition unchangedDefinition = sleeperDefinition("persistent-sleeper",
+            classesDirectory, Map.of("SLEEPER_SETTING", "first"));
+        unchangedDefinition.setPersistent(true);
+        otherRegistry.start(TestProcessDefinitionBy.instance(unchangedDefinition), StartStrategy.USE_EXISTING);
+        Assertions.assertTrue(unchangedDefinition.getManagedProcess() instanceof AttachedProcess,
+            "The next run should have attached to the persistent process");
+        Assertions.assertEquals(process.pid(), unchangedDefinition.getManagedProcess().pid());
+        otherRegistry.shutdown();
+        Assertions.assertTrue(process.isAlive(), "The persistent process should have been left running again");
+
+        TestProcessesRegistry changedRegistry = new TestProcessesRegistry();
+        changedRegistry.setSharedProcessesDirectory(sharedDirectory);
+        try {
+            AbstractTestProcessDefinition changedDefinition = sleeperDefinition("persistent-sleeper",
+                classesDirectory, Map.of("SLEEPER_SETTING", "second"));
+            changedDefinition.setPersistent(true);
+            changedRegistry.start(TestProcessDefinitionBy.instance(changedDefinition), StartStrategy.USE_EXISTING);
+            Assertions.assertFalse(changedDefinition.getManagedProcess() instanceof AttachedProcess,
+                "A run with a changed definition should have launched a new process");
+            Assertions.assertFalse(process.isAlive(), "The stale persistent process should have been destroyed");
+            changedRegistry.stop(TestProcessDefinitionBy.instance(changedDefinition));
+        } finally {
+            changedRegistry.shutdown();
+        }
+    }
+
+    /**
+     * A process whose classpath directory has changed since it has been
+     * launched, e.g. because a class has been recompiled, is replaced instead
+     * of being attached to.
+     *
+     * @throws IOException
+     *             Thrown if the class file can't be copied or changed.
+     */
+    @Test
+    public void testChangedClassFileIsNotReattached() throws IOException {
+        useSharedDirectory();
+        Path classesDirectory = classesDirectory("classes");
+        AbstractTestProcessDefinition definition = sleeperDefinition("shared-sleeper", classesDirectory);
+        AbstractTestProcessDefinition otherDefinition = sleeperDefinition("shared-sleeper", classesDirectory);
+        definition.setPersistent(true);
+        otherDefinition.setPersistent(true);
+
+        registry.start(TestProcessDefinitionBy.instance(definition), StartStrategy.USE_EXISTING);
+        Process process = definition.getManagedProcess();
+        registry.shutdown();
+        Assertions.assertTrue(process.isAlive(), "The persistent process should have been left running");
+
+        // Recompiled
+        Path classFile = classesDirectory.resolve(Sleeper.class.getName().replace('.', '/') + ".class");
+        Files.setLastModifiedTime(classFile,
+            FileTime.fromMillis(Files.getLastModifiedTime(classFile).toMillis() + 60000));
+
+        otherRegistry.start(TestProcessDefinitionBy.instance(otherDefinition), StartStrategy.USE_EXISTING);
+        Assertions.assertFalse(otherDefinition.getManagedProcess() instanceof AttachedProcess,
+            "The other registry should have launched a new process");
+        Assertions.assertNotEquals(process.pid(), otherDefinition.getManagedProcess().pid(),
+            "The other registry should not have attached to the stale process");
+        Assertions.assertFalse(process.isAlive(), "The stale process should have been destroyed");
+        otherRegistry.stop(TestProcessDefinitionBy.instance(otherDefinition));
+    }
+
+    private Path useSharedDirectory() {
+        Path sharedDirectory = tempDirectory.resolve("shared");
+        registry.setSharedProcessesDirectory(sharedDirectory);
+        otherRegistry.setSharedProcessesDirectory(sharedDirectory);
+        return sharedDirectory;
+    }
+
+    /**
+     * Create a classpath directory containing the {@link Sleeper} class.
+     */
+    private Path classesDirectory(String name) throws IOException {
+        String classFileName = Sleeper.class.getName().replace('.', '/') + ".class";
+        Path classFile = tempDirectory.resolve(name).resolve(classFileName);
+        Files.createDirectories(classFile.getParent());
+        try (InputStream in = Sleeper.class.getClassLoader().getResourceAsStream(classFileName)) {
+            Files.copy(in, classFile);
+        }
+        return tempDirectory.resolve(name);
+    }
+
+    private AbstractTestProcessDefinition sleeperDefinition(String processIdentifier, Path classesDirectory) {
+        return sleeperDefinition(processIdentifier, classesDirectory, Map.of());
+    }
+
+    private AbstractTestProcessDefinition sleeperDefinition(String processIdentifier, Path classesDirectory,
+        Map<String, String> environment) {
+
+        AbstractTestProcessDefinition definition = new AbstractTestProcessDefinition() {
+            @Override
+            protected void buildProcess(ProcessBuilder builder) {
+                starts.incrementAndGet();
+                builder.environment().putAll(environment);
+                builder.command(Paths.get(System.getProperty("java.home"), "bin", "java").toString(), "-cp",
+                    classesDirectory.toString(), Sleeper.class.getName());
+            }
+        };
+        definition.setProcessIdentifier(processIdentifier);
+        definition.setStartupDetector(LogPatternEventDetector
+            .onStdOut()
+            .withMarker(Sleeper.class.getSimpleName() + " process running"));
+        definition.setSharedAcrossJvms(true);
+        return definition;
+    }
+
+    /**
+     * Get the holders of the shared process recorded in the shared registry's
+     * file, if it is recorded.
+     */
+    private static Optional<List<String>> holders(Path sharedDirectory, String processIdentifier)
+        throws IOException {
+
+        Path registryFile = sharedDirectory.resolve("shared-processes");
+        if (!Files.exists(registryFile)) {
+            return Optional.empty();
+        }
+        return Files.readAllLines(registryFile, StandardCharsets.UTF_8).stream()
+            .map(line -> line.split("\t", -1))
+            .filter(fields -> fields[0].equals(processIdentifier))
+            .findFirst()
+            .map(fields -> List.of(fields[fields.length - 1].split(",")));
+    }
+}
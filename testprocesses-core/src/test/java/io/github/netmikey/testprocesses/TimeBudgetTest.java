@@ -0,0 +1,63 @@
+package io.github.netmikey.testprocesses;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import io.github.netmikey.testprocesses.eventdetector.LogPatternEventDetector;
+import io.github.netmikey.testprocesses.functional.testfixtures.FixtureTestProcess;
+import io.github.netmikey.testprocesses.functional.testfixtures.Sleeper;
+
+/**
+ * Test that all test process operations of a test method share the
+ * registry's time budget. Lives in the registry's package to drive the test
+ * lifecycle of a registry of its own, like the {@link TestProcessesExtension}
+ * does for the registry shared by the test run.
+ */
+public class TimeBudgetTest {
+
+    private final TestProcessesRegistry registry = new TestProcessesRegistry();
+
+    /**
+     * Give the test method a budget of 2 seconds.
+     */
+    @BeforeEach
+    public void beginTimeBudget() {
+        registry.setTestTimeBudgetMillis(2000);
+        registry.beginTestTimeBudget();
+    }
+
+    /**
+     * End the test method's budget and stop the registry's processes.
+     */
+    @AfterEach
+    public void endTimeBudget() {
+        try {
+            registry.endTestTimeBudget();
+        } finally {
+            registry.shutdown();
+        }
+    }
+
+    /**
+     * A process that never finishes starting up fails the test once the
+     * budget has run out, long before its startup detector's own timeout.
+     */
+    @Test
+    public void testHangingStartupFailsWithinBudget() {
+        FixtureTestProcess definition = new FixtureTestProcess("hanging-process", Sleeper.class);
+        // The Sleeper never prints this
+        definition.setStartupDetector(LogPatternEventDetector.onStdOut().withMarker("started up")
+            .withTimeoutMillis(30000));
+        TestProcessDefinitionBy<FixtureTestProcess> ref = TestProcessDefinitionBy.instance(definition);
+
+        long startMillis = System.currentTimeMillis();
+        TimeBudgetExhaustedException e = Assertions.assertThrows(TimeBudgetExhaustedException.class,
+            () -> registry.start(ref, StartStrategy.USE_EXISTING));
+        Assertions.assertTrue(System.currentTimeMillis() - startMillis < 10000,
+            "The start should have been aborted when the budget ran out");
+        Assertions.assertTrue(e.getMessage().contains("hanging-process"),
+            "The failure should name the process that consumed the budget: " + e.getMessage());
+    }
+}
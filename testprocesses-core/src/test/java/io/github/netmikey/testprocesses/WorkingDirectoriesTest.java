@@ -0,0 +1,99 @@
+package io.github.netmikey.testprocesses;
+
+import static io.github.netmikey.testprocesses.TestProcessDefinitionBy.*;
+import static io.github.netmikey.testprocesses.functional.testfixtures.TestHelper.*;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import io.github.netmikey.testprocesses.functional.testfixtures.FixtureTestProcess;
+import io.github.netmikey.testprocesses.functional.testfixtures.Sleeper;
+
+/**
+ * Test that no working directory materialized from a template is left behind.
+ * Lives in the package of the working directories' cleanup since the files
+ * it records aren't part of the public API.
+ */
+public class WorkingDirectoriesTest {
+
+    private final TestProcessesRegistry registry = new TestProcessesRegistry();
+
+    /**
+     * Stop the processes of the test's registry.
+     */
+    @AfterEach
+    public void shutdownRegistry() {
+        registry.shutdown();
+    }
+
+    /**
+     * Shutting down the registry deletes the working directories of its
+     * processes right away instead of leaving them to a background thread
+     * that doesn't keep the JVM from exiting.
+     *
+     * @param tempDir
+     *            A temporary directory for the template and working
+     *            directories.
+     * @throws Exception
+     *             Thrown when an unexpected error occurs.
+     */
+    @Test
+    public void testShutdownDeletesWorkingDirectories(@TempDir Path tempDir) throws Exception {
+        FixtureTestProcess definition = definition(tempDir);
+
+        registry.start(instance(definition), StartStrategy.USE_EXISTING);
+        Path workingDirectory = definition.getWorkingDirectory().get();
+        Assertions.assertTrue(Files.isDirectory(workingDirectory));
+
+        registry.shutdown();
+        Assertions.assertFalse(Files.exists(workingDirectory),
+            "The working directory should have been deleted by the shutdown");
+    }
+
+    /**
+     * The first working directory materialized in a root directory deletes
+     * the working directories of processes that are gone, but not those of
+     * processes still running.
+     *
+     * @param tempDir
+     *            A temporary directory for the template and working
+     *            directories.
+     * @throws Exception
+     *             Thrown when an unexpected error occurs.
+     */
+    @Test
+    public void testStaleWorkingDirectoriesAreDeleted(@TempDir Path tempDir) throws Exception {
+        ProcessHandle jvm = ProcessHandle.current();
+        long jvmStartMillis = ProcessLedger.startMillis(jvm).get();
+        // Same PID, but a different start time: another process reusing the PID
+        Path stale = workingDirectoryOf(tempDir.resolve("workdirs"), "stale", jvm.pid(), jvmStartMillis - 60000);
+        Path running = workingDirectoryOf(tempDir.resolve("workdirs"), "running", jvm.pid(), jvmStartMillis);
+
+        registry.start(instance(definition(tempDir)), StartStrategy.USE_EXISTING);
+
+        awaitCondition(() -> !Files.exists(stale), 5000, "The stale working directory should have been deleted");
+        Assertions.assertFalse(Files.exists(tempDir.resolve("workdirs").resolve("stale.process")));
+        Assertions.assertTrue(Files.isDirectory(running),
+            "The working directory of a running process should have been kept");
+    }
+
+    private static FixtureTestProcess definition(Path tempDir) throws Exception {
+        Path template = Files.createDirectories(tempDir.resolve("template"));
+        FixtureTestProcess definition = new FixtureTestProcess("working-directories", Sleeper.class);
+        definition.setWorkingDirectoryTemplate(template);
+        definition.setWorkingDirectoryRoot(tempDir.resolve("workdirs"));
+        return definition;
+    }
+
+    private static Path workingDirectoryOf(Path root, String name, long pid, long startMillis) throws Exception {
+        Path directory = Files.createDirectories(root.resolve(name));
+        Files.writeString(root.resolve(name + ".process"), pid + "\t" + startMillis, StandardCharsets.UTF_8);
+        return directory;
+    }
+}
@@ -0,0 +1,84 @@
+package io.github.netmikey.testprocesses.functional;
+
+import static io.github.netmikey.testprocesses.TestProcessDefinitionBy.*;
+import static io.github.netmikey.testprocesses.functional.testfixtures.TestHelper.*;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+
+import io.github.netmikey.testprocesses.RunningTestProcess;
+import io.github.netmikey.testprocesses.StartStrategy;
+import io.github.netmikey.testprocesses.TestProcessesRegistry;
+import io.github.netmikey.testprocesses.eventdetector.LogPatternEventDetector;
+import io.github.netmikey.testprocesses.functional.testfixtures.EchoTestProcess;
+
+/**
+ * Test the asynchronous variants of the {@link TestProcessesRegistry}'s start,
+ * stop and wait operations.
+ */
+@TestProcessesSpringBootTest
+public class AsyncApiTest {
+
+    @Autowired
+    private TestProcessesRegistry registry;
+
+    /**
+     * Start, wait for an event on and stop a test process asynchronously.
+     *
+     * @throws Exception
+     *             Thrown when an unexpected error occurs.
+     */
+    @Test
+    public void testStartWaitAndStopAsync() throws Exception {
+        CompletableFuture<RunningTestProcess<EchoTestProcess>> startFuture = registry
+            .startAsync(clazz(EchoTestProcess.class), StartStrategy.USE_EXISTING);
+
+        RunningTestProcess<EchoTestProcess> runningProcess = startFuture.get(30, TimeUnit.SECONDS);
+        assertEchoRunningByClass(registry);
+        Assertions.assertSame(runningProcess, registry.retrieveRunningProcess(clazz(EchoTestProcess.class))
+            .orElseThrow());
+
+        CompletableFuture<RunningTestProcess<EchoTestProcess>> waitFuture = registry
+            .waitForEventAsync(clazz(EchoTestProcess.class),
+                LogPatternEventDetector.onStdOut().withMarker("async hello"));
+        sendToEchoProcess(registry, "async hello");
+        Assertions.assertSame(runningProcess, waitFuture.get(30, TimeUnit.SECONDS));
+
+        Assertions.assertSame(runningProcess, registry.stopAsync(clazz(EchoTestProcess.class))
+            .get(30, TimeUnit.SECONDS));
+        assertEchoNotRunningByClass(registry);
+    }
+
+    /**
+     * Timeouts of the {@link LogPatternEventDetector} complete the future
+     * exceptionally and are rethrown as is by the blocking variant.
+     *
+     * @throws Exception
+     *             Thrown when an unexpected error occurs.
+     */
+    @Test
+    public void testWaitForEventAsyncTimeout() throws Exception {
+        registry.start(clazz(EchoTestProcess.class), StartStrategy.USE_EXISTING);
+        try {
+            LogPatternEventDetector neverMatching = LogPatternEventDetector.onStdOut()
+                .withMarker("this will never be echoed")
+                .withTimeoutMillis(500);
+
+            ExecutionException e = Assertions.assertThrows(ExecutionException.class,
+                () -> registry.waitForEventAsync(clazz(EchoTestProcess.class), neverMatching).get());
+            Assertions.assertTrue(e.getCause() instanceof TimeoutException,
+                "Future should complete with a TimeoutException");
+
+            Assertions.assertThrows(TimeoutException.class,
+                () -> registry.waitForEventOn(clazz(EchoTestProcess.class), neverMatching));
+        } finally {
+            registry.stop(clazz(EchoTestProcess.class));
+        }
+    }
+}
@@ -0,0 +1,88 @@
+package io.github.netmikey.testprocesses.functional;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import io.github.netmikey.testprocesses.StartStrategy;
+import io.github.netmikey.testprocesses.TestProcessDefinitionBy;
+import io.github.netmikey.testprocesses.TestProcessesRegistry;
+import io.github.netmikey.testprocesses.functional.testfixtures.SleeperTestProcess;
+import io.github.netmikey.testprocesses.utils.BackgroundThreads;
+
+/**
+ * Test the threads TestProcesses uses for its internal blocking work.
+ */
+public class BackgroundThreadsTest {
+
+    private final TestProcessesRegistry registry = new TestProcessesRegistry();
+
+    /**
+     * Stop the processes of the test's registry.
+     */
+    @AfterEach
+    public void shutdownRegistry() {
+        registry.shutdown();
+    }
+
+    /**
+     * Background threads are named after their purpose and never keep the JVM
+     * from exiting.
+     *
+     * @throws Exception
+     *             Thrown if the executor's task fails.
+     */
+    @Test
+    public void testBackgroundThreadsAreNamedDaemons() throws Exception {
+        Thread factoryThread = BackgroundThreads.newThreadFactory("background-test-").newThread(() -> {
+        });
+        Assertions.assertTrue(factoryThread.getName().startsWith("background-test-"), factoryThread.getName());
+        Assertions.assertTrue(factoryThread.isDaemon(), "Thread factory threads should be daemons");
+
+        Thread startedThread = BackgroundThreads.start("background-test-started", () -> {
+        });
+        Assertions.assertEquals("background-test-started", startedThread.getName());
+        Assertions.assertTrue(startedThread.isDaemon(), "Started threads should be daemons");
+        startedThread.join();
+
+        ExecutorService executor = BackgroundThreads.newExecutor("background-test-executor-");
+        try {
+            Thread executorThread = executor.submit(Thread::currentThread).get();
+            Assertions.assertTrue(executorThread.getName().startsWith("background-test-executor-"),
+                executorThread.getName());
+            Assertions.assertTrue(executorThread.isDaemon(), "Executor threads should be daemons");
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    /**
+     * Blocking starts run on the calling thread, which waits for them anyway,
+     * while asynchronous starts run on the registry's background threads.
+     */
+    @Test
+    public void testBlockingStartDoesNotOccupyAnotherThread() {
+        AtomicReference<Thread> launchingThread = new AtomicReference<>();
+        SleeperTestProcess definition = new SleeperTestProcess() {
+            @Override
+            protected void buildProcess(ProcessBuilder builder) {
+                launchingThread.set(Thread.currentThread());
+                super.buildProcess(builder);
+            }
+        };
+        definition.setProcessIdentifier("thread-checking-process");
+        TestProcessDefinitionBy<SleeperTestProcess> ref = TestProcessDefinitionBy.instance(definition);
+
+        registry.start(ref, StartStrategy.USE_EXISTING);
+        Assertions.assertSame(Thread.currentThread(), launchingThread.get(),
+            "The blocking start should have launched the process on the calling thread");
+
+        registry.startAsync(ref, StartStrategy.REQUIRE_RESTART).join();
+        Assertions.assertTrue(launchingThread.get().getName().startsWith("testprocesses-"),
+            launchingThread.get().getName());
+        Assertions.assertTrue(launchingThread.get().isDaemon(), "The registry's threads should be daemons");
+    }
+}
@@ -0,0 +1,126 @@
+package io.github.netmikey.testprocesses.functional;
+
+import static io.github.netmikey.testprocesses.TestProcessDefinitionBy.*;
+import static io.github.netmikey.testprocesses.functional.testfixtures.TestHelper.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+
+import io.github.netmikey.testprocesses.RunningTestProcess;
+import io.github.netmikey.testprocesses.StartStrategy;
+import io.github.netmikey.testprocesses.TestProcessesRegistry;
+import io.github.netmikey.testprocesses.functional.testfixtures.EchoTestProcess;
+
+/**
+ * Test that the {@link TestProcessesRegistry} behaves correctly when being
+ * used by multiple threads at the same time, like it is when JUnit's parallel
+ * test execution is enabled.
+ */
+@TestProcessesSpringBootTest
+public class ConcurrentAccessTest {
+
+    private static final int THREADS = 8;
+
+    @Autowired
+    private TestProcessesRegistry registry;
+
+    /**
+     * Starts the same definition from multiple threads at once and makes sure
+     * it has only been launched once.
+     *
+     * @throws Exception
+     *             Thrown when an unexpected error occurs.
+     */
+    @Test
+    public void testConcurrentStartsLaunchOnlyOneProcess() throws Exception {
+        AtomicInteger launches = new AtomicInteger();
+        EchoTestProcess countingEchoTestProcess = new EchoTestProcess() {
+            @Override
+            public void start() {
+                launches.incrementAndGet();
+                super.start();
+            }
+        };
+
+        List<Long> pids = runConcurrently(() -> {
+            registry.start(instance(countingEchoTestProcess), StartStrategy.USE_EXISTING);
+            return registry.retrieveRunningProcess(instance(countingEchoTestProcess))
+                .map(RunningTestProcess::getDefinition)
+                .map(definition -> definition.getManagedProcess().pid())
+                .orElseThrow();
+        });
+
+        try {
+            Assertions.assertEquals(1, launches.get(), "Test process should have been launched exactly once");
+            Assertions.assertEquals(1, pids.stream().distinct().count(), "All threads should see the same process");
+        } finally {
+            registry.stop(instance(countingEchoTestProcess));
+        }
+        assertEchoNotRunningByInstance(registry, countingEchoTestProcess);
+    }
+
+    /**
+     * Makes sure stream positions recorded at the start of a test are kept per
+     * test (thread) and don't overwrite each other.
+     *
+     * @throws Exception
+     *             Thrown when an unexpected error occurs.
+     */
+    @Test
+    public void testCurrentTestStreamPositionsAreTrackedPerTest() throws Exception {
+        registry.start(clazz(EchoTestProcess.class), StartStrategy.USE_EXISTING);
+        try {
+            RunningTestProcess<EchoTestProcess> runningProcess = registry
+                .retrieveRunningProcess(clazz(EchoTestProcess.class))
+                .orElseThrow();
+
+            ExecutorService executor = Executors.newSingleThreadExecutor();
+            try {
+                executor.submit(runningProcess::onTestStart).get();
+                sendToEchoProcess(registry, "line written between both test starts");
+                runningProcess.onTestStart();
+
+                long otherTestStart = executor.submit(() -> runningProcess.getCurrentTestStdOutStart().orElseThrow())
+                    .get();
+                long thisTestStart = runningProcess.getCurrentTestStdOutStart().orElseThrow();
+                Assertions.assertTrue(otherTestStart < thisTestStart,
+                    "Each test should see the stream position from its own start");
+
+                executor.submit(runningProcess::onTestEnd).get();
+                Assertions.assertEquals(Optional.of(thisTestStart), runningProcess.getCurrentTestStdOutStart());
+            } finally {
+                runningProcess.onTestEnd();
+                executor.shutdownNow();
+            }
+        } finally {
+            registry.stop(clazz(EchoTestProcess.class));
+        }
+    }
+
+    private <V> List<V> runConcurrently(Callable<V> task) throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        try {
+            List<Future<V>> futures = new ArrayList<>();
+            for (int i = 0; i < THREADS; i++) {
+                futures.add(executor.submit(task));
+            }
+            List<V> results = new ArrayList<>();
+            for (Future<V> future : futures) {
+                results.add(future.get());
+            }
+            return results;
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+}
@@ -0,0 +1,70 @@
+package io.github.netmikey.testprocesses.functional;
+
+import static io.github.netmikey.testprocesses.TestProcessDefinitionBy.*;
+import static io.github.netmikey.testprocesses.functional.testfixtures.TestHelper.*;
+
+import java.util.List;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+
+import io.github.netmikey.testprocesses.StartStrategy;
+import io.github.netmikey.testprocesses.TestProcessesRegistry;
+import io.github.netmikey.testprocesses.functional.testfixtures.EchoTestProcess;
+import io.github.netmikey.testprocesses.processdestroyer.EscalatingProcessDestroyer;
+import io.github.netmikey.testprocesses.processdestroyer.EscalationStepTiming;
+import io.github.netmikey.testprocesses.processdestroyer.ProcessSignal;
+
+/**
+ * Test the {@link EscalatingProcessDestroyer}.
+ */
+@TestProcessesSpringBootTest
+public class EscalatingProcessDestroyerTest {
+
+    @Autowired
+    private TestProcessesRegistry registry;
+
+    /**
+     * The ladder stops escalating as soon as the process has exited.
+     */
+    @Test
+    public void testGracefulStepEndsLadder() {
+        EscalatingProcessDestroyer destroyer = EscalatingProcessDestroyer.newInstance()
+            .thenCloseStdIn(10000)
+            .thenSignal(ProcessSignal.KILL, 10000);
+        EchoTestProcess echo = new EchoTestProcess();
+        echo.setProcessDestroyer(destroyer);
+
+        registry.start(instance(echo), StartStrategy.USE_EXISTING);
+        registry.stop(instance(echo));
+        assertEchoNotRunningByInstance(registry, echo);
+
+        List<EscalationStepTiming> timings = destroyer.getLastStepTimings(EchoTestProcess.PROCESS_IDENTIFIER);
+        Assertions.assertEquals(1, timings.size(), "Only the first step should have been executed: " + timings);
+        Assertions.assertTrue(timings.get(0).isTerminated());
+    }
+
+    /**
+     * Steps the process ignores are recorded as timed out before the ladder
+     * escalates to the next step.
+     */
+    @Test
+    public void testIgnoredStepEscalates() {
+        EscalatingProcessDestroyer destroyer = EscalatingProcessDestroyer.newInstance()
+            .thenStdInLine("the echo process ignores this", 200)
+            .thenSignal(ProcessSignal.TERM, 10000);
+        EchoTestProcess echo = new EchoTestProcess();
+        echo.setProcessDestroyer(destroyer);
+
+        registry.start(instance(echo), StartStrategy.USE_EXISTING);
+        registry.stop(instance(echo));
+        assertEchoNotRunningByInstance(registry, echo);
+
+        List<EscalationStepTiming> timings = destroyer.getLastStepTimings(EchoTestProcess.PROCESS_IDENTIFIER);
+        Assertions.assertEquals(2, timings.size(), "Both steps should have been executed: " + timings);
+        Assertions.assertFalse(timings.get(0).isTerminated());
+        Assertions.assertTrue(timings.get(0).getDurationMillis() >= 200);
+        Assertions.assertTrue(timings.get(1).isTerminated());
+    }
+}
@@ -0,0 +1,136 @@
+package io.github.netmikey.testprocesses.functional;
+
+import java.nio.file.Paths;
+import java.util.Map;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+
+import io.github.netmikey.testprocesses.AbstractTestProcessDefinition;
+import io.github.netmikey.testprocesses.StartStrategy;
+import io.github.netmikey.testprocesses.StopStrategy;
+import io.github.netmikey.testprocesses.TestProcess;
+import io.github.netmikey.testprocesses.TestProcessDefinitionBy;
+import io.github.netmikey.testprocesses.TestProcessFleet;
+import io.github.netmikey.testprocesses.TestProcessesExtension;
+import io.github.netmikey.testprocesses.TestProcessesRegistry;
+import io.github.netmikey.testprocesses.eventdetector.LogPatternEventDetector;
+import io.github.netmikey.testprocesses.functional.testfixtures.Echo;
+import io.github.netmikey.testprocesses.functional.testfixtures.SleeperTestProcess;
+
+/**
+ * Test running multiple replicas of a test process definition.
+ */
+@ExtendWith(TestProcessesExtension.class)
+public class FleetTest {
+
+    /**
+     * Replicas declared using the annotation are started with their own
+     * process identifiers.
+     *
+     * @param registry
+     *            The registry shared by the test run.
+     */
+    @Test
+    @TestProcess(value = NodeTestProcess.class, replicas = 3, replicaStartConcurrency = 2,
+        stopStrategy = StopStrategy.STOP_AFTER_TEST)
+    public void testAnnotatedReplicasAreStarted(TestProcessesRegistry registry) {
+        for (int index = 0; index < 3; index++) {
+            String processIdentifier = NodeTestProcess.class.getName() + "-" + index;
+            Assertions.assertTrue(registry.runningProcessIdentifiers().contains(processIdentifier),
+                "Replica " + processIdentifier + " should be running");
+        }
+    }
+
+    /**
+     * A fleet can be started, waited for, read and stopped as a group, and its
+     * replicas can be addressed individually.
+     *
+     * @param registry
+     *            The registry shared by the test run.
+     * @throws TimeoutException
+     *             Thrown if the replicas don't print their marker in time.
+     */
+    @Test
+    public void testFleetIsHandledAsGroup(TestProcessesRegistry registry) throws TimeoutException {
+        TestProcessFleet<NodeTestProcess> fleet = TestProcessFleet.of("fleet-node", 3, index -> new NodeTestProcess())
+            .withStartConcurrency(2);
+        registry.registerFleet(fleet);
+
+        Assertions.assertEquals(3, registry.start(fleet, StartStrategy.USE_EXISTING).size());
+        registry.waitForEventOn(fleet, LogPatternEventDetector.onStdOut().withMarker("Echo process running"));
+
+        Map<String, String> stdOut = registry.stdOutAsStringOf(fleet);
+        Assertions.assertEquals(3, stdOut.size());
+        Assertions.assertTrue(stdOut.get("fleet-node-1").contains("node 1, Echo process running"), "Replica 1's output: "
+            + stdOut.get("fleet-node-1"));
+        Assertions.assertTrue(registry.stdOutAsStringOf(TestProcessDefinitionBy.beanName("fleet-node-2"))
+            .contains("node 2, Echo process running"));
+
+        registry.stop(fleet);
+        for (NodeTestProcess replica : fleet.getReplicas()) {
+            Assertions.assertFalse(registry.runningProcessIdentifiers().contains(replica.getProcessIdentifier()),
+                "Replica " + replica.getProcessIdentifier() + " should have been stopped");
+        }
+    }
+
+    /**
+     * No more replicas than the fleet's start concurrency are starting up at
+     * the same time.
+     *
+     * @param registry
+     *            The registry shared by the test run.
+     */
+    @Test
+    public void testStartConcurrencyIsLimited(TestProcessesRegistry registry) {
+        AtomicInteger starting = new AtomicInteger();
+        AtomicInteger maxStarting = new AtomicInteger();
+        TestProcessFleet<SleeperTestProcess> fleet = TestProcessFleet.of("limited-node", 4, index -> {
+            SleeperTestProcess replica = new SleeperTestProcess() {
+                @Override
+                protected void buildProcess(ProcessBuilder builder) {
+                    maxStarting.accumulateAndGet(starting.incrementAndGet(), Math::max);
+                    super.buildProcess(builder);
+                }
+            };
+            replica.setStartupDetector(process -> {
+                try {
+                    LogPatternEventDetector.onStdOut().withMarker("Sleeper process running").waitForEvent(process);
+                } finally {
+                    starting.decrementAndGet();
+                }
+            });
+            return replica;
+        }).withStartConcurrency(2);
+
+        try {
+            registry.start(fleet, StartStrategy.USE_EXISTING);
+            Assertions.assertTrue(maxStarting.get() <= 2,
+                maxStarting.get() + " replicas were starting up at the same time");
+        } finally {
+            registry.stop(fleet);
+        }
+    }
+
+    /**
+     * An {@link Echo} test process greeting with its replica index.
+     */
+    public static class NodeTestProcess extends AbstractTestProcessDefinition {
+
+        /**
+         * Default constructor.
+         */
+        public NodeTestProcess() {
+            setStartupDetector(LogPatternEventDetector.onStdOut().withMarker("Echo process running"));
+        }
+
+        @Override
+        protected void buildProcess(ProcessBuilder builder) {
+            builder.command("java", "-cp", Paths.get("./build/classes/java/test/").toAbsolutePath().toString(),
+                Echo.class.getName(), "node " + getReplicaIndex());
+        }
+    }
+}
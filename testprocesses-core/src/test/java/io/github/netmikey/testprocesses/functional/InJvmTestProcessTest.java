@@ -0,0 +1,111 @@
+package io.github.netmikey.testprocesses.functional;
+
+import static io.github.netmikey.testprocesses.TestProcessDefinitionBy.*;
+
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.List;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.beans.factory.annotation.Autowired;
+
+import io.github.netmikey.testprocesses.InJvmTestProcessDefinition;
+import io.github.netmikey.testprocesses.StartStrategy;
+import io.github.netmikey.testprocesses.TestProcessState;
+import io.github.netmikey.testprocesses.TestProcessesRegistry;
+import io.github.netmikey.testprocesses.eventdetector.LogPatternEventDetector;
+import io.github.netmikey.testprocesses.functional.testfixtures.Echo;
+import io.github.netmikey.testprocesses.utils.StreamStart;
+
+/**
+ * Test the {@link InJvmTestProcessDefinition}.
+ */
+@TestProcessesSpringBootTest
+public class InJvmTestProcessTest {
+
+    @Autowired
+    private TestProcessesRegistry registry;
+
+    /**
+     * The in-JVM process' standard streams are routed to its stream files and
+     * stdIn, while the test's own streams are left alone.
+     *
+     * @throws Exception
+     *             Thrown when an unexpected error occurs.
+     */
+    @Test
+    public void testStreamsAreRoutedPerProcess() throws Exception {
+        InJvmTestProcessDefinition definition = new InJvmTestProcessDefinition();
+        definition.setProcessIdentifier("in-jvm-echo");
+        definition.setMainClass(Echo.class.getName());
+        definition.setArguments(List.of("Hello"));
+        definition.setStartupDetector(LogPatternEventDetector.onStdOut().withMarker("Hello, Echo process running"));
+
+        registry.start(instance(definition), StartStrategy.USE_EXISTING);
+        System.out.println("Printed by the test, not by the in-JVM process");
+
+        OutputStream stdIn = definition.getManagedProcess().getOutputStream();
+        stdIn.write("in-jvm line\n".getBytes(StandardCharsets.UTF_8));
+        stdIn.flush();
+        registry.waitForEventOn(instance(definition), LogPatternEventDetector.onStdOut().withMarker("in-jvm line"));
+
+        String stdOut = registry.stdOutAsStringOf(instance(definition), StreamStart.ABSOLUTE);
+        Assertions.assertFalse(stdOut.contains("Printed by the test"),
+            "The test's output should not end up in the in-JVM process' stdOut");
+
+        registry.stop(instance(definition));
+        Assertions.assertEquals(TestProcessState.STOPPED, definition.getActualState());
+    }
+
+    /**
+     * In-JVM processes can't be shared with other JVMs.
+     */
+    @Test
+    public void testSharingAcrossJvmsIsRejected() {
+        InJvmTestProcessDefinition definition = echoDefinition("in-jvm-shared");
+        definition.setSharedAcrossJvms(true);
+
+        IllegalStateException e = Assertions.assertThrows(IllegalStateException.class,
+            () -> registry.start(instance(definition), StartStrategy.USE_EXISTING));
+        Assertions.assertTrue(e.getMessage().contains("sharing across JVMs"), e.getMessage());
+    }
+
+    /**
+     * All options of a process of its own that an in-JVM process can't
+     * support are rejected at once when it is started, including those a
+     * subclass configures in its <code>buildProcess</code> method.
+     *
+     * @param tempDir
+     *            A temporary directory used as working directory template.
+     */
+    @Test
+    public void testOptionsOfOwnProcessAreRejected(@TempDir Path tempDir) {
+        InJvmTestProcessDefinition definition = new InJvmTestProcessDefinition() {
+            @Override
+            protected void buildProcess(ProcessBuilder builder) {
+                super.buildProcess(builder);
+                builder.environment().put("IN_JVM_SETTING", "ignored");
+            }
+        };
+        definition.setProcessIdentifier("in-jvm-options");
+        definition.setMainClass(Echo.class.getName());
+        definition.setWorkingDirectoryTemplate(tempDir);
+        definition.setNiceLevel(5);
+
+        IllegalStateException e = Assertions.assertThrows(IllegalStateException.class,
+            () -> registry.start(instance(definition), StartStrategy.USE_EXISTING));
+        Assertions.assertTrue(e.getMessage().contains("a working directory, a nice level, environment variables"),
+            e.getMessage());
+        Assertions.assertNull(definition.getManagedProcess(), "The process should not have been started");
+    }
+
+    private static InJvmTestProcessDefinition echoDefinition(String processIdentifier) {
+        InJvmTestProcessDefinition definition = new InJvmTestProcessDefinition();
+        definition.setProcessIdentifier(processIdentifier);
+        definition.setMainClass(Echo.class.getName());
+        return definition;
+    }
+}
@@ -0,0 +1,177 @@
+package io.github.netmikey.testprocesses.functional;
+
+import static io.github.netmikey.testprocesses.TestProcessDefinitionBy.*;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.List;
+import java.util.jar.JarEntry;
+import java.util.jar.JarOutputStream;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.system.CapturedOutput;
+import org.springframework.boot.test.system.OutputCaptureExtension;
+
+import io.github.netmikey.testprocesses.JavaTestProcessDefinition;
+import io.github.netmikey.testprocesses.StartStrategy;
+import io.github.netmikey.testprocesses.TestProcessesRegistry;
+import io.github.netmikey.testprocesses.eventdetector.LogPatternEventDetector;
+import io.github.netmikey.testprocesses.functional.testfixtures.Echo;
+
+/**
+ * Test the {@link JavaTestProcessDefinition} and its AppCDS archives.
+ */
+@TestProcessesSpringBootTest
+@ExtendWith(OutputCaptureExtension.class)
+public class JavaTestProcessTest {
+
+    @Autowired
+    private TestProcessesRegistry registry;
+
+    /**
+     * The first start creates an AppCDS archive, the second start uses it.
+     *
+     * @param tempDir
+     *            A temporary directory for the jar and the archives.
+     * @throws Exception
+     *             Thrown when an unexpected error occurs.
+     */
+    @Test
+    public void testAppCdsArchiveIsCreatedAndReused(@TempDir Path tempDir) throws Exception {
+        Path jar = tempDir.resolve("echo.jar");
+        Path appCdsDirectory = tempDir.resolve("appcds");
+        writeJar(jar, Echo.class);
+
+        JavaTestProcessDefinition definition = new JavaTestProcessDefinition();
+        definition.setProcessIdentifier("java-echo");
+        definition.setMainClass(Echo.class.getName());
+        definition.setClasspath(List.of(jar.toString()));
+        definition.setArguments(List.of("Hello"));
+        definition.setAppCdsDirectory(appCdsDirectory);
+        definition.setStartupDetector(LogPatternEventDetector.onStdOut().withMarker("Hello, Echo process running"));
+
+        registry.start(instance(definition), StartStrategy.USE_EXISTING);
+        Assertions.assertTrue(commandLineOf(definition).contains("-XX:ArchiveClassesAtExit="),
+            "The first start should create an archive");
+        registry.stop(instance(definition));
+
+        Path archive = awaitArchive(appCdsDirectory);
+
+        registry.start(instance(definition), StartStrategy.USE_EXISTING);
+        Assertions.assertTrue(commandLineOf(definition).contains("-XX:SharedArchiveFile=" + archive),
+            "The second start should use the archive");
+        registry.stop(instance(definition));
+    }
+
+    /**
+     * Archives left behind by a test JVM that exited before it could verify
+     * and publish them are recovered by the next start, stale archives of
+     * other definitions are deleted.
+     *
+     * @param tempDir
+     *            A temporary directory for the jar and the archives.
+     * @throws Exception
+     *             Thrown when an unexpected error occurs.
+     */
+    @Test
+    public void testStaleArchiveIsRecovered(@TempDir Path tempDir) throws Exception {
+        Path jar = tempDir.resolve("echo.jar");
+        Path appCdsDirectory = tempDir.resolve("appcds");
+        writeJar(jar, Echo.class);
+
+        JavaTestProcessDefinition definition = new JavaTestProcessDefinition();
+        definition.setProcessIdentifier("java-echo-recovered");
+        definition.setMainClass(Echo.class.getName());
+        definition.setClasspath(List.of(jar.toString()));
+        definition.setAppCdsDirectory(appCdsDirectory);
+        definition.setStartupDetector(LogPatternEventDetector.onStdOut().withMarker("Echo process running"));
+
+        registry.start(instance(definition), StartStrategy.USE_EXISTING);
+        registry.stop(instance(definition));
+        Path archive = awaitArchive(appCdsDirectory);
+
+        // As if the test JVM had exited before publishing the archive
+        String key = archive.getFileName().toString().replace(".jsa", "");
+        Path pendingArchive = Files.move(archive, appCdsDirectory.resolve(key + "-pending.jsa.tmp"));
+        Path otherPendingArchive = Files.writeString(appCdsDirectory.resolve("other-pending.jsa.tmp"), "other");
+        FileTime exitTime = FileTime.fromMillis(System.currentTimeMillis() - 60000);
+        Files.setLastModifiedTime(pendingArchive, exitTime);
+        Files.setLastModifiedTime(otherPendingArchive, exitTime);
+
+        registry.start(instance(definition), StartStrategy.USE_EXISTING);
+        Assertions.assertTrue(commandLineOf(definition).contains("-XX:SharedArchiveFile=" + archive),
+            "The next start should use the recovered archive");
+        registry.stop(instance(definition));
+        Assertions.assertFalse(Files.exists(pendingArchive), "The recovered archive should have been published");
+        Assertions.assertFalse(Files.exists(otherPendingArchive), "The other stale archive should have been deleted");
+    }
+
+    /**
+     * The JVM can't archive classes loaded from directories, which is reported
+     * once.
+     *
+     * @param tempDir
+     *            A temporary directory for the archives.
+     * @param output
+     *            The captured log output.
+     */
+    @Test
+    public void testAppCdsIsSkippedForDirectoryClasspath(@TempDir Path tempDir, CapturedOutput output) {
+        JavaTestProcessDefinition definition = new JavaTestProcessDefinition();
+        definition.setProcessIdentifier("java-echo-directory");
+        definition.setMainClass(Echo.class.getName());
+        definition.setAppCdsDirectory(tempDir);
+        definition.setStartupDetector(LogPatternEventDetector.onStdOut().withMarker("Echo process running"));
+
+        registry.start(instance(definition), StartStrategy.USE_EXISTING);
+        Assertions.assertFalse(commandLineOf(definition).contains("-XX:ArchiveClassesAtExit="),
+            "Directories on the classpath can't be archived");
+        registry.start(instance(definition), StartStrategy.REQUIRE_RESTART);
+        registry.stop(instance(definition));
+
+        String warning = "Starting test process java-echo-directory without AppCDS";
+        Assertions.assertEquals(output.getOut().indexOf(warning), output.getOut().lastIndexOf(warning),
+            "Skipping AppCDS should have been reported once");
+        Assertions.assertTrue(output.getOut().contains(warning), "Skipping AppCDS should have been reported");
+    }
+
+    private static String commandLineOf(JavaTestProcessDefinition definition) {
+        return definition.getManagedProcess().info().commandLine().orElse("");
+    }
+
+    private static Path awaitArchive(Path directory) throws Exception {
+        for (int i = 0; i < 300; i++) {
+            try (Stream<Path> files = Files.list(directory)) {
+                List<Path> archives = files.filter(file -> file.toString().endsWith(".jsa"))
+                    .collect(Collectors.toList());
+                if (!archives.isEmpty()) {
+                    return archives.get(0).toAbsolutePath();
+                }
+            }
+            Thread.sleep(100);
+        }
+        return Assertions.fail("No AppCDS archive has been published in " + directory);
+    }
+
+    private static void writeJar(Path jar, Class<?> clazz) throws IOException {
+        String entryName = clazz.getName().replace('.', '/') + ".class";
+        try (OutputStream out = Files.newOutputStream(jar);
+            JarOutputStream jarOut = new JarOutputStream(out);
+            InputStream classFile = clazz.getClassLoader().getResourceAsStream(entryName)) {
+
+            jarOut.putNextEntry(new JarEntry(entryName));
+            classFile.transferTo(jarOut);
+            jarOut.closeEntry();
+        }
+    }
+}
@@ -0,0 +1,95 @@
+package io.github.netmikey.testprocesses.functional;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import io.github.netmikey.testprocesses.AbstractTestProcessDefinition;
+import io.github.netmikey.testprocesses.StartStrategy;
+import io.github.netmikey.testprocesses.TestProcessDefinitionBy;
+import io.github.netmikey.testprocesses.TestProcessesRegistry;
+import io.github.netmikey.testprocesses.functional.testfixtures.SleeperTestProcess;
+
+/**
+ * Test sharing test processes between the registries of a JVM, like those of
+ * differently configured Spring test contexts.
+ */
+public class JvmWideProcessTableTest {
+
+    private final TestProcessesRegistry registry = new TestProcessesRegistry();
+
+    private final TestProcessesRegistry otherRegistry = new TestProcessesRegistry();
+
+    /**
+     * Stop the processes of both registries.
+     */
+    @AfterEach
+    public void shutdownRegistries() {
+        try {
+            registry.shutdown();
+        } finally {
+            otherRegistry.shutdown();
+        }
+    }
+
+    /**
+     * A process started by one registry is reused by another one with its own
+     * instance of the definition, and is only stopped once both registries
+     * have shut down.
+     */
+    @Test
+    public void testProcessIsSharedAcrossRegistries() {
+        registry.setJvmWideProcessTable(true);
+        otherRegistry.setJvmWideProcessTable(true);
+        AbstractTestProcessDefinition definition = sleeperDefinition("configured");
+        AbstractTestProcessDefinition otherDefinition = sleeperDefinition("configured");
+
+        registry.start(TestProcessDefinitionBy.instance(definition), StartStrategy.USE_EXISTING);
+        Process process = definition.getManagedProcess();
+
+        otherRegistry.start(TestProcessDefinitionBy.instance(otherDefinition), StartStrategy.USE_EXISTING);
+        Assertions.assertNull(otherDefinition.getManagedProcess(),
+            "The other registry should have reused the running process");
+        Assertions.assertTrue(otherRegistry.runningProcessIdentifiers().contains("jvm-wide-sleeper"));
+
+        registry.shutdown();
+        Assertions.assertTrue(process.isAlive(), "The process should be left running for the other registry");
+
+        otherRegistry.shutdown();
+        Assertions.assertFalse(process.isAlive(), "The process should have been stopped with the last registry");
+    }
+
+    /**
+     * A definition of the same class that is configured differently doesn't
+     * reuse the running process but replaces it.
+     */
+    @Test
+    public void testDifferentlyConfiguredDefinitionReplacesProcess() {
+        registry.setJvmWideProcessTable(true);
+        otherRegistry.setJvmWideProcessTable(true);
+        AbstractTestProcessDefinition definition = sleeperDefinition("configured");
+        AbstractTestProcessDefinition otherDefinition = sleeperDefinition("configured differently");
+
+        registry.start(TestProcessDefinitionBy.instance(definition), StartStrategy.USE_EXISTING);
+        Process process = definition.getManagedProcess();
+
+        otherRegistry.start(TestProcessDefinitionBy.instance(otherDefinition), StartStrategy.USE_EXISTING);
+        Assertions.assertNotNull(otherDefinition.getManagedProcess(),
+            "The other registry should have started a process of its own");
+        Assertions.assertNotEquals(process.pid(), otherDefinition.getManagedProcess().pid(),
+            "The other registry should not have reused the running process");
+        Assertions.assertFalse(process.isAlive(), "The differently configured process should have been replaced");
+    }
+
+    private static AbstractTestProcessDefinition sleeperDefinition(String setting) {
+        SleeperTestProcess definition = new SleeperTestProcess() {
+            @Override
+            protected void buildProcess(ProcessBuilder builder) {
+                super.buildProcess(builder);
+                builder.environment().put("SLEEPER_SETTING", setting);
+            }
+        };
+        definition.setProcessIdentifier("jvm-wide-sleeper");
+        return definition;
+    }
+}
@@ -0,0 +1,60 @@
+package io.github.netmikey.testprocesses.functional;
+
+import static io.github.netmikey.testprocesses.functional.testfixtures.TestHelper.*;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import io.github.netmikey.testprocesses.StartStrategy;
+import io.github.netmikey.testprocesses.TestProcessDefinitionBy;
+import io.github.netmikey.testprocesses.TestProcessesRegistry;
+import io.github.netmikey.testprocesses.functional.testfixtures.EchoTestProcess;
+import io.github.netmikey.testprocesses.utils.StreamStart;
+
+/**
+ * Test launching test processes through the registry's launcher process.
+ */
+public class LauncherProcessTest {
+
+    private final TestProcessesRegistry registry = new TestProcessesRegistry();
+
+    /**
+     * Enable the launcher process, which requires Unix domain sockets.
+     */
+    @BeforeEach
+    public void setUp() {
+        registry.setLauncherProcess(true);
+        registry.registerDefinition("echoTestProcess", new EchoTestProcess());
+    }
+
+    /**
+     * Stop the processes of the test's registry and its launcher process.
+     */
+    @AfterEach
+    public void shutdownRegistry() {
+        registry.shutdown();
+    }
+
+    /**
+     * The process is a child of the launcher rather than of the test JVM, but
+     * can still be written to, read from and stopped.
+     */
+    @Test
+    public void testProcessIsLaunchedByLauncher() {
+        TestProcessDefinitionBy<EchoTestProcess> echo = TestProcessDefinitionBy.clazz(EchoTestProcess.class);
+        registry.start(echo, StartStrategy.USE_EXISTING);
+
+        Process managedProcess = registry.retrieveRunningProcess(echo).get().getDefinition().getManagedProcess();
+        long parentPid = managedProcess.toHandle().parent().map(ProcessHandle::pid).orElse(-1L);
+        Assertions.assertNotEquals(ProcessHandle.current().pid(), parentPid,
+            "The echo process should have been launched by the launcher process");
+
+        sendToEchoProcess(registry, "Hello launcher");
+        Assertions.assertTrue(registry.stdOutAsStringOf(echo, StreamStart.ABSOLUTE).contains("Hello launcher"));
+
+        registry.stop(echo);
+        Assertions.assertFalse(managedProcess.isAlive(), "The echo process should have been stopped");
+    }
+}
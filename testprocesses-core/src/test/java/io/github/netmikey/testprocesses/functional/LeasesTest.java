@@ -0,0 +1,136 @@
+package io.github.netmikey.testprocesses.functional;
+
+import static io.github.netmikey.testprocesses.TestProcessDefinitionBy.*;
+import static io.github.netmikey.testprocesses.functional.testfixtures.TestHelper.*;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+
+import io.github.netmikey.testprocesses.StartStrategy;
+import io.github.netmikey.testprocesses.StopStrategy;
+import io.github.netmikey.testprocesses.TestProcessLease;
+import io.github.netmikey.testprocesses.TestProcessesRegistry;
+import io.github.netmikey.testprocesses.functional.testfixtures.EchoTestProcess;
+import io.github.netmikey.testprocesses.functional.testfixtures.SleeperTestProcess;
+
+/**
+ * Test that {@link TestProcessLease}s protect a shared test process from being
+ * stopped or restarted by other tests running in parallel. The other tests are
+ * simulated using a separate thread.
+ */
+@TestProcessesSpringBootTest
+public class LeasesTest {
+
+    @Autowired
+    private TestProcessesRegistry registry;
+
+    /**
+     * Stopping a process that another test holds a lease on is deferred until
+     * that lease is released.
+     *
+     * @throws Exception
+     *             Thrown when an unexpected error occurs.
+     */
+    @Test
+    public void testStopIsDeferredUntilLastLeaseIsReleased() throws Exception {
+        ExecutorService otherTest = Executors.newSingleThreadExecutor();
+        try {
+            TestProcessLease lease = registry.acquire(clazz(EchoTestProcess.class), StartStrategy.USE_EXISTING,
+                StopStrategy.LEAVE_RUNNING);
+
+            otherTest.submit(() -> registry.stop(clazz(EchoTestProcess.class))).get();
+            assertEchoRunningByClass(registry);
+
+            lease.release();
+            assertEchoNotRunningByClass(registry);
+        } finally {
+            otherTest.shutdownNow();
+        }
+    }
+
+    /**
+     * A lease acquired with {@link StartStrategy#REQUIRE_RESTART} waits for
+     * other tests to release their leases before restarting the process.
+     *
+     * @throws Exception
+     *             Thrown when an unexpected error occurs.
+     */
+    @Test
+    public void testExclusiveRestartWaitsForOtherLeases() throws Exception {
+        ExecutorService otherTest = Executors.newSingleThreadExecutor();
+        try {
+            TestProcessLease lease = registry.acquire(clazz(EchoTestProcess.class), StartStrategy.USE_EXISTING,
+                StopStrategy.LEAVE_RUNNING);
+            long pidBeforeRestart = echoPid();
+
+            Future<TestProcessLease> exclusiveLease = otherTest.submit(() -> registry.acquire(
+                clazz(EchoTestProcess.class), StartStrategy.REQUIRE_RESTART, StopStrategy.STOP_AFTER_TEST));
+
+            Assertions.assertThrows(TimeoutException.class, () -> exclusiveLease.get(1, TimeUnit.SECONDS),
+                "Restart should wait for the other lease to be released");
+            Assertions.assertEquals(pidBeforeRestart, echoPid());
+
+            lease.release();
+            TestProcessLease restartLease = exclusiveLease.get(30, TimeUnit.SECONDS);
+            try {
+                Assertions.assertNotEquals(pidBeforeRestart, echoPid(), "Process should have been restarted");
+            } finally {
+                restartLease.release();
+            }
+            assertEchoNotRunningByClass(registry);
+        } finally {
+            otherTest.shutdownNow();
+        }
+    }
+
+    /**
+     * Two tests each holding a lease on one process and requiring a restart of
+     * the other's would wait for each other forever: the second request fails
+     * instead.
+     *
+     * @throws Exception
+     *             Thrown when an unexpected error occurs.
+     */
+    @Test
+    public void testCrossedRestartsFailInsteadOfDeadlocking() throws Exception {
+        ExecutorService otherTest = Executors.newSingleThreadExecutor();
+        try {
+            TestProcessLease echoLease = registry.acquire(clazz(EchoTestProcess.class), StartStrategy.USE_EXISTING,
+                StopStrategy.LEAVE_RUNNING);
+            TestProcessLease sleeperLease = otherTest.submit(() -> registry.acquire(
+                clazz(SleeperTestProcess.class), StartStrategy.USE_EXISTING, StopStrategy.LEAVE_RUNNING)).get();
+
+            Future<TestProcessLease> echoRestartLease = otherTest.submit(() -> registry.acquire(
+                clazz(EchoTestProcess.class), StartStrategy.REQUIRE_RESTART, StopStrategy.STOP_AFTER_TEST));
+            Assertions.assertThrows(TimeoutException.class, () -> echoRestartLease.get(1, TimeUnit.SECONDS),
+                "Restart should wait for the other lease to be released");
+
+            IllegalStateException e = Assertions.assertThrows(IllegalStateException.class,
+                () -> registry.acquire(clazz(SleeperTestProcess.class), StartStrategy.REQUIRE_RESTART,
+                    StopStrategy.STOP_AFTER_TEST));
+            Assertions.assertTrue(e.getMessage().contains("wait forever"), e.getMessage());
+
+            echoLease.release();
+            echoRestartLease.get(30, TimeUnit.SECONDS).release();
+            otherTest.submit(sleeperLease::release).get();
+        } finally {
+            otherTest.shutdownNow();
+            registry.stop(clazz(SleeperTestProcess.class));
+        }
+    }
+
+    private long echoPid() {
+        return registry.retrieveRunningProcess(clazz(EchoTestProcess.class))
+            .orElseThrow()
+            .getDefinition()
+            .getManagedProcess()
+            .pid();
+    }
+}
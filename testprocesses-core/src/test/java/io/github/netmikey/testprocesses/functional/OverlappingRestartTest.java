@@ -0,0 +1,90 @@
+package io.github.netmikey.testprocesses.functional;
+
+import static io.github.netmikey.testprocesses.functional.testfixtures.TestHelper.*;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Assumptions;
+import org.junit.jupiter.api.Test;
+
+import io.github.netmikey.testprocesses.ShutdownMode;
+import io.github.netmikey.testprocesses.StartStrategy;
+import io.github.netmikey.testprocesses.TestProcessDefinitionBy;
+import io.github.netmikey.testprocesses.TestProcessesRegistry;
+import io.github.netmikey.testprocesses.functional.testfixtures.FixtureTestProcess;
+import io.github.netmikey.testprocesses.functional.testfixtures.Lingerer;
+import io.github.netmikey.testprocesses.functional.testfixtures.Sleeper;
+
+/**
+ * Test restarting a test process by launching the new process before stopping
+ * the old one.
+ */
+public class OverlappingRestartTest {
+
+    private final TestProcessesRegistry registry = new TestProcessesRegistry();
+
+    /**
+     * Stop the processes of the test's registry.
+     */
+    @AfterEach
+    public void shutdownRegistry() {
+        registry.shutdown();
+    }
+
+    /**
+     * The restart doesn't wait for the old process to shut down, which happens
+     * in the background.
+     *
+     * @throws InterruptedException
+     *             Thrown when interrupted while waiting for the old process.
+     */
+    @Test
+    public void testOldProcessIsStoppedInBackground() throws InterruptedException {
+        // Processes are destroyed forcibly right away on Windows
+        Assumptions.assumeFalse(System.getProperty("os.name").startsWith("Windows"),
+            "Requires graceful process termination");
+        // Takes 2 seconds to shut down
+        FixtureTestProcess definition = new FixtureTestProcess("overlapping-process", Lingerer.class, "2000");
+        definition.setOverlappingRestart(true);
+        TestProcessDefinitionBy<FixtureTestProcess> ref = TestProcessDefinitionBy.instance(definition);
+
+        registry.start(ref, StartStrategy.USE_EXISTING);
+        Process oldProcess = definition.getManagedProcess();
+
+        registry.start(ref, StartStrategy.REQUIRE_RESTART);
+        Process newProcess = definition.getManagedProcess();
+        Assertions.assertNotSame(oldProcess, newProcess, "A new process should have been started");
+        Assertions.assertTrue(newProcess.isAlive());
+        Assertions.assertTrue(oldProcess.isAlive(), "The old process should still be shutting down");
+
+        awaitCondition(() -> !oldProcess.isAlive(), 10000, "The old process should have been stopped");
+        Assertions.assertTrue(newProcess.isAlive());
+    }
+
+    /**
+     * A {@link ShutdownMode#FAST} shutdown doesn't leave an old process behind
+     * that is still being stopped in the background.
+     */
+    @Test
+    public void testFastShutdownKillsOldProcess() {
+        registry.setShutdownMode(ShutdownMode.FAST);
+        registry.setFastShutdownGracePeriodMillis(500);
+        // Ignores SIGTERM, so its background stop takes the default destroyer's 10 seconds
+        FixtureTestProcess definition = new FixtureTestProcess("overlapping-process", Lingerer.class, "600000")
+            .thenRunning(Sleeper.class);
+        definition.setOverlappingRestart(true);
+        TestProcessDefinitionBy<FixtureTestProcess> ref = TestProcessDefinitionBy.instance(definition);
+
+        registry.start(ref, StartStrategy.USE_EXISTING);
+        Process oldProcess = definition.getManagedProcess();
+        registry.start(ref, StartStrategy.REQUIRE_RESTART);
+
+        long startMillis = System.currentTimeMillis();
+        registry.shutdown();
+        long shutdownMillis = System.currentTimeMillis() - startMillis;
+
+        Assertions.assertFalse(oldProcess.isAlive(), "The old process should have been killed");
+        Assertions.assertFalse(definition.getManagedProcess().isAlive(), "The new process should have been killed");
+        Assertions.assertTrue(shutdownMillis < 3000, "The fast shutdown took " + shutdownMillis + " ms");
+    }
+}
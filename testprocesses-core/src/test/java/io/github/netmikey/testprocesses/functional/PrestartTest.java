@@ -0,0 +1,54 @@
+package io.github.netmikey.testprocesses.functional;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+
+import io.github.netmikey.testprocesses.StopStrategy;
+import io.github.netmikey.testprocesses.TestProcess;
+import io.github.netmikey.testprocesses.TestProcessesExtension;
+import io.github.netmikey.testprocesses.functional.testfixtures.SleeperTestProcess;
+
+/**
+ * Test that processes declared with {@link TestProcess#prestart()} are started
+ * before the first test method needing them.
+ */
+@ExtendWith(TestProcessesExtension.class)
+@TestProcess(beanName = "PRESTARTED_SLEEPER", prestart = true, stopStrategy = StopStrategy.STOP_AFTER_TEST)
+public class PrestartTest {
+
+    private static final SleeperTestProcess PRESTARTED_SLEEPER = new SleeperTestProcess();
+
+    private static long prestartedPid;
+
+    static {
+        PRESTARTED_SLEEPER.setProcessIdentifier("prestarted-sleeper");
+    }
+
+    /**
+     * The process starts without any test method having requested it yet.
+     *
+     * @throws InterruptedException
+     *             Thrown when interrupted while waiting for the process.
+     */
+    @BeforeAll
+    public static void awaitPrestart() throws InterruptedException {
+        for (int i = 0; i < 100 && PRESTARTED_SLEEPER.getManagedProcess() == null; i++) {
+            Thread.sleep(100);
+        }
+        Assertions.assertNotNull(PRESTARTED_SLEEPER.getManagedProcess(), "The sleeper should have been pre-started");
+        prestartedPid = PRESTARTED_SLEEPER.getManagedProcess().pid();
+    }
+
+    /**
+     * The test method uses the pre-started process instead of starting a new
+     * one.
+     */
+    @Test
+    public void testPrestartedProcessIsUsed() {
+        Assertions.assertEquals(prestartedPid, PRESTARTED_SLEEPER.getManagedProcess().pid(),
+            "The test should use the pre-started sleeper");
+        Assertions.assertTrue(PRESTARTED_SLEEPER.getManagedProcess().isAlive());
+    }
+}
@@ -0,0 +1,70 @@
+package io.github.netmikey.testprocesses.functional;
+
+import static io.github.netmikey.testprocesses.TestProcessDefinitionBy.*;
+
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Assumptions;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+
+import io.github.netmikey.testprocesses.AbstractTestProcessDefinition;
+import io.github.netmikey.testprocesses.StartStrategy;
+import io.github.netmikey.testprocesses.TestProcessesRegistry;
+import io.github.netmikey.testprocesses.eventdetector.LogPatternEventDetector;
+import io.github.netmikey.testprocesses.utils.ProcessUtils;
+
+/**
+ * Test that test processes launched as process group leaders don't leave any
+ * descendant behind when they are stopped.
+ */
+@TestProcessesSpringBootTest
+public class ProcessGroupTest {
+
+    private static final Pattern GRANDCHILD_PID = Pattern.compile("grandchild (\\d+)");
+
+    @Autowired
+    private TestProcessesRegistry registry;
+
+    /**
+     * A shell wrapper that detaches a grandchild process. The grandchild is
+     * re-parented immediately and can't be found by walking the wrapper's
+     * descendants, but it is still part of the wrapper's process group.
+     *
+     * @throws Exception
+     *             Thrown when an unexpected error occurs.
+     */
+    @Test
+    public void testDetachedGrandchildIsDestroyed() throws Exception {
+        Assumptions.assumeTrue(ProcessUtils.isProcessGroupSupported(), "Process groups require Linux and setsid");
+
+        AbstractTestProcessDefinition wrapper = new AbstractTestProcessDefinition() {
+            @Override
+            protected void buildProcess(ProcessBuilder builder) {
+                builder.command("sh", "-c", "(sleep 300 & echo \"grandchild $!\") ; sleep 300");
+            }
+        };
+        wrapper.setProcessIdentifier("process-group-wrapper");
+        wrapper.setProcessGroup(true);
+        wrapper.setStartupDetector(LogPatternEventDetector.onStdOut().withPattern(GRANDCHILD_PID));
+
+        registry.start(instance(wrapper), StartStrategy.USE_EXISTING);
+        Assertions.assertTrue(wrapper.isProcessGroupLeader(), "Wrapper should lead its own process group");
+
+        Matcher matcher = GRANDCHILD_PID.matcher(registry.stdOutAsStringOf(instance(wrapper)));
+        Assertions.assertTrue(matcher.find(), "Wrapper should have printed its grandchild's PID");
+        long grandchildPid = Long.parseLong(matcher.group(1));
+
+        registry.stop(instance(wrapper));
+
+        Optional<ProcessHandle> grandchild = ProcessHandle.of(grandchildPid);
+        if (grandchild.isPresent()) {
+            Assertions.assertDoesNotThrow(() -> grandchild.get().onExit().get(5, TimeUnit.SECONDS),
+                "Detached grandchild should have been destroyed");
+        }
+    }
+}
@@ -0,0 +1,51 @@
+package io.github.netmikey.testprocesses.functional;
+
+import static io.github.netmikey.testprocesses.TestProcessDefinitionBy.*;
+
+import java.util.concurrent.TimeoutException;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+
+import io.github.netmikey.testprocesses.StartStrategy;
+import io.github.netmikey.testprocesses.TestProcessesRegistry;
+import io.github.netmikey.testprocesses.eventdetector.RecursiveProcessTerminationEventDetector;
+import io.github.netmikey.testprocesses.functional.testfixtures.SleeperTestProcess;
+
+/**
+ * Test the {@link RecursiveProcessTerminationEventDetector}.
+ */
+@TestProcessesSpringBootTest
+public class ProcessTerminationTest {
+
+    @Autowired
+    private TestProcessesRegistry registry;
+
+    /**
+     * When a process doesn't exit in time, the timeout reports which processes
+     * are still alive.
+     *
+     * @throws Exception
+     *             Thrown when an unexpected error occurs.
+     */
+    @Test
+    public void testTimeoutReportsAliveProcesses() throws Exception {
+        registry.start(clazz(SleeperTestProcess.class), StartStrategy.USE_EXISTING);
+        try {
+            long pid = registry.retrieveRunningProcess(clazz(SleeperTestProcess.class))
+                .orElseThrow()
+                .getDefinition()
+                .getManagedProcess()
+                .pid();
+
+            TimeoutException e = Assertions.assertThrows(TimeoutException.class,
+                () -> registry.waitForEventOn(clazz(SleeperTestProcess.class),
+                    RecursiveProcessTerminationEventDetector.newInstance().withTimeoutMillis(500)));
+            Assertions.assertTrue(e.getMessage().contains(String.valueOf(pid)),
+                "Timeout message should contain the PID of the process still alive: " + e.getMessage());
+        } finally {
+            registry.stop(clazz(SleeperTestProcess.class));
+        }
+    }
+}
@@ -0,0 +1,71 @@
+package io.github.netmikey.testprocesses.functional;
+
+import static io.github.netmikey.testprocesses.TestProcessDefinitionBy.*;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Assumptions;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+
+import io.github.netmikey.testprocesses.StartStrategy;
+import io.github.netmikey.testprocesses.TestProcessesRegistry;
+import io.github.netmikey.testprocesses.functional.testfixtures.FixtureTestProcess;
+import io.github.netmikey.testprocesses.functional.testfixtures.Sleeper;
+import io.github.netmikey.testprocesses.utils.ProcessUtils;
+
+/**
+ * Test launching test processes pinned to CPUs and with a nice level.
+ */
+@TestProcessesSpringBootTest
+public class SchedulingOptionsTest {
+
+    @Autowired
+    private TestProcessesRegistry registry;
+
+    /**
+     * The process runs on the specified CPUs with the specified nice level.
+     *
+     * @throws Exception
+     *             Thrown when an unexpected error occurs.
+     */
+    @Test
+    public void testProcessIsPinnedAndNiced() throws Exception {
+        Assumptions.assumeTrue(ProcessUtils.isCpuAffinitySupported() && ProcessUtils.isNiceLevelSupported(),
+            "Requires Linux with taskset and nice");
+
+        String cpu = allowedCpus(Paths.get("/proc/self/status")).split("[,-]")[0];
+        FixtureTestProcess definition = new FixtureTestProcess("scheduling-options", Sleeper.class);
+        definition.setCpuSet(cpu);
+        definition.setNiceLevel(5);
+
+        registry.start(instance(definition), StartStrategy.REQUIRE_RESTART);
+        try {
+            long pid = definition.getManagedProcess().pid();
+            Assertions.assertEquals(cpu, allowedCpus(Paths.get("/proc", String.valueOf(pid), "status")));
+
+            int testJvmNiceLevel = niceLevel(Paths.get("/proc/self/stat"));
+            Assertions.assertEquals(Math.min(19, testJvmNiceLevel + 5),
+                niceLevel(Paths.get("/proc", String.valueOf(pid), "stat")));
+        } finally {
+            registry.stop(instance(definition));
+        }
+    }
+
+    private static int niceLevel(Path statFile) throws Exception {
+        // The nice level is the 19th field, the 17th after the command name
+        String stat = Files.readString(statFile);
+        return Integer.parseInt(stat.substring(stat.lastIndexOf(')') + 2).split(" ")[16]);
+    }
+
+    private static String allowedCpus(Path status) throws Exception {
+        return Files.readAllLines(status).stream()
+            .filter(line -> line.startsWith("Cpus_allowed_list:"))
+            .map(line -> line.substring(line.indexOf(':') + 1).trim())
+            .findFirst()
+            .orElseThrow();
+    }
+}
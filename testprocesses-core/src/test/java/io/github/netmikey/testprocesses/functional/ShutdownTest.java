@@ -0,0 +1,189 @@
+package io.github.netmikey.testprocesses.functional;
+
+import static io.github.netmikey.testprocesses.functional.testfixtures.TestHelper.*;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Assumptions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.springframework.boot.test.system.CapturedOutput;
+import org.springframework.boot.test.system.OutputCaptureExtension;
+
+import io.github.netmikey.testprocesses.ShutdownMode;
+import io.github.netmikey.testprocesses.StartStrategy;
+import io.github.netmikey.testprocesses.TestProcessDefinitionBy;
+import io.github.netmikey.testprocesses.TestProcessesRegistry;
+import io.github.netmikey.testprocesses.eventdetector.LogPatternEventDetector;
+import io.github.netmikey.testprocesses.functional.testfixtures.FixtureTestProcess;
+import io.github.netmikey.testprocesses.functional.testfixtures.Lingerer;
+import io.github.netmikey.testprocesses.functional.testfixtures.Sleeper;
+import io.github.netmikey.testprocesses.functional.testfixtures.UnclosedRegistry;
+
+/**
+ * Test stopping the test processes that are still running when the registry
+ * shuts down.
+ */
+@ExtendWith(OutputCaptureExtension.class)
+public class ShutdownTest {
+
+    // Lingers far longer than any test waits for it to terminate
+    private static final String LINGERING_MILLIS = "600000";
+
+    private final TestProcessesRegistry registry = new TestProcessesRegistry();
+
+    /**
+     * Stop the processes the test's registry may have left running.
+     */
+    @AfterEach
+    public void shutdownRegistry() {
+        registry.shutdown();
+    }
+
+    /**
+     * A process ignoring <code>SIGTERM</code> is destroyed forcibly once the
+     * shutdown timeout has passed and reported as not having stopped.
+     *
+     * @param output
+     *            The captured log output.
+     */
+    @Test
+    public void testProcessIgnoringSigtermIsReported(CapturedOutput output) {
+        // Processes are destroyed forcibly right away on Windows
+        Assumptions.assumeFalse(System.getProperty("os.name").startsWith("Windows"),
+            "Requires graceful process termination");
+        registry.setShutdownTimeoutMillis(1000);
+        FixtureTestProcess definition = new FixtureTestProcess("sigterm-ignoring-process", Lingerer.class,
+            LINGERING_MILLIS);
+        // Only ask the process to terminate, without escalating
+        definition.setProcessDestroyer(runningProcess -> definition.getManagedProcess().destroy());
+        registry.start(TestProcessDefinitionBy.instance(definition), StartStrategy.USE_EXISTING);
+        Process process = definition.getManagedProcess();
+
+        registry.shutdown();
+
+        Assertions.assertFalse(process.isAlive(), "The process should have been destroyed forcibly");
+        Assertions.assertTrue(output.getOut().contains("Test processes that could not be stopped"),
+            "The process should have been reported as not having stopped");
+        Assertions.assertTrue(output.getOut().contains("sigterm-ignoring-process, destroyed forcibly"),
+            "The report should tell that the process has been destroyed forcibly");
+    }
+
+    /**
+     * Processes taking their time to shut down are stopped concurrently, so
+     * that their shutdown times don't add up.
+     *
+     * @param output
+     *            The captured log output.
+     */
+    @Test
+    public void testProcessesAreStoppedConcurrently(CapturedOutput output) {
+        // Processes are destroyed forcibly right away on Windows
+        Assumptions.assumeFalse(System.getProperty("os.name").startsWith("Windows"),
+            "Requires graceful process termination");
+        List<Process> processes = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            FixtureTestProcess definition = new FixtureTestProcess("slowly-stopping-process-" + i, Lingerer.class,
+                "1500");
+            registry.start(TestProcessDefinitionBy.instance(definition), StartStrategy.USE_EXISTING);
+            processes.add(definition.getManagedProcess());
+        }
+
+        long startMillis = System.currentTimeMillis();
+        registry.shutdown();
+        long shutdownMillis = System.currentTimeMillis() - startMillis;
+
+        processes.forEach(process -> Assertions.assertFalse(process.isAlive(), "The process should have stopped"));
+        // Stopping them one after the other would take at least 4.5 seconds
+        Assertions.assertTrue(shutdownMillis < 4000, "The shutdown took " + shutdownMillis + " ms");
+        Assertions.assertFalse(output.getOut().contains("Test processes that could not be stopped"),
+            "All processes should have stopped gracefully");
+    }
+
+    /**
+     * A {@link ShutdownMode#FAST} shutdown kills a process ignoring
+     * <code>SIGTERM</code> once the grace period has passed, without waiting
+     * for its process destroyer and shutdown detector.
+     */
+    @Test
+    public void testFastShutdownKillsProcessIgnoringSigterm() {
+        registry.setShutdownMode(ShutdownMode.FAST);
+        registry.setFastShutdownGracePeriodMillis(500);
+        FixtureTestProcess definition = new FixtureTestProcess("sigterm-ignoring-process", Lingerer.class,
+            LINGERING_MILLIS);
+        registry.start(TestProcessDefinitionBy.instance(definition), StartStrategy.USE_EXISTING);
+        Process process = definition.getManagedProcess();
+
+        long startMillis = System.currentTimeMillis();
+        registry.shutdown();
+        long shutdownMillis = System.currentTimeMillis() - startMillis;
+
+        Assertions.assertFalse(process.isAlive(), "The process should have been killed");
+        // Far below the default process destroyer's 10 seconds
+        Assertions.assertTrue(shutdownMillis < 3000, "The fast shutdown took " + shutdownMillis + " ms");
+    }
+
+    /**
+     * A {@link ShutdownMode#FAST} shutdown doesn't wait for the shutdown
+     * detector of a process that has terminated.
+     */
+    @Test
+    public void testFastShutdownSkipsShutdownDetector() {
+        registry.setShutdownMode(ShutdownMode.FAST);
+        FixtureTestProcess definition = new FixtureTestProcess("undetected-shutdown-process", Sleeper.class);
+        definition.setShutdownDetector(LogPatternEventDetector.onStdOut()
+            .withMarker("never printed")
+            .withTimeoutMillis(10000));
+        registry.start(TestProcessDefinitionBy.instance(definition), StartStrategy.USE_EXISTING);
+        Process process = definition.getManagedProcess();
+
+        long startMillis = System.currentTimeMillis();
+        registry.shutdown();
+        long shutdownMillis = System.currentTimeMillis() - startMillis;
+
+        Assertions.assertFalse(process.isAlive(), "The process should have been terminated");
+        // Far below the shutdown detector's 10 seconds
+        Assertions.assertTrue(shutdownMillis < 3000, "The fast shutdown took " + shutdownMillis + " ms");
+    }
+
+    /**
+     * The JVM shutdown hook kills the test processes of a JVM exiting without
+     * having shut down its registry.
+     *
+     * @throws IOException
+     *             Thrown if the JVM can't be launched or read from.
+     * @throws InterruptedException
+     *             Thrown when interrupted while waiting for the JVM.
+     */
+    @Test
+    public void testShutdownHookKillsProcessesOfExitingJvm() throws IOException, InterruptedException {
+        Process jvm = new ProcessBuilder(Paths.get(System.getProperty("java.home"), "bin", "java").toString(),
+            "-cp", System.getProperty("java.class.path"), UnclosedRegistry.class.getName())
+            .redirectErrorStream(true)
+            .start();
+        Optional<Long> testProcessPid;
+        try (BufferedReader jvmOutput = new BufferedReader(
+            new InputStreamReader(jvm.getInputStream(), StandardCharsets.UTF_8))) {
+
+            testProcessPid = jvmOutput.lines()
+                .filter(line -> line.startsWith("PID "))
+                .findFirst()
+                .map(line -> Long.valueOf(line.substring("PID ".length())));
+        }
+        Assertions.assertTrue(jvm.waitFor(30, TimeUnit.SECONDS), "The JVM should have exited");
+        Assertions.assertTrue(testProcessPid.isPresent(), "The JVM should have started the test process");
+
+        awaitCondition(() -> !ProcessHandle.of(testProcessPid.get()).map(ProcessHandle::isAlive).orElse(false),
+            5000, "The test process should have been killed by the shutdown hook");
+    }
+}
@@ -0,0 +1,70 @@
+package io.github.netmikey.testprocesses.functional;
+
+import java.nio.file.Paths;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import io.github.netmikey.testprocesses.AbstractTestProcessDefinition;
+import io.github.netmikey.testprocesses.StopStrategy;
+import io.github.netmikey.testprocesses.TestProcess;
+import io.github.netmikey.testprocesses.TestProcessesListener;
+import io.github.netmikey.testprocesses.eventdetector.LogPatternEventDetector;
+import io.github.netmikey.testprocesses.functional.testfixtures.Sleeper;
+
+/**
+ * Test that the {@link TestProcessesListener} starts processes declared with
+ * {@link TestProcess#prestart()} in the background before the first test
+ * method needing them, like {@link PrestartTest} does for the extension.
+ */
+@TestProcessesSpringBootTest
+@TestProcess(value = SpringPrestartTest.PrestartedSleeperTestProcess.class, prestart = true,
+    stopStrategy = StopStrategy.STOP_AFTER_TEST)
+public class SpringPrestartTest {
+
+    @Autowired
+    private PrestartedSleeperTestProcess sleeper;
+
+    /**
+     * The test method uses the process started in the background instead of
+     * starting it itself.
+     */
+    @Test
+    public void testPrestartedProcessIsUsed() {
+        Assertions.assertNotNull(sleeper.getManagedProcess(), "The sleeper should be running");
+        Assertions.assertTrue(sleeper.getManagedProcess().isAlive());
+        Thread launchingThread = sleeper.launchingThread;
+        Assertions.assertNotSame(Thread.currentThread(), launchingThread,
+            "The sleeper should have been pre-started instead of being started for the test method");
+        Assertions.assertTrue(launchingThread.getName().startsWith("testprocesses-"),
+            "The sleeper should have been started by the registry in the background: " + launchingThread.getName());
+    }
+
+    /**
+     * A {@link Sleeper} remembering the thread that launched it.
+     */
+    @Component
+    public static class PrestartedSleeperTestProcess extends AbstractTestProcessDefinition {
+
+        private volatile Thread launchingThread;
+
+        /**
+         * Default constructor.
+         */
+        public PrestartedSleeperTestProcess() {
+            setProcessIdentifier("spring-prestarted-sleeper");
+            setStartupDetector(LogPatternEventDetector
+                .onStdOut()
+                .withMarker(Sleeper.class.getSimpleName() + " process running"));
+        }
+
+        @Override
+        protected void buildProcess(ProcessBuilder builder) {
+            launchingThread = Thread.currentThread();
+            builder.command("java", "-cp", Paths.get("./build/classes/java/test/").toAbsolutePath().toString(),
+                Sleeper.class.getName());
+        }
+    }
+}
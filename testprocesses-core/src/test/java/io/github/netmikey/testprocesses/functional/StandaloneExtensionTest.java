@@ -0,0 +1,58 @@
+package io.github.netmikey.testprocesses.functional;
+
+import static io.github.netmikey.testprocesses.functional.testfixtures.TestHelper.*;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+
+import io.github.netmikey.testprocesses.StopStrategy;
+import io.github.netmikey.testprocesses.TestProcess;
+import io.github.netmikey.testprocesses.TestProcessDefinitionBy;
+import io.github.netmikey.testprocesses.TestProcessesExtension;
+import io.github.netmikey.testprocesses.TestProcessesRegistry;
+import io.github.netmikey.testprocesses.functional.testfixtures.EchoTestProcess;
+import io.github.netmikey.testprocesses.functional.testfixtures.SleeperTestProcess;
+
+/**
+ * Test the {@link TestProcessesExtension}, which doesn't use a Spring test
+ * context.
+ */
+@ExtendWith(TestProcessesExtension.class)
+@TestProcess(EchoTestProcess.class)
+public class StandaloneExtensionTest {
+
+    private static final SleeperTestProcess SLEEPER = new SleeperTestProcess();
+
+    /**
+     * Definitions referenced by class are instantiated on demand and the
+     * registry is injected as a parameter.
+     *
+     * @param registry
+     *            The registry of the {@link TestProcessesExtension}.
+     */
+    @Test
+    public void testDefinitionReferencedByClass(TestProcessesRegistry registry) {
+        assertEchoRunningByClass(registry);
+        assertEchoRunningByProcessIdentifier(registry);
+    }
+
+    /**
+     * Definitions held by static fields of the test class are registered under
+     * the test class' name and the field name, and can be referenced by the
+     * field name from the test class.
+     *
+     * @param registry
+     *            The registry of the {@link TestProcessesExtension}.
+     */
+    @Test
+    @TestProcess(beanName = "SLEEPER", stopStrategy = StopStrategy.STOP_AFTER_TEST)
+    public void testDefinitionFromStaticField(TestProcessesRegistry registry) {
+        assertRunningByClass(registry, SleeperTestProcess.class);
+        Assertions.assertTrue(registry.retrieveRunningProcess(TestProcessDefinitionBy.instance(SLEEPER)).isPresent(),
+            "The sleeper should be running using the instance of the static field");
+        Assertions.assertSame(SLEEPER, registry.retrieveRunningProcess(
+            TestProcessDefinitionBy.beanName(StandaloneExtensionTest.class.getName() + ".SLEEPER")).get()
+            .getDefinition(), "The sleeper should be registered under its qualified field name");
+    }
+}
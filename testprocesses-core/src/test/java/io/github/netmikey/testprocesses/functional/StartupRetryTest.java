@@ -0,0 +1,125 @@
+package io.github.netmikey.testprocesses.functional;
+
+import static io.github.netmikey.testprocesses.functional.testfixtures.TestHelper.*;
+
+import java.util.concurrent.CompletableFuture;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import io.github.netmikey.testprocesses.RunningTestProcess;
+import io.github.netmikey.testprocesses.StartStrategy;
+import io.github.netmikey.testprocesses.StartupFailure;
+import io.github.netmikey.testprocesses.StartupRetryPolicy;
+import io.github.netmikey.testprocesses.TestProcessDefinitionBy;
+import io.github.netmikey.testprocesses.TestProcessStartupException;
+import io.github.netmikey.testprocesses.TestProcessesRegistry;
+import io.github.netmikey.testprocesses.eventdetector.LogPatternEventDetector;
+import io.github.netmikey.testprocesses.functional.testfixtures.Failing;
+import io.github.netmikey.testprocesses.functional.testfixtures.FixtureTestProcess;
+import io.github.netmikey.testprocesses.functional.testfixtures.Sleeper;
+
+/**
+ * Test retrying the startup of test processes that fail transiently.
+ */
+public class StartupRetryTest {
+
+    private final TestProcessesRegistry registry = new TestProcessesRegistry();
+
+    /**
+     * Stop the processes of the test's registry.
+     */
+    @AfterEach
+    public void shutdownRegistry() {
+        registry.shutdown();
+    }
+
+    /**
+     * A process exiting during its first startup is started again.
+     */
+    @Test
+    public void testEarlyExitIsRetried() {
+        FixtureTestProcess definition = definition("flaky-process",
+            StartupRetryPolicy.newInstance().withBackoffMillis(100));
+        registry.start(TestProcessDefinitionBy.instance(definition), StartStrategy.USE_EXISTING);
+
+        Assertions.assertEquals(2, definition.getStarts(), "The process should have been started twice");
+        Assertions.assertTrue(definition.getManagedProcess().isAlive());
+    }
+
+    /**
+     * A process that keeps failing makes its start fail, and later starts fail
+     * right away with the same reason until it is restarted.
+     */
+    @Test
+    public void testFinalFailureIsRecorded() {
+        FixtureTestProcess definition = definition("failing-process", StartupRetryPolicy.noRetries());
+        TestProcessDefinitionBy<FixtureTestProcess> ref = TestProcessDefinitionBy.instance(definition);
+
+        TestProcessStartupException e = Assertions.assertThrows(TestProcessStartupException.class,
+            () -> registry.start(ref, StartStrategy.USE_EXISTING));
+        Assertions.assertEquals(StartupFailure.EARLY_EXIT, e.getFailure());
+        Assertions.assertNotNull(e.getCause(), "The failure should carry what the startup detector reported");
+
+        Assertions.assertThrows(TestProcessStartupException.class,
+            () -> registry.start(ref, StartStrategy.USE_EXISTING));
+        Assertions.assertEquals(1, definition.getStarts(), "The failed process should not have been started again");
+
+        registry.start(ref, StartStrategy.REQUIRE_RESTART);
+        Assertions.assertEquals(2, definition.getStarts(), "A restart should start the process again");
+    }
+
+    /**
+     * Failures not matching the retryable ones aren't retried.
+     */
+    @Test
+    public void testErrorPatternIsNotRetriedUnlessRetryable() {
+        FixtureTestProcess definition = definition("port-clashing-process", StartupRetryPolicy.newInstance()
+                .withErrorPattern("Address already in use")
+                .retryingOn(StartupFailure.TIMEOUT));
+
+        TestProcessStartupException e = Assertions.assertThrows(TestProcessStartupException.class,
+            () -> registry.start(TestProcessDefinitionBy.instance(definition), StartStrategy.USE_EXISTING));
+        Assertions.assertEquals(StartupFailure.ERROR_PATTERN, e.getFailure());
+        Assertions.assertEquals(1, definition.getStarts(), "The process should not have been retried");
+    }
+
+    /**
+     * Backing off before a retry doesn't block processes whose locks are
+     * striped together with the retried process' lock.
+     *
+     * @throws InterruptedException
+     *             Thrown when interrupted while waiting for the first attempt.
+     */
+    @Test
+    public void testBackoffDoesNotBlockOtherProcesses() throws InterruptedException {
+        // "Aa" and "BB" have the same hash code, so both processes share a lock stripe
+        FixtureTestProcess retried = definition("backing-off-process-Aa",
+            StartupRetryPolicy.newInstance().withBackoffMillis(3000));
+        FixtureTestProcess other = new FixtureTestProcess("backing-off-process-BB", Sleeper.class);
+        CompletableFuture<RunningTestProcess<FixtureTestProcess>> retriedStart = registry.startAsync(
+            TestProcessDefinitionBy.instance(retried), StartStrategy.USE_EXISTING);
+        awaitCondition(() -> retried.getStarts() == 1 && retried.getManagedProcess() != null
+            && !retried.getManagedProcess().isAlive(), 5000, "The first attempt should have failed");
+
+        long startMillis = System.currentTimeMillis();
+        registry.start(TestProcessDefinitionBy.instance(other), StartStrategy.USE_EXISTING);
+        long otherStartMillis = System.currentTimeMillis() - startMillis;
+        Assertions.assertTrue(otherStartMillis < 2000, "The other process took " + otherStartMillis
+            + " ms to start");
+        Assertions.assertFalse(retriedStart.isDone(), "The retried process should still be backing off");
+
+        retriedStart.join();
+        Assertions.assertTrue(retried.getManagedProcess().isAlive(), "The retry should have started the process");
+    }
+
+    private static FixtureTestProcess definition(String processIdentifier, StartupRetryPolicy startupRetryPolicy) {
+        FixtureTestProcess definition = new FixtureTestProcess(processIdentifier, Failing.class, "0",
+            "Address already in use").thenRunning(Sleeper.class);
+        // Only the Sleeper started by a retry starts up successfully
+        definition.setStartupDetector(LogPatternEventDetector.onStdOut().withMarker("Sleeper process running"));
+        definition.setStartupRetryPolicy(startupRetryPolicy);
+        return definition;
+    }
+}
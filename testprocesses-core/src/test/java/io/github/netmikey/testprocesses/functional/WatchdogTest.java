@@ -0,0 +1,84 @@
+package io.github.netmikey.testprocesses.functional;
+
+import static io.github.netmikey.testprocesses.functional.testfixtures.TestHelper.*;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import io.github.netmikey.testprocesses.StartStrategy;
+import io.github.netmikey.testprocesses.TestProcessDefinitionBy;
+import io.github.netmikey.testprocesses.TestProcessesRegistry;
+import io.github.netmikey.testprocesses.eventdetector.TcpPortEventDetector;
+import io.github.netmikey.testprocesses.functional.testfixtures.Failing;
+import io.github.netmikey.testprocesses.functional.testfixtures.FixtureTestProcess;
+import io.github.netmikey.testprocesses.functional.testfixtures.Sleeper;
+
+/**
+ * Test the registry's watchdog restarting unhealthy test processes in the
+ * background.
+ */
+public class WatchdogTest {
+
+    private static final long WATCHDOG_INTERVAL_MILLIS = 200;
+
+    private final TestProcessesRegistry registry = new TestProcessesRegistry();
+
+    /**
+     * Enable the watchdog.
+     */
+    @BeforeEach
+    public void setUp() {
+        registry.setWatchdog(true);
+        registry.setWatchdogIntervalMillis(WATCHDOG_INTERVAL_MILLIS);
+        registry.setWatchdogMaxRestartAttempts(2);
+    }
+
+    /**
+     * Stop the registry's processes and its watchdog.
+     */
+    @AfterEach
+    public void tearDown() {
+        registry.shutdown();
+    }
+
+    /**
+     * A process crashing after its test has been restarted before the next
+     * test needs it.
+     *
+     * @throws InterruptedException
+     *             Thrown when interrupted while waiting for the restart.
+     */
+    @Test
+    public void testCrashedProcessIsRestarted() throws InterruptedException {
+        FixtureTestProcess definition = new FixtureTestProcess("crashing-process", Failing.class, "1000", "crashed")
+            .thenRunning(Sleeper.class);
+        registry.start(TestProcessDefinitionBy.instance(definition), StartStrategy.USE_EXISTING);
+        long crashedPid = definition.getManagedProcess().pid();
+
+        awaitCondition(() -> definition.getStarts() >= 2 && definition.getManagedProcess().pid() != crashedPid
+            && definition.getManagedProcess().isAlive(), 10000, "The crashed process should have been restarted");
+        Assertions.assertEquals(2, definition.getStarts(), "The crashed process should have been restarted once");
+    }
+
+    /**
+     * A process failing its liveness check is restarted a limited number of
+     * times.
+     *
+     * @throws InterruptedException
+     *             Thrown when interrupted while waiting for the restarts.
+     */
+    @Test
+    public void testRestartsOfUnhealthyProcessAreBounded() throws InterruptedException {
+        FixtureTestProcess definition = new FixtureTestProcess("unhealthy-process", Sleeper.class);
+        // Nothing listens on port 1
+        definition.setLivenessDetector(TcpPortEventDetector.forLocalPort(1).withTimeoutMillis(200));
+        registry.start(TestProcessDefinitionBy.instance(definition), StartStrategy.USE_EXISTING);
+
+        awaitCondition(() -> definition.getStarts() >= 3, 20000, "The process should have been restarted twice");
+        // Give the watchdog plenty of checks to (wrongly) restart it again
+        Thread.sleep(10 * WATCHDOG_INTERVAL_MILLIS);
+        Assertions.assertEquals(3, definition.getStarts(), "The process should have been restarted exactly twice");
+    }
+}
@@ -0,0 +1,70 @@
+package io.github.netmikey.testprocesses.functional;
+
+import static io.github.netmikey.testprocesses.TestProcessDefinitionBy.*;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.beans.factory.annotation.Autowired;
+
+import io.github.netmikey.testprocesses.StartStrategy;
+import io.github.netmikey.testprocesses.TestProcessesRegistry;
+import io.github.netmikey.testprocesses.functional.testfixtures.FixtureTestProcess;
+import io.github.netmikey.testprocesses.functional.testfixtures.SeedRewriter;
+import io.github.netmikey.testprocesses.utils.StreamStart;
+
+/**
+ * Test that each start of a test process gets a fresh working directory
+ * materialized from its template.
+ */
+@TestProcessesSpringBootTest
+public class WorkingDirectoryTemplateTest {
+
+    @Autowired
+    private TestProcessesRegistry registry;
+
+    /**
+     * A process modifying its working directory neither modifies the template
+     * nor the working directory of its next start.
+     *
+     * @param tempDir
+     *            A temporary directory for the template and working
+     *            directories.
+     * @throws Exception
+     *             Thrown when an unexpected error occurs.
+     */
+    @Test
+    public void testEachStartGetsAFreshWorkingDirectory(@TempDir Path tempDir) throws Exception {
+        Path template = Files.createDirectories(tempDir.resolve("template"));
+        Files.write(template.resolve("seed.txt"), "seeded".getBytes(StandardCharsets.UTF_8));
+
+        FixtureTestProcess definition = new FixtureTestProcess("working-directory-template", SeedRewriter.class);
+        definition.setWorkingDirectoryTemplate(template);
+        definition.setWorkingDirectoryRoot(tempDir.resolve("workdirs"));
+
+        registry.start(instance(definition), StartStrategy.USE_EXISTING);
+        Path firstWorkingDirectory = definition.getWorkingDirectory().get();
+        Assertions.assertTrue(
+            registry.stdOutAsStringOf(instance(definition), StreamStart.ABSOLUTE).contains("state: seeded"));
+
+        registry.start(instance(definition), StartStrategy.REQUIRE_RESTART);
+        Assertions.assertNotEquals(firstWorkingDirectory, definition.getWorkingDirectory().get(),
+            "The restarted process should get a new working directory");
+        Assertions.assertTrue(
+            registry.stdOutAsStringOf(instance(definition), StreamStart.ABSOLUTE).contains("state: seeded"),
+            "The restarted process should start from the template's state");
+        Assertions.assertEquals("seeded", Files.readString(template.resolve("seed.txt")),
+            "The template should not have been modified");
+
+        registry.stop(instance(definition));
+        for (int i = 0; i < 50 && Files.exists(firstWorkingDirectory); i++) {
+            Thread.sleep(100);
+        }
+        Assertions.assertFalse(Files.exists(firstWorkingDirectory),
+            "The working directory should have been deleted after the process exited");
+    }
+}
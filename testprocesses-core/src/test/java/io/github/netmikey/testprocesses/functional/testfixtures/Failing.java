@@ -0,0 +1,26 @@
+package io.github.netmikey.testprocesses.functional.testfixtures;
+
+import java.util.Arrays;
+
+/**
+ * A Java process used for testing that fails: it runs for the number of
+ * milliseconds given as first argument, then prints the remaining arguments to
+ * its stdErr stream and exits with status 1.
+ */
+public class Failing {
+    /**
+     * The main method.
+     *
+     * @param args
+     *            CLI Arguments: the milliseconds to run for, followed by the
+     *            error message.
+     * @throws InterruptedException
+     *             If interrupted while running.
+     */
+    public static void main(String[] args) throws InterruptedException {
+        System.out.println("+++ " + Failing.class.getSimpleName() + " process running...");
+        Thread.sleep(Long.parseLong(args[0]));
+        System.err.println(String.join(" ", Arrays.asList(args).subList(1, args.length)));
+        System.exit(1);
+    }
+}
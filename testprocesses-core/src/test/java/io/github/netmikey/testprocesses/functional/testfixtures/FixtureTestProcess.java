@@ -0,0 +1,80 @@
+package io.github.netmikey.testprocesses.functional.testfixtures;
+
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import io.github.netmikey.testprocesses.AbstractTestProcessDefinition;
+import io.github.netmikey.testprocesses.TestProcessDefinition;
+import io.github.netmikey.testprocesses.eventdetector.LogPatternEventDetector;
+
+/**
+ * A {@link TestProcessDefinition} for tests that need a process identifier of
+ * their own or a process behaving differently from one start to the next: it
+ * runs one of the Java test processes (like the {@link Sleeper}) when it is
+ * first started and, optionally, another one when it is started again. It
+ * counts its starts and has started up once the test process prints that it
+ * is running.
+ */
+public class FixtureTestProcess extends AbstractTestProcessDefinition {
+
+    private final List<String> firstCommand;
+
+    private List<String> laterCommand;
+
+    private final AtomicInteger starts = new AtomicInteger();
+
+    /**
+     * Initializing constructor.
+     *
+     * @param processIdentifier
+     *            The process identifier.
+     * @param mainClass
+     *            The main class of the Java test process.
+     * @param arguments
+     *            The test process' CLI arguments.
+     */
+    public FixtureTestProcess(String processIdentifier, Class<?> mainClass, String... arguments) {
+        firstCommand = javaCommand(mainClass, arguments);
+        laterCommand = firstCommand;
+        setProcessIdentifier(processIdentifier);
+        setStartupDetector(LogPatternEventDetector.onStdOut().withMarker(" process running"));
+    }
+
+    /**
+     * Run another Java test process when the definition is started again.
+     *
+     * @param mainClass
+     *            The main class of the Java test process.
+     * @param arguments
+     *            The test process' CLI arguments.
+     * @return This instance.
+     */
+    public FixtureTestProcess thenRunning(Class<?> mainClass, String... arguments) {
+        laterCommand = javaCommand(mainClass, arguments);
+        return this;
+    }
+
+    @Override
+    protected void buildProcess(ProcessBuilder builder) {
+        builder.command(starts.incrementAndGet() == 1 ? firstCommand : laterCommand);
+    }
+
+    /**
+     * Get the number of times the process has been started.
+     *
+     * @return Returns the number of starts.
+     */
+    public int getStarts() {
+        return starts.get();
+    }
+
+    private static List<String> javaCommand(Class<?> mainClass, String... arguments) {
+        List<String> command = new ArrayList<>(List.of("java", "-cp",
+            Paths.get("./build/classes/java/test/").toAbsolutePath().toString(), mainClass.getName()));
+        command.addAll(Arrays.asList(arguments));
+        return command;
+    }
+}
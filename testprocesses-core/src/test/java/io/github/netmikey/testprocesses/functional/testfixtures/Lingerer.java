@@ -0,0 +1,32 @@
+package io.github.netmikey.testprocesses.functional.testfixtures;
+
+/**
+ * A Java process used for testing that sleeps forever, like the
+ * {@link Sleeper}, but takes the number of milliseconds given as its argument
+ * to shut down when it is asked to terminate (e.g. using
+ * <code>SIGTERM</code>). A very long time makes it ignore such requests, so
+ * that it has to be destroyed forcibly.
+ */
+public class Lingerer {
+    /**
+     * The main method.
+     *
+     * @param args
+     *            CLI Arguments: the milliseconds it takes to shut down.
+     * @throws InterruptedException
+     *             If interrupted while sleeping.
+     */
+    public static void main(String[] args) throws InterruptedException {
+        long shutdownMillis = Long.parseLong(args[0]);
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            System.out.println("+++ " + Lingerer.class.getSimpleName() + " process shutting down...");
+            try {
+                Thread.sleep(shutdownMillis);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }));
+        System.out.println("+++ " + Lingerer.class.getSimpleName() + " process running...");
+        Thread.sleep(Long.MAX_VALUE);
+    }
+}
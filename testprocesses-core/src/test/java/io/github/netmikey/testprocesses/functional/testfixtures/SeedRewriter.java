@@ -0,0 +1,32 @@
+package io.github.netmikey.testprocesses.functional.testfixtures;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+/**
+ * A Java process used for testing that modifies its working directory: it
+ * prints the content of the <code>seed.txt</code> file in its working
+ * directory, overwrites it and then sleeps forever, like the {@link Sleeper}.
+ */
+public class SeedRewriter {
+    /**
+     * The main method.
+     *
+     * @param args
+     *            CLI Arguments.
+     * @throws IOException
+     *             If the seed file can't be read or written.
+     * @throws InterruptedException
+     *             If interrupted while sleeping.
+     */
+    public static void main(String[] args) throws IOException, InterruptedException {
+        Path seed = Paths.get("seed.txt");
+        System.out.println("state: " + Files.readString(seed, StandardCharsets.UTF_8));
+        Files.writeString(seed, "modified", StandardCharsets.UTF_8);
+        System.out.println("+++ " + SeedRewriter.class.getSimpleName() + " process running...");
+        Thread.sleep(Long.MAX_VALUE);
+    }
+}
@@ -0,0 +1,30 @@
+package io.github.netmikey.testprocesses.functional.testfixtures;
+
+import java.io.IOException;
+import java.nio.file.Paths;
+
+/**
+ * A Java process used for testing that starts a {@link Sleeper} child process
+ * and waits for it to exit, like a launcher script running the actual
+ * process.
+ */
+public class Spawner {
+    /**
+     * The main method.
+     *
+     * @param args
+     *            CLI Arguments.
+     * @throws IOException
+     *             If the child process can't be started.
+     * @throws InterruptedException
+     *             If interrupted while waiting for the child process.
+     */
+    public static void main(String[] args) throws IOException, InterruptedException {
+        Process child = new ProcessBuilder(Paths.get(System.getProperty("java.home"), "bin", "java").toString(),
+            "-cp", System.getProperty("java.class.path"), Sleeper.class.getName())
+            .inheritIO()
+            .start();
+        System.out.println("+++ " + Spawner.class.getSimpleName() + " process running...");
+        System.exit(child.waitFor());
+    }
+}
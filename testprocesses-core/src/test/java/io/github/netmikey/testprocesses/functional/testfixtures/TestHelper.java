@@ -9,6 +9,7 @@ import java.io.UncheckedIOException;
 import java.nio.charset.StandardCharsets;
 import java.util.Optional;
 import java.util.concurrent.TimeoutException;
+import java.util.function.BooleanSupplier;
 
 import org.junit.jupiter.api.Assertions;
 import org.opentest4j.AssertionFailedError;
@@ -175,6 +176,31 @@ public class TestHelper {
             clazz.getSimpleName() + " should have been stopped, should not be running");
     }
 
+    /**
+     * Wait until the specified condition is met, failing the test if it isn't
+     * met within the specified time.
+     *
+     * @param condition
+     *            The condition.
+     * @param timeoutMillis
+     *            The maximum time to wait in milliseconds.
+     * @param message
+     *            The failure message.
+     * @throws InterruptedException
+     *             Thrown when interrupted while waiting.
+     */
+    public static void awaitCondition(BooleanSupplier condition, long timeoutMillis, String message)
+        throws InterruptedException {
+
+        long deadlineMillis = System.currentTimeMillis() + timeoutMillis;
+        while (!condition.getAsBoolean()) {
+            if (System.currentTimeMillis() > deadlineMillis) {
+                Assertions.fail(message);
+            }
+            Thread.sleep(50);
+        }
+    }
+
     /**
      * Assert the {@link EchoTestProcess} is NOT currently running using its
      * {@link EchoTestProcess} instance for the lookup.
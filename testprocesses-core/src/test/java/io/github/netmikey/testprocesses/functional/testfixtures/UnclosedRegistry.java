@@ -0,0 +1,28 @@
+package io.github.netmikey.testprocesses.functional.testfixtures;
+
+import io.github.netmikey.testprocesses.StartStrategy;
+import io.github.netmikey.testprocesses.TestProcessDefinitionBy;
+import io.github.netmikey.testprocesses.TestProcessesRegistry;
+
+/**
+ * A Java process used for testing that starts a test process ignoring
+ * <code>SIGTERM</code>, prints its PID and exits without shutting down its
+ * registry, like a test JVM whose test context is never closed.
+ */
+public class UnclosedRegistry {
+    /**
+     * The main method.
+     *
+     * @param args
+     *            CLI Arguments.
+     */
+    public static void main(String[] args) {
+        TestProcessesRegistry registry = new TestProcessesRegistry();
+        registry.setFastShutdownGracePeriodMillis(500);
+        FixtureTestProcess definition = new FixtureTestProcess("unclosed-process", Lingerer.class, "600000");
+        registry.start(TestProcessDefinitionBy.instance(definition), StartStrategy.USE_EXISTING);
+
+        System.out.println("PID " + definition.getManagedProcess().pid());
+        System.exit(0);
+    }
+}